@@ -16,7 +16,11 @@ package net.sourceforge.jasa.agent;
 
 import java.io.Serializable;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import net.sourceforge.jabm.EventScheduler;
@@ -25,11 +29,11 @@ import net.sourceforge.jabm.agent.utility.RiskNeutralUtilityFunction;
 import net.sourceforge.jabm.agent.utility.UtilityFunction;
 import net.sourceforge.jabm.event.AgentArrivalEvent;
 import net.sourceforge.jabm.event.SimEvent;
-import net.sourceforge.jabm.util.IdAllocator;
 import net.sourceforge.jabm.util.Prototypeable;
 import net.sourceforge.jabm.util.Resetable;
 import net.sourceforge.jasa.agent.strategy.FixedQuantityStrategy;
 import net.sourceforge.jasa.agent.valuation.FixedValuer;
+import net.sourceforge.jasa.agent.valuation.ValuationListener;
 import net.sourceforge.jasa.agent.valuation.ValuationPolicy;
 import net.sourceforge.jasa.event.EndOfDayEvent;
 import net.sourceforge.jasa.event.MarketClosedEvent;
@@ -40,7 +44,10 @@ import net.sourceforge.jasa.market.AuctionClosedException;
 import net.sourceforge.jasa.market.AuctionException;
 import net.sourceforge.jasa.market.AuctionRuntimeException;
 import net.sourceforge.jasa.market.IllegalOrderException;
+import net.sourceforge.jasa.market.LedgerAccount;
+import net.sourceforge.jasa.market.LedgerInventory;
 import net.sourceforge.jasa.market.Market;
+import net.sourceforge.jasa.market.MarketLedger;
 import net.sourceforge.jasa.market.Order;
 
 import org.apache.log4j.Logger;
@@ -80,9 +87,11 @@ public abstract class AbstractTradingAgent extends AbstractAgent implements
 	protected double initialFunds = 0;
 
 	/**
-	 * Used to allocate each agent with a unique id.
+	 * The ledger holding this agent's funds and stock, or null if they are 
+	 * held by this agent's own Account and Inventory.  Payoffs are recorded
+	 * in the ledger of the market in which each order is filled.
 	 */
-	static IdAllocator idAllocator = new IdAllocator();
+	protected MarketLedger ledger;
 
 	/**
 	 * The valuer for this agent.
@@ -116,12 +125,24 @@ public abstract class AbstractTradingAgent extends AbstractAgent implements
 	 */
 	protected Order currentOrder;
 
+	/**
+	 * The current position for this trader in each market, when it trades
+	 * in more than one market.
+	 */
+	protected Map<Market, Order> currentOrders = new HashMap<Market, Order>();
+
+	/**
+	 * The position of this trader in each instrument of a multi-instrument
+	 * exchange, keyed by the market of the instrument.
+	 */
+	protected Map<Market, Inventory> holdings = new HashMap<Market, Inventory>();
+
 	/**
 	 * The grouping that this agent belongs to.
 	 */
 	protected AgentGroup group = null;
 	
-	protected Set<Market> markets = new HashSet<Market>();
+	protected Set<Market> markets = new LinkedHashSet<Market>();
 
 	static Logger logger = Logger.getLogger(AbstractTradingAgent.class);
 	
@@ -171,21 +192,22 @@ public abstract class AbstractTradingAgent extends AbstractAgent implements
 	 */
 	public void onAgentArrival(Market market, AgentArrivalEvent event) {
 		try {
-			if (currentOrder != null) {
+			Order previousOrder = getCurrentOrder(market);
+			if (previousOrder != null) {
 				// Currently JASA does not provide an API call for order
 				//  revision, so we implement this by cancelling the previous
 				//  order and placing a new revised order.
-				market.removeOrder(currentOrder);
+				market.removeOrder(previousOrder);
 			}
 			Order newOrder = 
-				getTradingStrategy().modifyOrder(currentOrder, market);
+				getTradingStrategy().modifyOrder(previousOrder, market);
 			lastPayoff = 0;
 			lastOrderFilled = false;
 			if (active() && newOrder != null) {
 				if (logger.isDebugEnabled()) logger.debug(newOrder);
 				market.placeOrder(newOrder);
 			}
-			currentOrder = newOrder;
+			setCurrentOrder(market, newOrder);
 			super.onAgentArrival(event);
 		} catch (AuctionClosedException e) {
 			logger.debug("requestShout(): Received AuctionClosedException");
@@ -253,6 +275,27 @@ public abstract class AbstractTradingAgent extends AbstractAgent implements
 		return currentOrder;
 	}
 
+	/**
+	 * @return the current order of this trader in the specified market.
+	 */
+	public Order getCurrentOrder(Market market) {
+		if (markets.size() <= 1) {
+			return currentOrder;
+		}
+		return currentOrders.get(market);
+	}
+
+	/**
+	 * Record the current order of this trader in the specified market, which
+	 * also becomes its most recent order.
+	 */
+	protected void setCurrentOrder(Market market, Order order) {
+		currentOrder = order;
+		if (markets.size() > 1) {
+			currentOrders.put(market, order);
+		}
+	}
+
 	public Account getAccount() {
 		return account;
 	}
@@ -286,8 +329,11 @@ public abstract class AbstractTradingAgent extends AbstractAgent implements
 		account.setFunds(initialFunds);
 		lastPayoff = 0;
 		totalPayoff = 0;
+		resetLedgerPayoffs();
 		lastOrderFilled = false;
 		currentOrder = null;
+		currentOrders.clear();
+		holdings.clear();
 		if (strategy != null) {
 			getTradingStrategy().initialise();
 			strategy.subscribeToEvents(scheduler);
@@ -297,6 +343,24 @@ public abstract class AbstractTradingAgent extends AbstractAgent implements
 		}
 	}
 
+	/**
+	 * Remove this agent's accumulated payoff from the ledger of every market 
+	 * in which it trades.
+	 */
+	protected void resetLedgerPayoffs() {
+		boolean walletReset = false;
+		for (Market market : markets) {
+			MarketLedger marketLedger = market.getLedger();
+			if (marketLedger != null && marketLedger.isOpen(this)) {
+				marketLedger.resetPayoff(this, group);
+				walletReset |= marketLedger == ledger;
+			}
+		}
+		if (ledger != null && !walletReset) {
+			ledger.resetPayoff(this, group);
+		}
+	}
+
 	public void reset() {
 		initialise();
 		if (valuer != null) {
@@ -336,6 +400,14 @@ public abstract class AbstractTradingAgent extends AbstractAgent implements
 		try {
 			copy = (AbstractTradingAgent) clone();
 			copy.strategy = (TradingStrategy) ((Prototypeable) strategy).protoClone();
+			copy.currentOrders = new HashMap<Market, Order>();
+			copy.holdings = new HashMap<Market, Inventory>();
+			copy.markets = new LinkedHashSet<Market>(markets);
+			if (ledger != null) {
+				copy.ledger = null;
+				copy.account = new Account(copy, initialFunds);
+				copy.stock = new Inventory();
+			}
 			copy.reset();
 		} catch (CloneNotSupportedException e) {
 		}
@@ -353,6 +425,10 @@ public abstract class AbstractTradingAgent extends AbstractAgent implements
 		lastOrderFilled = true;
 		lastPayoff = calculatePayoff(auction, quantity, price);
 		totalPayoff += lastPayoff;
+		MarketLedger marketLedger = auction.getLedger();
+		if (marketLedger != null) {
+			marketLedger.recordPayoff(this, group, shout.isBid(), lastPayoff);
+		}
 		valuer.consumeUnit(auction);
 	}
 
@@ -365,8 +441,27 @@ public abstract class AbstractTradingAgent extends AbstractAgent implements
 	}
 
 	public void setValuationPolicy(ValuationPolicy valuer) {
+		ValuationPolicy previous = this.valuer;
 		this.valuer = valuer;
 		valuer.setAgent(this);
+		if (previous != null && previous != valuer) {
+			transferValuationListeners(previous, valuer);
+		}
+	}
+	
+	/**
+	 * Move any valuation listeners from the agent's previous valuation policy
+	 * to its new one, and notify them that the valuation has changed.
+	 */
+	protected void transferValuationListeners(ValuationPolicy from,
+			ValuationPolicy to) {
+		List<ValuationListener> listeners = 
+			new ArrayList<ValuationListener>(from.getValuationListeners());
+		for (ValuationListener listener : listeners) {
+			from.removeValuationListener(listener);
+			to.addValuationListener(listener);
+			listener.valuationChanged(to);
+		}
 	}
 	
 	public UtilityFunction getUtilityFunction() {
@@ -377,6 +472,22 @@ public abstract class AbstractTradingAgent extends AbstractAgent implements
 		this.utilityFunction = utilityFunction;
 	}
 
+	public MarketLedger getLedger() {
+		return ledger;
+	}
+
+	/**
+	 * Hold this agent's funds and stock in the specified ledger by replacing
+	 * its Account and Inventory with views onto the ledger.  An agent's 
+	 * funds and stock are held in at most one ledger.  This is 
+	 * normally invoked by {@link MarketLedger#open(TradingAgent)}.
+	 */
+	public void setLedger(MarketLedger ledger) {
+		this.ledger = ledger;
+		this.account = new LedgerAccount(ledger, this);
+		this.stock = new LedgerInventory(ledger, this);
+	}
+
 	public AgentGroup getGroup() {
 		return group;
 	}
@@ -388,17 +499,27 @@ public abstract class AbstractTradingAgent extends AbstractAgent implements
 	public Inventory getCommodityHolding() {
 		return stock;
 	}
+
+	public Inventory getHolding(Market market) {
+		Inventory holding = holdings.get(market);
+		if (holding == null) {
+			holding = new Inventory();
+			holding.setOwner(this);
+			holdings.put(market, holding);
+		}
+		return holding;
+	}
 	
 	public Collection<Market> getMarkets() {
 		return markets;
 	}
 
 	public void setMarkets(Collection<Market> markets) {
-		this.markets = new HashSet<Market>(markets);
+		this.markets = new LinkedHashSet<Market>(markets);
 	}
 	
 	public void setMarket(Market market) {
-		markets = new HashSet<Market>();
+		markets = new LinkedHashSet<Market>();
 		markets.add(market);
 	}
 	
@@ -407,7 +528,7 @@ public abstract class AbstractTradingAgent extends AbstractAgent implements
 	}
 	
 	public boolean register(Market market) {
-		markets = new HashSet<Market>();
+		markets = new LinkedHashSet<Market>();
 		return markets.add(market);
 	}
 	
@@ -451,10 +572,11 @@ public abstract class AbstractTradingAgent extends AbstractAgent implements
 	}
 
 	public boolean isBuyer(Market auction) {
-		if (currentOrder == null) {
+		Order order = getCurrentOrder(auction);
+		if (order == null) {
 			return getTradingStrategy().isBuy(auction);
 		} else {
-			return currentOrder.isBid();
+			return order.isBid();
 		}
 	}
 	
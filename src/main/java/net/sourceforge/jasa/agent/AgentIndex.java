@@ -0,0 +1,144 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.agent;
+
+import gnu.trove.map.custom_hash.TObjectIntCustomHashMap;
+import gnu.trove.strategy.IdentityHashingStrategy;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Allocates each trading agent in a market a dense integer index, so that
+ * per-agent state can be stored in primitive arrays rather than in maps keyed
+ * on agent objects.  Reports, learners and accounting code can share named
+ * columns of per-agent state through the index.  The mapping from agents to
+ * indices is held by the index itself rather than by the agents, so an agent
+ * may be registered with the indices of several markets at once.
+ * 
+ * @author Steve Phelps
+ */
+public class AgentIndex implements Serializable {
+
+	/**
+	 * The registered agents, in order of index.
+	 */
+	protected ArrayList<TradingAgent> agents = new ArrayList<TradingAgent>();
+
+	/**
+	 * The index of each registered agent, keyed by identity.
+	 */
+	protected TObjectIntCustomHashMap<TradingAgent> indices = 
+		new TObjectIntCustomHashMap<TradingAgent>(
+				IdentityHashingStrategy.INSTANCE, 16, 0.5f, -1);
+	
+	protected Map<Object, AgentDoubleColumn> doubleColumns = 
+		new HashMap<Object, AgentDoubleColumn>();
+	
+	protected Map<Object, AgentIntColumn> intColumns = 
+		new HashMap<Object, AgentIntColumn>();
+
+	/**
+	 * Register the specified agent, allocating it the next free index if it is
+	 * not already registered.
+	 * 
+	 * @return The index of the agent.
+	 */
+	public int register(TradingAgent agent) {
+		int index = indices.get(agent);
+		if (index >= 0) {
+			return index;
+		}
+		index = agents.size();
+		agents.add(agent);
+		indices.put(agent, index);
+		return index;
+	}
+	
+	/**
+	 * Return the index of the specified agent, or -1 if it is not registered.
+	 */
+	public int indexOf(TradingAgent agent) {
+		return indices.get(agent);
+	}
+	
+	public boolean isRegistered(TradingAgent agent) {
+		return indices.get(agent) >= 0;
+	}
+	
+	/**
+	 * @return true if the specified agent is registered with the specified 
+	 *         index.  This is cheaper than {@link #indexOf(TradingAgent)}, 
+	 *         and can be used to validate an index cached by the caller.
+	 */
+	public boolean isRegistered(TradingAgent agent, int index) {
+		return index >= 0 && index < agents.size() && agents.get(index) == agent;
+	}
+	
+	public TradingAgent getAgent(int index) {
+		return agents.get(index);
+	}
+	
+	/**
+	 * The number of agents currently registered.
+	 */
+	public int size() {
+		return agents.size();
+	}
+	
+	/**
+	 * Get the shared column of double values with the specified key, creating
+	 * it if necessary.
+	 */
+	public AgentDoubleColumn getDoubleColumn(Object key) {
+		AgentDoubleColumn column = doubleColumns.get(key);
+		if (column == null) {
+			column = new AgentDoubleColumn(agents.size());
+			doubleColumns.put(key, column);
+		}
+		return column;
+	}
+	
+	/**
+	 * Get the shared column of int values with the specified key, creating
+	 * it if necessary.
+	 */
+	public AgentIntColumn getIntColumn(Object key) {
+		AgentIntColumn column = intColumns.get(key);
+		if (column == null) {
+			column = new AgentIntColumn(agents.size());
+			intColumns.put(key, column);
+		}
+		return column;
+	}
+	
+	/**
+	 * Deregister all agents and zero every shared column.
+	 */
+	public void clear() {
+		agents.clear();
+		indices.clear();
+		for(AgentDoubleColumn column : doubleColumns.values()) {
+			column.clear();
+		}
+		for(AgentIntColumn column : intColumns.values()) {
+			column.clear();
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.agent;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A growable column of int values indexed by the dense agent index 
+ * allocated by {@link AgentIndex}.  Entries for agents which have not yet 
+ * been written are zero.
+ * 
+ * @author Steve Phelps
+ */
+public class AgentIntColumn implements Serializable {
+
+	protected int[] values;
+
+	public AgentIntColumn(int initialCapacity) {
+		values = new int[Math.max(initialCapacity, 16)];
+	}
+	
+	public AgentIntColumn() {
+		this(16);
+	}
+	
+	public int get(int index) {
+		if (index < 0 || index >= values.length) {
+			return 0;
+		}
+		return values[index];
+	}
+	
+	public void set(int index, int value) {
+		ensureCapacity(index + 1);
+		values[index] = value;
+	}
+	
+	public void add(int index, int delta) {
+		ensureCapacity(index + 1);
+		values[index] += delta;
+	}
+	
+	/**
+	 * Sum the values of the first n agents.
+	 */
+	public int sum(int n) {
+		int total = 0;
+		int limit = Math.min(n, values.length);
+		for(int i = 0; i < limit; i++) {
+			total += values[i];
+		}
+		return total;
+	}
+	
+	public int sum() {
+		return sum(values.length);
+	}
+	
+	public void fill(int value) {
+		Arrays.fill(values, value);
+	}
+	
+	public void clear() {
+		fill(0);
+	}
+	
+	/**
+	 * Direct access to the underlying array for bulk operations.  The array
+	 * may be longer than the number of registered agents and is replaced when
+	 * the column grows.
+	 */
+	public int[] getValues() {
+		return values;
+	}
+	
+	protected void ensureCapacity(int capacity) {
+		if (capacity > values.length) {
+			values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+		}
+	}
+
+}
@@ -6,6 +6,7 @@ import net.sourceforge.jabm.Population;
 import net.sourceforge.jabm.agent.Agent;
 import net.sourceforge.jabm.init.BasicAgentInitialiser;
 import net.sourceforge.jasa.market.Market;
+import net.sourceforge.jasa.market.MarketLedger;
 
 public class MarketAgentInitialiser extends BasicAgentInitialiser implements
 		Serializable {
@@ -14,10 +15,20 @@ public class MarketAgentInitialiser extends BasicAgentInitialiser implements
 
 	@Override
 	public void initialise(Population population) {
+		AgentIndex agentIndex = market.getAgentIndex();
+		MarketLedger ledger = market.getLedger();
+		agentIndex.clear();
+		if (ledger != null) {
+			ledger.reset();
+		}
 		super.initialise(population);
 		for (Agent agent : population.getAgents()) {
 			TradingAgent trader = (TradingAgent) agent;
 			trader.register(market);
+			agentIndex.register(trader);
+			if (ledger != null) {
+				ledger.open(trader);
+			}
 		}
 	}
 
@@ -20,6 +20,7 @@ import net.sourceforge.jabm.agent.utility.UtilityFunction;
 import net.sourceforge.jasa.event.MarketEventListener;
 import net.sourceforge.jasa.market.Account;
 import net.sourceforge.jasa.market.Market;
+import net.sourceforge.jasa.market.MarketLedger;
 import net.sourceforge.jasa.market.Order;
 
 /**
@@ -40,6 +41,13 @@ public interface TradingAgent extends Agent, MarketEventListener {
 
 	public Inventory getCommodityHolding();
 
+	/**
+	 * @return this agent's position in the instrument traded in the
+	 *         specified market of a multi-instrument exchange, which is held
+	 *         separately from its commodity holding.
+	 */
+	public Inventory getHolding(Market market);
+
 	public void orderFilled(Market auction, Order shout, double price,
 	    int quantity);
 	
@@ -50,5 +58,10 @@ public interface TradingAgent extends Agent, MarketEventListener {
 	public UtilityFunction getUtilityFunction();
 	
 	public double calculateProfit(Market auction, int quantity, double price);
+	
+	/**
+	 * Hold this agent's funds and stock in the specified ledger.
+	 */
+	public void setLedger(MarketLedger ledger);
 
 }
\ No newline at end of file
@@ -65,6 +65,7 @@ public abstract class AbstractRandomValuer extends AbstractValuationPolicy imple
 
 	public void drawRandomValue() {
 		value = distribution.nextDouble();
+		fireValuationChanged();
 	}
 
 	public AbstractContinousDistribution getDistribution() {
@@ -1,6 +1,9 @@
 package net.sourceforge.jasa.agent.valuation;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import net.sourceforge.jasa.agent.TradingAgent;
 
@@ -8,6 +11,8 @@ public abstract class AbstractValuationPolicy implements ValuationPolicy,
 		Serializable {
 
 	protected TradingAgent agent;
+	
+	protected List<ValuationListener> valuationListeners;
 
 	@Override
 	public void setAgent(TradingAgent agent) {
@@ -19,4 +24,39 @@ public abstract class AbstractValuationPolicy implements ValuationPolicy,
 		return agent;
 	}
 
+	@Override
+	public void addValuationListener(ValuationListener listener) {
+		if (valuationListeners == null) {
+			valuationListeners = new ArrayList<ValuationListener>(1);
+		}
+		valuationListeners.add(listener);
+	}
+
+	@Override
+	public void removeValuationListener(ValuationListener listener) {
+		if (valuationListeners != null) {
+			valuationListeners.remove(listener);
+		}
+	}
+
+	@Override
+	public List<ValuationListener> getValuationListeners() {
+		if (valuationListeners == null) {
+			return Collections.emptyList();
+		}
+		return valuationListeners;
+	}
+
+	/**
+	 * Notify listeners that the valuation reported by this policy has 
+	 * changed.
+	 */
+	protected void fireValuationChanged() {
+		if (valuationListeners != null) {
+			for (int i = 0; i < valuationListeners.size(); i++) {
+				valuationListeners.get(i).valuationChanged(this);
+			}
+		}
+	}
+
 }
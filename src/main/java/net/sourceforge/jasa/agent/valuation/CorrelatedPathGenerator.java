@@ -0,0 +1,293 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.agent.valuation;
+
+import java.io.Serializable;
+
+import net.sourceforge.jasa.random.SplitMixRandomEngine;
+import cern.jet.random.Normal;
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * <p>
+ * Advances the prices of several assets whose log returns follow
+ * correlated geometric Brownian motions, optionally with Merton-style
+ * log-normal jumps. The Cholesky factor of the correlation matrix and all
+ * per-step constants are computed once, so a step costs one bulk draw of
+ * normal variates, an O(n<sup>2</sup>) triangular product, and one
+ * <code>Math.exp</code> per asset, all on primitive arrays.
+ * </p>
+ * 
+ * <p>
+ * The return of asset i over a step of length dt is
+ * (&mu;<sub>i</sub> - &sigma;<sub>i</sub><sup>2</sup>/2 - &lambda;<sub>i</sub>k<sub>i</sub>)dt
+ * + &sigma;<sub>i</sub>&radic;dt &epsilon;<sub>i</sub> + J<sub>i</sub>, where
+ * &epsilon; = Lz for independent standard normals z, J<sub>i</sub> is the
+ * sum of a Poisson(&lambda;<sub>i</sub>dt) number of normal jumps with mean
+ * m<sub>i</sub> and standard deviation s<sub>i</sub>, and
+ * k<sub>i</sub> = exp(m<sub>i</sub> + s<sub>i</sub><sup>2</sup>/2) - 1
+ * compensates the jumps so that the expected return is &mu;<sub>i</sub>.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class CorrelatedPathGenerator implements Serializable {
+
+	protected int numberOfAssets;
+
+	/**
+	 * The lower-triangular Cholesky factor of the correlation matrix, stored
+	 * row-major.
+	 */
+	protected double[] cholesky;
+
+	protected double[] driftPerStep;
+
+	protected double[] volatilityPerStep;
+
+	protected double[] jumpProbabilityZero;
+
+	protected double[] jumpIntensityPerStep;
+
+	protected double[] jumpMean;
+
+	protected double[] jumpVolatility;
+
+	protected boolean jumps;
+
+	protected double[] independent;
+
+	protected double[] correlated;
+
+	protected double[] jumpNoise = new double[1];
+
+	protected RandomEngine prng;
+
+	protected Normal normal;
+
+	/**
+	 * @param drift
+	 *            The annualised drift of each asset.
+	 * @param volatility
+	 *            The annualised volatility of each asset.
+	 * @param correlation
+	 *            The correlation matrix of the Brownian motions, or null if
+	 *            they are independent.
+	 * @param dt
+	 *            The length of a step.
+	 */
+	public CorrelatedPathGenerator(double[] drift, double[] volatility,
+			double[][] correlation, double dt, RandomEngine prng) {
+		this(drift, volatility, correlation, null, null, null, dt, prng);
+	}
+
+	/**
+	 * @param jumpIntensity
+	 *            The expected number of jumps per unit time of each asset,
+	 *            or null for no jumps.
+	 * @param jumpMean
+	 *            The mean log size of a jump of each asset.
+	 * @param jumpVolatility
+	 *            The standard deviation of the log size of a jump of each
+	 *            asset.
+	 */
+	public CorrelatedPathGenerator(double[] drift, double[] volatility,
+			double[][] correlation, double[] jumpIntensity, double[] jumpMean,
+			double[] jumpVolatility, double dt, RandomEngine prng) {
+		int n = drift.length;
+		if (volatility.length != n) {
+			throw new IllegalArgumentException(
+					"drift and volatility must have the same length");
+		}
+		this.numberOfAssets = n;
+		this.cholesky = correlation == null ? identity(n) : cholesky(correlation);
+		this.driftPerStep = new double[n];
+		this.volatilityPerStep = new double[n];
+		this.jumps = jumpIntensity != null;
+		if (jumps) {
+			this.jumpIntensityPerStep = new double[n];
+			this.jumpProbabilityZero = new double[n];
+			this.jumpMean = jumpMean.clone();
+			this.jumpVolatility = jumpVolatility.clone();
+		}
+		double sqrtDt = Math.sqrt(dt);
+		for (int i = 0; i < n; i++) {
+			double compensator = 0;
+			if (jumps) {
+				double k = Math.exp(jumpMean[i] + jumpVolatility[i]
+						* jumpVolatility[i] / 2) - 1;
+				compensator = jumpIntensity[i] * k;
+				jumpIntensityPerStep[i] = jumpIntensity[i] * dt;
+				jumpProbabilityZero[i] = Math.exp(-jumpIntensityPerStep[i]);
+			}
+			driftPerStep[i] = (drift[i] - volatility[i] * volatility[i] / 2
+					- compensator) * dt;
+			volatilityPerStep[i] = volatility[i] * sqrtDt;
+		}
+		this.independent = new double[n];
+		this.correlated = new double[n];
+		setPrng(prng);
+	}
+
+	/**
+	 * Advance the specified prices by one step in place.
+	 */
+	public void step(double[] prices) {
+		step(prices, 0, 1);
+	}
+
+	/**
+	 * Advance the prices of the assets, stored in prices at offset + i *
+	 * stride, by one step in place.
+	 */
+	public void step(double[] prices, int offset, int stride) {
+		int n = numberOfAssets;
+		drawNormals(independent, n);
+		for (int i = 0; i < n; i++) {
+			double sum = 0;
+			int row = i * n;
+			for (int j = 0; j <= i; j++) {
+				sum += cholesky[row + j] * independent[j];
+			}
+			correlated[i] = sum;
+		}
+		for (int i = 0; i < n; i++) {
+			double logReturn = driftPerStep[i] + volatilityPerStep[i]
+					* correlated[i];
+			if (jumps) {
+				logReturn += drawJumps(i);
+			}
+			prices[offset + i * stride] *= Math.exp(logReturn);
+		}
+	}
+
+	/**
+	 * Generate whole paths ahead of time.
+	 * 
+	 * @param initialPrices
+	 *            The price of each asset at step zero.
+	 * @param paths
+	 *            The paths, where paths[i][t] is the price of asset i after t
+	 *            steps; each row must have the same length.
+	 */
+	public void generatePaths(double[] initialPrices, double[][] paths) {
+		int n = numberOfAssets;
+		int steps = paths[0].length;
+		double[] prices = initialPrices.clone();
+		for (int i = 0; i < n; i++) {
+			paths[i][0] = prices[i];
+		}
+		for (int t = 1; t < steps; t++) {
+			step(prices);
+			for (int i = 0; i < n; i++) {
+				paths[i][t] = prices[i];
+			}
+		}
+	}
+
+	protected void drawNormals(double[] values, int length) {
+		if (prng instanceof SplitMixRandomEngine) {
+			((SplitMixRandomEngine) prng).fillNormal(values, 0, length, 0, 1);
+		} else {
+			for (int i = 0; i < length; i++) {
+				values[i] = normal.nextDouble();
+			}
+		}
+	}
+
+	/**
+	 * Draw the total log size of the jumps of asset i during a step, using
+	 * inversion to sample the number of jumps.
+	 */
+	protected double drawJumps(int i) {
+		double u = prng.nextDouble();
+		double p = jumpProbabilityZero[i];
+		if (u < p) {
+			return 0;
+		}
+		double cumulative = p;
+		int count = 0;
+		while (u >= cumulative && count < 1000) {
+			count++;
+			p *= jumpIntensityPerStep[i] / count;
+			cumulative += p;
+		}
+		drawNormals(jumpNoise, 1);
+		return count * jumpMean[i] + Math.sqrt(count) * jumpVolatility[i]
+				* jumpNoise[0];
+	}
+
+	/**
+	 * Compute the lower-triangular Cholesky factor of a symmetric
+	 * positive-definite matrix.
+	 * 
+	 * @return the factor in row-major order.
+	 * @throws IllegalArgumentException
+	 *             if the matrix is not square or not positive definite.
+	 */
+	public static double[] cholesky(double[][] matrix) {
+		int n = matrix.length;
+		double[] l = new double[n * n];
+		for (int i = 0; i < n; i++) {
+			if (matrix[i].length != n) {
+				throw new IllegalArgumentException("Matrix is not square");
+			}
+			for (int j = 0; j <= i; j++) {
+				double sum = matrix[i][j];
+				for (int k = 0; k < j; k++) {
+					sum -= l[i * n + k] * l[j * n + k];
+				}
+				if (i == j) {
+					if (sum <= 0) {
+						throw new IllegalArgumentException(
+								"Correlation matrix is not positive definite");
+					}
+					l[i * n + i] = Math.sqrt(sum);
+				} else {
+					l[i * n + j] = sum / l[j * n + j];
+				}
+			}
+		}
+		return l;
+	}
+
+	public static double[] identity(int n) {
+		double[] result = new double[n * n];
+		for (int i = 0; i < n; i++) {
+			result[i * n + i] = 1.0;
+		}
+		return result;
+	}
+
+	public int getNumberOfAssets() {
+		return numberOfAssets;
+	}
+
+	public double[] getCholesky() {
+		return cholesky;
+	}
+
+	public RandomEngine getPrng() {
+		return prng;
+	}
+
+	public void setPrng(RandomEngine prng) {
+		this.prng = prng;
+		this.normal = new Normal(0, 1, prng);
+	}
+
+}
@@ -61,6 +61,7 @@ public class FixedValuer extends AbstractValuationPolicy implements Serializable
 
 	public void setValue(double value) {
 		this.value = value;
+		fireValuationChanged();
 	}
 
 	public String toString() {
@@ -4,6 +4,7 @@ import net.sourceforge.jabm.event.RoundFinishedEvent;
 import net.sourceforge.jabm.event.SimEvent;
 import net.sourceforge.jabm.event.SimulationStartingEvent;
 import net.sourceforge.jabm.util.MutableDoubleWrapper;
+import net.sourceforge.jasa.random.SplitMixRandomEngine;
 import net.sourceforge.jasa.report.MarketPriceReportVariables;
 
 import org.springframework.beans.factory.InitializingBean;
@@ -33,13 +34,23 @@ public class GeometricBrownianMotionPriceProcess extends
 	
 	protected Normal noiseDistribution;
 	
+	/**
+	 * Normal variates drawn in bulk when the prng is a 
+	 * SplitMixRandomEngine.
+	 */
+	protected double[] noise;
+	
+	protected int noiseIndex;
+	
+	protected int noiseBlockSize = 256;
+	
 	@Override
 	public void eventOccurred(SimEvent event) {
 		super.eventOccurred(event);
 		if (event instanceof SimulationStartingEvent) {
 			onSimulationStarting((SimulationStartingEvent) event);
 		}
-	}
+	}
 	
 	public void onSimulationStarting(SimulationStartingEvent event) {
 		initialise();
@@ -47,13 +58,29 @@ public class GeometricBrownianMotionPriceProcess extends
 	
 	@Override
 	public void onRoundFinished(RoundFinishedEvent event) {
-		wienerProcess = noiseDistribution.nextDouble() * Math.sqrt(dt);
+		wienerProcess = nextNoise() * Math.sqrt(dt);
 //		System.out.println(weinerProcess);
 		currentPrice *= Math.exp((drift - (volatility * volatility) / 2) * dt
 				+ volatility * wienerProcess);
 		priceWrapper.setValue(currentPrice);
 		super.onRoundFinished(event);
 	}
+	
+	protected double nextNoise() {
+		if (prng instanceof SplitMixRandomEngine) {
+			if (noise == null || noiseIndex >= noise.length) {
+				if (noise == null) {
+					noise = new double[noiseBlockSize];
+				}
+				((SplitMixRandomEngine) prng).fillNormal(noise, 0,
+						noise.length, 0.0, 1.0);
+				noiseIndex = 0;
+			}
+			return noise[noiseIndex++];
+		} else {
+			return noiseDistribution.nextDouble();
+		}
+	}
 //
 //	@Override
 //	public Map<Object, Number> getVariableBindings() {
@@ -102,6 +129,15 @@ public class GeometricBrownianMotionPriceProcess extends
 		this.dt = dt;
 	}
 
+	public int getNoiseBlockSize() {
+		return noiseBlockSize;
+	}
+
+	public void setNoiseBlockSize(int noiseBlockSize) {
+		this.noiseBlockSize = noiseBlockSize;
+		this.noise = null;
+	}
+
 	public RandomEngine getPrng() {
 		return prng;
 	}
@@ -109,6 +145,7 @@ public class GeometricBrownianMotionPriceProcess extends
 	@Required
 	public void setPrng(RandomEngine prng) {
 		this.prng = prng;
+		this.noise = null;
 	}
 
 	@Override
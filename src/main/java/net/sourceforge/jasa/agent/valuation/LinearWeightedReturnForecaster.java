@@ -43,8 +43,14 @@ public class LinearWeightedReturnForecaster extends
 		initialiseWeights();
 	}
 	
+	/**
+	 * Draw a new set of weights, reusing the existing weight array if it is
+	 * already the right size.
+	 */
 	public void initialiseWeights() {
-		weights = new double[distributions.length];
+		if (weights == null || weights.length != distributions.length) {
+			weights = new double[distributions.length];
+		}
 		for(int i=0; i<distributions.length; i++) {
 			weights[i] = distributions[i].nextDouble();
 		}
@@ -104,6 +110,29 @@ public class LinearWeightedReturnForecaster extends
 				+ Arrays.toString(distributions) + "]";
 	}
 
+	/**
+	 * Copy the weights and scaling of the source, if it is also a
+	 * linear-weighted forecaster, into the existing weight array of this
+	 * forecaster.  The component forecasters are not copied.
+	 */
+	@Override
+	public void copyFrom(ReturnForecasterWithTimeHorizon source) {
+		super.copyFrom(source);
+		if (source instanceof LinearWeightedReturnForecaster) {
+			LinearWeightedReturnForecaster other = 
+					(LinearWeightedReturnForecaster) source;
+			if (other.weights == null) {
+				weights = null;
+			} else {
+				if (weights == null || weights.length != other.weights.length) {
+					weights = new double[other.weights.length];
+				}
+				System.arraycopy(other.weights, 0, weights, 0, weights.length);
+			}
+			this.scaling = other.scaling;
+		}
+	}
+
 	@Override
 	public Object clone() throws CloneNotSupportedException {
 		LinearWeightedReturnForecaster result = 
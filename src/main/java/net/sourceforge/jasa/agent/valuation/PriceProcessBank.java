@@ -0,0 +1,427 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.agent.valuation;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.jabm.event.RoundFinishedEvent;
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jabm.event.SimulationStartingEvent;
+import net.sourceforge.jabm.report.XYReportVariables;
+import net.sourceforge.jabm.util.MutableDoubleWrapper;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Required;
+
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * <p>
+ * A bank of correlated fundamental price processes, one per asset, which
+ * are advanced together at the end of each round by a
+ * {@link CorrelatedPathGenerator}. This generalises
+ * {@link GeometricBrownianMotionPriceProcess} to portfolios of markets
+ * whose fundamentals are correlated, and optionally subject to jumps.
+ * </p>
+ * 
+ * <p>
+ * The initial price of each asset is given by the
+ * <code>initialPrices</code> property. The price of each asset is published
+ * through a {@link MutableDoubleWrapper}, which can be supplied with the
+ * <code>priceWrappers</code> property, in which case their values are used
+ * as the initial prices if <code>initialPrices</code> is not set, or
+ * obtained with {@link #getPriceWrapper(int)}.
+ * Either way a {@link FundamentalistForecaster} can bind its
+ * <code>fundamentalPrice</code> to the wrapper exactly as it does to the
+ * wrapper of a single process.
+ * </p>
+ * 
+ * <p>
+ * If <code>precomputedSteps</code> is positive, whole paths of that many
+ * rounds are generated at the start of each simulation and each round then
+ * simply reads the next price from the paths. Several replications can be
+ * given identical fundamentals by passing the paths of one bank to
+ * {@link #setPaths(double[][])} on the others, in which case they are not
+ * regenerated.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class PriceProcessBank implements XYReportVariables, InitializingBean,
+		Serializable {
+
+	protected double[] drift;
+
+	protected double[] volatility;
+
+	protected double[][] correlation;
+
+	protected double[] jumpIntensity;
+
+	protected double[] jumpMean;
+
+	protected double[] jumpVolatility;
+
+	protected double dt;
+
+	protected double[] initialPrices;
+
+	protected double[] prices;
+
+	protected List<MutableDoubleWrapper> priceWrappers;
+
+	protected int precomputedSteps = 0;
+
+	/**
+	 * The precomputed paths, where paths[i][t] is the price of asset i after
+	 * t rounds.
+	 */
+	protected double[][] paths;
+
+	/**
+	 * True if the paths were supplied by {@link #setPaths(double[][])}
+	 * rather than generated by this bank.
+	 */
+	protected boolean sharedPaths = false;
+
+	protected int step;
+
+	protected int time;
+
+	protected RandomEngine prng;
+
+	protected transient CorrelatedPathGenerator generator;
+
+	protected String name = "bank";
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		int n = drift.length;
+		if (priceWrappers == null) {
+			priceWrappers = new ArrayList<MutableDoubleWrapper>(n);
+		}
+		while (priceWrappers.size() < n) {
+			priceWrappers.add(new MutableDoubleWrapper());
+		}
+		if (initialPrices == null) {
+			initialPrices = new double[n];
+			for (int i = 0; i < n; i++) {
+				initialPrices[i] = priceWrappers.get(i).getValue();
+			}
+		}
+		validateInitialPrices(n);
+		if (sharedPaths) {
+			validatePaths(n);
+		}
+		prices = new double[n];
+		generator = new CorrelatedPathGenerator(drift, volatility,
+				correlation, jumpIntensity, jumpMean, jumpVolatility, dt, prng);
+		initialise();
+	}
+
+	public void initialise() {
+		step = 0;
+		time = 0;
+		if (sharedPaths) {
+			for (int i = 0; i < prices.length; i++) {
+				prices[i] = paths[i][0];
+			}
+		} else {
+			System.arraycopy(initialPrices, 0, prices, 0, prices.length);
+			if (precomputedSteps > 0) {
+				if (paths == null || paths[0].length != precomputedSteps + 1) {
+					paths = new double[prices.length][precomputedSteps + 1];
+				}
+				generator.generatePaths(initialPrices, paths);
+			}
+		}
+		publishPrices();
+	}
+
+	protected void validateInitialPrices(int n) {
+		if (initialPrices.length != n) {
+			throw new IllegalArgumentException("Expected " + n
+					+ " initial prices but got " + initialPrices.length);
+		}
+		for (int i = 0; i < n; i++) {
+			if (!(initialPrices[i] > 0)) {
+				throw new IllegalArgumentException("Initial price of asset " + i
+						+ " must be positive: " + initialPrices[i]);
+			}
+		}
+	}
+
+	protected void validatePaths(int n) {
+		if (paths.length != n) {
+			throw new IllegalArgumentException("Expected paths for " + n
+					+ " assets but got " + paths.length);
+		}
+		for (int i = 1; i < n; i++) {
+			if (paths[i].length != paths[0].length) {
+				throw new IllegalArgumentException(
+						"All paths must have the same length");
+			}
+		}
+	}
+
+	/**
+	 * Advance every asset by one step, reading from the precomputed paths
+	 * while they last.
+	 */
+	public void step() {
+		step++;
+		if (paths != null && step < paths[0].length) {
+			for (int i = 0; i < prices.length; i++) {
+				prices[i] = paths[i][step];
+			}
+		} else {
+			generator.step(prices);
+		}
+		publishPrices();
+	}
+
+	protected void publishPrices() {
+		for (int i = 0; i < prices.length; i++) {
+			priceWrappers.get(i).setValue(prices[i]);
+		}
+	}
+
+	@Override
+	public void eventOccurred(SimEvent event) {
+		if (event instanceof RoundFinishedEvent) {
+			onRoundFinished((RoundFinishedEvent) event);
+		} else if (event instanceof SimulationStartingEvent) {
+			initialise();
+		}
+	}
+
+	public void onRoundFinished(RoundFinishedEvent event) {
+		step();
+		this.time = (int) event.getSimulation().getSimulationTime().getTicks();
+	}
+
+	@Override
+	public void compute(SimEvent event) {
+		eventOccurred(event);
+	}
+
+	@Override
+	public void dispose(SimEvent event) {
+	}
+
+	@Override
+	public void initialise(SimEvent event) {
+	}
+
+	@Override
+	public Map<Object, Number> getVariableBindings() {
+		LinkedHashMap<Object, Number> result = 
+			new LinkedHashMap<Object, Number>();
+		result.put(getxVariableName(), time);
+		for (int i = 0; i < prices.length; i++) {
+			result.put(getPriceVariableName(i), prices[i]);
+		}
+		return result;
+	}
+
+	public String getPriceVariableName(int i) {
+		return name + ".price." + i;
+	}
+
+	@Override
+	public Number getX(int seriesIndex) {
+		return time;
+	}
+
+	@Override
+	public Number getY(int seriesIndex) {
+		return prices[seriesIndex];
+	}
+
+	@Override
+	public int getNumberOfSeries() {
+		return prices.length;
+	}
+
+	@Override
+	public List<Object> getyVariableNames() {
+		LinkedList<Object> result = new LinkedList<Object>();
+		for (int i = 0; i < prices.length; i++) {
+			result.add(getPriceVariableName(i));
+		}
+		return result;
+	}
+
+	@Override
+	public String getxVariableName() {
+		return name + ".t";
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return the wrapper through which the price of the specified asset is
+	 *         published.
+	 */
+	public MutableDoubleWrapper getPriceWrapper(int asset) {
+		return priceWrappers.get(asset);
+	}
+
+	public double getPrice(int asset) {
+		return prices[asset];
+	}
+
+	public List<MutableDoubleWrapper> getPriceWrappers() {
+		return priceWrappers;
+	}
+
+	public void setPriceWrappers(List<MutableDoubleWrapper> priceWrappers) {
+		this.priceWrappers = priceWrappers;
+	}
+
+	public double[] getDrift() {
+		return drift;
+	}
+
+	@Required
+	public void setDrift(double[] drift) {
+		this.drift = drift;
+	}
+
+	public double[] getVolatility() {
+		return volatility;
+	}
+
+	@Required
+	public void setVolatility(double[] volatility) {
+		this.volatility = volatility;
+	}
+
+	public double[][] getCorrelation() {
+		return correlation;
+	}
+
+	public void setCorrelation(double[][] correlation) {
+		this.correlation = correlation;
+	}
+
+	public double[] getJumpIntensity() {
+		return jumpIntensity;
+	}
+
+	public void setJumpIntensity(double[] jumpIntensity) {
+		this.jumpIntensity = jumpIntensity;
+	}
+
+	public double[] getJumpMean() {
+		return jumpMean;
+	}
+
+	public void setJumpMean(double[] jumpMean) {
+		this.jumpMean = jumpMean;
+	}
+
+	public double[] getJumpVolatility() {
+		return jumpVolatility;
+	}
+
+	public void setJumpVolatility(double[] jumpVolatility) {
+		this.jumpVolatility = jumpVolatility;
+	}
+
+	public double getDt() {
+		return dt;
+	}
+
+	public void setDt(double dt) {
+		this.dt = dt;
+	}
+
+	public int getPrecomputedSteps() {
+		return precomputedSteps;
+	}
+
+	public void setPrecomputedSteps(int precomputedSteps) {
+		this.precomputedSteps = precomputedSteps;
+	}
+
+	public double[][] getPaths() {
+		return paths;
+	}
+
+	/**
+	 * Use the specified paths, eg those generated for another replication,
+	 * in place of generating new ones. The paths are shared rather than
+	 * copied, and are used from the start of every subsequent simulation;
+	 * passing null reverts to generating paths.
+	 */
+	public void setPaths(double[][] paths) {
+		this.paths = paths;
+		this.sharedPaths = paths != null;
+		if (sharedPaths && prices != null) {
+			validatePaths(prices.length);
+		}
+	}
+
+	public boolean isSharedPaths() {
+		return sharedPaths;
+	}
+
+	public double[] getInitialPrices() {
+		return initialPrices;
+	}
+
+	/**
+	 * Set the initial price of each asset; there must be one positive price
+	 * per asset.
+	 */
+	public void setInitialPrices(double[] initialPrices) {
+		this.initialPrices = initialPrices;
+		if (prices != null) {
+			validateInitialPrices(prices.length);
+		}
+	}
+
+	public RandomEngine getPrng() {
+		return prng;
+	}
+
+	@Required
+	public void setPrng(RandomEngine prng) {
+		this.prng = prng;
+		if (generator != null) {
+			generator.setPrng(prng);
+		}
+	}
+
+	public CorrelatedPathGenerator getGenerator() {
+		return generator;
+	}
+
+}
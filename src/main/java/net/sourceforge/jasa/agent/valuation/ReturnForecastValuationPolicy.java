@@ -70,6 +70,7 @@ public class ReturnForecastValuationPolicy extends AbstractValuationPolicy
 	public Object clone() throws CloneNotSupportedException {
 		ReturnForecastValuationPolicy result = 
 				(ReturnForecastValuationPolicy) super.clone();
+		result.valuationListeners = null;
 		result.setForecaster((ReturnForecaster) this.forecaster.clone());
 		return result;
 	}
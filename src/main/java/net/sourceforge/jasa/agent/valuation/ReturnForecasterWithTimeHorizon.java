@@ -138,6 +138,31 @@ public abstract class ReturnForecasterWithTimeHorizon extends
 		return result;
 	}
 
+	/**
+	 * Adopt the parameters and error state of the specified forecaster in
+	 * place, as an alternative to replacing this forecaster with a clone of
+	 * it. Unlike {@link #clone()} this forecaster keeps its own price
+	 * history and its existing subscription to the market, so no listeners
+	 * are added or removed; the history windows are only recreated if the
+	 * time horizon changes.
+	 */
+	public void copyFrom(ReturnForecasterWithTimeHorizon source) {
+		boolean horizonChanged = this.timeHorizon != source.timeHorizon;
+		this.timeHorizon = source.timeHorizon;
+		this.alpha = source.alpha;
+		this.sampleInterval = source.sampleInterval;
+		this.currentPrediction = source.currentPrediction;
+		this.totalSquaredError = source.totalSquaredError;
+		this.sampleCount = source.sampleCount;
+		if (horizonChanged || historicalPrices == null) {
+			try {
+				afterPropertiesSet();
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
 	@Override
 	public void dispose() {
 		((MarketSimulation) market).getSimulationController().removeListener(
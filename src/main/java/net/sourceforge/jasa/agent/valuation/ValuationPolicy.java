@@ -15,6 +15,8 @@
 
 package net.sourceforge.jasa.agent.valuation;
 
+import java.util.List;
+
 import net.sourceforge.jabm.event.EventSubscriber;
 import net.sourceforge.jabm.util.Resetable;
 import net.sourceforge.jasa.agent.TradingAgent;
@@ -49,5 +51,15 @@ public interface ValuationPolicy extends Resetable, EventSubscriber,
 	public TradingAgent getAgent();
 
 	public void initialise();
+	
+	/**
+	 * Register a listener to be notified whenever the valuation reported by
+	 * this policy changes independently of the market state.
+	 */
+	public void addValuationListener(ValuationListener listener);
+	
+	public void removeValuationListener(ValuationListener listener);
+	
+	public List<ValuationListener> getValuationListeners();
 
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.agent.valuation.evolution;
+
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * <p>
+ * Samples indices in proportion to a vector of non-negative weights using
+ * Vose's alias method. The table is built in O(n) time and each subsequent
+ * draw takes O(1) time and a single uniform variate, as opposed to the
+ * O(n) scan over cumulative fitnesses used by a linear roulette wheel.
+ * </p>
+ * 
+ * <p>
+ * The internal buffers are grown on demand and reused between calls to
+ * {@link #build(double[], int, int)}, so that a single sampler can be used
+ * for every vertex of a network without allocating.  Negative and NaN
+ * weights are treated as zero.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class AliasSampler {
+
+	/**
+	 * The probability of keeping column i rather than taking its alias.
+	 */
+	protected double[] probability;
+
+	protected int[] alias;
+
+	protected int[] small;
+
+	protected int[] large;
+
+	protected int size;
+
+	protected double totalWeight;
+
+	public AliasSampler() {
+		this(16);
+	}
+
+	public AliasSampler(int initialCapacity) {
+		allocate(Math.max(1, initialCapacity));
+	}
+
+	public AliasSampler(double[] weights) {
+		this(weights.length);
+		build(weights, 0, weights.length);
+	}
+
+	protected void allocate(int capacity) {
+		probability = new double[capacity];
+		alias = new int[capacity];
+		small = new int[capacity];
+		large = new int[capacity];
+	}
+
+	/**
+	 * Build the alias table for the weights in the specified range.
+	 * 
+	 * @return the total weight of the range, or zero if no index can be
+	 *         sampled.
+	 */
+	public double build(double[] weights, int offset, int length) {
+		if (length > probability.length) {
+			allocate(Math.max(length, probability.length * 2));
+		}
+		size = length;
+		double total = 0;
+		for (int i = 0; i < length; i++) {
+			double w = weights[offset + i];
+			if (w > 0 && !Double.isInfinite(w)) {
+				total += w;
+			}
+		}
+		totalWeight = total;
+		if (!(total > 0) || Double.isInfinite(total)) {
+			totalWeight = 0;
+			return 0;
+		}
+		int numSmall = 0;
+		int numLarge = 0;
+		double scale = length / total;
+		for (int i = 0; i < length; i++) {
+			double w = weights[offset + i];
+			double p = w > 0 && !Double.isInfinite(w) ? w * scale : 0;
+			probability[i] = p;
+			alias[i] = i;
+			if (p < 1.0) {
+				small[numSmall++] = i;
+			} else {
+				large[numLarge++] = i;
+			}
+		}
+		while (numSmall > 0 && numLarge > 0) {
+			int s = small[--numSmall];
+			int l = large[--numLarge];
+			alias[s] = l;
+			probability[l] = (probability[l] + probability[s]) - 1.0;
+			if (probability[l] < 1.0) {
+				small[numSmall++] = l;
+			} else {
+				large[numLarge++] = l;
+			}
+		}
+		// Whatever remains is within rounding error of one
+		while (numLarge > 0) {
+			probability[large[--numLarge]] = 1.0;
+		}
+		while (numSmall > 0) {
+			probability[small[--numSmall]] = 1.0;
+		}
+		return total;
+	}
+
+	/**
+	 * Draw an index using a single uniform variate in [0, 1).
+	 */
+	public int sample(double u) {
+		double x = u * size;
+		int column = (int) x;
+		if (column >= size) {
+			column = size - 1;
+		}
+		if (x - column < probability[column]) {
+			return column;
+		} else {
+			return alias[column];
+		}
+	}
+
+	public int sample(RandomEngine prng) {
+		return sample(prng.nextDouble());
+	}
+
+	/**
+	 * @return true if the last table built contains at least one index with
+	 *         positive weight.
+	 */
+	public boolean isValid() {
+		return totalWeight > 0;
+	}
+
+	public double getTotalWeight() {
+		return totalWeight;
+	}
+
+	public int size() {
+		return size;
+	}
+
+}
@@ -0,0 +1,236 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.agent.valuation.evolution;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.collections15.Transformer;
+
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.util.Pair;
+
+/**
+ * <p>
+ * A snapshot of the neighbourhood structure of a graph in compressed sparse
+ * row form. Each vertex is assigned a dense index, and the row of each
+ * vertex lists the indices of its distinct neighbours together with the
+ * combined weight of the edges between them in either direction, ie the
+ * weight of the in-edge plus the weight of the out-edge.
+ * </p>
+ * 
+ * <p>
+ * The adjacency is built in O(V + E) time from a single pass over the edges
+ * of the graph, after which the neighbours of a vertex and their weights can
+ * be read without any further lookups in the graph.  The arrays are reused
+ * between builds.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class NeighbourWeightAdjacency<V, E> {
+
+	/**
+	 * The start of the row of each vertex in {@link #neighbours}; the row of
+	 * vertex i occupies [offsets[i], offsets[i+1]).
+	 */
+	protected int[] offsets = new int[1];
+
+	protected int[] neighbours = new int[0];
+
+	protected double[] weights = new double[0];
+
+	protected ArrayList<V> vertices = new ArrayList<V>();
+
+	protected HashMap<V, Integer> index = new HashMap<V, Integer>();
+
+	protected Transformer<E, ? extends Number> edgeWeights;
+
+	/**
+	 * The position at which each neighbour was last written in the row
+	 * currently being compacted, used to merge parallel edges.
+	 */
+	private int[] lastSeen = new int[0];
+
+	public NeighbourWeightAdjacency(Transformer<E, ? extends Number> edgeWeights) {
+		this.edgeWeights = edgeWeights;
+	}
+
+	public NeighbourWeightAdjacency(Graph<V, E> graph,
+			Transformer<E, ? extends Number> edgeWeights) {
+		this(edgeWeights);
+		build(graph);
+	}
+
+	public void build(Graph<V, E> graph) {
+		vertices.clear();
+		index.clear();
+		for (V vertex : graph.getVertices()) {
+			index.put(vertex, vertices.size());
+			vertices.add(vertex);
+		}
+		int n = vertices.size();
+		int m = graph.getEdgeCount();
+		if (offsets.length < n + 1) {
+			offsets = new int[n + 1];
+			lastSeen = new int[n];
+		}
+		if (neighbours.length < 2 * m) {
+			neighbours = new int[2 * m];
+			weights = new double[2 * m];
+		}
+		int[] sources = new int[m];
+		int[] targets = new int[m];
+		double[] values = new double[m];
+		for (int i = 0; i <= n; i++) {
+			offsets[i] = 0;
+		}
+		int k = 0;
+		for (E edge : graph.getEdges()) {
+			Pair<V> endpoints = graph.getEndpoints(edge);
+			int a = index.get(endpoints.getFirst());
+			int b = index.get(endpoints.getSecond());
+			Number w = edgeWeights.transform(edge);
+			sources[k] = a;
+			targets[k] = b;
+			values[k] = w == null ? 0 : w.doubleValue();
+			offsets[a + 1]++;
+			offsets[b + 1]++;
+			k++;
+		}
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		// Scatter both directions of every edge into the rows
+		int[] fill = new int[n];
+		for (int i = 0; i < n; i++) {
+			fill[i] = offsets[i];
+		}
+		for (int e = 0; e < m; e++) {
+			int a = sources[e];
+			int b = targets[e];
+			neighbours[fill[a]] = b;
+			weights[fill[a]++] = values[e];
+			neighbours[fill[b]] = a;
+			weights[fill[b]++] = values[e];
+		}
+		compact(n);
+	}
+
+	/**
+	 * Merge repeated neighbours within each row, eg the edges i->j and j->i
+	 * of a directed graph, and close the gaps between the rows.
+	 */
+	protected void compact(int n) {
+		for (int i = 0; i < n; i++) {
+			lastSeen[i] = -1;
+		}
+		int write = 0;
+		int start = 0;
+		for (int i = 0; i < n; i++) {
+			int end = offsets[i + 1];
+			int rowStart = write;
+			for (int p = start; p < end; p++) {
+				int j = neighbours[p];
+				if (lastSeen[j] >= rowStart) {
+					weights[lastSeen[j]] += weights[p];
+				} else {
+					lastSeen[j] = write;
+					neighbours[write] = j;
+					weights[write] = weights[p];
+					write++;
+				}
+			}
+			offsets[i] = rowStart;
+			start = end;
+		}
+		offsets[n] = write;
+	}
+
+	public int getNumberOfVertices() {
+		return vertices.size();
+	}
+
+	public V getVertex(int i) {
+		return vertices.get(i);
+	}
+
+	/**
+	 * @return the index of the specified vertex, or -1 if it was not in the
+	 *         graph when the adjacency was built.
+	 */
+	public int indexOf(V vertex) {
+		Integer i = index.get(vertex);
+		return i == null ? -1 : i;
+	}
+
+	public int getRowStart(int i) {
+		return offsets[i];
+	}
+
+	public int getRowEnd(int i) {
+		return offsets[i + 1];
+	}
+
+	public int getDegree(int i) {
+		return offsets[i + 1] - offsets[i];
+	}
+
+	public int getNeighbour(int position) {
+		return neighbours[position];
+	}
+
+	public double getWeight(int position) {
+		return weights[position];
+	}
+
+	/**
+	 * @return the combined weight of the edges between i and j, or zero if
+	 *         they are not adjacent.
+	 */
+	public double getWeight(int i, int j) {
+		for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+			if (neighbours[p] == j) {
+				return weights[p];
+			}
+		}
+		return 0;
+	}
+
+	public Iterator<V> getVertices() {
+		return vertices.iterator();
+	}
+
+	/**
+	 * @return the vertices in index order; the list is reused by the next
+	 *         build.
+	 */
+	public List<V> getVertexList() {
+		return vertices;
+	}
+
+	public Transformer<E, ? extends Number> getEdgeWeights() {
+		return edgeWeights;
+	}
+
+	public void setEdgeWeights(Transformer<E, ? extends Number> edgeWeights) {
+		this.edgeWeights = edgeWeights;
+	}
+
+}
@@ -2,33 +2,84 @@ package net.sourceforge.jasa.agent.valuation.evolution;
 
 import net.sourceforge.jabm.agent.Agent;
 import net.sourceforge.jabm.agent.AgentList;
-import net.sourceforge.jabm.evolution.FitnessProportionateBreeder;
 import net.sourceforge.jabm.report.WeightedEdge;
 import net.sourceforge.jasa.report.TradeNetworkReport;
 
+import org.apache.commons.collections15.Transformer;
 import org.springframework.beans.factory.annotation.Required;
 
 import edu.uci.ics.jung.graph.Graph;
 
-public class NetworkedImitationBreeder extends FitnessProportionateBreeder {
+/**
+ * <p>
+ * A breeder in which each agent in the trade network imitates one of its
+ * neighbours, chosen with probability proportional to the fitness of the
+ * neighbour multiplied by the combined weight of the edges between them.
+ * </p>
+ * 
+ * <p>
+ * Each generation the neighbourhoods are read once into a
+ * {@link NeighbourWeightAdjacency} and the fitness of every agent is
+ * evaluated once, in parallel if an evaluator has been configured, so that
+ * the selection weights of a vertex are computed from its row in O(deg)
+ * without any edge lookups, and the neighbour is drawn from an
+ * {@link AliasSampler}. A complete generation therefore takes
+ * O(V + E) time. Fitnesses are those at the start of the generation, ie
+ * agents imitate the behaviour that was evaluated rather than any behaviour
+ * adopted earlier in the same generation.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class NetworkedImitationBreeder extends ParallelImitationBreeder {
 
 	protected TradeNetworkReport tradeNetwork;
 	
 	protected Agent currentAgent;
 	
+	protected NeighbourWeightAdjacency<Agent, WeightedEdge> adjacency = 
+		new NeighbourWeightAdjacency<Agent, WeightedEdge>(EDGE_WEIGHTS);
+	
+	/**
+	 * The selection weights of the neighbours of the current vertex.
+	 */
+	protected double[] selectionWeights = new double[0];
+	
+	public static final Transformer<WeightedEdge, Double> EDGE_WEIGHTS =
+		new Transformer<WeightedEdge, Double>() {
+			public Double transform(WeightedEdge edge) {
+				return edge.getValue();
+			}
+		};
+	
 	@Override
 	public AgentList reproduce(AgentList currentGeneration) {
 		AgentList nextGeneration = currentGeneration;
 		Graph<Agent, WeightedEdge> graph = tradeNetwork.getGraph();
-		for (Agent agent : graph.getVertices()) {
-			this.currentAgent = agent;
-			if (graph.degree(currentAgent) > 0) {
-				AgentList neighbours = new AgentList(graph.getNeighbors(currentAgent));
-				double[] cummulativeFitnesses = cummulativeFitnesses(neighbours);
+		adjacency.build(graph);
+		int n = adjacency.getNumberOfVertices();
+		evaluateFitnesses(adjacency.getVertexList());
+		for (int i = 0; i < n; i++) {
+			int start = adjacency.getRowStart(i);
+			int degree = adjacency.getDegree(i);
+			if (degree > 0) {
+				this.currentAgent = adjacency.getVertex(i);
+				if (selectionWeights.length < degree) {
+					selectionWeights = new double[Math.max(degree,
+							selectionWeights.length * 2)];
+				}
+				for (int k = 0; k < degree; k++) {
+					int p = start + k;
+					selectionWeights[k] = fitnesses[adjacency.getNeighbour(p)]
+							* adjacency.getWeight(p);
+				}
+				totalFitness = sampler.build(selectionWeights, 0, degree);
 				if (totalFitness > 0 && !Double.isNaN(totalFitness)
 						&& !Double.isInfinite(totalFitness)) {
-					int j = choose(cummulativeFitnesses);
-					reproduce(currentAgent, neighbours.get(j));
+					int k = sampler.sample(getPrng());
+					reproduce(currentAgent, 
+							adjacency.getVertex(adjacency.getNeighbour(start + k)));
 				}
 			}
 		}
@@ -0,0 +1,160 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.agent.valuation.evolution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import net.sourceforge.jabm.agent.Agent;
+import net.sourceforge.jabm.evolution.FitnessFunction;
+import net.sourceforge.jasa.market.AuctionRuntimeException;
+
+/**
+ * <p>
+ * Evaluates a fitness function over a population of agents by dividing the
+ * population into contiguous chunks which are evaluated on a pool of worker
+ * threads. Each chunk writes to a disjoint range of the result array, so
+ * the results are identical to a serial evaluation provided that the
+ * fitness function only reads the state of the agent, as is the case for
+ * {@link ForecastErrorFitnessFunction} and {@link PayoffFitnessFunction}.
+ * </p>
+ * 
+ * <p>
+ * Populations smaller than twice <code>minChunkSize</code> are evaluated
+ * on the calling thread.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class ParallelFitnessEvaluator {
+
+	protected ExecutorService executor;
+
+	protected int minChunkSize = 256;
+
+	protected int chunksPerThread = 4;
+
+	protected static ExecutorService defaultExecutor;
+
+	public ParallelFitnessEvaluator() {
+	}
+
+	public ParallelFitnessEvaluator(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Evaluate the fitness of each agent in the list.
+	 * 
+	 * @param fitnesses
+	 *            The array into which the fitness of the i<sup>th</sup>
+	 *            agent is written at index i; it must be at least as long as
+	 *            the list of agents.
+	 */
+	public void evaluate(final FitnessFunction fitnessFunction,
+			final List<? extends Agent> agents, final double[] fitnesses) {
+		final int n = agents.size();
+		int threads = Runtime.getRuntime().availableProcessors();
+		int chunkSize = Math.max(minChunkSize, 
+				(n + threads * chunksPerThread - 1) / (threads * chunksPerThread));
+		if (n < 2 * minChunkSize || threads == 1) {
+			evaluate(fitnessFunction, agents, fitnesses, 0, n);
+			return;
+		}
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int start = 0; start < n; start += chunkSize) {
+			final int from = start;
+			final int to = Math.min(n, start + chunkSize);
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					evaluate(fitnessFunction, agents, fitnesses, from, to);
+					return null;
+				}
+			});
+		}
+		try {
+			List<Future<Object>> results = getExecutor().invokeAll(tasks);
+			for (Future<Object> result : results) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AuctionRuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new AuctionRuntimeException(e.getCause());
+		}
+	}
+
+	protected void evaluate(FitnessFunction fitnessFunction,
+			List<? extends Agent> agents, double[] fitnesses, int from, int to) {
+		for (int i = from; i < to; i++) {
+			fitnesses[i] = fitnessFunction.getFitness(agents.get(i));
+		}
+	}
+
+	public ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = getDefaultExecutor();
+		}
+		return executor;
+	}
+
+	/**
+	 * @return A shared pool of daemon threads, one per available processor.
+	 */
+	public static synchronized ExecutorService getDefaultExecutor() {
+		if (defaultExecutor == null) {
+			int threads = Runtime.getRuntime().availableProcessors();
+			defaultExecutor = Executors.newFixedThreadPool(threads,
+					new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "fitness-worker");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return defaultExecutor;
+	}
+
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	public int getMinChunkSize() {
+		return minChunkSize;
+	}
+
+	public void setMinChunkSize(int minChunkSize) {
+		this.minChunkSize = minChunkSize;
+	}
+
+	public int getChunksPerThread() {
+		return chunksPerThread;
+	}
+
+	public void setChunksPerThread(int chunksPerThread) {
+		this.chunksPerThread = chunksPerThread;
+	}
+
+}
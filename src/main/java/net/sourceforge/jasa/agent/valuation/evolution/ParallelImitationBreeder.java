@@ -0,0 +1,103 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.agent.valuation.evolution;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sourceforge.jabm.agent.Agent;
+import net.sourceforge.jabm.agent.AgentList;
+import net.sourceforge.jabm.evolution.FitnessProportionateBreeder;
+
+/**
+ * <p>
+ * A fitness-proportionate breeder in which the fitness of the whole
+ * population is evaluated once per generation, optionally in parallel by a
+ * {@link ParallelFitnessEvaluator}, after which every agent imitates a
+ * parent drawn from an {@link AliasSampler} in O(1) time.
+ * </p>
+ * 
+ * <p>
+ * Agents are modified in place, as with the superclass, so when this
+ * breeder is combined with a {@link ValuationPolicyImitationOperator}
+ * configured for in-place imitation a generation allocates nothing
+ * in proportion to the size of the population.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class ParallelImitationBreeder extends FitnessProportionateBreeder {
+
+	/**
+	 * The evaluator used for fitnesses, or null to evaluate them serially on
+	 * the simulation thread.
+	 */
+	protected ParallelFitnessEvaluator evaluator;
+
+	protected AliasSampler sampler = new AliasSampler();
+
+	/**
+	 * The fitness of each agent in the current generation.
+	 */
+	protected double[] fitnesses = new double[0];
+
+	protected ArrayList<Agent> agents = new ArrayList<Agent>();
+
+	@Override
+	public AgentList reproduce(AgentList currentGeneration) {
+		agents.clear();
+		for (int i = 0; i < currentGeneration.size(); i++) {
+			agents.add(currentGeneration.get(i));
+		}
+		evaluateFitnesses(agents);
+		int n = agents.size();
+		totalFitness = sampler.build(fitnesses, 0, n);
+		if (totalFitness > 0 && !Double.isNaN(totalFitness)
+				&& !Double.isInfinite(totalFitness)) {
+			for (int i = 0; i < n; i++) {
+				reproduce(agents.get(i), agents.get(sampler.sample(getPrng())));
+			}
+		}
+		return currentGeneration;
+	}
+
+	/**
+	 * Evaluate the fitness of each agent into {@link #fitnesses}.
+	 */
+	protected void evaluateFitnesses(List<Agent> population) {
+		int n = population.size();
+		if (fitnesses.length < n) {
+			fitnesses = new double[n];
+		}
+		if (evaluator != null) {
+			evaluator.evaluate(getFitnessFunction(), population, fitnesses);
+		} else {
+			for (int i = 0; i < n; i++) {
+				fitnesses[i] = getFitnessFunction().getFitness(population.get(i));
+			}
+		}
+	}
+
+	public ParallelFitnessEvaluator getEvaluator() {
+		return evaluator;
+	}
+
+	public void setEvaluator(ParallelFitnessEvaluator evaluator) {
+		this.evaluator = evaluator;
+	}
+
+}
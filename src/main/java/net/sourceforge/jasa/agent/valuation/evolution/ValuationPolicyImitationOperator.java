@@ -5,11 +5,31 @@ import net.sourceforge.jabm.evolution.ImitationOperator;
 import net.sourceforge.jasa.agent.AbstractTradingAgent;
 import net.sourceforge.jasa.agent.MarketMakerAgent;
 import net.sourceforge.jasa.agent.valuation.ReturnForecastValuationPolicy;
+import net.sourceforge.jasa.agent.valuation.ReturnForecasterWithTimeHorizon;
 
 import org.apache.log4j.Logger;
 
+/**
+ * An imitation operator in which the child adopts the return-forecasting
+ * valuation policy of its parent.
+ * 
+ * <p>
+ * By default the child is given a clone of the parent's policy, which
+ * registers a new forecaster with the market and disposes of the old one.
+ * If <code>inPlace</code> is set, and the forecasters of the parent and
+ * child are of the same class, the child's forecaster instead copies the
+ * weights and error state of the parent's forecaster into its own arrays
+ * via {@link ReturnForecasterWithTimeHorizon#copyFrom}, so that no objects
+ * are allocated and no listeners are added or removed.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
 public class ValuationPolicyImitationOperator implements ImitationOperator {
 	
+	protected boolean inPlace = false;
+	
 	static Logger logger = Logger.getLogger(ValuationPolicyImitationOperator.class);
 
 	@Override
@@ -18,6 +38,9 @@ public class ValuationPolicyImitationOperator implements ImitationOperator {
 			try {
 				AbstractTradingAgent child = (AbstractTradingAgent) i;
 				AbstractTradingAgent parent = (AbstractTradingAgent) j;
+				if (inPlace && copyInPlace(child, parent)) {
+					return;
+				}
 				ReturnForecastValuationPolicy oldPolicy = (ReturnForecastValuationPolicy) child
 						.getValuationPolicy();
 				ReturnForecastValuationPolicy policy = 
@@ -38,4 +61,41 @@ public class ValuationPolicyImitationOperator implements ImitationOperator {
 		}
 	}
 
+	/**
+	 * Copy the state of the parent's forecaster into the child's forecaster.
+	 * 
+	 * @return false if the forecasters cannot be copied in place, in which
+	 *         case the child should be given a clone instead.
+	 */
+	protected boolean copyInPlace(AbstractTradingAgent child,
+			AbstractTradingAgent parent) {
+		ReturnForecastValuationPolicy childPolicy = 
+				(ReturnForecastValuationPolicy) child.getValuationPolicy();
+		ReturnForecastValuationPolicy parentPolicy = 
+				(ReturnForecastValuationPolicy) parent.getValuationPolicy();
+		if (childPolicy == parentPolicy) {
+			return true;
+		}
+		if (!(childPolicy.getForecaster() instanceof ReturnForecasterWithTimeHorizon)
+				|| childPolicy.getForecaster().getClass() != parentPolicy
+						.getForecaster().getClass()) {
+			return false;
+		}
+		ReturnForecasterWithTimeHorizon forecaster = 
+				(ReturnForecasterWithTimeHorizon) childPolicy.getForecaster();
+		forecaster.copyFrom(
+				(ReturnForecasterWithTimeHorizon) parentPolicy.getForecaster());
+		if (logger.isDebugEnabled())
+			logger.debug("Copied " + forecaster + " in place for " + child);
+		return true;
+	}
+
+	public boolean isInPlace() {
+		return inPlace;
+	}
+
+	public void setInPlace(boolean inPlace) {
+		this.inPlace = inPlace;
+	}
+
 }
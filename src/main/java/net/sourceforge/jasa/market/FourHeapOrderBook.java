@@ -73,6 +73,18 @@ public class FourHeapOrderBook implements OrderBook, Serializable {
 	protected static DescendingOrderComparator lessThan = 
 			new DescendingOrderComparator();
 
+	/**
+	 * The cumulative supply curve of every ask in the book, or null if
+	 * curves are not being maintained.
+	 */
+	protected PriceLevelTree supplyCurve;
+
+	/**
+	 * The cumulative demand curve of every bid in the book, or null if
+	 * curves are not being maintained.
+	 */
+	protected PriceLevelTree demandCurve;
+
 	static Logger logger = Logger.getLogger(FourHeapOrderBook.class);
 
 	public FourHeapOrderBook() {
@@ -92,11 +104,15 @@ public class FourHeapOrderBook implements OrderBook, Serializable {
      * @param shout     The order to be removed.
      */
 	public void removeUnmatchedOrder(Order shout) {
+	    boolean removed;
 	    if (shout.isAsk()) {
-	        sOut.remove(shout);
+	        removed = sOut.remove(shout);
         } else {
-            bOut.remove(shout);
+            removed = bOut.remove(shout);
         }
+	    if (removed) {
+	        removeFromCurve(shout);
+	    }
     }
 
     /**
@@ -105,27 +121,39 @@ public class FourHeapOrderBook implements OrderBook, Serializable {
      * @param shout     The order to be removed.
      */
 	public void remove(Order shout) {
+		long start = MatchingEngineProbe.ENABLED ? System.nanoTime() : 0;
+		int quantity = shout.getQuantity();
+		boolean removed;
 		if (shout.isAsk()) {
-			removeAsk(shout);
+			removed = removeAsk(shout);
 		} else {
-			removeBid(shout);
+			removed = removeBid(shout);
+		}
+		if (removed && supplyCurve != null) {
+			getCurve(shout).remove(shout.getPriceAsDouble(), quantity);
 		}
 		checkIntegrity();
+		if (MatchingEngineProbe.ENABLED) {
+			MatchingEngineProbe.record(MatchingEngineProbe.BOOK_REMOVE, start,
+					getDepth());
+		}
 	}
 
-	protected void removeAsk(Order shout) {
+	protected boolean removeAsk(Order shout) {
 		if (sIn.remove(shout)) {
 			reinsert(bIn, shout.getQuantity());
+			return true;
 		} else {
-			sOut.remove(shout);
+			return sOut.remove(shout);
 		}
 	}
 
-	protected void removeBid(Order shout) {
+	protected boolean removeBid(Order shout) {
 		if (bIn.remove(shout)) {
 			reinsert(sIn, shout.getQuantity());
+			return true;
 		} else {
-			bOut.remove(shout);
+			return bOut.remove(shout);
 		}
 	}
 
@@ -255,11 +283,12 @@ public class FourHeapOrderBook implements OrderBook, Serializable {
 			shout = shout.splat(shout.getQuantity() - top.getQuantity());
 		} else {
 			if (top.getQuantity() > shout.getQuantity()) {
+				// move the top before adding the remainder, which has the same
+				// price and would otherwise compete with it for the top
 				Order remainder = top.split(top.getQuantity() - shout.getQuantity());
-				from.add(remainder);
-                assert((remainder.isBid && from == bOut) || ((!remainder.isBid) && from == sOut));
+				assert remainder.isBid() == (from == bIn || from == bOut);
 				to.add(from.remove());
-//				to.add(remainder);
+				from.add(remainder);
 				return shout;
 			}
 		}
@@ -309,12 +338,22 @@ public class FourHeapOrderBook implements OrderBook, Serializable {
 	}
 
 	public void add(Order shout) throws DuplicateShoutException {
+		long start = MatchingEngineProbe.ENABLED ? System.nanoTime() : 0;
+		// inserting may split the order, so record its full quantity first
+		int quantity = shout.getQuantity();
 		if (shout.isBid()) {
 			addBid(shout);
 		} else {
 			addAsk(shout);
 		}
+		if (supplyCurve != null) {
+			getCurve(shout).add(shout.getPriceAsDouble(), quantity);
+		}
 		checkIntegrity();
+		if (MatchingEngineProbe.ENABLED) {
+			MatchingEngineProbe.record(MatchingEngineProbe.BOOK_ADD, start,
+					getDepth());
+		}
 	}
 
 	protected void addBid(Order bid) throws DuplicateShoutException {
@@ -395,6 +434,7 @@ public class FourHeapOrderBook implements OrderBook, Serializable {
 	 * </p>
 	 */
 	public List<Order> matchOrders() {
+		long start = MatchingEngineProbe.ENABLED ? System.nanoTime() : 0;
 		try {
 			ArrayList<Order> result = new ArrayList<Order>(sIn.size()
 					+ bIn.size());
@@ -404,23 +444,33 @@ public class FourHeapOrderBook implements OrderBook, Serializable {
 				int nS = sInTop.getQuantity();
 				int nB = bInTop.getQuantity();
 				// assert nS == nB;
+				// the remainder of a split order is still matched, so it goes
+				// straight back into the matched heap
 				if (nS < nB) {
 					// split the bid
 					Order remainder = bInTop.split(nB - nS);
-					addBid(remainder);
+					insertShout(bIn, remainder);
 				} else if (nB < nS) {
 					// split the ask
 					Order remainder = sInTop.split(nS - nB);
-					addAsk(remainder);
+					insertShout(sIn, remainder);
 				}
 				// assert bInTop.getAgent() != sInTop.getAgent();
 				result.add(bInTop);
 				result.add(sInTop);
+				if (supplyCurve != null) {
+					removeFromCurve(bInTop);
+					removeFromCurve(sInTop);
+				}
 				bInTop.setFilled(true);
 				sInTop.setFilled(true);
 			}
 			assert bIn.isEmpty();
 			checkIntegrity();
+			if (MatchingEngineProbe.ENABLED) {
+				MatchingEngineProbe.record(MatchingEngineProbe.MATCH_ORDERS,
+						start, getDepth());
+			}
 			return result;
 		} catch (DuplicateShoutException e) {
 			throw new RuntimeException(e);
@@ -432,6 +482,10 @@ public class FourHeapOrderBook implements OrderBook, Serializable {
 		bOut.clear();
 		sIn.clear();
 		sOut.clear();
+		if (supplyCurve != null) {
+			supplyCurve.clear();
+			demandCurve.clear();
+		}
 	}
 
 	public synchronized void reset() {
@@ -474,6 +528,58 @@ public class FourHeapOrderBook implements OrderBook, Serializable {
 		
 	}
 
+	/**
+	 * Enable or disable incremental maintenance of the cumulative supply and
+	 * demand curves of the book.  When enabled the curves are rebuilt from
+	 * the current contents of the book, and thereafter each add, remove and
+	 * match updates them in O(log levels).
+	 */
+	public void setMaintainCurves(boolean maintainCurves) {
+		if (!maintainCurves) {
+			supplyCurve = null;
+			demandCurve = null;
+			return;
+		}
+		supplyCurve = new PriceLevelTree();
+		demandCurve = new PriceLevelTree();
+		for (Iterator<Order> i = askIterator(); i.hasNext();) {
+			supplyCurve.add(i.next());
+		}
+		for (Iterator<Order> i = bidIterator(); i.hasNext();) {
+			demandCurve.add(i.next());
+		}
+	}
+
+	public boolean isMaintainCurves() {
+		return supplyCurve != null;
+	}
+
+	/**
+	 * @return The cumulative supply curve of the asks in the book, or null
+	 *         if curves are not being maintained.
+	 */
+	public PriceLevelTree getSupplyCurve() {
+		return supplyCurve;
+	}
+
+	/**
+	 * @return The cumulative demand curve of the bids in the book, or null
+	 *         if curves are not being maintained.
+	 */
+	public PriceLevelTree getDemandCurve() {
+		return demandCurve;
+	}
+
+	protected PriceLevelTree getCurve(Order shout) {
+		return shout.isBid() ? demandCurve : supplyCurve;
+	}
+
+	protected void removeFromCurve(Order shout) {
+		if (supplyCurve != null) {
+			getCurve(shout).remove(shout);
+		}
+	}
+
 	/**
 	 * Compute the total number of orders in the book.
 	 */
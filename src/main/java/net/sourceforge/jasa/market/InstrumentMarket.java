@@ -0,0 +1,331 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import net.sourceforge.jabm.Population;
+import net.sourceforge.jabm.agent.Agent;
+import net.sourceforge.jasa.agent.AbstractTradingAgent;
+import net.sourceforge.jasa.agent.AgentIndex;
+import net.sourceforge.jasa.agent.Inventory;
+import net.sourceforge.jasa.agent.TradingAgent;
+import net.sourceforge.jasa.event.OrderPlacedEvent;
+import net.sourceforge.jasa.event.OrderReceivedEvent;
+import net.sourceforge.jasa.event.TransactionExecutedEvent;
+import net.sourceforge.jasa.market.auctioneer.Auctioneer;
+
+/**
+ * <p>
+ * The market for a single instrument traded on a
+ * {@link MultiInstrumentMarketSimulation}. Each instrument has its own
+ * auctioneer, and hence its own order book, quote and transaction price,
+ * while the clock, population, agent index and ledger are those of the
+ * exchange. Orders placed in this market are tagged with its symbol simply
+ * by virtue of being placed here, and its quotes are available through the
+ * {@link QuoteProvider} interface.
+ * </p>
+ * 
+ * <p>
+ * Each trader holds a separate position in every instrument, which is kept
+ * by the trader itself (see {@link TradingAgent#getHolding(Market)}) rather
+ * than in its commodity holding, so that strategies and reports can read it
+ * from the trader.  Cash is settled through the trader's account, or the
+ * exchange's ledger if there is one, which holds cash only.
+ * </p>
+ * 
+ * <p>
+ * While the exchange is matching several books in parallel, transactions
+ * are buffered rather than settled, and are settled afterwards on the
+ * simulation thread by {@link #settlePendingTransactions()}, so that
+ * accounts, traders and event listeners are only ever touched by one
+ * thread.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class InstrumentMarket implements Market, Serializable {
+
+	protected String symbol;
+
+	protected MultiInstrumentMarketSimulation exchange;
+
+	protected Auctioneer auctioneer;
+
+	protected double lastTransactionPrice = Double.NaN;
+
+	protected double initialPrice = Double.NaN;
+
+	/**
+	 * If true, transactions are added to {@link #pendingTransactions}
+	 * instead of being settled immediately.
+	 */
+	protected boolean deferSettlement = false;
+
+	protected ArrayList<PendingTransaction> pendingTransactions = 
+		new ArrayList<PendingTransaction>();
+
+	public InstrumentMarket(String symbol,
+			MultiInstrumentMarketSimulation exchange, Auctioneer auctioneer) {
+		this.symbol = symbol;
+		this.exchange = exchange;
+		this.auctioneer = auctioneer;
+		auctioneer.setMarket(this);
+	}
+
+	public boolean closed() {
+		return exchange.closed();
+	}
+
+	public void close() {
+		exchange.close();
+	}
+
+	public void placeOrder(Order order) throws AuctionException {
+		if (closed()) {
+			throw new AuctionClosedException("Auction is closed.");
+		}
+		if (order == null) {
+			throw new IllegalOrderException("null shout");
+		}
+		exchange.fireEvent(new OrderReceivedEvent(this, getRound(), order));
+		order.setTimeStamp(exchange.getSimulationTime());
+		auctioneer.newOrder(order);
+		exchange.fireEvent(new OrderPlacedEvent(this, getAge(), order));
+	}
+
+	public void removeOrder(Order shout) {
+		for (Order s = shout; s != null; s = s.getChild()) {
+			auctioneer.removeOrder(s);
+		}
+		shout.makeChildless();
+	}
+
+	public Order getLastOrder() throws ShoutsNotVisibleException {
+		return auctioneer.getLastShout();
+	}
+
+	public Auctioneer getAuctioneer() {
+		return auctioneer;
+	}
+
+	public void printState() {
+		auctioneer.printState();
+	}
+
+	public void clear(Order ask, Order bid, double price) {
+		lastTransactionPrice = price;
+		clear(ask, bid, price, price, ask.getQuantity());
+	}
+
+	public void clear(Order ask, Order bid, double buyerCharge,
+			double sellerPayment, int quantity) {
+		if (deferSettlement) {
+			pendingTransactions.add(new PendingTransaction(ask, bid,
+					buyerCharge, sellerPayment, quantity));
+		} else {
+			settle(ask, bid, buyerCharge, sellerPayment, quantity);
+		}
+	}
+
+	/**
+	 * Settle a transaction between two traders in the same way as
+	 * {@link MarketSimulation#clear(Order, Order, double, double, int)}.
+	 */
+	protected void settle(Order ask, Order bid, double buyerCharge,
+			double sellerPayment, int quantity) {
+		TradingAgent buyer = (TradingAgent) bid.getAgent();
+		TradingAgent seller = (TradingAgent) ask.getAgent();
+		exchange.fireEvent(new TransactionExecutedEvent(this, getAge(), ask,
+				bid, buyerCharge, ask.getQuantity()));
+		MarketLedger ledger = getLedger();
+		if (ledger != null) {
+			// the ledger holds cash only; positions are held per instrument
+			double surplus = ledger.settle(buyer, seller, buyerCharge * quantity,
+					sellerPayment * quantity, 0);
+			auctioneer.getAccount().credit(surplus);
+		} else {
+			auctioneer.getAccount().doubleEntry(buyer.getAccount(),
+					buyerCharge * quantity, seller.getAccount(), sellerPayment
+							* quantity);
+		}
+		seller.getHolding(this).transfer(buyer.getHolding(this), quantity);
+		buyer.orderFilled(this, bid, buyerCharge, quantity);
+		seller.orderFilled(this, ask, sellerPayment, quantity);
+	}
+
+	/**
+	 * Settle, in the order in which they were matched, any transactions
+	 * buffered while settlement was deferred.
+	 */
+	public void settlePendingTransactions() {
+		for (int i = 0; i < pendingTransactions.size(); i++) {
+			PendingTransaction t = pendingTransactions.get(i);
+			settle(t.ask, t.bid, t.buyerCharge, t.sellerPayment, t.quantity);
+		}
+		pendingTransactions.clear();
+	}
+
+	public int getRound() {
+		return exchange.getRound();
+	}
+
+	public int getDay() {
+		return exchange.getDay();
+	}
+
+	public int getAge() {
+		return exchange.getAge();
+	}
+
+	public int getRemainingTime() {
+		return exchange.getRemainingTime();
+	}
+
+	public int getNumberOfTraders() {
+		return exchange.getNumberOfTraders();
+	}
+
+	public boolean orderAccepted(Order shout) throws ShoutsNotVisibleException {
+		return auctioneer.orderFilled(shout);
+	}
+
+	public boolean transactionsOccurred() throws ShoutsNotVisibleException {
+		return auctioneer.transactionsOccurred();
+	}
+
+	public double getLastTransactionPrice() {
+		return lastTransactionPrice;
+	}
+
+	public double getCurrentPrice() {
+		if (getAge() == 0) {
+			return getInitialPrice();
+		}
+		double result = getLastTransactionPrice();
+		try {
+			if (!transactionsOccurred()) {
+				result = getQuote().getMidPoint();
+			}
+			if (Double.isNaN(result)) {
+				return getInitialPrice();
+			}
+		} catch (ShoutsNotVisibleException e) {
+			throw new RuntimeException(e);
+		}
+		return result;
+	}
+
+	public MarketQuote getQuote() {
+		return auctioneer.getQuote();
+	}
+
+	public Iterator<Agent> getTraderIterator() {
+		return exchange.getTraderIterator();
+	}
+
+	public void remove(AbstractTradingAgent abstractTradingAgent) {
+	}
+
+	public Population getPopulation() {
+		return exchange.getPopulation();
+	}
+
+	public AgentIndex getAgentIndex() {
+		return exchange.getAgentIndex();
+	}
+
+	public MarketLedger getLedger() {
+		return exchange.getLedger();
+	}
+
+	/**
+	 * @return the position of the specified trader in this instrument.
+	 */
+	public Inventory getHolding(TradingAgent trader) {
+		return trader.getHolding(this);
+	}
+
+	public void reset() {
+		lastTransactionPrice = Double.NaN;
+		pendingTransactions.clear();
+		deferSettlement = false;
+	}
+
+	public String getSymbol() {
+		return symbol;
+	}
+
+	public MultiInstrumentMarketSimulation getExchange() {
+		return exchange;
+	}
+
+	/**
+	 * @return the initial price of this instrument, or that of the exchange
+	 *         if none has been set.
+	 */
+	public double getInitialPrice() {
+		return Double.isNaN(initialPrice) ? exchange.getInitialPrice()
+				: initialPrice;
+	}
+
+	public void setInitialPrice(double initialPrice) {
+		this.initialPrice = initialPrice;
+	}
+
+	public boolean isDeferSettlement() {
+		return deferSettlement;
+	}
+
+	public void setDeferSettlement(boolean deferSettlement) {
+		this.deferSettlement = deferSettlement;
+	}
+
+	public int getNumberOfPendingTransactions() {
+		return pendingTransactions.size();
+	}
+
+	@Override
+	public String toString() {
+		return "InstrumentMarket [symbol=" + symbol + "]";
+	}
+
+	public static class PendingTransaction implements Serializable {
+
+		protected Order ask;
+
+		protected Order bid;
+
+		protected double buyerCharge;
+
+		protected double sellerPayment;
+
+		protected int quantity;
+
+		public PendingTransaction(Order ask, Order bid, double buyerCharge,
+				double sellerPayment, int quantity) {
+			this.ask = ask;
+			this.bid = bid;
+			this.buyerCharge = buyerCharge;
+			this.sellerPayment = sellerPayment;
+			this.quantity = quantity;
+		}
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A fixed-memory histogram of latencies in the style of HdrHistogram.
+ * Values are counted in log-linear buckets: each power of two is divided
+ * into 2<sup>precisionBits - 1</sup> sub-buckets, so every recorded value
+ * is resolved to within a relative error of 2<sup>1 - precisionBits</sup>.
+ * Recording a value is a handful of integer operations and never allocates.
+ * Values larger than 2<sup>maxValueBits</sup> - 1 are counted in the
+ * highest bucket.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class LatencyHistogram implements Serializable, Cloneable {
+
+	public static final int DEFAULT_PRECISION_BITS = 8;
+
+	public static final int DEFAULT_MAX_VALUE_BITS = 40;
+
+	protected int precisionBits;
+
+	protected int subBucketCount;
+
+	protected int halfCount;
+
+	protected long[] counts;
+
+	protected long totalCount;
+
+	protected long sum;
+
+	protected long min = Long.MAX_VALUE;
+
+	protected long max;
+
+	public LatencyHistogram(int precisionBits, int maxValueBits) {
+		this.precisionBits = precisionBits;
+		this.subBucketCount = 1 << precisionBits;
+		this.halfCount = subBucketCount / 2;
+		int maxShift = maxValueBits - precisionBits;
+		this.counts = new long[subBucketCount + maxShift * halfCount];
+	}
+
+	public LatencyHistogram() {
+		this(DEFAULT_PRECISION_BITS, DEFAULT_MAX_VALUE_BITS);
+	}
+
+	public void recordValue(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts[getIndex(value)]++;
+		totalCount++;
+		sum += value;
+		if (value < min) {
+			min = value;
+		}
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	protected int getIndex(long value) {
+		if (value < subBucketCount) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - (precisionBits - 1);
+		int subBucket = (int) (value >>> shift);
+		int index = subBucketCount + (shift - 1) * halfCount + subBucket
+				- halfCount;
+		return Math.min(index, counts.length - 1);
+	}
+
+	protected long getHighestEquivalentValue(int index) {
+		if (index < subBucketCount) {
+			return index;
+		}
+		int k = index - subBucketCount;
+		int shift = k / halfCount + 1;
+		long subBucket = k % halfCount + halfCount;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * @param percentile
+	 *            A percentile between 0 and 100.
+	 * @return The highest value equivalent to the value at the given
+	 *         percentile, or zero if nothing has been recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+		long target = Math.max(1,
+				(long) Math.ceil(percentile / 100.0 * totalCount));
+		long cumulative = 0;
+		for (int i = 0; i < counts.length; i++) {
+			cumulative += counts[i];
+			if (cumulative >= target) {
+				// The highest bucket also holds values beyond the range.
+				return i == counts.length - 1 ? max : Math.min(
+						getHighestEquivalentValue(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Add the counts of another histogram with the same configuration.
+	 */
+	public void add(LatencyHistogram other) {
+		if (other.counts.length != counts.length
+				|| other.precisionBits != precisionBits) {
+			throw new IllegalArgumentException(
+					"Cannot add histograms with different configurations");
+		}
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		totalCount += other.totalCount;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	public double getMean() {
+		return totalCount == 0 ? Double.NaN : (double) sum / totalCount;
+	}
+
+	public long getMin() {
+		return totalCount == 0 ? 0 : min;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public void reset() {
+		Arrays.fill(counts, 0);
+		totalCount = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	public Object clone() throws CloneNotSupportedException {
+		LatencyHistogram copy = (LatencyHistogram) super.clone();
+		copy.counts = counts.clone();
+		return copy;
+	}
+
+}
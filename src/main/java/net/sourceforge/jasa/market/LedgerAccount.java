@@ -0,0 +1,72 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market;
+
+import net.sourceforge.jasa.agent.TradingAgent;
+
+/**
+ * An Account whose funds are held in a {@link MarketLedger}.
+ * 
+ * @author Steve Phelps
+ */
+public class LedgerAccount extends Account {
+
+	protected MarketLedger ledger;
+	
+	/**
+	 * The index of the owner in the ledger when it was last looked up.
+	 */
+	protected int index = -1;
+	
+	public LedgerAccount(MarketLedger ledger, TradingAgent owner) {
+		super(owner, 0);
+		this.ledger = ledger;
+	}
+	
+	protected int index() {
+		index = ledger.indexOf((TradingAgent) owner, index);
+		return index;
+	}
+
+	@Override
+	public void credit(double additionalFunds) {
+		ledger.credit(index(), additionalFunds);
+	}
+
+	@Override
+	protected void debit(double payment) {
+		ledger.credit(index(), -payment);
+	}
+
+	@Override
+	public double getFunds() {
+		return ledger.getFunds(index());
+	}
+
+	@Override
+	public void setFunds(double funds) {
+		ledger.setFunds(index(), funds);
+	}
+	
+	public MarketLedger getLedger() {
+		return ledger;
+	}
+
+	public String toString() {
+		return "(" + getClass() + " funds:" + getFunds() + ")";
+	}
+	
+}
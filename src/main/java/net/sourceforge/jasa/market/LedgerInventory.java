@@ -0,0 +1,75 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market;
+
+import net.sourceforge.jasa.agent.Inventory;
+import net.sourceforge.jasa.agent.TradingAgent;
+
+/**
+ * An Inventory whose stock is held in a {@link MarketLedger}.
+ * 
+ * @author Steve Phelps
+ */
+public class LedgerInventory extends Inventory {
+
+	protected MarketLedger ledger;
+	
+	/**
+	 * The index of the owner in the ledger when it was last looked up.
+	 */
+	protected int index = -1;
+	
+	public LedgerInventory(MarketLedger ledger, TradingAgent owner) {
+		super(0);
+		this.ledger = ledger;
+		this.owner = owner;
+	}
+	
+	protected int index() {
+		index = ledger.indexOf(owner, index);
+		return index;
+	}
+
+	@Override
+	public void add(int quantity) {
+		ledger.addStock(index(), quantity);
+	}
+
+	@Override
+	public void remove(int quantity) {
+		ledger.addStock(index(), -quantity);
+	}
+
+	@Override
+	public int getQuantity() {
+		return ledger.getStock(index());
+	}
+
+	@Override
+	public void setQuantity(int quantity) {
+		ledger.setStock(index(), quantity);
+	}
+	
+	public MarketLedger getLedger() {
+		return ledger;
+	}
+
+	public String toString() {
+		return "(" + getClass() + " quantity:" + getQuantity() + " owner:" 
+				+ owner + ")";
+	}
+
+}
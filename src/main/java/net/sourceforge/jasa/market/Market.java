@@ -21,6 +21,7 @@ import net.sourceforge.jabm.Population;
 import net.sourceforge.jabm.agent.Agent;
 import net.sourceforge.jabm.util.Resetable;
 import net.sourceforge.jasa.agent.AbstractTradingAgent;
+import net.sourceforge.jasa.agent.AgentIndex;
 import net.sourceforge.jasa.market.auctioneer.Auctioneer;
 
 /**
@@ -128,5 +129,17 @@ public interface Market extends QuoteProvider, Resetable {
 	public void remove(AbstractTradingAgent abstractTradingAgent);
 
 	public Population getPopulation();
+	
+	/**
+	 * Return the index allocating each trader in this market a dense integer
+	 * id.
+	 */
+	public AgentIndex getAgentIndex();
+	
+	/**
+	 * Return the ledger holding traders' funds and stock, or null if these
+	 * are held by each trader's own Account and Inventory.
+	 */
+	public MarketLedger getLedger();
 
 }
\ No newline at end of file
@@ -0,0 +1,354 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market;
+
+import gnu.trove.map.hash.TObjectDoubleHashMap;
+
+import java.io.Serializable;
+
+import net.sourceforge.jasa.agent.AgentDoubleColumn;
+import net.sourceforge.jasa.agent.AgentIndex;
+import net.sourceforge.jasa.agent.AgentIntColumn;
+import net.sourceforge.jasa.agent.TradingAgent;
+
+/**
+ * <p>
+ * A ledger which holds the funds, stock and accumulated payoff of every
+ * trader in a market in primitive columns indexed by each agent's dense
+ * index (see {@link AgentIndex}), rather than in separate Account and 
+ * Inventory objects per agent.
+ * </p>
+ * 
+ * <p>
+ * Agents which are opened in the ledger have their Account and Inventory
+ * replaced by views onto the ledger, so that existing code which reads or
+ * transfers funds and stock continues to work.  The ledger also maintains 
+ * running totals of payoff for buyers, sellers and each agent group, so 
+ * that reports do not need to iterate over the population.
+ * </p>
+ * 
+ * <p>
+ * An agent trading in several markets has its funds and stock held by at 
+ * most one ledger.  Any other ledger it is opened in records only its 
+ * payoff in that market, and settles trades through the agent's own 
+ * Account and Inventory.
+ * </p>
+ * 
+ * @author Steve Phelps
+ */
+public class MarketLedger implements Serializable {
+
+	public static final String FUNDS = "ledger.funds";
+	
+	public static final String STOCK = "ledger.stock";
+	
+	public static final String BUYER_PAYOFF = "ledger.payoff.buyer";
+	
+	public static final String SELLER_PAYOFF = "ledger.payoff.seller";
+	
+	public static final String OPEN = "ledger.open";
+	
+	/**
+	 * The open state of an agent whose funds and stock are held in this 
+	 * ledger.
+	 */
+	public static final int HELD = 1;
+	
+	/**
+	 * The open state of an agent whose funds and stock are held elsewhere,
+	 * e.g. in the ledger of another market.
+	 */
+	public static final int EXTERNAL = 2;
+	
+	protected AgentIndex agentIndex;
+	
+	protected AgentDoubleColumn funds;
+	
+	protected AgentIntColumn stock;
+	
+	/**
+	 * Payoff accumulated by each agent on its buy orders.
+	 */
+	protected AgentDoubleColumn buyerPayoff;
+	
+	/**
+	 * Payoff accumulated by each agent on its sell orders.
+	 */
+	protected AgentDoubleColumn sellerPayoff;
+	
+	/**
+	 * The open state of each agent: zero if the agent is not open, otherwise
+	 * {@link #HELD} or {@link #EXTERNAL}.
+	 */
+	protected AgentIntColumn open;
+	
+	protected double totalBuyerPayoff;
+	
+	protected double totalSellerPayoff;
+	
+	/**
+	 * Total payoff keyed by agent group.
+	 */
+	protected TObjectDoubleHashMap<Object> groupPayoff = 
+		new TObjectDoubleHashMap<Object>();
+	
+	public MarketLedger(AgentIndex agentIndex) {
+		setAgentIndex(agentIndex);
+	}
+	
+	public MarketLedger() {
+		this(new AgentIndex());
+	}
+	
+	/**
+	 * Open a position for the specified agent in the ledger, copying its 
+	 * current funds and stock, and replace the agent's Account and Inventory
+	 * with views onto the ledger.  If the agent's Account is already a view 
+	 * onto another ledger its positions are left there, and only its payoff
+	 * is recorded in this ledger.  Has no effect if the agent is already open.
+	 * 
+	 * @return The index of the agent.
+	 */
+	public int open(TradingAgent agent) {
+		int i = agentIndex.register(agent);
+		if (open.get(i) == 0) {
+			buyerPayoff.set(i, 0);
+			sellerPayoff.set(i, 0);
+			Account account = agent.getAccount();
+			if (account instanceof LedgerAccount) {
+				if (((LedgerAccount) account).getLedger() == this) {
+					// the agent already holds a view onto this ledger, 
+					// but its positions were cleared with the index
+					open.set(i, HELD);
+				} else {
+					open.set(i, EXTERNAL);
+				}
+			} else {
+				double initialFunds = account.getFunds();
+				int initialStock = agent.getCommodityHolding().getQuantity();
+				open.set(i, HELD);
+				funds.set(i, initialFunds);
+				stock.set(i, initialStock);
+				agent.setLedger(this);
+			}
+		}
+		return i;
+	}
+	
+	/**
+	 * Return the index of the specified agent, opening it if necessary.
+	 */
+	public int indexOf(TradingAgent agent) {
+		int i = agentIndex.indexOf(agent);
+		if (i >= 0 && open.get(i) != 0) {
+			return i;
+		}
+		return open(agent);
+	}
+	
+	/**
+	 * Return the index of the specified agent as {@link #indexOf(TradingAgent)},
+	 * using the index previously returned for it if that is still valid.
+	 */
+	public int indexOf(TradingAgent agent, int previous) {
+		if (agentIndex.isRegistered(agent, previous) && open.get(previous) != 0) {
+			return previous;
+		}
+		return indexOf(agent);
+	}
+	
+	public boolean isOpen(TradingAgent agent) {
+		int i = agentIndex.indexOf(agent);
+		return i >= 0 && open.get(i) != 0;
+	}
+	
+	/**
+	 * @return true if the funds and stock of the agent with the specified
+	 *         index are held in this ledger.
+	 */
+	public boolean isHeld(int i) {
+		return open.get(i) == HELD;
+	}
+	
+	/**
+	 * Settle a single trade: the buyer pays the specified charge and 
+	 * receives the stock, and the seller receives the specified payment.
+	 * 
+	 * @return The surplus retained by the market, i.e. the difference 
+	 *         between the buyer's charge and the seller's payment.
+	 */
+	public double settle(TradingAgent buyer, TradingAgent seller,
+			double buyerCharge, double sellerPayment, int quantity) {
+		int b = indexOf(buyer);
+		int s = indexOf(seller);
+		transfer(b, buyer, -buyerCharge, quantity);
+		transfer(s, seller, sellerPayment, -quantity);
+		return buyerCharge - sellerPayment;
+	}
+	
+	/**
+	 * Settle a batch of trades from a single clearing operation. Agents are
+	 * identified by their index and must already be open in the ledger.
+	 * 
+	 * @param n  The number of trades in the batch.
+	 * 
+	 * @return The total surplus retained by the market.
+	 */
+	public double settle(int n, int[] buyers, int[] sellers,
+			double[] buyerCharges, double[] sellerPayments, int[] quantities) {
+		double surplus = 0;
+		for(int t = 0; t < n; t++) {
+			int b = buyers[t];
+			int s = sellers[t];
+			if (open.get(b) == HELD && open.get(s) == HELD) {
+				funds.add(b, -buyerCharges[t]);
+				funds.add(s, sellerPayments[t]);
+				stock.add(s, -quantities[t]);
+				stock.add(b, quantities[t]);
+			} else {
+				transfer(b, agentIndex.getAgent(b), -buyerCharges[t], 
+						quantities[t]);
+				transfer(s, agentIndex.getAgent(s), sellerPayments[t], 
+						-quantities[t]);
+			}
+			surplus += buyerCharges[t] - sellerPayments[t];
+		}
+		return surplus;
+	}
+	
+	/**
+	 * Adjust the funds and stock of a single agent, either in the ledger's 
+	 * columns or through the agent's own Account and Inventory if its 
+	 * positions are held elsewhere.
+	 */
+	protected void transfer(int i, TradingAgent agent, double amount,
+			int quantity) {
+		if (open.get(i) == HELD) {
+			funds.add(i, amount);
+			stock.add(i, quantity);
+		} else {
+			agent.getAccount().credit(amount);
+			agent.getCommodityHolding().add(quantity);
+		}
+	}
+	
+	/**
+	 * Record the payoff received by an agent when one of its orders is
+	 * filled.
+	 * 
+	 * @param group  The group the agent belongs to, or null.
+	 * @param isBid  Whether the filled order was a bid.
+	 */
+	public void recordPayoff(TradingAgent agent, Object group, boolean isBid,
+			double payoff) {
+		int i = indexOf(agent);
+		if (isBid) {
+			buyerPayoff.add(i, payoff);
+			totalBuyerPayoff += payoff;
+		} else {
+			sellerPayoff.add(i, payoff);
+			totalSellerPayoff += payoff;
+		}
+		if (group != null) {
+			groupPayoff.adjustOrPutValue(group, payoff, payoff);
+		}
+	}
+	
+	/**
+	 * Remove the accumulated payoff of the specified agent from the ledger 
+	 * and the running totals.
+	 */
+	public void resetPayoff(TradingAgent agent, Object group) {
+		int i = indexOf(agent);
+		double b = buyerPayoff.get(i);
+		double s = sellerPayoff.get(i);
+		totalBuyerPayoff -= b;
+		totalSellerPayoff -= s;
+		if (group != null && groupPayoff.containsKey(group)) {
+			groupPayoff.adjustValue(group, -(b + s));
+		}
+		buyerPayoff.set(i, 0);
+		sellerPayoff.set(i, 0);
+	}
+	
+	public double getFunds(int i) {
+		return funds.get(i);
+	}
+	
+	public void setFunds(int i, double value) {
+		funds.set(i, value);
+	}
+	
+	public void credit(int i, double amount) {
+		funds.add(i, amount);
+	}
+	
+	public int getStock(int i) {
+		return stock.get(i);
+	}
+	
+	public void setStock(int i, int quantity) {
+		stock.set(i, quantity);
+	}
+	
+	public void addStock(int i, int quantity) {
+		stock.add(i, quantity);
+	}
+	
+	public double getPayoff(int i) {
+		return buyerPayoff.get(i) + sellerPayoff.get(i);
+	}
+	
+	public double getTotalBuyerPayoff() {
+		return totalBuyerPayoff;
+	}
+	
+	public double getTotalSellerPayoff() {
+		return totalSellerPayoff;
+	}
+	
+	public double getTotalPayoff() {
+		return totalBuyerPayoff + totalSellerPayoff;
+	}
+	
+	public double getGroupPayoff(Object group) {
+		return groupPayoff.get(group);
+	}
+	
+	/**
+	 * Clear all running totals.  The positions of individual agents are 
+	 * reset when the agent index is cleared.
+	 */
+	public void reset() {
+		totalBuyerPayoff = 0;
+		totalSellerPayoff = 0;
+		groupPayoff.clear();
+	}
+	
+	public AgentIndex getAgentIndex() {
+		return agentIndex;
+	}
+
+	public void setAgentIndex(AgentIndex agentIndex) {
+		this.agentIndex = agentIndex;
+		this.funds = agentIndex.getDoubleColumn(FUNDS);
+		this.stock = agentIndex.getIntColumn(STOCK);
+		this.buyerPayoff = agentIndex.getDoubleColumn(BUYER_PAYOFF);
+		this.sellerPayoff = agentIndex.getDoubleColumn(SELLER_PAYOFF);
+		this.open = agentIndex.getIntColumn(OPEN);
+	}
+	
+}
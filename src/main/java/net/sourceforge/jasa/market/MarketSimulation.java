@@ -25,9 +25,11 @@ import net.sourceforge.jabm.SimulationTime;
 import net.sourceforge.jabm.agent.Agent;
 import net.sourceforge.jabm.event.RoundFinishedEvent;
 import net.sourceforge.jabm.event.RoundStartingEvent;
+import net.sourceforge.jabm.event.SimEvent;
 import net.sourceforge.jabm.event.SimulationFinishedEvent;
 import net.sourceforge.jabm.event.SimulationStartingEvent;
 import net.sourceforge.jasa.agent.AbstractTradingAgent;
+import net.sourceforge.jasa.agent.AgentIndex;
 import net.sourceforge.jasa.agent.TradingAgent;
 import net.sourceforge.jasa.event.EndOfDayEvent;
 import net.sourceforge.jasa.event.MarketClosedEvent;
@@ -36,6 +38,7 @@ import net.sourceforge.jasa.event.OrderPlacedEvent;
 import net.sourceforge.jasa.event.OrderReceivedEvent;
 import net.sourceforge.jasa.event.RoundClosingEvent;
 import net.sourceforge.jasa.event.TransactionExecutedEvent;
+import net.sourceforge.jasa.market.auctioneer.AbstractAuctioneer;
 import net.sourceforge.jasa.market.auctioneer.Auctioneer;
 import net.sourceforge.jasa.market.rules.AuctionClosingCondition;
 import net.sourceforge.jasa.market.rules.CombiTimingCondition;
@@ -102,6 +105,16 @@ public class MarketSimulation extends AbstractSimulation
 	 * The initial price in the market.
 	 */
 	protected double initialPrice = 0.0;
+	
+	/**
+	 * Allocates each registered trader a dense integer index.
+	 */
+	protected AgentIndex agentIndex = new AgentIndex();
+	
+	/**
+	 * The optional ledger holding the funds and stock of every trader.
+	 */
+	protected MarketLedger ledger;
 
 	public static final String ERROR_SHOUTSVISIBLE 
 		= "Auctioneer does not permit shout inspection";
@@ -486,11 +499,17 @@ public class MarketSimulation extends AbstractSimulation
 				bid, buyerCharge, ask.getQuantity());
 		fireEvent(transactionEvent);
 		
-		auctioneer.getAccount().doubleEntry(buyer.getAccount(), buyerCharge*quantity,
-		    seller.getAccount(), sellerPayment*quantity);
-		
-		seller.getCommodityHolding()
-		    .transfer(buyer.getCommodityHolding(), quantity);
+		if (ledger != null) {
+			double surplus = ledger.settle(buyer, seller, buyerCharge * quantity,
+					sellerPayment * quantity, quantity);
+			auctioneer.getAccount().credit(surplus);
+		} else {
+			auctioneer.getAccount().doubleEntry(buyer.getAccount(),
+					buyerCharge * quantity, seller.getAccount(), sellerPayment
+							* quantity);
+			seller.getCommodityHolding().transfer(buyer.getCommodityHolding(),
+					quantity);
+		}
 
 		buyer.orderFilled(this, bid, buyerCharge, quantity);
 		seller.orderFilled(this, ask, sellerPayment, quantity);
@@ -590,10 +609,38 @@ public class MarketSimulation extends AbstractSimulation
 		if (order == null) {
 			throw new IllegalOrderException("null shout");
 		}
+		long start = MatchingEngineProbe.ENABLED ? System.nanoTime() : 0;
 		fireEvent(new OrderReceivedEvent(this, getRound(), order));
 		order.setTimeStamp(getSimulationTime());
 		auctioneer.newOrder(order);
 		fireEvent(new OrderPlacedEvent(this, getAge(), order));
+		if (MatchingEngineProbe.ENABLED) {
+			MatchingEngineProbe.record(MatchingEngineProbe.PLACE_ORDER, start,
+					getBookDepth());
+		}
+	}
+
+	@Override
+	public void fireEvent(SimEvent event) {
+		if (MatchingEngineProbe.ENABLED) {
+			long start = System.nanoTime();
+			super.fireEvent(event);
+			MatchingEngineProbe.record(MatchingEngineProbe.DISPATCH, start,
+					getBookDepth());
+		} else {
+			super.fireEvent(event);
+		}
+	}
+
+	/**
+	 * @return The depth of the auctioneer's order book, or -1 if it is not
+	 *         available.
+	 */
+	protected int getBookDepth() {
+		if (auctioneer instanceof AbstractAuctioneer) {
+			return ((AbstractAuctioneer) auctioneer).getOrderBook().getDepth();
+		}
+		return -1;
 	}
 
 	public void printState() {
@@ -603,6 +650,10 @@ public class MarketSimulation extends AbstractSimulation
 	public void register(TradingAgent trader) {
 		getTraders().add(trader);
 		trader.register(this);		
+		agentIndex.register(trader);
+		if (ledger != null) {
+			ledger.open(trader);
+		}
 	}
 
 	public Iterator<Agent> getTraderIterator() {
@@ -655,6 +706,33 @@ public class MarketSimulation extends AbstractSimulation
 		this.initialPrice = initialPrice;
 	}
 
+	public AgentIndex getAgentIndex() {
+		return agentIndex;
+	}
+
+	public void setAgentIndex(AgentIndex agentIndex) {
+		this.agentIndex = agentIndex;
+		if (ledger != null) {
+			ledger.setAgentIndex(agentIndex);
+		}
+	}
+
+	public MarketLedger getLedger() {
+		return ledger;
+	}
+
+	/**
+	 * Configure a ledger to hold the funds and stock of every trader in 
+	 * primitive arrays.  If no ledger is configured, positions are held in
+	 * each trader's own Account and Inventory.
+	 */
+	public void setLedger(MarketLedger ledger) {
+		this.ledger = ledger;
+		if (ledger != null) {
+			ledger.setAgentIndex(agentIndex);
+		}
+	}
+
 	@Override
 	public void terminate() {
 		super.terminate();
@@ -0,0 +1,267 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * <p>
+ * Optional instrumentation of the matching engine. When enabled, the
+ * latency of each stage of order processing is recorded in a
+ * {@link LatencyHistogram}, together with the depth of the order book at
+ * the time of the operation. Stages are nested; for example the time spent
+ * clearing a continuous double auction is included in the time for the
+ * auctioneer to process the new order.
+ * </p>
+ * 
+ * <p>
+ * Instrumentation is enabled by starting the JVM with
+ * <code>-Djasa.instrumentation=true</code>. Because {@link #ENABLED} is a
+ * static final constant, the JIT removes the probes entirely when it is
+ * false. Each thread records into its own statistics under an uncontended
+ * per-thread lock, so that {@link #getSnapshot()} can combine them
+ * consistently while other threads are recording. The statistics of
+ * threads which have terminated are folded into a retired total and their
+ * recorders are dropped.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public final class MatchingEngineProbe {
+
+	public static final boolean ENABLED = Boolean
+			.getBoolean("jasa.instrumentation");
+
+	public static final int PLACE_ORDER = 0;
+
+	public static final int NEW_ORDER = 1;
+
+	public static final int BOOK_ADD = 2;
+
+	public static final int BOOK_REMOVE = 3;
+
+	public static final int MATCH_ORDERS = 4;
+
+	public static final int CLEAR = 5;
+
+	public static final int DISPATCH = 6;
+
+	public static final String[] STAGE_NAMES = { "placeorder", "neworder",
+			"bookadd", "bookremove", "matchorders", "clear", "dispatch" };
+
+	protected static final List<Recorder> recorders = new ArrayList<Recorder>();
+
+	/**
+	 * The combined statistics of threads which have terminated.
+	 */
+	protected static final StageStatistics[] retired = newStages();
+
+	protected static final ThreadLocal<Recorder> recorder = new ThreadLocal<Recorder>() {
+		protected Recorder initialValue() {
+			Recorder result = new Recorder(Thread.currentThread());
+			synchronized (recorders) {
+				retireDeadRecorders();
+				recorders.add(result);
+			}
+			return result;
+		}
+	};
+
+	private MatchingEngineProbe() {
+	}
+
+	/**
+	 * Record the completion of a stage which started at the given value of
+	 * System.nanoTime().
+	 * 
+	 * @param bookDepth
+	 *            The depth of the order book, or a negative value if it is
+	 *            not known.
+	 */
+	public static void record(int stage, long startNanos, int bookDepth) {
+		long latency = System.nanoTime() - startNanos;
+		Recorder r = recorder.get();
+		synchronized (r) {
+			StageStatistics statistics = r.stages[stage];
+			statistics.latency.recordValue(latency);
+			if (bookDepth >= 0) {
+				statistics.bookDepthSamples++;
+				statistics.totalBookDepth += bookDepth;
+				statistics.maxBookDepth = Math.max(statistics.maxBookDepth,
+						bookDepth);
+			}
+		}
+	}
+
+	/**
+	 * @return The statistics for each stage, combined over all threads.
+	 */
+	public static StageStatistics[] getSnapshot() {
+		StageStatistics[] result = newStages();
+		synchronized (recorders) {
+			retireDeadRecorders();
+			add(result, retired);
+			for (Recorder r : recorders) {
+				synchronized (r) {
+					add(result, r.stages);
+				}
+			}
+		}
+		return result;
+	}
+
+	public static void reset() {
+		synchronized (recorders) {
+			retireDeadRecorders();
+			for (int i = 0; i < retired.length; i++) {
+				retired[i].reset();
+			}
+			for (Recorder r : recorders) {
+				synchronized (r) {
+					for (int i = 0; i < r.stages.length; i++) {
+						r.stages[i].reset();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fold the statistics of terminated threads into the retired totals and
+	 * drop their recorders. The caller must hold the lock on recorders.
+	 */
+	protected static void retireDeadRecorders() {
+		Iterator<Recorder> i = recorders.iterator();
+		while (i.hasNext()) {
+			Recorder r = i.next();
+			if (!r.isAlive()) {
+				synchronized (r) {
+					add(retired, r.stages);
+				}
+				i.remove();
+			}
+		}
+	}
+
+	protected static void add(StageStatistics[] total, StageStatistics[] stages) {
+		for (int i = 0; i < stages.length; i++) {
+			total[i].add(stages[i]);
+		}
+	}
+
+	/**
+	 * @return The number of threads whose statistics are held separately.
+	 */
+	public static int getNumberOfRecorders() {
+		synchronized (recorders) {
+			return recorders.size();
+		}
+	}
+
+	protected static StageStatistics[] newStages() {
+		StageStatistics[] stages = new StageStatistics[STAGE_NAMES.length];
+		for (int i = 0; i < stages.length; i++) {
+			stages[i] = new StageStatistics(STAGE_NAMES[i]);
+		}
+		return stages;
+	}
+
+	/**
+	 * The statistics recorded by a single thread, which are guarded by the
+	 * recorder's own lock.
+	 */
+	protected static class Recorder {
+
+		protected final WeakReference<Thread> thread;
+
+		protected final StageStatistics[] stages = newStages();
+
+		public Recorder(Thread thread) {
+			this.thread = new WeakReference<Thread>(thread);
+		}
+
+		public boolean isAlive() {
+			Thread t = thread.get();
+			return t != null && t.isAlive();
+		}
+	}
+
+	public static class StageStatistics {
+
+		protected String name;
+
+		protected LatencyHistogram latency = new LatencyHistogram();
+
+		protected long bookDepthSamples;
+
+		protected long totalBookDepth;
+
+		protected int maxBookDepth;
+
+		public StageStatistics(String name) {
+			this.name = name;
+		}
+
+		public void add(StageStatistics other) {
+			latency.add(other.latency);
+			bookDepthSamples += other.bookDepthSamples;
+			totalBookDepth += other.totalBookDepth;
+			maxBookDepth = Math.max(maxBookDepth, other.maxBookDepth);
+		}
+
+		public void reset() {
+			latency.reset();
+			bookDepthSamples = 0;
+			totalBookDepth = 0;
+			maxBookDepth = 0;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public LatencyHistogram getLatency() {
+			return latency;
+		}
+
+		public long getCount() {
+			return latency.getTotalCount();
+		}
+
+		public double getMeanBookDepth() {
+			return bookDepthSamples == 0 ? Double.NaN
+					: (double) totalBookDepth / bookDepthSamples;
+		}
+
+		public int getMaxBookDepth() {
+			return maxBookDepth;
+		}
+
+		public String toString() {
+			return name + ": count=" + getCount() + " mean="
+					+ latency.getMean() + "ns p50="
+					+ latency.getValueAtPercentile(50) + "ns p99="
+					+ latency.getValueAtPercentile(99) + "ns max="
+					+ latency.getMax() + "ns meanDepth="
+					+ getMeanBookDepth();
+		}
+	}
+
+}
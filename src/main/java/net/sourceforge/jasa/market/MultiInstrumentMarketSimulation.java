@@ -0,0 +1,360 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import net.sourceforge.jabm.SimulationController;
+import net.sourceforge.jabm.event.RoundFinishedEvent;
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jasa.agent.AbstractTradingAgent;
+import net.sourceforge.jasa.agent.TradingAgent;
+import net.sourceforge.jasa.market.auctioneer.Auctioneer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * An exchange on which several instruments are traded, each in its own
+ * {@link InstrumentMarket} with its own auctioneer and order book. Every
+ * registered trader is placed in the market of every instrument, so that
+ * the existing loop over markets in
+ * {@link AbstractTradingAgent#onAgentArrival} submits orders for each
+ * instrument to the book of that instrument. Traders keep a separate
+ * current order in each market, and a separate position in each
+ * instrument (see {@link TradingAgent#getHolding(Market)}).
+ * </p>
+ * 
+ * <p>
+ * The auctioneers receive the events of the exchange directly rather than
+ * as ordinary listeners. The round-end event, which triggers clearing in
+ * clearing-house auctioneers, is dispatched to all auctioneers in parallel
+ * on an executor, with settlement of the resulting transactions deferred.
+ * Once every book has been matched, which acts as the barrier for the
+ * round, the buffered transactions are settled on the simulation thread in
+ * the order in which the instruments were configured, and only then is the
+ * event passed to the remaining listeners. The outcome is therefore the
+ * same as if the books had been cleared serially in that order.
+ * </p>
+ * 
+ * <p>
+ * Methods of {@link Market} which refer to a single book, such as
+ * {@link #getQuote()} and {@link #placeOrder(Order)}, apply to the first
+ * instrument, so that reports written for a single market continue to
+ * work.
+ * </p>
+ * 
+ * <p>
+ * Instruments are configured with {@link #addInstrument(String, Auctioneer)}
+ * or the <code>instruments</code> property.  Setting the
+ * <code>auctioneer</code> property, as Spring configurations written for a
+ * {@link MarketSimulation} do, throws an
+ * <code>UnsupportedOperationException</code>.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class MultiInstrumentMarketSimulation extends MarketSimulation {
+
+	protected LinkedHashMap<String, InstrumentMarket> instruments = 
+		new LinkedHashMap<String, InstrumentMarket>();
+
+	protected ArrayList<InstrumentMarket> books = new ArrayList<InstrumentMarket>();
+
+	/**
+	 * If true, the books are cleared in parallel at the end of each round.
+	 */
+	protected boolean parallel = true;
+
+	protected transient ExecutorService executor;
+
+	protected static ExecutorService defaultExecutor;
+
+	static Logger logger = Logger.getLogger(MultiInstrumentMarketSimulation.class);
+
+	public MultiInstrumentMarketSimulation(SimulationController controller) {
+		super(controller);
+	}
+
+	public MultiInstrumentMarketSimulation() {
+		this(null);
+	}
+
+	/**
+	 * Add an instrument traded by the specified auctioneer.
+	 * 
+	 * @return the market for the new instrument.
+	 */
+	public InstrumentMarket addInstrument(String symbol, Auctioneer auctioneer) {
+		if (instruments.containsKey(symbol)) {
+			throw new IllegalArgumentException("Duplicate instrument " + symbol);
+		}
+		InstrumentMarket market = new InstrumentMarket(symbol, this, auctioneer);
+		instruments.put(symbol, market);
+		books.add(market);
+		return market;
+	}
+
+	/**
+	 * Configure the instruments traded on this exchange as a map from 
+	 * symbol to auctioneer.
+	 */
+	public void setInstruments(Map<String, Auctioneer> auctioneers) {
+		instruments.clear();
+		books.clear();
+		for (Map.Entry<String, Auctioneer> entry : auctioneers.entrySet()) {
+			addInstrument(entry.getKey(), entry.getValue());
+		}
+	}
+
+	public InstrumentMarket getInstrument(String symbol) {
+		return instruments.get(symbol);
+	}
+
+	public Collection<InstrumentMarket> getInstruments() {
+		return books;
+	}
+
+	public Collection<String> getSymbols() {
+		return instruments.keySet();
+	}
+
+	/**
+	 * @return the quotes of the specified instrument.
+	 */
+	public QuoteProvider getQuoteProvider(String symbol) {
+		return instruments.get(symbol);
+	}
+
+	public MarketQuote getQuote(String symbol) {
+		return instruments.get(symbol).getQuote();
+	}
+
+	/**
+	 * Place an order for the specified instrument.
+	 */
+	public void placeOrder(String symbol, Order order) throws AuctionException {
+		InstrumentMarket market = instruments.get(symbol);
+		if (market == null) {
+			throw new IllegalOrderException("Unknown instrument " + symbol);
+		}
+		market.placeOrder(order);
+	}
+
+	protected InstrumentMarket getDefaultInstrument() {
+		if (books.isEmpty()) {
+			throw new AuctionRuntimeException("No instruments have been configured");
+		}
+		return books.get(0);
+	}
+
+	@Override
+	public void initialise() {
+		initialiseCounters();
+		for (InstrumentMarket market : books) {
+			market.reset();
+		}
+	}
+
+	@Override
+	public void register(TradingAgent trader) {
+		super.register(trader);
+		if (trader instanceof AbstractTradingAgent) {
+			ArrayList<Market> markets = new ArrayList<Market>(books);
+			((AbstractTradingAgent) trader).setMarkets(markets);
+		}
+	}
+
+	@Override
+	public void fireEvent(SimEvent event) {
+		if (event instanceof RoundFinishedEvent) {
+			clearBooks(event);
+		} else {
+			for (int i = 0; i < books.size(); i++) {
+				books.get(i).getAuctioneer().eventOccurred(event);
+			}
+		}
+		super.fireEvent(event);
+	}
+
+	/**
+	 * Dispatch the round-end event to every auctioneer, in parallel if
+	 * enabled, and then settle the resulting transactions book by book.
+	 */
+	protected void clearBooks(final SimEvent event) {
+		int n = books.size();
+		if (!parallel || n < 2) {
+			for (int i = 0; i < n; i++) {
+				books.get(i).getAuctioneer().eventOccurred(event);
+			}
+			return;
+		}
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(n);
+		for (int i = 0; i < n; i++) {
+			final InstrumentMarket market = books.get(i);
+			market.setDeferSettlement(true);
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					market.getAuctioneer().eventOccurred(event);
+					return null;
+				}
+			});
+		}
+		try {
+			List<Future<Object>> results = getExecutor().invokeAll(tasks);
+			for (Future<Object> result : results) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AuctionRuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new AuctionRuntimeException(e.getCause());
+		} finally {
+			for (int i = 0; i < n; i++) {
+				books.get(i).setDeferSettlement(false);
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			books.get(i).settlePendingTransactions();
+		}
+	}
+
+	@Override
+	public Auctioneer getAuctioneer() {
+		return getDefaultInstrument().getAuctioneer();
+	}
+
+	@Override
+	public void setAuctioneer(Auctioneer auctioneer) {
+		throw new UnsupportedOperationException(
+				"Use addInstrument() to configure the auctioneer of each instrument");
+	}
+
+	@Override
+	public void placeOrder(Order order) throws AuctionException {
+		getDefaultInstrument().placeOrder(order);
+	}
+
+	@Override
+	public void removeOrder(Order shout) {
+		getDefaultInstrument().removeOrder(shout);
+	}
+
+	@Override
+	public void clear(Order ask, Order bid, double transactionPrice) {
+		getDefaultInstrument().clear(ask, bid, transactionPrice);
+	}
+
+	@Override
+	public void clear(Order ask, Order bid, double buyerCharge,
+			double sellerPayment, int quantity) {
+		getDefaultInstrument().clear(ask, bid, buyerCharge, sellerPayment,
+				quantity);
+	}
+
+	@Override
+	public Order getLastOrder() throws ShoutsNotVisibleException {
+		return getDefaultInstrument().getLastOrder();
+	}
+
+	@Override
+	public MarketQuote getQuote() {
+		return getDefaultInstrument().getQuote();
+	}
+
+	@Override
+	public boolean orderAccepted(Order shout) throws ShoutsNotVisibleException {
+		return getDefaultInstrument().orderAccepted(shout);
+	}
+
+	@Override
+	public boolean transactionsOccurred() throws ShoutsNotVisibleException {
+		return getDefaultInstrument().transactionsOccurred();
+	}
+
+	@Override
+	public double getLastTransactionPrice() {
+		return getDefaultInstrument().getLastTransactionPrice();
+	}
+
+	@Override
+	public double getCurrentPrice() {
+		return getDefaultInstrument().getCurrentPrice();
+	}
+
+	@Override
+	public void printState() {
+		for (InstrumentMarket market : books) {
+			logger.info(market.getSymbol() + ":");
+			market.printState();
+		}
+	}
+
+	@Override
+	protected int getBookDepth() {
+		return -1;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	public ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = getDefaultExecutor();
+		}
+		return executor;
+	}
+
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @return A shared pool of daemon threads, one per available processor.
+	 */
+	public static synchronized ExecutorService getDefaultExecutor() {
+		if (defaultExecutor == null) {
+			int threads = Runtime.getRuntime().availableProcessors();
+			defaultExecutor = Executors.newFixedThreadPool(threads,
+					new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "matching-worker");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return defaultExecutor;
+	}
+
+}
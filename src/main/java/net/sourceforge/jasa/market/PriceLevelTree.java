@@ -0,0 +1,399 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market;
+
+import java.io.Serializable;
+
+/**
+ * <p>
+ * An order-statistic tree of price levels, used to maintain a cumulative
+ * supply or demand curve incrementally as orders enter and leave a book.
+ * Each node holds the aggregate quantity offered at a single price, and is
+ * augmented with the number of levels and the total quantity in its subtree,
+ * so that adding or removing quantity at a price, the cumulative quantity up
+ * to a price, and the level of a given rank can all be found in
+ * O(log levels). The levels can be visited in price order in O(levels)
+ * without sorting, which gives the step series of the curve directly.
+ * </p>
+ * 
+ * <p>
+ * The tree is a treap whose priorities are drawn from a fixed-seed xorshift
+ * generator, so its shape, and therefore its behaviour, is reproducible.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class PriceLevelTree implements Serializable {
+
+	protected Node root;
+
+	protected int seed = 0x2545F491;
+
+	/**
+	 * A callback used to visit the price levels in order.
+	 */
+	public interface LevelVisitor {
+
+		public void visit(double price, long quantity, long cumulativeQuantity);
+	}
+
+	protected static class Node implements Serializable {
+
+		double price;
+
+		long quantity;
+
+		long subtreeQuantity;
+
+		int size;
+
+		int priority;
+
+		Node left, right;
+
+		Node(double price, long quantity, int priority) {
+			this.price = price;
+			this.quantity = quantity;
+			this.subtreeQuantity = quantity;
+			this.size = 1;
+			this.priority = priority;
+		}
+
+		void update() {
+			size = 1;
+			subtreeQuantity = quantity;
+			if (left != null) {
+				size += left.size;
+				subtreeQuantity += left.subtreeQuantity;
+			}
+			if (right != null) {
+				size += right.size;
+				subtreeQuantity += right.subtreeQuantity;
+			}
+		}
+	}
+
+	public PriceLevelTree() {
+	}
+
+	/**
+	 * Add the specified quantity at the specified price, creating a new level
+	 * if there is no quantity at that price already.
+	 */
+	public void add(double price, long quantity) {
+		if (quantity == 0) {
+			return;
+		}
+		root = add(root, price, quantity);
+	}
+
+	/**
+	 * Remove the specified quantity from the specified price.  The level is
+	 * deleted when its quantity falls to zero.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if less than the specified quantity is held at this price.
+	 */
+	public void remove(double price, long quantity) {
+		if (quantity == 0) {
+			return;
+		}
+		root = remove(root, price, quantity);
+	}
+
+	public void add(Order order) {
+		add(order.getPriceAsDouble(), order.getQuantity());
+	}
+
+	public void remove(Order order) {
+		remove(order.getPriceAsDouble(), order.getQuantity());
+	}
+
+	public void clear() {
+		root = null;
+	}
+
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * @return The number of distinct price levels.
+	 */
+	public int getNumberOfLevels() {
+		return root == null ? 0 : root.size;
+	}
+
+	/**
+	 * @return The total quantity over all levels.
+	 */
+	public long getTotalQuantity() {
+		return root == null ? 0 : root.subtreeQuantity;
+	}
+
+	/**
+	 * @return The quantity held at exactly the specified price.
+	 */
+	public long getQuantity(double price) {
+		Node node = root;
+		while (node != null) {
+			int c = Double.compare(price, node.price);
+			if (c == 0) {
+				return node.quantity;
+			}
+			node = c < 0 ? node.left : node.right;
+		}
+		return 0;
+	}
+
+	/**
+	 * @return The total quantity at prices less than or equal to the
+	 *         specified price, ie the supply at this price.
+	 */
+	public long getQuantityAtOrBelow(double price) {
+		long result = 0;
+		Node node = root;
+		while (node != null) {
+			if (Double.compare(price, node.price) < 0) {
+				node = node.left;
+			} else {
+				result += node.quantity;
+				if (node.left != null) {
+					result += node.left.subtreeQuantity;
+				}
+				node = node.right;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return The total quantity at prices greater than or equal to the
+	 *         specified price, ie the demand at this price.
+	 */
+	public long getQuantityAtOrAbove(double price) {
+		long result = 0;
+		Node node = root;
+		while (node != null) {
+			if (Double.compare(price, node.price) > 0) {
+				node = node.right;
+			} else {
+				result += node.quantity;
+				if (node.right != null) {
+					result += node.right.subtreeQuantity;
+				}
+				node = node.left;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return The price of the level with the specified rank in ascending
+	 *         price order, counting from zero.
+	 */
+	public double getPrice(int rank) {
+		if (rank < 0 || rank >= getNumberOfLevels()) {
+			throw new IndexOutOfBoundsException("rank " + rank);
+		}
+		Node node = root;
+		while (true) {
+			int leftSize = node.left == null ? 0 : node.left.size;
+			if (rank < leftSize) {
+				node = node.left;
+			} else if (rank == leftSize) {
+				return node.price;
+			} else {
+				rank -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * @return The lowest price with any quantity, or NaN if the tree is empty.
+	 */
+	public double getMinPrice() {
+		if (root == null) {
+			return Double.NaN;
+		}
+		Node node = root;
+		while (node.left != null) {
+			node = node.left;
+		}
+		return node.price;
+	}
+
+	/**
+	 * @return The highest price with any quantity, or NaN if the tree is
+	 *         empty.
+	 */
+	public double getMaxPrice() {
+		if (root == null) {
+			return Double.NaN;
+		}
+		Node node = root;
+		while (node.right != null) {
+			node = node.right;
+		}
+		return node.price;
+	}
+
+	/**
+	 * Visit every level in ascending or descending price order, passing the
+	 * running total of quantity up to and including each level.
+	 */
+	public void visit(LevelVisitor visitor, boolean descending) {
+		visit(root, visitor, descending, 0);
+	}
+
+	/**
+	 * Copy the levels in ascending or descending price order into the
+	 * supplied arrays, which must have room for getNumberOfLevels() entries.
+	 * 
+	 * @return The number of levels copied.
+	 */
+	public int toArrays(final double[] prices, final long[] quantities,
+			boolean descending) {
+		final int[] i = new int[1];
+		visit(new LevelVisitor() {
+			public void visit(double price, long quantity, long cumulative) {
+				prices[i[0]] = price;
+				quantities[i[0]] = quantity;
+				i[0]++;
+			}
+		}, descending);
+		return i[0];
+	}
+
+	protected long visit(Node node, LevelVisitor visitor, boolean descending,
+			long cumulative) {
+		if (node == null) {
+			return cumulative;
+		}
+		cumulative = visit(descending ? node.right : node.left, visitor,
+				descending, cumulative);
+		cumulative += node.quantity;
+		visitor.visit(node.price, node.quantity, cumulative);
+		return visit(descending ? node.left : node.right, visitor, descending,
+				cumulative);
+	}
+
+	protected Node add(Node node, double price, long quantity) {
+		if (node == null) {
+			if (quantity < 0) {
+				throw new IllegalArgumentException("Negative quantity "
+						+ quantity + " at price " + price);
+			}
+			return new Node(price, quantity, nextPriority());
+		}
+		int c = Double.compare(price, node.price);
+		if (c == 0) {
+			node.quantity += quantity;
+		} else if (c < 0) {
+			node.left = add(node.left, price, quantity);
+			if (node.left.priority > node.priority) {
+				node = rotateRight(node);
+			}
+		} else {
+			node.right = add(node.right, price, quantity);
+			if (node.right.priority > node.priority) {
+				node = rotateLeft(node);
+			}
+		}
+		node.update();
+		return node;
+	}
+
+	protected Node remove(Node node, double price, long quantity) {
+		if (node == null) {
+			throw new IllegalArgumentException("No quantity at price " + price);
+		}
+		int c = Double.compare(price, node.price);
+		if (c < 0) {
+			node.left = remove(node.left, price, quantity);
+		} else if (c > 0) {
+			node.right = remove(node.right, price, quantity);
+		} else {
+			if (quantity > node.quantity) {
+				throw new IllegalArgumentException("Cannot remove " + quantity
+						+ " from " + node.quantity + " at price " + price);
+			}
+			node.quantity -= quantity;
+			if (node.quantity == 0) {
+				return delete(node);
+			}
+		}
+		node.update();
+		return node;
+	}
+
+	protected Node delete(Node node) {
+		if (node.left == null) {
+			return node.right;
+		} else if (node.right == null) {
+			return node.left;
+		} else if (node.left.priority > node.right.priority) {
+			node = rotateRight(node);
+			node.right = delete(node.right);
+		} else {
+			node = rotateLeft(node);
+			node.left = delete(node.left);
+		}
+		node.update();
+		return node;
+	}
+
+	protected Node rotateRight(Node node) {
+		Node left = node.left;
+		node.left = left.right;
+		left.right = node;
+		node.update();
+		left.update();
+		return left;
+	}
+
+	protected Node rotateLeft(Node node) {
+		Node right = node.right;
+		node.right = right.left;
+		right.left = node;
+		node.update();
+		right.update();
+		return right;
+	}
+
+	protected int nextPriority() {
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		return seed;
+	}
+
+	public String toString() {
+		final StringBuilder result = new StringBuilder("(");
+		visit(new LevelVisitor() {
+			public void visit(double price, long quantity, long cumulative) {
+				if (result.length() > 1) {
+					result.append(' ');
+				}
+				result.append(price).append(':').append(quantity);
+			}
+		}, false);
+		return result.append(')').toString();
+	}
+
+}
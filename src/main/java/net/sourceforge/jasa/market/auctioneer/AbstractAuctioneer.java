@@ -29,6 +29,7 @@ import net.sourceforge.jasa.market.FourHeapOrderBook;
 import net.sourceforge.jasa.market.IllegalOrderException;
 import net.sourceforge.jasa.market.Market;
 import net.sourceforge.jasa.market.MarketQuote;
+import net.sourceforge.jasa.market.MatchingEngineProbe;
 import net.sourceforge.jasa.market.Order;
 import net.sourceforge.jasa.market.OrderBook;
 import net.sourceforge.jasa.market.rules.ClearingPolicy;
@@ -113,8 +114,13 @@ public abstract class AbstractAuctioneer implements Serializable, Auctioneer,
 	 */
 	public void newOrder(Order shout) throws IllegalOrderException,
 	    DuplicateShoutException {
+		long start = MatchingEngineProbe.ENABLED ? System.nanoTime() : 0;
 		checkShoutValidity(shout);
 		newShoutInternal(shout);
+		if (MatchingEngineProbe.ENABLED) {
+			MatchingEngineProbe.record(MatchingEngineProbe.NEW_ORDER, start,
+			    orderBook.getDepth());
+		}
 	}
 
 	protected void newShoutInternal(Order shout) throws DuplicateShoutException {
@@ -195,7 +201,12 @@ public abstract class AbstractAuctioneer implements Serializable, Auctioneer,
 	}
 
 	public void clear() {
+		long start = MatchingEngineProbe.ENABLED ? System.nanoTime() : 0;
 		clearingPolicy.clear();
+		if (MatchingEngineProbe.ENABLED) {
+			MatchingEngineProbe.record(MatchingEngineProbe.CLEAR, start,
+			    orderBook.getDepth());
+		}
 	}
 
 	public void clear(Order ask, Order bid, double price) {
@@ -0,0 +1,219 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market.shard;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * A single-producer single-consumer ring of fixed-size
+ * {@link ShardMessage} slots held in a region of a memory-mapped file, so
+ * that the producer and the consumer may live in different processes on the
+ * same host. The region starts with the head (next slot to be read) and tail
+ * (next slot to be written) counters, each padded to its own cache line,
+ * followed by the slots themselves.
+ * </p>
+ * 
+ * <p>
+ * The producer writes a message into its slot and only then publishes the
+ * new tail; the consumer reads the tail before reading the slot and only
+ * then publishes the new head.
+ * </p>
+ * 
+ * <p>
+ * Java 6 has no ordered or volatile accessors for mapped memory, so the
+ * counters are read and written with plain buffer accesses. Correctness
+ * therefore depends on the platform rather than on the Java memory model:
+ * it relies on the total store order of x86 and SPARC, which does not
+ * reorder stores with stores or loads with loads, and on HotSpot not
+ * reordering the buffer accesses of a method across one another. The ring
+ * must not be used between processes on weaker hardware such as ARM or
+ * POWER, or on other JVMs.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class MappedRingBuffer {
+
+	public static final int CACHE_LINE = 64;
+
+	/**
+	 * The number of bytes occupied by the head and tail counters.
+	 */
+	public static final int HEADER_SIZE = 2 * CACHE_LINE;
+
+	protected static final int HEAD = 0;
+
+	protected static final int TAIL = CACHE_LINE;
+
+	protected ByteBuffer buffer;
+
+	protected int offset;
+
+	protected int capacity;
+
+	protected int mask;
+
+	/**
+	 * The producer's cached copy of the consumer's head, so that the shared
+	 * head is only re-read when the ring appears to be full.
+	 */
+	protected long cachedHead;
+
+	/**
+	 * The consumer's cached copy of the producer's tail.
+	 */
+	protected long cachedTail;
+
+	/**
+	 * @param buffer
+	 *            The mapped buffer which holds the ring.
+	 * @param offset
+	 *            The position of the ring within the buffer.
+	 * @param capacity
+	 *            The number of slots, which must be a power of two.
+	 */
+	public MappedRingBuffer(ByteBuffer buffer, int offset, int capacity) {
+		if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+			throw new IllegalArgumentException(
+					"Capacity must be a positive power of two: " + capacity);
+		}
+		if (offset + getRegionSize(capacity) > buffer.capacity()) {
+			throw new IllegalArgumentException(
+					"Ring does not fit in the buffer");
+		}
+		this.buffer = buffer;
+		this.offset = offset;
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.cachedHead = buffer.getLong(offset + HEAD);
+		this.cachedTail = buffer.getLong(offset + TAIL);
+	}
+
+	/**
+	 * @return the number of bytes needed for a ring with the given number of
+	 *         slots.
+	 */
+	public static int getRegionSize(int capacity) {
+		return HEADER_SIZE + capacity * ShardMessage.SIZE;
+	}
+
+	/**
+	 * Reset both counters. This should only be called before either side
+	 * starts using the ring.
+	 */
+	public void reset() {
+		buffer.putLong(offset + HEAD, 0L);
+		buffer.putLong(offset + TAIL, 0L);
+		cachedHead = 0;
+		cachedTail = 0;
+	}
+
+	/**
+	 * Append a message to the ring if there is space.
+	 * 
+	 * @return true if the message was written, false if the ring is full.
+	 */
+	public boolean offer(ShardMessage message) {
+		long tail = buffer.getLong(offset + TAIL);
+		if (tail - cachedHead >= capacity) {
+			cachedHead = buffer.getLong(offset + HEAD);
+			if (tail - cachedHead >= capacity) {
+				return false;
+			}
+		}
+		message.write(buffer, slotPosition(tail));
+		buffer.putLong(offset + TAIL, tail + 1);
+		return true;
+	}
+
+	/**
+	 * Append a message to the ring, waiting for the consumer to make space
+	 * if necessary.
+	 */
+	public void put(ShardMessage message) {
+		int spins = 0;
+		while (!offer(message)) {
+			spins = backoff(spins);
+		}
+	}
+
+	/**
+	 * Read the next message from the ring into the supplied instance.
+	 * 
+	 * @return true if a message was read, false if the ring is empty.
+	 */
+	public boolean poll(ShardMessage message) {
+		long head = buffer.getLong(offset + HEAD);
+		if (head >= cachedTail) {
+			cachedTail = buffer.getLong(offset + TAIL);
+			if (head >= cachedTail) {
+				return false;
+			}
+		}
+		message.read(buffer, slotPosition(head));
+		buffer.putLong(offset + HEAD, head + 1);
+		return true;
+	}
+
+	/**
+	 * @return the number of messages currently in the ring, as seen by the
+	 *         calling side.
+	 */
+	public int size() {
+		long head = buffer.getLong(offset + HEAD);
+		long tail = buffer.getLong(offset + TAIL);
+		return (int) (tail - head);
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	protected int slotPosition(long sequence) {
+		return offset + HEADER_SIZE + (int) (sequence & mask)
+				* ShardMessage.SIZE;
+	}
+
+	/**
+	 * Back off while waiting on another process: spin briefly, then yield,
+	 * then park for progressively longer periods up to a millisecond.
+	 * 
+	 * @return the updated spin count.
+	 */
+	public static int backoff(int spins) {
+		if (spins < 100) {
+			// busy spin
+		} else if (spins < 200) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(Math.min(1000L << Math.min(spins - 200, 10),
+					1000000L));
+		}
+		return spins + 1;
+	}
+
+}
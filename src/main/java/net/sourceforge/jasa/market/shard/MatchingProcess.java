@@ -0,0 +1,366 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market.shard;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import net.sourceforge.jasa.market.AuctionRuntimeException;
+import net.sourceforge.jasa.market.DuplicateShoutException;
+import net.sourceforge.jasa.market.FourHeapOrderBook;
+import net.sourceforge.jasa.market.MarketQuote;
+import net.sourceforge.jasa.market.Order;
+import net.sourceforge.jasa.market.rules.PricingPolicy;
+import net.sourceforge.jasa.market.rules.UniformPricingPolicy;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * The process which holds the order book for a population of agents
+ * partitioned across several shard processes, each of which trades through
+ * a {@link RemoteAuctioneer}. Every round the matching process collects the
+ * orders and cancellations sent by the shards, clears the book as a clearing
+ * house, sends each fill to the shard which owns the order, and broadcasts
+ * the clearing quote and last transaction price to all shards. Messages 
+ * read from the shards while waiting at the barrier are only buffered; 
+ * once every shard has arrived they are applied to the book shard by shard,
+ * so the state of the book does not depend on the timing of the shards.
+ * </p>
+ * 
+ * <p>
+ * Rounds are delimited by two generations of the shared barrier: the first
+ * is reached once every shard has finished placing its orders for the
+ * round, and the second once every shard has received its fills and market
+ * data. A shard which closes arrives at every future generation, so the
+ * remaining shards can carry on without it, and the matching process
+ * finishes once all shards have closed.  If a maximum number of rounds is
+ * set, or the matching process fails, the shards which are still open are 
+ * told to close.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class MatchingProcess implements Runnable {
+
+	protected ShardChannel channel;
+
+	protected FourHeapOrderBook orderBook = new FourHeapOrderBook();
+
+	protected PricingPolicy pricingPolicy = new UniformPricingPolicy(0);
+
+	/**
+	 * The orders currently in the book, keyed by {@link RemoteOrder#getKey()}.
+	 */
+	protected HashMap<Long, RemoteOrder> orders = 
+		new HashMap<Long, RemoteOrder>();
+
+	protected boolean[] closedShards;
+
+	protected long round = 0;
+
+	/**
+	 * The number of rounds after which the shards are told to close, or 0
+	 * to run until every shard has closed of its own accord.
+	 */
+	protected long maximumRounds = 0;
+
+	protected boolean closing = false;
+
+	/**
+	 * The messages received from each shard in the current round which have
+	 * not yet been applied to the book.
+	 */
+	protected ByteBuffer[] received;
+
+	protected int[] numReceived;
+
+	protected double lastTransactionPrice = Double.NaN;
+
+	protected ShardMessage message = new ShardMessage();
+
+	protected Runnable drainOrders = new Runnable() {
+		public void run() {
+			drainOrders();
+		}
+	};
+
+	static Logger logger = Logger.getLogger(MatchingProcess.class);
+
+	public MatchingProcess(ShardChannel channel) {
+		this.channel = channel;
+		this.closedShards = new boolean[channel.getNumShards()];
+		this.received = new ByteBuffer[closedShards.length];
+		this.numReceived = new int[closedShards.length];
+		for (int shard = 0; shard < closedShards.length; shard++) {
+			received[shard] = ByteBuffer.allocate(16 * ShardMessage.SIZE);
+		}
+	}
+
+	public void run() {
+		try {
+			while (!isFinished()) {
+				runSingleRound();
+			}
+		} finally {
+			close();
+		}
+		logger.info("All shards closed after " + round + " rounds");
+	}
+
+	/**
+	 * Wait for every shard to finish placing its orders, clear the book and
+	 * distribute the results.
+	 */
+	public void runSingleRound() {
+		SharedMemoryBarrier barrier = channel.getBarrier();
+		int self = channel.getMatcherParticipant();
+		barrier.await(self, 2 * round + 1, drainOrders);
+		drainOrders();
+		applyOrders();
+		if (!isFinished()) {
+			clear();
+			if (maximumRounds > 0 && round + 1 >= maximumRounds) {
+				close();
+			}
+		}
+		barrier.await(self, 2 * round + 2, null);
+		round++;
+	}
+
+	/**
+	 * Move all of the messages currently waiting in the order rings into 
+	 * the buffer of the shard which sent them, freeing space in the rings.
+	 */
+	public void drainOrders() {
+		for (int shard = 0; shard < closedShards.length; shard++) {
+			if (closedShards[shard]) {
+				continue;
+			}
+			MappedRingBuffer ring = channel.getOrderRing(shard);
+			while (ring.poll(message)) {
+				ByteBuffer buffer = received[shard];
+				int position = numReceived[shard] * ShardMessage.SIZE;
+				if (position == buffer.capacity()) {
+					ByteBuffer larger = ByteBuffer.allocate(2 * position);
+					buffer.rewind();
+					larger.put(buffer);
+					received[shard] = buffer = larger;
+				}
+				message.write(buffer, position);
+				numReceived[shard]++;
+			}
+		}
+	}
+
+	/**
+	 * Apply the buffered messages to the book, taking the shards in order
+	 * and the messages of each shard in the order in which they were sent.
+	 */
+	public void applyOrders() {
+		for (int shard = 0; shard < closedShards.length; shard++) {
+			ByteBuffer buffer = received[shard];
+			for (int i = 0; i < numReceived[shard]; i++) {
+				message.read(buffer, i * ShardMessage.SIZE);
+				switch (message.type) {
+				case ShardMessage.ORDER:
+					newOrder(new RemoteOrder(shard, message.id, message.agent,
+							message.quantity, message.price, message.bid));
+					break;
+				case ShardMessage.CANCEL:
+					removeOrder(shard, message.id);
+					break;
+				case ShardMessage.CLOSED:
+					onShardClosed(shard);
+					break;
+				default:
+					throw new AuctionRuntimeException(
+							"Unexpected message from shard " + shard + ": "
+									+ message);
+				}
+			}
+			numReceived[shard] = 0;
+		}
+	}
+
+	public void newOrder(RemoteOrder order) {
+		try {
+			orders.put(order.getKey(), order);
+			orderBook.add(order);
+		} catch (DuplicateShoutException e) {
+			throw new AuctionRuntimeException(e);
+		}
+	}
+
+	public void removeOrder(int shard, long id) {
+		RemoteOrder order = orders.remove(RemoteOrder.key(shard, id));
+		if (order != null) {
+			orderBook.removeAll(order);
+		}
+	}
+
+	protected void onShardClosed(int shard) {
+		closedShards[shard] = true;
+		Iterator<RemoteOrder> i = orders.values().iterator();
+		while (i.hasNext()) {
+			RemoteOrder order = i.next();
+			if (order.getShard() == shard) {
+				orderBook.removeAll(order);
+				i.remove();
+			}
+		}
+		logger.debug("Shard " + shard + " closed in round " + round);
+	}
+
+	/**
+	 * Match the book in the same way as the {@link 
+	 * net.sourceforge.jasa.market.rules.EquilibriumClearingPolicy}, notifying
+	 * the owner of each order filled and then broadcasting the clearing quote.
+	 */
+	public void clear() {
+		MarketQuote clearingQuote = new MarketQuote(askQuote(), bidQuote());
+		List<Order> matchedOrders = orderBook.matchOrders();
+		int volume = 0;
+		for (int i = 0; i < matchedOrders.size(); i += 2) {
+			RemoteOrder bid = (RemoteOrder) matchedOrders.get(i);
+			RemoteOrder ask = (RemoteOrder) matchedOrders.get(i + 1);
+			double price = 
+				pricingPolicy.determineClearingPrice(bid, ask, clearingQuote);
+			fill(bid, price);
+			fill(ask, price);
+			lastTransactionPrice = price;
+			volume += ask.getQuantity();
+		}
+		message.quote(round, clearingQuote.getBid(), clearingQuote.getAsk(),
+				lastTransactionPrice, volume);
+		for (int shard = 0; shard < closedShards.length; shard++) {
+			if (!closedShards[shard]) {
+				channel.getMarketDataRing(shard).put(message);
+			}
+		}
+	}
+
+	protected void fill(RemoteOrder order, double price) {
+		int shard = order.getShard();
+		if (!closedShards[shard]) {
+			message.fill(shard, order.getId(), price, order.getQuantity());
+			channel.getMarketDataRing(shard).put(message);
+		}
+		RemoteOrder root = orders.get(order.getKey());
+		if (root != null && root.aggregateUnfilledVolume() == 0) {
+			orders.remove(order.getKey());
+		}
+	}
+
+	/**
+	 * Tell every shard which is still open to close its market.  Has no 
+	 * effect if the shards have already been told to close.
+	 */
+	public void close() {
+		if (closing) {
+			return;
+		}
+		closing = true;
+		for (int shard = 0; shard < closedShards.length; shard++) {
+			if (!closedShards[shard]) {
+				channel.getMarketDataRing(shard).put(message.closed(round));
+			}
+		}
+	}
+
+	public double bidQuote() {
+		return Order.maxPrice(orderBook.getHighestMatchedAsk(),
+				orderBook.getHighestUnmatchedBid());
+	}
+
+	public double askQuote() {
+		return Order.minPrice(orderBook.getLowestUnmatchedAsk(),
+				orderBook.getLowestMatchedBid());
+	}
+
+	/**
+	 * @return true once every shard has closed.
+	 */
+	public boolean isFinished() {
+		for (int shard = 0; shard < closedShards.length; shard++) {
+			if (!closedShards[shard]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public long getRound() {
+		return round;
+	}
+
+	public long getMaximumRounds() {
+		return maximumRounds;
+	}
+
+	public void setMaximumRounds(long maximumRounds) {
+		this.maximumRounds = maximumRounds;
+	}
+
+	public double getLastTransactionPrice() {
+		return lastTransactionPrice;
+	}
+
+	public FourHeapOrderBook getOrderBook() {
+		return orderBook;
+	}
+
+	public PricingPolicy getPricingPolicy() {
+		return pricingPolicy;
+	}
+
+	public void setPricingPolicy(PricingPolicy pricingPolicy) {
+		this.pricingPolicy = pricingPolicy;
+	}
+
+	public ShardChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Create a channel and run the matching process until every shard has
+	 * closed.
+	 * 
+	 * @param args
+	 *            The file to map, the number of shards and, optionally, the
+	 *            capacity of each ring.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: MatchingProcess <file> <shards> "
+					+ "[<capacity>]");
+			System.exit(1);
+		}
+		int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+		ShardChannel channel = ShardChannel.create(new File(args[0]),
+				Integer.parseInt(args[1]), capacity);
+		try {
+			new MatchingProcess(channel).run();
+		} finally {
+			channel.close();
+		}
+	}
+
+}
@@ -0,0 +1,387 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market.shard;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import net.sourceforge.jabm.event.RoundFinishedEvent;
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jasa.agent.Inventory;
+import net.sourceforge.jasa.agent.TradingAgent;
+import net.sourceforge.jasa.event.MarketClosedEvent;
+import net.sourceforge.jasa.market.Account;
+import net.sourceforge.jasa.market.AuctionRuntimeException;
+import net.sourceforge.jasa.market.IllegalOrderException;
+import net.sourceforge.jasa.market.Market;
+import net.sourceforge.jasa.market.MarketQuote;
+import net.sourceforge.jasa.market.MarketSimulation;
+import net.sourceforge.jasa.market.Order;
+import net.sourceforge.jasa.market.ShoutsNotVisibleException;
+import net.sourceforge.jasa.market.auctioneer.Auctioneer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * An auctioneer which acts as a proxy for a {@link MatchingProcess} running
+ * in another process, so that a {@link MarketSimulation} holding one shard of
+ * a large population serves the {@link Market} interface to its agents as
+ * usual while the order book is shared with the other shards. Orders and
+ * cancellations are forwarded to the matching process as they are placed;
+ * at the end of each round the auctioneer waits at the shared barrier until
+ * every shard has done the same, and then receives the fills for its own
+ * orders together with the clearing quote.
+ * </p>
+ * 
+ * <p>
+ * Since the counterparty to a fill may be an agent in another shard, each
+ * fill is settled against a clearing account and inventory held by this
+ * auctioneer, which therefore record the net position of the shard against
+ * the rest of the market. The traders are notified with
+ * {@link TradingAgent#orderFilled(Market, Order, double, int)} as usual, but
+ * no transaction events are fired, because only one side of each
+ * transaction is known to the shard, and the market's ledger is not used.
+ * Shouts are not visible to the agents.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class RemoteAuctioneer implements Auctioneer, Serializable {
+
+	protected Market market;
+
+	protected transient ShardChannel channel;
+
+	protected int shard;
+
+	protected Account account = new Account(this, 0);
+
+	protected Inventory inventory = new Inventory();
+
+	protected long nextId = 1;
+
+	protected long round = 0;
+
+	/**
+	 * The orders which have been sent to the matching process and not yet
+	 * completely filled or cancelled, keyed by identifier.
+	 */
+	protected HashMap<Long, OutstandingOrder> outstandingById = 
+		new HashMap<Long, OutstandingOrder>();
+
+	protected IdentityHashMap<Order, OutstandingOrder> outstanding = 
+		new IdentityHashMap<Order, OutstandingOrder>();
+
+	/**
+	 * The orders which were filled in the last round.
+	 */
+	protected HashSet<Order> filledOrders = new HashSet<Order>();
+
+	protected MarketQuote quote = new MarketQuote(Double.NaN, Double.NaN);
+
+	protected int volume = 0;
+
+	protected boolean closed = false;
+
+	protected transient ShardMessage message = new ShardMessage();
+
+	protected transient Runnable drainMarketData = new Runnable() {
+		public void run() {
+			drainMarketData();
+		}
+	};
+
+	static Logger logger = Logger.getLogger(RemoteAuctioneer.class);
+
+	public RemoteAuctioneer(ShardChannel channel, int shard) {
+		this.channel = channel;
+		this.shard = shard;
+	}
+
+	public RemoteAuctioneer() {
+	}
+
+	public void newOrder(Order order) throws IllegalOrderException {
+		if (order.getQuantity() <= 0 || order.getPriceAsDouble() < 0) {
+			throw new IllegalOrderException("Malformed order " + order);
+		}
+		if (outstanding.containsKey(order)) {
+			throw new IllegalOrderException("Duplicate order " + order);
+		}
+		OutstandingOrder o = new OutstandingOrder(nextId++, order);
+		outstanding.put(order, o);
+		outstandingById.put(o.id, o);
+		long agentIndex = market.getAgentIndex().register(
+				(TradingAgent) order.getAgent());
+		channel.getOrderRing(shard).put(
+				message.order(shard, o.id, agentIndex, order.getPriceAsDouble(),
+						order.getQuantity(), order.isBid()));
+	}
+
+	public void removeOrder(Order order) {
+		OutstandingOrder o = outstanding.remove(order);
+		if (o != null) {
+			outstandingById.remove(o.id);
+			channel.getOrderRing(shard).put(message.cancel(shard, o.id));
+		}
+	}
+
+	/**
+	 * Wait for the other shards and the matching process to finish the
+	 * current round, and then settle the fills for this shard and record
+	 * the new quote.
+	 */
+	public void clear() {
+		if (closed) {
+			return;
+		}
+		filledOrders.clear();
+		volume = 0;
+		SharedMemoryBarrier barrier = channel.getBarrier();
+		barrier.await(shard, 2 * round + 1, null);
+		barrier.await(shard, 2 * round + 2, drainMarketData);
+		drainMarketData();
+		round++;
+	}
+
+	/**
+	 * Process all of the messages currently waiting in the market data ring.
+	 */
+	public void drainMarketData() {
+		MappedRingBuffer ring = channel.getMarketDataRing(shard);
+		while (ring.poll(message)) {
+			switch (message.type) {
+			case ShardMessage.FILL:
+				onFill(message.id, message.price, message.quantity);
+				break;
+			case ShardMessage.QUOTE:
+				onQuote(message.price, message.price2, message.getLastPrice(),
+						message.quantity);
+				break;
+			case ShardMessage.CLOSED:
+				market.close();
+				break;
+			default:
+				throw new AuctionRuntimeException(
+						"Unexpected message from matching process: " + message);
+			}
+		}
+	}
+
+	protected void onFill(long id, double price, int quantity) {
+		OutstandingOrder o = outstandingById.get(id);
+		if (o == null) {
+			// the order was cancelled after it had been matched
+			logger.debug("Fill received for unknown order " + id);
+			return;
+		}
+		Order order = o.order;
+		o.remaining -= quantity;
+		if (o.remaining <= 0) {
+			outstandingById.remove(id);
+			outstanding.remove(order);
+		}
+		filledOrders.add(order);
+		settle(order, price, quantity);
+	}
+
+	/**
+	 * Settle one side of a transaction against the clearing account and
+	 * inventory of this shard.
+	 */
+	protected void settle(Order order, double price, int quantity) {
+		TradingAgent trader = (TradingAgent) order.getAgent();
+		if (order.isBid()) {
+			trader.getAccount().transfer(account, price * quantity);
+			inventory.transfer(trader.getCommodityHolding(), quantity);
+		} else {
+			account.transfer(trader.getAccount(), price * quantity);
+			trader.getCommodityHolding().transfer(inventory, quantity);
+		}
+		trader.orderFilled(market, order, price, quantity);
+	}
+
+	protected void onQuote(double bid, double ask, double lastPrice,
+			int volume) {
+		quote = new MarketQuote(ask, bid);
+		this.volume = volume;
+		if (market instanceof MarketSimulation && !Double.isNaN(lastPrice)) {
+			((MarketSimulation) market).setLastTransactionPrice(lastPrice);
+		}
+	}
+
+	/**
+	 * Tell the matching process that this shard has stopped trading, and
+	 * arrive at every future generation of the barrier so that the other
+	 * shards are not held up.
+	 */
+	public void leave() {
+		if (!closed) {
+			closed = true;
+			channel.getOrderRing(shard).put(message.closed(round));
+			channel.getBarrier().arrive(shard, Long.MAX_VALUE);
+		}
+	}
+
+	public void eventOccurred(SimEvent event) {
+		if (event instanceof RoundFinishedEvent) {
+			clear();
+		} else if (event instanceof MarketClosedEvent) {
+			leave();
+		}
+	}
+
+	public MarketQuote getQuote() {
+		return quote;
+	}
+
+	public void printState() {
+		logger.info("Shard " + shard + " round " + round + " outstanding "
+				+ outstanding.size() + " quote " + quote);
+	}
+
+	public void setMarket(Market market) {
+		this.market = market;
+	}
+
+	public Market getMarket() {
+		return market;
+	}
+
+	/**
+	 * @return the outstanding asks placed by agents in this shard.
+	 */
+	public Iterator<Order> askIterator() {
+		return getOutstandingOrders(false).iterator();
+	}
+
+	/**
+	 * @return the outstanding bids placed by agents in this shard.
+	 */
+	public Iterator<Order> bidIterator() {
+		return getOutstandingOrders(true).iterator();
+	}
+
+	public List<Order> getUnmatchedBids() {
+		return getOutstandingOrders(true);
+	}
+
+	public List<Order> getUnmatchedAsks() {
+		return getOutstandingOrders(false);
+	}
+
+	protected List<Order> getOutstandingOrders(boolean bids) {
+		ArrayList<Order> result = new ArrayList<Order>();
+		for (Order order : outstanding.keySet()) {
+			if (order.isBid() == bids) {
+				result.add(order);
+			}
+		}
+		return result;
+	}
+
+	public boolean shoutsVisible() {
+		return false;
+	}
+
+	public boolean orderFilled(Order order) throws ShoutsNotVisibleException {
+		return filledOrders.contains(order);
+	}
+
+	public boolean transactionsOccurred() throws ShoutsNotVisibleException {
+		return volume > 0;
+	}
+
+	public Order getLastAsk() throws ShoutsNotVisibleException {
+		throw new ShoutsNotVisibleException(getClass()
+				+ " does not reveal the orders of other shards");
+	}
+
+	public Order getLastBid() throws ShoutsNotVisibleException {
+		throw new ShoutsNotVisibleException(getClass()
+				+ " does not reveal the orders of other shards");
+	}
+
+	public Order getLastShout() throws ShoutsNotVisibleException {
+		throw new ShoutsNotVisibleException(getClass()
+				+ " does not reveal the orders of other shards");
+	}
+
+	/**
+	 * @return the clearing account against which fills are settled.
+	 */
+	public Account getAccount() {
+		return account;
+	}
+
+	/**
+	 * @return the clearing inventory against which fills are settled.
+	 */
+	public Inventory getInventory() {
+		return inventory;
+	}
+
+	public ShardChannel getChannel() {
+		return channel;
+	}
+
+	public void setChannel(ShardChannel channel) {
+		this.channel = channel;
+	}
+
+	public int getShard() {
+		return shard;
+	}
+
+	public void setShard(int shard) {
+		this.shard = shard;
+	}
+
+	public long getRound() {
+		return round;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public int getNumberOfOutstandingOrders() {
+		return outstanding.size();
+	}
+
+	protected static class OutstandingOrder {
+
+		protected long id;
+
+		protected Order order;
+
+		protected int remaining;
+
+		public OutstandingOrder(long id, Order order) {
+			this.id = id;
+			this.order = order;
+			this.remaining = order.getQuantity();
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market.shard;
+
+import net.sourceforge.jasa.market.Order;
+
+/**
+ * An order held in the book of the {@link MatchingProcess} on behalf of an
+ * agent in a shard process. The agent itself lives in another process, so
+ * the order instead records the shard it came from and the identifier that
+ * the shard assigned to it. Since orders are split by cloning, every part
+ * of a split order carries the same shard and identifier.
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class RemoteOrder extends Order {
+
+	protected int shard;
+
+	protected long id;
+
+	/**
+	 * The index of the agent within its shard.
+	 */
+	protected long agentIndex;
+
+	public RemoteOrder(int shard, long id, long agentIndex, int quantity,
+			double price, boolean isBid) {
+		super(null, quantity, price, isBid);
+		this.shard = shard;
+		this.id = id;
+		this.agentIndex = agentIndex;
+	}
+
+	/**
+	 * Orders from the same agent are never matched with each other by the
+	 * order book, so they are compared by shard and agent index.
+	 */
+	@Override
+	public boolean matches(Order other) {
+		if (other instanceof RemoteOrder) {
+			RemoteOrder remote = (RemoteOrder) other;
+			if (remote.shard == shard && remote.agentIndex == agentIndex) {
+				return false;
+			}
+		}
+		if (isBid()) {
+			return other.isAsk()
+					&& getPriceAsDouble() >= other.getPriceAsDouble();
+		} else {
+			return other.isBid()
+					&& other.getPriceAsDouble() >= getPriceAsDouble();
+		}
+	}
+
+	/**
+	 * @return a key which uniquely identifies the order across all shards.
+	 */
+	public long getKey() {
+		return key(shard, id);
+	}
+
+	public static long key(int shard, long id) {
+		return ((long) shard << 40) | id;
+	}
+
+	public int getShard() {
+		return shard;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public long getAgentIndex() {
+		return agentIndex;
+	}
+
+	@Override
+	public String toString() {
+		return "(RemoteOrder shard:" + shard + " id:" + id + " agent:"
+				+ agentIndex + " quantity:" + getQuantity() + " price:"
+				+ getPriceAsDouble() + " isBid:" + isBid() + ")";
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market.shard;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import net.sourceforge.jasa.market.AuctionRuntimeException;
+
+/**
+ * <p>
+ * The shared memory through which the shards and the matching process
+ * communicate, mapped from a file which every process opens with
+ * {@link FileChannel#map}. The file is laid out as a header, followed by a
+ * {@link SharedMemoryBarrier} with one participant per shard plus the
+ * matching process, followed by a pair of {@link MappedRingBuffer}s per
+ * shard: one carrying orders to the matching process and one carrying fills
+ * and market data back to the shard.
+ * </p>
+ * 
+ * <p>
+ * The file is normally created by the matching process with
+ * {@link #create(File, int, int)}, and opened by each shard with
+ * {@link #open(File)}. Placing it on a memory-backed file system such as
+ * /dev/shm avoids any write-back to disk.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class ShardChannel {
+
+	public static final int MAGIC = 0x4A534852;
+
+	public static final int VERSION = 1;
+
+	public static final int HEADER_SIZE = MappedRingBuffer.CACHE_LINE;
+
+	protected File file;
+
+	protected RandomAccessFile randomAccessFile;
+
+	protected MappedByteBuffer buffer;
+
+	protected int numShards;
+
+	protected int capacity;
+
+	protected SharedMemoryBarrier barrier;
+
+	protected MappedRingBuffer[] orderRings;
+
+	protected MappedRingBuffer[] marketDataRings;
+
+	protected ShardChannel(File file, int numShards, int capacity,
+			boolean create) {
+		this.file = file;
+		try {
+			randomAccessFile = new RandomAccessFile(file, "rw");
+			if (create) {
+				this.numShards = numShards;
+				this.capacity = capacity;
+				randomAccessFile.setLength(0);
+				randomAccessFile.setLength(getFileSize(numShards, capacity));
+			} else {
+				MappedByteBuffer header = randomAccessFile.getChannel().map(
+						FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+				header.order(ByteOrder.nativeOrder());
+				if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+					close();
+					throw new AuctionRuntimeException(file
+							+ " is not a shard channel");
+				}
+				this.numShards = header.getInt(8);
+				this.capacity = header.getInt(12);
+			}
+			buffer = randomAccessFile.getChannel().map(
+					FileChannel.MapMode.READ_WRITE, 0,
+					getFileSize(this.numShards, this.capacity));
+			buffer.order(ByteOrder.nativeOrder());
+		} catch (IOException e) {
+			close();
+			throw new AuctionRuntimeException(e);
+		}
+		layout();
+		if (create) {
+			barrier.reset();
+			for (int i = 0; i < numShards; i++) {
+				orderRings[i].reset();
+				marketDataRings[i].reset();
+			}
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, VERSION);
+			buffer.putInt(8, numShards);
+			buffer.putInt(12, capacity);
+			buffer.force();
+		}
+	}
+
+	/**
+	 * Create a new channel, overwriting any existing file.
+	 * 
+	 * @param numShards
+	 *            The number of shard processes.
+	 * @param capacity
+	 *            The number of messages each ring can hold, which must be a
+	 *            power of two.
+	 */
+	public static ShardChannel create(File file, int numShards, int capacity) {
+		return new ShardChannel(file, numShards, capacity, true);
+	}
+
+	/**
+	 * Open a channel previously created by another process.
+	 */
+	public static ShardChannel open(File file) {
+		return new ShardChannel(file, 0, 0, false);
+	}
+
+	public static long getFileSize(int numShards, int capacity) {
+		return HEADER_SIZE + SharedMemoryBarrier.getRegionSize(numShards + 1)
+				+ 2L * numShards * MappedRingBuffer.getRegionSize(capacity);
+	}
+
+	protected void layout() {
+		int position = HEADER_SIZE;
+		barrier = new SharedMemoryBarrier(buffer, position, numShards + 1);
+		position += SharedMemoryBarrier.getRegionSize(numShards + 1);
+		orderRings = new MappedRingBuffer[numShards];
+		marketDataRings = new MappedRingBuffer[numShards];
+		int ringSize = MappedRingBuffer.getRegionSize(capacity);
+		for (int i = 0; i < numShards; i++) {
+			orderRings[i] = new MappedRingBuffer(buffer, position, capacity);
+			position += ringSize;
+			marketDataRings[i] = 
+				new MappedRingBuffer(buffer, position, capacity);
+			position += ringSize;
+		}
+	}
+
+	/**
+	 * Close the underlying file. The mapping itself remains valid until the
+	 * buffer is garbage collected.
+	 */
+	public void close() {
+		try {
+			if (randomAccessFile != null) {
+				randomAccessFile.close();
+			}
+		} catch (IOException e) {
+			throw new AuctionRuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return the ring carrying orders from the given shard to the matching
+	 *         process.
+	 */
+	public MappedRingBuffer getOrderRing(int shard) {
+		return orderRings[shard];
+	}
+
+	/**
+	 * @return the ring carrying fills and market data from the matching
+	 *         process to the given shard.
+	 */
+	public MappedRingBuffer getMarketDataRing(int shard) {
+		return marketDataRings[shard];
+	}
+
+	public SharedMemoryBarrier getBarrier() {
+		return barrier;
+	}
+
+	/**
+	 * @return the index of the matching process in the barrier.
+	 */
+	public int getMatcherParticipant() {
+		return numShards;
+	}
+
+	public int getNumShards() {
+		return numShards;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+}
@@ -0,0 +1,179 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market.shard;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * A fixed-size message exchanged between a shard and the matching process.
+ * The same mutable instance is reused for every message read from or
+ * written to a {@link MappedRingBuffer}, so no objects are allocated per
+ * message. The meaning of the fields depends on the type:
+ * </p>
+ * 
+ * <table>
+ * <tr><td>ORDER</td><td>id, agent, price, quantity, bid</td></tr>
+ * <tr><td>CANCEL</td><td>id</td></tr>
+ * <tr><td>FILL</td><td>id, price, quantity</td></tr>
+ * <tr><td>QUOTE</td><td>round, price (bid quote), price2 (ask quote), 
+ * 		quantity (volume cleared)</td></tr>
+ * <tr><td>CLOSED</td><td>round</td></tr>
+ * </table>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class ShardMessage {
+
+	public static final int ORDER = 1;
+
+	public static final int CANCEL = 2;
+
+	public static final int FILL = 3;
+
+	public static final int QUOTE = 4;
+
+	public static final int CLOSED = 5;
+
+	/**
+	 * The number of bytes occupied by a message in a ring buffer slot.
+	 */
+	public static final int SIZE = 64;
+
+	public int type;
+
+	public int shard;
+
+	public long id;
+
+	public long agent;
+
+	public long round;
+
+	public double price;
+
+	public double price2;
+
+	public int quantity;
+
+	public boolean bid;
+
+	public ShardMessage() {
+	}
+
+	public ShardMessage order(int shard, long id, long agent, double price,
+			int quantity, boolean bid) {
+		clear();
+		this.type = ORDER;
+		this.shard = shard;
+		this.id = id;
+		this.agent = agent;
+		this.price = price;
+		this.quantity = quantity;
+		this.bid = bid;
+		return this;
+	}
+
+	public ShardMessage cancel(int shard, long id) {
+		clear();
+		this.type = CANCEL;
+		this.shard = shard;
+		this.id = id;
+		return this;
+	}
+
+	public ShardMessage fill(int shard, long id, double price, int quantity) {
+		clear();
+		this.type = FILL;
+		this.shard = shard;
+		this.id = id;
+		this.price = price;
+		this.quantity = quantity;
+		return this;
+	}
+
+	public ShardMessage quote(long round, double bidQuote, double askQuote,
+			double lastPrice, int volume) {
+		clear();
+		this.type = QUOTE;
+		this.round = round;
+		this.price = bidQuote;
+		this.price2 = askQuote;
+		this.agent = Double.doubleToRawLongBits(lastPrice);
+		this.quantity = volume;
+		return this;
+	}
+
+	public ShardMessage closed(long round) {
+		clear();
+		this.type = CLOSED;
+		this.round = round;
+		return this;
+	}
+
+	/**
+	 * @return the last transaction price carried by a QUOTE message.
+	 */
+	public double getLastPrice() {
+		return Double.longBitsToDouble(agent);
+	}
+
+	public void clear() {
+		type = 0;
+		shard = 0;
+		id = 0;
+		agent = 0;
+		round = 0;
+		price = 0;
+		price2 = 0;
+		quantity = 0;
+		bid = false;
+	}
+
+	public void write(ByteBuffer buffer, int position) {
+		buffer.putInt(position, type);
+		buffer.putInt(position + 4, shard);
+		buffer.putLong(position + 8, id);
+		buffer.putLong(position + 16, agent);
+		buffer.putLong(position + 24, round);
+		buffer.putDouble(position + 32, price);
+		buffer.putDouble(position + 40, price2);
+		buffer.putInt(position + 48, quantity);
+		buffer.putInt(position + 52, bid ? 1 : 0);
+	}
+
+	public void read(ByteBuffer buffer, int position) {
+		type = buffer.getInt(position);
+		shard = buffer.getInt(position + 4);
+		id = buffer.getLong(position + 8);
+		agent = buffer.getLong(position + 16);
+		round = buffer.getLong(position + 24);
+		price = buffer.getDouble(position + 32);
+		price2 = buffer.getDouble(position + 40);
+		quantity = buffer.getInt(position + 48);
+		bid = buffer.getInt(position + 52) != 0;
+	}
+
+	@Override
+	public String toString() {
+		return "ShardMessage [type=" + type + ", shard=" + shard + ", id=" + id
+				+ ", agent=" + agent + ", round=" + round + ", price=" + price
+				+ ", price2=" + price2 + ", quantity=" + quantity + ", bid="
+				+ bid + "]";
+	}
+
+}
@@ -0,0 +1,161 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market.shard;
+
+import java.nio.ByteBuffer;
+
+import net.sourceforge.jasa.market.AuctionRuntimeException;
+
+/**
+ * <p>
+ * A reusable barrier held in a region of a memory-mapped file, which lets the
+ * shards and the matching process agree on round boundaries without a
+ * network stack. Each participant owns a single counter on its own cache
+ * line recording the latest generation it has reached; a participant passes
+ * the barrier for a given generation once every counter has reached it.
+ * Since each counter has a single writer no atomic operations are needed.
+ * </p>
+ * 
+ * <p>
+ * As with {@link MappedRingBuffer}, the counters are plain buffer accesses,
+ * so the barrier orders the work done before and after it only on hardware
+ * with total store order (x86 and SPARC) running HotSpot.
+ * </p>
+ * 
+ * <p>
+ * Whilst waiting, a participant may be given work to do, typically draining
+ * the rings which other participants write to before arriving, so that a
+ * producer blocked on a full ring can never deadlock the barrier.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class SharedMemoryBarrier {
+
+	protected ByteBuffer buffer;
+
+	protected int offset;
+
+	protected int numParticipants;
+
+	/**
+	 * The maximum time in milliseconds to wait for the other participants
+	 * before giving up, or zero to wait indefinitely.
+	 */
+	protected long timeout = 0;
+
+	public SharedMemoryBarrier(ByteBuffer buffer, int offset,
+			int numParticipants) {
+		if (offset + getRegionSize(numParticipants) > buffer.capacity()) {
+			throw new IllegalArgumentException(
+					"Barrier does not fit in the buffer");
+		}
+		this.buffer = buffer;
+		this.offset = offset;
+		this.numParticipants = numParticipants;
+	}
+
+	/**
+	 * @return the number of bytes needed for a barrier with the given number
+	 *         of participants.
+	 */
+	public static int getRegionSize(int numParticipants) {
+		return numParticipants * MappedRingBuffer.CACHE_LINE;
+	}
+
+	public void reset() {
+		for (int i = 0; i < numParticipants; i++) {
+			buffer.putLong(position(i), 0L);
+		}
+	}
+
+	/**
+	 * Record that the given participant has reached the given generation.
+	 */
+	public void arrive(int participant, long generation) {
+		buffer.putLong(position(participant), generation);
+	}
+
+	/**
+	 * @return true if every participant has reached the given generation.
+	 */
+	public boolean isComplete(long generation) {
+		for (int i = 0; i < numParticipants; i++) {
+			if (getGeneration(i) < generation) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public long getGeneration(int participant) {
+		return buffer.getLong(position(participant));
+	}
+
+	/**
+	 * Arrive at the given generation and wait for all other participants to
+	 * do the same.
+	 * 
+	 * @param participant
+	 *            The index of the calling participant.
+	 * @param generation
+	 *            The generation to wait for, which should increase on each
+	 *            call.
+	 * @param whileWaiting
+	 *            Work to perform repeatedly while waiting, or null.
+	 */
+	public void await(int participant, long generation,
+			Runnable whileWaiting) {
+		arrive(participant, generation);
+		long start = timeout > 0 ? System.currentTimeMillis() : 0;
+		int spins = 0;
+		while (!isComplete(generation)) {
+			if (whileWaiting != null) {
+				whileWaiting.run();
+			}
+			spins = MappedRingBuffer.backoff(spins);
+			if (timeout > 0 && (spins & 0xff) == 0
+					&& System.currentTimeMillis() - start > timeout) {
+				throw new AuctionRuntimeException(
+						"Timed out waiting for generation " + generation
+								+ " of shared memory barrier");
+			}
+			if (Thread.interrupted()) {
+				Thread.currentThread().interrupt();
+				throw new AuctionRuntimeException(
+						"Interrupted whilst waiting at shared memory barrier");
+			}
+		}
+	}
+
+	protected int position(int participant) {
+		return offset + participant * MappedRingBuffer.CACHE_LINE;
+	}
+
+	public int getNumParticipants() {
+		return numParticipants;
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+}
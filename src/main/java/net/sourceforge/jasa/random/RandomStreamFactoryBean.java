@@ -0,0 +1,97 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.random;
+
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.annotation.Required;
+
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * <p>
+ * A Spring factory which gives every bean that refers to it its own
+ * {@link SplitMixRandomEngine} drawn from a shared {@link RandomStreams}.
+ * It can replace a shared <code>prng</code> bean without changing the
+ * beans that use it, for example:
+ * </p>
+ * 
+ * <pre>
+ * &lt;bean id="streams" class="net.sourceforge.jasa.random.RandomStreams"&gt;
+ *     &lt;property name="seed" value="42"/&gt;
+ * &lt;/bean&gt;
+ * 
+ * &lt;bean id="prng" class="net.sourceforge.jasa.random.RandomStreamFactoryBean"&gt;
+ *     &lt;property name="streams" ref="streams"/&gt;
+ *     &lt;property name="purpose" value="strategy"/&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ * 
+ * <p>
+ * The n<sup>th</sup> stream created by a factory has identifier n, so as
+ * long as the container creates beans in the same order, which it does
+ * for a given configuration, each consumer draws the same values in every
+ * run regardless of how many threads the simulation uses.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class RandomStreamFactoryBean implements FactoryBean<RandomEngine> {
+
+	protected RandomStreams streams;
+
+	protected Object purpose = "prng";
+
+	protected long nextId = 0;
+
+	public synchronized RandomEngine getObject() {
+		return streams.getStream(nextId++, purpose);
+	}
+
+	public Class<?> getObjectType() {
+		return SplitMixRandomEngine.class;
+	}
+
+	public boolean isSingleton() {
+		return false;
+	}
+
+	public RandomStreams getStreams() {
+		return streams;
+	}
+
+	@Required
+	public void setStreams(RandomStreams streams) {
+		this.streams = streams;
+	}
+
+	public Object getPurpose() {
+		return purpose;
+	}
+
+	public void setPurpose(Object purpose) {
+		this.purpose = purpose;
+	}
+
+	public long getNextId() {
+		return nextId;
+	}
+
+	public void setNextId(long nextId) {
+		this.nextId = nextId;
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.random;
+
+import java.io.Serializable;
+
+/**
+ * <p>
+ * A source of independent, reproducible random number streams keyed by an
+ * identifier, such as the index of an agent in an
+ * {@link net.sourceforge.jasa.agent.AgentIndex}, and a purpose, such as
+ * "valuation" or "noise". The key of each stream is derived only from the
+ * master seed, the identifier and the purpose, so the values an agent
+ * draws for a given purpose do not depend on the order in which streams
+ * are created, on what other agents draw, or on the number of threads
+ * drawing them.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class RandomStreams implements Serializable {
+
+	protected long seed;
+
+	protected transient SplitMixRandomEngine root;
+
+	public RandomStreams() {
+		this(System.nanoTime());
+	}
+
+	public RandomStreams(long seed) {
+		setSeed(seed);
+	}
+
+	/**
+	 * @return a new stream, positioned at its start, for the specified
+	 *         identifier and purpose.
+	 */
+	public SplitMixRandomEngine getStream(long id, Object purpose) {
+		return getRoot().split(hash(purpose)).split(id);
+	}
+
+	public SplitMixRandomEngine getStream(long id) {
+		return getRoot().split(id);
+	}
+
+	/**
+	 * Fill the specified range with uniform variates in (0, 1) drawn from
+	 * the stream of each identifier in turn, starting at the specified
+	 * position within each stream. The i<sup>th</sup> value is drawn from
+	 * the stream of identifier <code>firstId + i</code>, so that a whole
+	 * population can draw one value each in a single call.
+	 */
+	public void fillAcross(long firstId, Object purpose, long position,
+			double[] values, int offset, int length) {
+		SplitMixRandomEngine purposeRoot = getRoot().split(hash(purpose));
+		for (int i = 0; i < length; i++) {
+			values[offset + i] = purposeRoot.split(firstId + i).doubleAt(position);
+		}
+	}
+
+	protected SplitMixRandomEngine getRoot() {
+		if (root == null) {
+			root = new SplitMixRandomEngine(seed);
+		}
+		return root;
+	}
+
+	/**
+	 * A 64-bit FNV-1a hash of the string form of the purpose, which unlike
+	 * hashCode() is the same for every JVM and has fewer collisions.
+	 */
+	public static long hash(Object purpose) {
+		if (purpose == null) {
+			return 0;
+		}
+		if (purpose instanceof Number) {
+			return ((Number) purpose).longValue();
+		}
+		String text = purpose.toString();
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < text.length(); i++) {
+			h ^= text.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+		this.root = null;
+	}
+
+}
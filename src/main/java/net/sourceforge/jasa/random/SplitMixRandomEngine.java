@@ -0,0 +1,226 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.random;
+
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * <p>
+ * A counter-based pseudo-random number generator in the style of
+ * SplitMix64. The n<sup>th</sup> output of a stream is a fixed bijective
+ * mixing function applied to <code>seed + n * gamma</code>, so each output
+ * depends only on the key of the stream and its position in it. Streams
+ * can therefore be skipped ahead, filled in bulk, or drawn from on any
+ * thread, and always produce the same values.
+ * </p>
+ * 
+ * <p>
+ * Because this class is a colt {@link RandomEngine} it can be used for
+ * any of the existing <code>prng</code> beans and with the colt
+ * distributions. Independent streams for different agents and purposes are
+ * obtained from {@link RandomStreams} or {@link #split(long)}.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class SplitMixRandomEngine extends RandomEngine {
+
+	public static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	public static final double DOUBLE_UNIT = 0x1.0p-53;
+
+	/**
+	 * The starting point of the stream.
+	 */
+	protected long seed;
+
+	/**
+	 * The odd increment between successive states of the stream.
+	 */
+	protected long gamma;
+
+	/**
+	 * The number of values drawn so far.
+	 */
+	protected long counter;
+
+	private static final long serialVersionUID = 1L;
+
+	public SplitMixRandomEngine() {
+		this(System.nanoTime());
+	}
+
+	public SplitMixRandomEngine(long seed) {
+		this(mix64(seed), mixGamma(seed + GOLDEN_GAMMA));
+	}
+
+	public SplitMixRandomEngine(java.util.Date seed) {
+		this(seed.getTime());
+	}
+
+	protected SplitMixRandomEngine(long seed, long gamma) {
+		this.seed = seed;
+		this.gamma = gamma;
+		this.counter = 0;
+	}
+
+	/**
+	 * @return the value at the specified position of this stream, without
+	 *         advancing the stream.
+	 */
+	public long longAt(long position) {
+		return mix64(seed + (position + 1) * gamma);
+	}
+
+	/**
+	 * @return a uniform variate in the open interval (0, 1) at the specified
+	 *         position of this stream.
+	 */
+	public double doubleAt(long position) {
+		return toDouble(longAt(position));
+	}
+
+	@Override
+	public long nextLong() {
+		return longAt(counter++);
+	}
+
+	@Override
+	public int nextInt() {
+		return (int) (nextLong() >>> 32);
+	}
+
+	/**
+	 * A uniform variate in the open interval (0, 1), as required by the colt
+	 * distributions.
+	 */
+	@Override
+	public double nextDouble() {
+		return toDouble(nextLong());
+	}
+
+	@Override
+	public double raw() {
+		return nextDouble();
+	}
+
+	/**
+	 * Fill the specified range with uniform variates in (0, 1).
+	 */
+	public void fill(double[] values, int offset, int length) {
+		long base = counter;
+		for (int i = 0; i < length; i++) {
+			values[offset + i] = toDouble(mix64(seed + (base + i + 1) * gamma));
+		}
+		counter = base + length;
+	}
+
+	/**
+	 * Fill the specified range with uniform variates in (min, max).
+	 */
+	public void fillUniform(double[] values, int offset, int length,
+			double min, double max) {
+		fill(values, offset, length);
+		double range = max - min;
+		for (int i = offset; i < offset + length; i++) {
+			values[i] = min + values[i] * range;
+		}
+	}
+
+	/**
+	 * Fill the specified range with normal variates using the Box-Muller
+	 * transform, which consumes exactly one uniform variate per value drawn
+	 * (rounded up to an even number).
+	 */
+	public void fillNormal(double[] values, int offset, int length,
+			double mean, double standardDeviation) {
+		int end = offset + length;
+		for (int i = offset; i < end; i += 2) {
+			double u1 = nextDouble();
+			double u2 = nextDouble();
+			double r = Math.sqrt(-2.0 * Math.log(u1)) * standardDeviation;
+			double theta = 2.0 * Math.PI * u2;
+			values[i] = mean + r * Math.cos(theta);
+			if (i + 1 < end) {
+				values[i + 1] = mean + r * Math.sin(theta);
+			}
+		}
+	}
+
+	/**
+	 * @return a new, statistically independent stream whose key is derived
+	 *         from the key of this stream and the specified stream number.
+	 *         The state of this stream is not changed.
+	 */
+	public SplitMixRandomEngine split(long stream) {
+		long s = mix64(seed ^ mix64(stream * GOLDEN_GAMMA + gamma));
+		long g = mixGamma(s + stream);
+		return new SplitMixRandomEngine(s, g);
+	}
+
+	public long getCounter() {
+		return counter;
+	}
+
+	/**
+	 * Move this stream to the specified position, eg to skip ahead by the
+	 * number of values another thread will draw.
+	 */
+	public void setCounter(long counter) {
+		this.counter = counter;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public long getGamma() {
+		return gamma;
+	}
+
+	public static double toDouble(long bits) {
+		return ((bits >>> 11) + 0.5) * DOUBLE_UNIT;
+	}
+
+	/**
+	 * The variant 13 finaliser of MurmurHash3 used by SplitMix64.
+	 */
+	public static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Derive an odd increment with a reasonable number of bit transitions,
+	 * following SplittableRandom.
+	 */
+	public static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		int n = Long.bitCount(z ^ (z >>> 1));
+		return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+
+	@Override
+	public String toString() {
+		return "SplitMixRandomEngine [seed=" + seed + ", gamma=" + gamma
+				+ ", counter=" + counter + "]";
+	}
+
+}
@@ -0,0 +1,745 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.replication.zi;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import net.sourceforge.jabm.agent.Agent;
+import net.sourceforge.jabm.learning.Learner;
+import net.sourceforge.jabm.learning.WidrowHoffLearner;
+import net.sourceforge.jabm.learning.WidrowHoffLearnerWithMomentum;
+import net.sourceforge.jasa.agent.TokenTradingAgent;
+import net.sourceforge.jasa.agent.strategy.RandomConstrainedStrategy;
+import net.sourceforge.jasa.agent.strategy.ZIPStrategy;
+import net.sourceforge.jasa.market.Market;
+
+import org.apache.log4j.Logger;
+
+import cern.jet.random.AbstractContinousDistribution;
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * <p>
+ * A specialised engine for parameter sweeps over classic continuous
+ * double-auction experiments populated by
+ * {@link TokenTradingAgent}s using either the ZI-C
+ * ({@link RandomConstrainedStrategy}) or ZIP ({@link ZIPStrategy}) strategy.
+ * </p>
+ * 
+ * <p>
+ * Traders are held as parallel primitive arrays and the CDA is run as a
+ * single loop without events or orders. Standing orders are kept in an 
+ * indexed binary heap for each side of the book, so the best counterparty
+ * is found in constant time. The market rules
+ * mirror a {@link net.sourceforge.jasa.market.MarketSimulation} with a
+ * {@link net.sourceforge.jasa.market.auctioneer.ContinuousDoubleAuctioneer}
+ * and a random-robin agent mixer: in each round every trader arrives once in
+ * a random order, replaces its standing order with a new single-unit order,
+ * and the book is cleared immediately whenever the best bid is at least the
+ * best ask, using k-pricing between the ask and the bid. Entitlements and
+ * the order book are restored at the end of each day. ZIP margins are
+ * adjusted by every other ZIP trader after each shout, using the
+ * Widrow-Hoff rule with momentum.
+ * </p>
+ * 
+ * <p>
+ * Traders copied from a market keep the markup distribution of their ZI-C
+ * strategy, and the initial margin distribution, perturbation scaling and 
+ * learning parameters of their ZIP strategy. Distributions are shared 
+ * with the strategies rather than copied, so they draw from the 
+ * strategies' random number generators.  Results are only equivalent in 
+ * distribution to the object engine; the order in which random numbers are
+ * drawn differs.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class ZIMarketKernel implements Serializable {
+
+	public static final byte ZI_C = 0;
+
+	public static final byte ZIP = 1;
+
+	protected RandomEngine prng;
+
+	protected int numTraders;
+
+	protected boolean[] buyer;
+
+	protected double[] valuation;
+
+	protected int[] initialEntitlement;
+
+	protected int[] entitlement;
+
+	protected byte[] strategy;
+
+	/**
+	 * The current profit margin of each ZIP trader.
+	 */
+	protected double[] margin;
+
+	/**
+	 * The last Widrow-Hoff update of each ZIP trader.
+	 */
+	protected double[] delta;
+
+	protected double[] learningRate;
+
+	protected double[] momentum;
+
+	/**
+	 * The relative perturbation scaling of each ZIP trader.
+	 */
+	protected double[] perturbationScaling;
+
+	/**
+	 * The markup distribution of each ZI-C trader, or null to draw markups
+	 * uniformly from [0, maxMarkup].
+	 */
+	protected AbstractContinousDistribution[] markupDistribution;
+
+	/**
+	 * The initial margin distribution of each ZIP trader, or null to draw
+	 * margins uniformly from [minInitialMargin, maxInitialMargin].
+	 */
+	protected AbstractContinousDistribution[] initialMarginDistribution;
+
+	/**
+	 * The price each ZIP trader will currently shout.
+	 */
+	protected double[] quote;
+
+	/**
+	 * The price of each trader's standing order.
+	 */
+	protected double[] orderPrice;
+
+	/**
+	 * The standing bids, best (highest) first.
+	 */
+	protected OrderHeap bids;
+
+	/**
+	 * The standing asks, best (lowest) first.
+	 */
+	protected OrderHeap asks;
+
+	protected int[] arrivals;
+
+	/**
+	 * The maximum markup drawn by ZI-C traders.
+	 */
+	protected double maxMarkup = 50;
+
+	/**
+	 * Scales the relative perturbation drawn by ZIP traders added without a
+	 * strategy.
+	 */
+	protected double scaling = 0.01;
+
+	protected double maxAbsolutePerturbation = 0.05;
+
+	protected double minInitialMargin = 0.05;
+
+	protected double maxInitialMargin = 0.35;
+
+	/**
+	 * The k parameter of the pricing policy; 0 clears at the ask price.
+	 */
+	protected double k = 0;
+
+	protected int lengthOfDay = 100;
+
+	protected double[] transactionPrices = new double[1024];
+
+	protected int numTransactions;
+
+	protected double[] dailyEfficiency = new double[16];
+
+	protected int day;
+
+	protected double equilibriumSurplus = Double.NaN;
+
+	/**
+	 * The most recent shout and whether it resulted in a transaction, used by
+	 * ZIP traders.
+	 */
+	protected double lastShoutPrice;
+
+	protected boolean lastShoutAccepted;
+
+	protected double lastTransactionPrice;
+
+	static Logger logger = Logger.getLogger(ZIMarketKernel.class);
+
+	public ZIMarketKernel(int capacity, RandomEngine prng) {
+		this.prng = prng;
+		buyer = new boolean[capacity];
+		valuation = new double[capacity];
+		initialEntitlement = new int[capacity];
+		entitlement = new int[capacity];
+		strategy = new byte[capacity];
+		margin = new double[capacity];
+		delta = new double[capacity];
+		learningRate = new double[capacity];
+		momentum = new double[capacity];
+		perturbationScaling = new double[capacity];
+		markupDistribution = new AbstractContinousDistribution[capacity];
+		initialMarginDistribution = new AbstractContinousDistribution[capacity];
+		quote = new double[capacity];
+		orderPrice = new double[capacity];
+		bids = new OrderHeap(orderPrice, true);
+		asks = new OrderHeap(orderPrice, false);
+		arrivals = new int[capacity];
+	}
+
+	/**
+	 * Add a trader to the market.
+	 * 
+	 * @return The index of the new trader.
+	 */
+	public int addTrader(boolean isBuyer, double value, int tradeEntitlement,
+			byte strategyType) {
+		if (numTraders == buyer.length) {
+			throw new IllegalStateException("Kernel capacity of " + numTraders
+					+ " traders exceeded");
+		}
+		int i = numTraders++;
+		buyer[i] = isBuyer;
+		valuation[i] = value;
+		initialEntitlement[i] = tradeEntitlement;
+		strategy[i] = strategyType;
+		learningRate[i] = 0.1;
+		momentum[i] = 0;
+		perturbationScaling[i] = scaling;
+		markupDistribution[i] = null;
+		initialMarginDistribution[i] = null;
+		equilibriumSurplus = Double.NaN;
+		return i;
+	}
+
+	/**
+	 * Add a copy of the specified trader, which must be using either a 
+	 * {@link RandomConstrainedStrategy} or a {@link ZIPStrategy}.
+	 */
+	public int addTrader(TokenTradingAgent agent, Market market) {
+		Object agentStrategy = agent.getStrategy();
+		byte strategyType;
+		if (agentStrategy instanceof ZIPStrategy) {
+			strategyType = ZIP;
+		} else if (agentStrategy instanceof RandomConstrainedStrategy) {
+			strategyType = ZI_C;
+		} else {
+			throw new IllegalArgumentException(
+					"Unsupported strategy " + agentStrategy);
+		}
+		int i = addTrader(agent.isBuyer(market), agent.getValuation(market),
+				agent.getInitialTradeEntitlement(), strategyType);
+		if (strategyType == ZIP) {
+			ZIPStrategy zip = (ZIPStrategy) agentStrategy;
+			perturbationScaling[i] = zip.getScaling();
+			initialMarginDistribution[i] = zip.getInitialMarginDistribution();
+			Learner learner = zip.getLearner();
+			if (learner instanceof WidrowHoffLearner) {
+				learningRate[i] = 
+					((WidrowHoffLearner) learner).getLearningRate();
+			}
+			if (learner instanceof WidrowHoffLearnerWithMomentum) {
+				momentum[i] = 
+					((WidrowHoffLearnerWithMomentum) learner).getMomentum();
+			}
+		} else {
+			markupDistribution[i] = 
+				((RandomConstrainedStrategy) agentStrategy)
+					.getMarkupDistribution();
+		}
+		return i;
+	}
+
+	/**
+	 * Create a kernel populated with copies of all the traders in the
+	 * specified market.
+	 */
+	public static ZIMarketKernel fromMarket(Market market, RandomEngine prng) {
+		ZIMarketKernel kernel = 
+			new ZIMarketKernel(market.getNumberOfTraders(), prng);
+		Iterator<Agent> i = market.getTraderIterator();
+		while (i.hasNext()) {
+			kernel.addTrader((TokenTradingAgent) i.next(), market);
+		}
+		return kernel;
+	}
+
+	/**
+	 * Restore the market to its initial state, discarding all results.
+	 */
+	public void initialise() {
+		numTransactions = 0;
+		day = 0;
+		for (int i = 0; i < numTraders; i++) {
+			delta[i] = 0;
+			if (strategy[i] == ZIP) {
+				double m = initialMarginDistribution[i] != null ? 
+						initialMarginDistribution[i].nextDouble() :
+						uniform(minInitialMargin, maxInitialMargin);
+				margin[i] = buyer[i] ? -m : m;
+				quote[i] = valuation[i];
+				updateQuote(i);
+			}
+		}
+		if (Double.isNaN(equilibriumSurplus)) {
+			equilibriumSurplus = calculateEquilibriumSurplus();
+		}
+	}
+
+	/**
+	 * Run the specified number of trading days from the initial state.
+	 * 
+	 * @return The allocative efficiency of each day.
+	 */
+	public double[] run(int days) {
+		initialise();
+		for (int d = 0; d < days; d++) {
+			runDay();
+		}
+		return getDailyEfficiency();
+	}
+
+	/**
+	 * Run a single trading day.
+	 * 
+	 * @return The allocative efficiency of the day.
+	 */
+	public double runDay() {
+		bids.clear();
+		asks.clear();
+		for (int i = 0; i < numTraders; i++) {
+			entitlement[i] = initialEntitlement[i];
+			arrivals[i] = i;
+		}
+		double surplus = 0;
+		for (int round = 0; round < lengthOfDay; round++) {
+			shuffleArrivals();
+			for (int a = 0; a < numTraders; a++) {
+				surplus += arrive(arrivals[a]);
+			}
+		}
+		double efficiency = surplus / equilibriumSurplus;
+		if (day == dailyEfficiency.length) {
+			dailyEfficiency = Arrays.copyOf(dailyEfficiency, day * 2);
+		}
+		dailyEfficiency[day++] = efficiency;
+		return efficiency;
+	}
+
+	/**
+	 * Process the arrival of the specified trader.
+	 * 
+	 * @return The surplus realised by any resulting transaction.
+	 */
+	protected double arrive(int i) {
+		OrderHeap own = buyer[i] ? bids : asks;
+		OrderHeap opposite = buyer[i] ? asks : bids;
+		own.remove(i);
+		if (entitlement[i] <= 0) {
+			return 0;
+		}
+		double price = shoutPrice(i);
+		double surplus = 0;
+		int counterparty = opposite.peek();
+		lastShoutAccepted = false;
+		lastShoutPrice = price;
+		if (counterparty >= 0) {
+			double other = orderPrice[counterparty];
+			if (buyer[i] ? price >= other : other >= price) {
+				double bid = buyer[i] ? price : other;
+				double ask = buyer[i] ? other : price;
+				double transactionPrice = k * bid + (1 - k) * ask;
+				opposite.remove(counterparty);
+				entitlement[i]--;
+				entitlement[counterparty]--;
+				surplus = buyer[i] ? valuation[i] - valuation[counterparty]
+						: valuation[counterparty] - valuation[i];
+				recordTransaction(transactionPrice);
+				lastShoutAccepted = true;
+				lastTransactionPrice = transactionPrice;
+			}
+		}
+		if (!lastShoutAccepted) {
+			orderPrice[i] = price;
+			own.add(i);
+		}
+		adjustMargins(i);
+		return surplus;
+	}
+
+	protected double shoutPrice(int i) {
+		if (strategy[i] == ZIP) {
+			return quote[i];
+		}
+		double markup = markupDistribution[i] != null ? 
+				markupDistribution[i].nextDouble() : prng.nextDouble() * maxMarkup;
+		double price = buyer[i] ? valuation[i] - markup : valuation[i] + markup;
+		return price > 0 ? price : 0;
+	}
+
+	/**
+	 * Every ZIP trader other than the one which has just shouted updates its
+	 * margin in response to the shout.
+	 */
+	protected void adjustMargins(int shouter) {
+		for (int j = 0; j < numTraders; j++) {
+			if (j != shouter && strategy[j] == ZIP) {
+				adjustMargin(j);
+			}
+		}
+	}
+
+	protected void adjustMargin(int i) {
+		boolean active = entitlement[i] > 0;
+		double target;
+		if (lastShoutAccepted) {
+			double p = lastTransactionPrice;
+			boolean raise = buyer[i] ? quote[i] < p : quote[i] <= p;
+			if (buyer[i]) {
+				if (!raise) {
+					target = p - perturbation(i, p);
+				} else if (active) {
+					target = p + perturbation(i, p);
+				} else {
+					return;
+				}
+			} else {
+				if (raise) {
+					target = p + perturbation(i, p);
+				} else if (active) {
+					target = p - perturbation(i, p);
+				} else {
+					return;
+				}
+			}
+		} else if (active) {
+			double p = lastShoutPrice;
+			target = buyer[i] ? p + perturbation(i, p) : p - perturbation(i, p);
+		} else {
+			return;
+		}
+		double v = valuation[i];
+		double targetMargin = (target - v) / v;
+		double d = momentum[i] * delta[i] + (1 - momentum[i]) 
+				* learningRate[i] * (targetMargin - margin[i]);
+		delta[i] = d;
+		margin[i] += d;
+		updateQuote(i);
+	}
+
+	protected void updateQuote(int i) {
+		double m = margin[i];
+		if ((buyer[i] && m <= 0.0 && m > -1.0) || (!buyer[i] && m >= 0.0)) {
+			quote[i] = valuation[i] * (1 + m);
+		}
+	}
+
+	protected double perturbation(int i, double price) {
+		return prng.nextDouble() * perturbationScaling[i] * price 
+				+ prng.nextDouble() * maxAbsolutePerturbation;
+	}
+
+	protected double uniform(double min, double max) {
+		return min + (max - min) * prng.nextDouble();
+	}
+
+	protected void shuffleArrivals() {
+		for (int i = numTraders - 1; i > 0; i--) {
+			int j = (int) (prng.nextDouble() * (i + 1));
+			int tmp = arrivals[i];
+			arrivals[i] = arrivals[j];
+			arrivals[j] = tmp;
+		}
+	}
+
+	protected void recordTransaction(double price) {
+		if (numTransactions == transactionPrices.length) {
+			transactionPrices = 
+				Arrays.copyOf(transactionPrices, numTransactions * 2);
+		}
+		transactionPrices[numTransactions++] = price;
+	}
+
+	/**
+	 * Calculate the total surplus available in a single day in competitive
+	 * equilibrium by matching units of demand and supply in price order.
+	 */
+	public double calculateEquilibriumSurplus() {
+		int numBids = 0, numAsks = 0;
+		for (int i = 0; i < numTraders; i++) {
+			if (buyer[i]) {
+				numBids += initialEntitlement[i];
+			} else {
+				numAsks += initialEntitlement[i];
+			}
+		}
+		double[] bids = new double[numBids];
+		double[] asks = new double[numAsks];
+		int b = 0, a = 0;
+		for (int i = 0; i < numTraders; i++) {
+			for (int u = 0; u < initialEntitlement[i]; u++) {
+				if (buyer[i]) {
+					bids[b++] = valuation[i];
+				} else {
+					asks[a++] = valuation[i];
+				}
+			}
+		}
+		Arrays.sort(bids);
+		Arrays.sort(asks);
+		double surplus = 0;
+		for (int u = 0; u < Math.min(numBids, numAsks); u++) {
+			double bid = bids[numBids - 1 - u];
+			double ask = asks[u];
+			if (bid < ask) {
+				break;
+			}
+			surplus += bid - ask;
+		}
+		return surplus;
+	}
+
+	public double[] getDailyEfficiency() {
+		return Arrays.copyOf(dailyEfficiency, day);
+	}
+
+	/**
+	 * @return The mean allocative efficiency over all days run so far.
+	 */
+	public double getMeanEfficiency() {
+		double total = 0;
+		for (int d = 0; d < day; d++) {
+			total += dailyEfficiency[d];
+		}
+		return total / day;
+	}
+
+	public double[] getTransactionPrices() {
+		return Arrays.copyOf(transactionPrices, numTransactions);
+	}
+
+	public int getNumTransactions() {
+		return numTransactions;
+	}
+
+	public int getDay() {
+		return day;
+	}
+
+	public int getNumberOfTraders() {
+		return numTraders;
+	}
+
+	public double getEquilibriumSurplus() {
+		return equilibriumSurplus;
+	}
+
+	public double getMargin(int i) {
+		return margin[i];
+	}
+
+	public double getValuation(int i) {
+		return valuation[i];
+	}
+
+	public boolean isBuyer(int i) {
+		return buyer[i];
+	}
+
+	public void setLearningRate(int i, double learningRate) {
+		this.learningRate[i] = learningRate;
+	}
+
+	public void setMomentum(int i, double momentum) {
+		this.momentum[i] = momentum;
+	}
+
+	public RandomEngine getPrng() {
+		return prng;
+	}
+
+	public void setPrng(RandomEngine prng) {
+		this.prng = prng;
+	}
+
+	public double getMaxMarkup() {
+		return maxMarkup;
+	}
+
+	public void setMaxMarkup(double maxMarkup) {
+		this.maxMarkup = maxMarkup;
+	}
+
+	public double getScaling() {
+		return scaling;
+	}
+
+	/**
+	 * Set the perturbation scaling of ZIP traders subsequently added without
+	 * a strategy.
+	 */
+	public void setScaling(double scaling) {
+		this.scaling = scaling;
+	}
+
+	public void setScaling(int i, double scaling) {
+		this.perturbationScaling[i] = scaling;
+	}
+
+	public double getK() {
+		return k;
+	}
+
+	public void setK(double k) {
+		this.k = k;
+	}
+
+	public int getLengthOfDay() {
+		return lengthOfDay;
+	}
+
+	public void setLengthOfDay(int lengthOfDay) {
+		this.lengthOfDay = lengthOfDay;
+	}
+
+	/**
+	 * An indexed binary heap of the traders holding standing orders on one
+	 * side of the book, ordered by the price of their orders. Ties are broken
+	 * by trader index. Each trader holds at most one standing order, so 
+	 * orders are identified by the index of their trader.
+	 */
+	protected static class OrderHeap implements Serializable {
+
+		protected double[] price;
+
+		protected boolean descending;
+
+		protected int[] heap;
+
+		/**
+		 * The position of each trader in the heap, or -1 if it has no
+		 * standing order.
+		 */
+		protected int[] position;
+
+		protected int size;
+
+		public OrderHeap(double[] price, boolean descending) {
+			this.price = price;
+			this.descending = descending;
+			heap = new int[price.length];
+			position = new int[price.length];
+			Arrays.fill(position, -1);
+		}
+
+		/**
+		 * @return The trader holding the best order, or -1 if the heap is
+		 *         empty.
+		 */
+		public int peek() {
+			return size == 0 ? -1 : heap[0];
+		}
+
+		public void add(int i) {
+			heap[size] = i;
+			position[i] = size;
+			siftUp(size++);
+		}
+
+		public void remove(int i) {
+			int p = position[i];
+			if (p < 0) {
+				return;
+			}
+			position[i] = -1;
+			int last = heap[--size];
+			if (p < size) {
+				heap[p] = last;
+				position[last] = p;
+				siftDown(p);
+				siftUp(position[last]);
+			}
+		}
+
+		public void clear() {
+			for (int k = 0; k < size; k++) {
+				position[heap[k]] = -1;
+			}
+			size = 0;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		protected boolean before(int a, int b) {
+			double pa = price[a];
+			double pb = price[b];
+			if (pa == pb) {
+				return a < b;
+			}
+			return descending ? pa > pb : pa < pb;
+		}
+
+		protected void siftUp(int k) {
+			int i = heap[k];
+			while (k > 0) {
+				int parent = (k - 1) >> 1;
+				int p = heap[parent];
+				if (!before(i, p)) {
+					break;
+				}
+				heap[k] = p;
+				position[p] = k;
+				k = parent;
+			}
+			heap[k] = i;
+			position[i] = k;
+		}
+
+		protected void siftDown(int k) {
+			int i = heap[k];
+			int half = size >> 1;
+			while (k < half) {
+				int child = 2 * k + 1;
+				int right = child + 1;
+				if (right < size && before(heap[right], heap[child])) {
+					child = right;
+				}
+				int c = heap[child];
+				if (!before(c, i)) {
+					break;
+				}
+				heap[k] = c;
+				position[c] = k;
+				k = child;
+			}
+			heap[k] = i;
+			position[i] = k;
+		}
+	}
+
+}
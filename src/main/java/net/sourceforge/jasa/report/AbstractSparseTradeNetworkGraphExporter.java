@@ -0,0 +1,180 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import net.sourceforge.jabm.agent.Agent;
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jabm.report.WeightedEdge;
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.util.Pair;
+
+/**
+ * <p>
+ * Base class for exporters which write the trade network as a list of
+ * edges, visiting the edges of the graph directly so that the cost of an
+ * export is proportional to the number of edges rather than the square of
+ * the number of agents.  Vertices are numbered in the order in which they
+ * were first seen, which is fixed for the duration of a simulation.
+ * </p>
+ * 
+ * <p>
+ * In delta mode only the edges which have changed since the previous
+ * export are written: edges which are new, edges on which a transaction
+ * has been recorded since the last export, and edges which have been
+ * removed, which are written with a weight of zero. The weights of the
+ * remaining edges differ from their last exported values only by the decay
+ * factor of the report.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public abstract class AbstractSparseTradeNetworkGraphExporter extends
+		AbstractTradeNetworkGraphExporter {
+
+	protected boolean delta = false;
+
+	protected HashMap<Agent, Integer> vertexIndex = 
+		new HashMap<Agent, Integer>();
+
+	protected ArrayList<Agent> vertices = new ArrayList<Agent>();
+
+	/**
+	 * The end-points of each edge present at the previous export, packed
+	 * into a long, in delta mode.
+	 */
+	protected IdentityHashMap<WeightedEdge, Long> previousEdges = 
+		new IdentityHashMap<WeightedEdge, Long>();
+
+	protected long previousTransactions = -1;
+
+	/**
+	 * A callback used to visit the edges to be exported.
+	 */
+	public interface EdgeVisitor {
+
+		public void visit(int source, int target, double weight);
+	}
+
+	public AbstractSparseTradeNetworkGraphExporter() {
+		super();
+	}
+
+	/**
+	 * Visit every edge to be exported, ie every edge in the graph, or in
+	 * delta mode every edge which has changed since the previous export.
+	 * 
+	 * @return The number of edges visited.
+	 */
+	public int visitEdges(EdgeVisitor visitor) {
+		Graph<Agent, WeightedEdge> graph = tradeNetworkReport.getGraph();
+		for (Agent agent : graph.getVertices()) {
+			getIndex(agent);
+		}
+		long transactions = tradeNetworkReport.getTransactions();
+		IdentityHashMap<WeightedEdge, Long> currentEdges = null;
+		if (delta) {
+			currentEdges = new IdentityHashMap<WeightedEdge, Long>(
+					graph.getEdgeCount() * 2);
+		}
+		int count = 0;
+		for (WeightedEdge edge : graph.getEdges()) {
+			Pair<Agent> endpoints = graph.getEndpoints(edge);
+			int source = getIndex(endpoints.getFirst());
+			int target = getIndex(endpoints.getSecond());
+			if (delta) {
+				currentEdges.put(edge, pack(source, target));
+				if (!hasChanged(edge)) {
+					continue;
+				}
+			}
+			visitor.visit(source, target, edge.getValue());
+			count++;
+		}
+		if (delta) {
+			for (Map.Entry<WeightedEdge, Long> entry : previousEdges
+					.entrySet()) {
+				if (!currentEdges.containsKey(entry.getKey())) {
+					long endpoints = entry.getValue();
+					visitor.visit((int) (endpoints >>> 32), (int) endpoints, 0);
+					count++;
+				}
+			}
+			previousEdges = currentEdges;
+		}
+		previousTransactions = transactions;
+		return count;
+	}
+
+	protected boolean hasChanged(WeightedEdge edge) {
+		if (!previousEdges.containsKey(edge)) {
+			return true;
+		}
+		if (edge instanceof TradeNetworkReport.TransactionList) {
+			return ((TradeNetworkReport.TransactionList) edge).getLastUpdate() 
+					> previousTransactions;
+		}
+		return true;
+	}
+
+	protected int getIndex(Agent agent) {
+		Integer index = vertexIndex.get(agent);
+		if (index == null) {
+			index = vertices.size();
+			vertexIndex.put(agent, index);
+			vertices.add(agent);
+		}
+		return index;
+	}
+
+	protected static long pack(int source, int target) {
+		return ((long) source << 32) | (target & 0xFFFFFFFFL);
+	}
+
+	public int getNumVertices() {
+		return vertices.size();
+	}
+
+	/**
+	 * @return The agents in the order of their vertex numbers.
+	 */
+	public ArrayList<Agent> getVertices() {
+		return vertices;
+	}
+
+	@Override
+	public void initialise(SimEvent event) {
+		super.initialise(event);
+		vertexIndex.clear();
+		vertices.clear();
+		previousEdges.clear();
+		previousTransactions = -1;
+	}
+
+	public boolean isDelta() {
+		return delta;
+	}
+
+	public void setDelta(boolean delta) {
+		this.delta = delta;
+	}
+
+}
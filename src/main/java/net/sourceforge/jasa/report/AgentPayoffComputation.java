@@ -0,0 +1,202 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sourceforge.jabm.agent.Agent;
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jabm.event.SimulationEvent;
+import net.sourceforge.jasa.agent.AbstractTradingAgent;
+import net.sourceforge.jasa.agent.valuation.AbstractRandomValuer;
+import net.sourceforge.jasa.agent.valuation.FixedValuer;
+import net.sourceforge.jasa.agent.valuation.ValuationPolicy;
+import net.sourceforge.jasa.market.Market;
+
+/**
+ * <p>
+ * Summarises the payoffs and valuations of the traders in a market: the
+ * total, mean, standard deviation, minimum and maximum payoff, the mean and
+ * standard deviation of valuations, and, if a
+ * {@link CompetitiveEquilibriumTracker} is configured, the total surplus
+ * available in competitive equilibrium and the resulting efficiency. The
+ * per-agent values are copied into a snapshot on the simulation thread so
+ * that the summary can be computed by an {@link AsynchronousReportVariables}.
+ * </p>
+ * 
+ * <p>
+ * Taking a snapshot must not disturb the simulation, so valuations are only
+ * read from policies which hold a fixed private value ({@link FixedValuer}
+ * and {@link AbstractRandomValuer}). Forecasting policies recompute, and may
+ * draw random numbers for, their valuation each time they are asked, so
+ * their traders are recorded as <code>NaN</code> and left out of the
+ * valuation statistics.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class AgentPayoffComputation implements
+		SnapshotComputation<AgentPayoffComputation.Snapshot>, Serializable {
+
+	protected String name = "payoffs";
+
+	protected CompetitiveEquilibriumTracker equilibriumTracker;
+
+	public Snapshot takeSnapshot(SimEvent event) {
+		Market market = (Market) ((SimulationEvent) event).getSimulation();
+		int n = market.getNumberOfTraders();
+		Snapshot snapshot = new Snapshot(n);
+		Iterator<Agent> traders = market.getTraderIterator();
+		for (int i = 0; i < n && traders.hasNext(); i++) {
+			AbstractTradingAgent agent = (AbstractTradingAgent) traders.next();
+			snapshot.payoffs[i] = agent.getTotalPayoff();
+			snapshot.valuations[i] = getValuation(agent.getValuationPolicy(),
+					market);
+			if (equilibriumTracker != null) {
+				snapshot.equilibriumSurplus += equilibriumTracker
+						.getEquilibriumSurplus(agent);
+			}
+		}
+		if (equilibriumTracker == null) {
+			snapshot.equilibriumSurplus = Double.NaN;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @return The valuation held by the given policy, or <code>NaN</code> if
+	 *         it cannot be read without side effects.
+	 */
+	protected double getValuation(ValuationPolicy policy, Market market) {
+		if (policy instanceof FixedValuer
+				|| policy instanceof AbstractRandomValuer) {
+			return policy.determineValue(market);
+		}
+		return Double.NaN;
+	}
+
+	public Map<Object, Number> compute(Snapshot snapshot) {
+		Map<Object, Number> result = new LinkedHashMap<Object, Number>();
+		double[] payoffs = snapshot.payoffs;
+		double total = 0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < payoffs.length; i++) {
+			total += payoffs[i];
+			min = Math.min(min, payoffs[i]);
+			max = Math.max(max, payoffs[i]);
+		}
+		result.put(name + ".total", total);
+		result.put(name + ".mean", mean(payoffs));
+		result.put(name + ".stdev", standardDeviation(payoffs));
+		result.put(name + ".min", payoffs.length > 0 ? min : Double.NaN);
+		result.put(name + ".max", payoffs.length > 0 ? max : Double.NaN);
+		double[] valuations = known(snapshot.valuations);
+		result.put(name + ".valuation.mean", mean(valuations));
+		result.put(name + ".valuation.stdev", standardDeviation(valuations));
+		result.put(name + ".equilibriumsurplus", snapshot.equilibriumSurplus);
+		result.put(name + ".efficiency", total / snapshot.equilibriumSurplus);
+		return result;
+	}
+
+	protected static double[] known(double[] values) {
+		int n = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (!Double.isNaN(values[i])) {
+				n++;
+			}
+		}
+		if (n == values.length) {
+			return values;
+		}
+		double[] result = new double[n];
+		for (int i = 0, j = 0; i < values.length; i++) {
+			if (!Double.isNaN(values[i])) {
+				result[j++] = values[i];
+			}
+		}
+		return result;
+	}
+
+	protected static double mean(double[] values) {
+		double total = 0;
+		for (int i = 0; i < values.length; i++) {
+			total += values[i];
+		}
+		return total / values.length;
+	}
+
+	protected static double standardDeviation(double[] values) {
+		if (values.length < 2) {
+			return Double.NaN;
+		}
+		double mean = mean(values);
+		double squares = 0;
+		for (int i = 0; i < values.length; i++) {
+			squares += (values[i] - mean) * (values[i] - mean);
+		}
+		return Math.sqrt(squares / (values.length - 1));
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public CompetitiveEquilibriumTracker getEquilibriumTracker() {
+		return equilibriumTracker;
+	}
+
+	public void setEquilibriumTracker(
+			CompetitiveEquilibriumTracker equilibriumTracker) {
+		this.equilibriumTracker = equilibriumTracker;
+	}
+
+	/**
+	 * The state of the traders at the time the snapshot was taken.
+	 */
+	public static class Snapshot {
+
+		protected final double[] payoffs;
+
+		protected final double[] valuations;
+
+		protected double equilibriumSurplus;
+
+		public Snapshot(int numTraders) {
+			payoffs = new double[numTraders];
+			valuations = new double[numTraders];
+		}
+
+		public double[] getPayoffs() {
+			return payoffs;
+		}
+
+		public double[] getValuations() {
+			return valuations;
+		}
+
+		public double getEquilibriumSurplus() {
+			return equilibriumSurplus;
+		}
+	}
+
+}
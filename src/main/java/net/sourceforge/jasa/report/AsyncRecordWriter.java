@@ -0,0 +1,422 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.text.NumberFormat;
+import java.util.concurrent.locks.LockSupport;
+
+import net.sourceforge.jasa.market.AuctionRuntimeException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Writes fixed-width numeric records as CSV on a background thread.
+ * </p>
+ * 
+ * <p>
+ * The simulation thread appends values with {@link #newData(double)} or
+ * {@link #newData(long)}; once a record's columns are complete it is
+ * published to a single-producer, single-consumer ring buffer without
+ * locking or allocation. A background thread drains the ring in batches,
+ * formats the records into a large NIO buffer and writes it to the channel
+ * according to a {@link FlushPolicy}. If the ring is full the producer waits
+ * for the writer to catch up. {@link #drain()} blocks until every published
+ * record has reached the channel, and {@link #close()} drains and stops the
+ * writer; reports should call one of these on the
+ * <code>SimulationFinishedEvent</code>.
+ * </p>
+ * 
+ * <p>
+ * Instances must only be written to from a single thread.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class AsyncRecordWriter implements Runnable {
+
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+	protected final int numColumns;
+
+	/**
+	 * The number of records held in the ring; always a power of two.
+	 */
+	protected final int capacity;
+
+	protected final int mask;
+
+	protected final double[] ring;
+
+	/**
+	 * Whether each value in the ring was written as a whole number, in which
+	 * case it is written without a fractional part.
+	 */
+	protected final boolean[] wholeValues;
+
+	/**
+	 * Columns whose values are written without a fractional part.
+	 */
+	protected final boolean[] integerColumns;
+
+	protected final WritableByteChannel channel;
+
+	protected final ByteBuffer buffer;
+
+	protected final Thread writerThread;
+
+	protected FlushPolicy flushPolicy = new FlushPolicy(10000, 1000);
+
+	/**
+	 * The number of records published by the producer.
+	 */
+	protected volatile long head;
+
+	/**
+	 * The number of records consumed by the writer thread.
+	 */
+	protected volatile long tail;
+
+	/**
+	 * The number of records which have reached the channel.
+	 */
+	protected volatile long written;
+
+	protected volatile boolean closed;
+
+	protected volatile boolean drainRequested;
+
+	protected volatile IOException error;
+
+	/**
+	 * A header line waiting to be written by the writer thread.
+	 */
+	protected volatile String header;
+
+	/**
+	 * Producer-side state.
+	 */
+	protected long nextRecord;
+
+	protected int column;
+
+	protected long cachedTail;
+
+	protected char[] separator = new char[] { ',' };
+
+	protected StringBuilder line = new StringBuilder(256);
+
+	/**
+	 * The format of fractional values, or null to use Double.toString. Only
+	 * used by the writer thread.
+	 */
+	protected NumberFormat format;
+
+	static Logger logger = Logger.getLogger(AsyncRecordWriter.class);
+
+	public AsyncRecordWriter(WritableByteChannel channel, int numColumns,
+			int capacity, int bufferSize) {
+		this.channel = channel;
+		this.numColumns = numColumns;
+		this.capacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		this.mask = this.capacity - 1;
+		this.ring = new double[this.capacity * numColumns];
+		this.wholeValues = new boolean[this.capacity * numColumns];
+		this.integerColumns = new boolean[numColumns];
+		this.buffer = ByteBuffer.allocateDirect(bufferSize);
+		this.writerThread = new Thread(this, getClass().getSimpleName());
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	public AsyncRecordWriter(WritableByteChannel channel, int numColumns) {
+		this(channel, numColumns, DEFAULT_CAPACITY, DEFAULT_BUFFER_SIZE);
+	}
+
+	public AsyncRecordWriter(String filename, int numColumns)
+			throws FileNotFoundException {
+		this(new FileOutputStream(filename).getChannel(), numColumns);
+	}
+
+	/**
+	 * Specify that values in the given column are whole numbers.
+	 */
+	public void setIntegerColumn(int column, boolean isInteger) {
+		integerColumns[column] = isInteger;
+	}
+
+	public void newData(long value) {
+		newData((double) value, true);
+	}
+
+	public void newData(int value) {
+		newData((double) value, true);
+	}
+
+	public void newData(double value) {
+		newData(value, false);
+	}
+
+	protected void newData(double value, boolean whole) {
+		if (column == 0) {
+			awaitCapacity();
+		}
+		int i = ((int) nextRecord & mask) * numColumns + column;
+		ring[i] = value;
+		wholeValues[i] = whole;
+		if (++column == numColumns) {
+			column = 0;
+			head = ++nextRecord;
+		}
+	}
+
+	/**
+	 * Write a line of column names. This must be called before any records
+	 * are written.
+	 */
+	public void writeHeader(String[] names) {
+		if (nextRecord > 0 || column > 0) {
+			throw new AuctionRuntimeException(
+			    "The header must be written before any records");
+		}
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < names.length; i++) {
+			if (i > 0) {
+				result.append(separator);
+			}
+			result.append(names[i]);
+		}
+		result.append('\n');
+		header = result.toString();
+		LockSupport.unpark(writerThread);
+	}
+
+	/**
+	 * Block until all published records have been written to the channel.
+	 */
+	public void drain() {
+		long target = nextRecord;
+		drainRequested = true;
+		while (written < target || header != null) {
+			checkError();
+			if (!writerThread.isAlive()) {
+				throw new AuctionRuntimeException("Record writer has stopped");
+			}
+			LockSupport.unpark(writerThread);
+			LockSupport.parkNanos(100000);
+		}
+		checkError();
+	}
+
+	/**
+	 * Drain all outstanding records, stop the writer thread and close the
+	 * channel.
+	 */
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		LockSupport.unpark(writerThread);
+		try {
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AuctionRuntimeException(e);
+		}
+		checkError();
+	}
+
+	protected void awaitCapacity() {
+		if (nextRecord - cachedTail < capacity) {
+			return;
+		}
+		cachedTail = tail;
+		while (nextRecord - cachedTail >= capacity) {
+			checkError();
+			if (closed) {
+				throw new AuctionRuntimeException("Record writer is closed");
+			}
+			LockSupport.unpark(writerThread);
+			LockSupport.parkNanos(10000);
+			cachedTail = tail;
+		}
+	}
+
+	protected void checkError() {
+		if (error != null) {
+			throw new AuctionRuntimeException(error);
+		}
+	}
+
+	public void run() {
+		try {
+			while (true) {
+				String pendingHeader = header;
+				if (pendingHeader != null) {
+					put(pendingHeader, tail);
+					writeBuffer(tail);
+					header = null;
+				}
+				long available = head;
+				long consumed = tail;
+				if (available > consumed) {
+					format(consumed, available);
+					tail = available;
+					if (flushPolicy.recordsWritten((int) (available - consumed))
+							|| drainRequested) {
+						writeBuffer(available);
+					}
+				} else if (closed) {
+					writeBuffer(available);
+					break;
+				} else {
+					if (drainRequested || flushPolicy.isFlushDue()) {
+						writeBuffer(available);
+					}
+					LockSupport.parkNanos(1000000);
+				}
+			}
+		} catch (IOException e) {
+			logger.error(e.getMessage(), e);
+			error = e;
+		} finally {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.error(e.getMessage(), e);
+				if (error == null) {
+					error = e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Format the records in the range [from, to) into the output buffer.
+	 */
+	protected void format(long from, long to) throws IOException {
+		for (long r = from; r < to; r++) {
+			int offset = ((int) r & mask) * numColumns;
+			line.setLength(0);
+			for (int c = 0; c < numColumns; c++) {
+				if (c > 0) {
+					line.append(separator);
+				}
+				double value = ring[offset + c];
+				if (integerColumns[c] || wholeValues[offset + c]) {
+					line.append((long) value);
+				} else if (format != null) {
+					line.append(format.format(value));
+				} else {
+					line.append(value);
+				}
+			}
+			line.append('\n');
+			put(line, r);
+		}
+	}
+
+	/**
+	 * Copy a line of text into the output buffer, first writing the buffer
+	 * to the channel if there is not enough room.
+	 * 
+	 * @param records
+	 *          The number of records which precede this line.
+	 */
+	protected void put(CharSequence text, long records) throws IOException {
+		if (buffer.remaining() < text.length()) {
+			writeBuffer(records);
+		}
+		for (int i = 0; i < text.length(); i++) {
+			buffer.put((byte) text.charAt(i));
+		}
+	}
+
+	/**
+	 * Write the contents of the output buffer to the channel.
+	 * 
+	 * @param records
+	 *          The number of records which will have been written once the
+	 *          buffer is empty.
+	 */
+	protected void writeBuffer(long records) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+		flushPolicy.flushed();
+		written = records;
+		if (records >= head) {
+			drainRequested = false;
+		}
+	}
+
+	public FlushPolicy getFlushPolicy() {
+		return flushPolicy;
+	}
+
+	/**
+	 * Configure the flush policy; this should be done before any records are
+	 * written.
+	 */
+	public void setFlushPolicy(FlushPolicy flushPolicy) {
+		this.flushPolicy = flushPolicy;
+	}
+
+	public NumberFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * Configure the format of fractional values; this should be done before
+	 * any records are written. The writer thread uses its own copy of the
+	 * format, since formats are not thread-safe.
+	 */
+	public void setFormat(NumberFormat format) {
+		this.format = format == null ? null : (NumberFormat) format.clone();
+	}
+
+	public void setSeparator(char separator) {
+		this.separator = new char[] { separator };
+	}
+
+	public int getNumColumns() {
+		return numColumns;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getRecordsWritten() {
+		return written;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+}
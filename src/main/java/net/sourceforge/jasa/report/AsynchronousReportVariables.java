@@ -0,0 +1,296 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jabm.event.SimulationEvent;
+import net.sourceforge.jabm.event.SimulationFinishedEvent;
+import net.sourceforge.jabm.report.ReportVariables;
+import net.sourceforge.jasa.event.EndOfDayEvent;
+import net.sourceforge.jasa.market.AuctionRuntimeException;
+
+import org.apache.log4j.Logger;
+import org.jfree.data.time.Millisecond;
+import org.jfree.data.time.TimePeriodValue;
+
+/**
+ * <p>
+ * Performs a {@link SnapshotComputation} on a pool of worker threads so
+ * that the simulation does not wait for expensive reports. Each time this
+ * report is computed a snapshot is taken on the simulation thread and the
+ * computation is submitted to the pool; the simulation then carries on.
+ * </p>
+ * 
+ * <p>
+ * Results are published strictly in the order in which the snapshots were
+ * taken, and each result is published exactly once: if
+ * <code>publishToBoard</code> is set, a result is posted to the
+ * {@link ReportVariableBoard} once all earlier results have been posted.
+ * {@link #getVariableBindings()} never waits: it returns the bindings of the
+ * most recent result which has been published, and so may lag behind the
+ * latest snapshot. Outstanding computations are only waited for at the end
+ * of each trading day, when the simulation finishes and when the report is
+ * disposed, so that the bindings seen at those points are the same as a
+ * synchronous computation would have produced. At most
+ * <code>maxPending</code> computations can be outstanding, after which the
+ * simulation waits for the oldest.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class AsynchronousReportVariables implements ReportVariables,
+		Serializable {
+
+	protected SnapshotComputation<Object> computation;
+
+	protected transient ExecutorService executor;
+
+	protected int maxPending = 64;
+
+	protected boolean publishToBoard = false;
+
+	protected transient LinkedList<PendingResult> pending;
+
+	protected Map<Object, Number> latest = new LinkedHashMap<Object, Number>();
+
+	protected long published;
+
+	protected static ExecutorService defaultExecutor;
+
+	static Logger logger = Logger.getLogger(AsynchronousReportVariables.class);
+
+	public AsynchronousReportVariables() {
+	}
+
+	@SuppressWarnings("unchecked")
+	public AsynchronousReportVariables(SnapshotComputation<?> computation) {
+		this.computation = (SnapshotComputation<Object>) computation;
+	}
+
+	@Override
+	public void compute(SimEvent event) {
+		final long tick = getTick(event);
+		final Object snapshot = computation.takeSnapshot(event);
+		Future<Map<Object, Number>> future = getExecutor().submit(
+				new Callable<Map<Object, Number>>() {
+					public Map<Object, Number> call() {
+						return computation.compute(snapshot);
+					}
+				});
+		getPending().add(new PendingResult(tick, future));
+		publishCompleted(false);
+		while (getPending().size() > maxPending) {
+			publishNext();
+		}
+	}
+
+	/**
+	 * Publish results from the head of the queue.
+	 * 
+	 * @param wait
+	 *            If true, wait for all outstanding results, otherwise stop
+	 *            at the first result which is not yet available.
+	 */
+	protected void publishCompleted(boolean wait) {
+		LinkedList<PendingResult> queue = getPending();
+		while (!queue.isEmpty() && (wait || queue.getFirst().future.isDone())) {
+			publishNext();
+		}
+	}
+
+	protected void publishNext() {
+		PendingResult next = getPending().removeFirst();
+		Map<Object, Number> result;
+		try {
+			result = next.future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AuctionRuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new AuctionRuntimeException(e.getCause());
+		}
+		Map<Object, Number> bindings = new LinkedHashMap<Object, Number>();
+		bindings.put(getName() + ".t", next.tick);
+		bindings.putAll(result);
+		latest = bindings;
+		published++;
+		if (publishToBoard) {
+			publish(bindings, next.physicalTime);
+		}
+	}
+
+	protected void publish(Map<Object, Number> bindings, long physicalTime) {
+		ReportVariableBoard board = ReportVariableBoard.getInstance();
+		Millisecond time = new Millisecond(new Date(physicalTime));
+		for (Map.Entry<Object, Number> binding : bindings.entrySet()) {
+			double value = binding.getValue().doubleValue();
+			if (!Double.isNaN(value)) {
+				board.reportValue(binding.getKey().toString(),
+						new TimePeriodValue(time, value));
+			}
+		}
+	}
+
+	protected long getTick(SimEvent event) {
+		if (event instanceof SimulationEvent) {
+			return ((SimulationEvent) event).getSimulation()
+					.getSimulationTime().getTicks();
+		}
+		return published + getPending().size();
+	}
+
+	/**
+	 * @return The queue of outstanding computations, which is created on
+	 *         demand since it is not serialized.
+	 */
+	protected LinkedList<PendingResult> getPending() {
+		if (pending == null) {
+			pending = new LinkedList<PendingResult>();
+		}
+		return pending;
+	}
+
+	/**
+	 * Wait for all outstanding computations and publish their results.
+	 */
+	public void flush() {
+		publishCompleted(true);
+	}
+
+	/**
+	 * Return the bindings of the most recently published result without
+	 * waiting for outstanding computations; call {@link #flush()} first if
+	 * the bindings must reflect the latest snapshot.
+	 */
+	@Override
+	public Map<Object, Number> getVariableBindings() {
+		publishCompleted(false);
+		return latest;
+	}
+
+	@Override
+	public void dispose(SimEvent event) {
+		flush();
+	}
+
+	@Override
+	public void initialise(SimEvent event) {
+		flush();
+		latest = new LinkedHashMap<Object, Number>();
+		published = 0;
+	}
+
+	@Override
+	public void eventOccurred(SimEvent event) {
+		if (event instanceof EndOfDayEvent
+				|| event instanceof SimulationFinishedEvent) {
+			flush();
+		}
+	}
+
+	@Override
+	public String getName() {
+		return computation.getName();
+	}
+
+	public ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = getDefaultExecutor();
+		}
+		return executor;
+	}
+
+	/**
+	 * @return A shared pool of daemon threads, one fewer than the number
+	 *         of available processors.
+	 */
+	public static synchronized ExecutorService getDefaultExecutor() {
+		if (defaultExecutor == null) {
+			int threads = Math.max(1, Runtime.getRuntime()
+					.availableProcessors() - 1);
+			defaultExecutor = Executors.newFixedThreadPool(threads,
+					new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "report-worker");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return defaultExecutor;
+	}
+
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	public SnapshotComputation<?> getComputation() {
+		return computation;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void setComputation(SnapshotComputation<?> computation) {
+		this.computation = (SnapshotComputation<Object>) computation;
+	}
+
+	public int getMaxPending() {
+		return maxPending;
+	}
+
+	public void setMaxPending(int maxPending) {
+		this.maxPending = maxPending;
+	}
+
+	public boolean isPublishToBoard() {
+		return publishToBoard;
+	}
+
+	public void setPublishToBoard(boolean publishToBoard) {
+		this.publishToBoard = publishToBoard;
+	}
+
+	public int getNumberPending() {
+		return getPending().size();
+	}
+
+	protected static class PendingResult {
+
+		long tick;
+
+		long physicalTime = System.currentTimeMillis();
+
+		Future<Map<Object, Number>> future;
+
+		PendingResult(long tick, Future<Map<Object, Number>> future) {
+			this.tick = tick;
+			this.future = future;
+		}
+	}
+
+}
@@ -15,20 +15,25 @@
 
 package net.sourceforge.jasa.report;
 
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 
 import net.sourceforge.jabm.report.DataWriter;
-import net.sourceforge.jasa.market.AscendingOrderComparator;
-import net.sourceforge.jasa.market.DescendingOrderComparator;
+import net.sourceforge.jasa.market.FourHeapOrderBook;
 import net.sourceforge.jasa.market.Market;
 import net.sourceforge.jasa.market.Order;
+import net.sourceforge.jasa.market.OrderBook;
+import net.sourceforge.jasa.market.PriceLevelTree;
+import net.sourceforge.jasa.market.auctioneer.AbstractAuctioneer;
+import net.sourceforge.jasa.market.auctioneer.Auctioneer;
 
 import org.apache.log4j.Logger;
 
 
 /**
+ * Writes the supply and demand curves of the orders currently in the book.
+ * When the book is a {@link FourHeapOrderBook} it is asked to maintain its
+ * curves incrementally, and they are then written directly in O(levels);
+ * otherwise the curves are rebuilt from the book each time.
  * 
  * @author Steve Phelps
  * @version $Revision$
@@ -53,26 +58,67 @@ public class AuctionStateStats extends SupplyAndDemandStats {
 		super(auction, supplyStats, demandStats);
 	}
 
-	public void writeSupplyStats() {
-		Iterator<Order> i = auction.getAuctioneer().askIterator();
-		List<Order> asks = new ArrayList<Order>();
-		while (i.hasNext()) {
-			Order ask = i.next();
-			assert ask.isAsk();
-			asks.add(ask);
+	/**
+	 * @return The order book of the market if it maintains cumulative
+	 *         curves, or null otherwise.
+	 */
+	protected FourHeapOrderBook getCurveBook() {
+		Auctioneer auctioneer = auction.getAuctioneer();
+		if (auctioneer instanceof AbstractAuctioneer) {
+			OrderBook book = ((AbstractAuctioneer) auctioneer).getOrderBook();
+			if (book instanceof FourHeapOrderBook) {
+				FourHeapOrderBook fourHeapBook = (FourHeapOrderBook) book;
+				if (!fourHeapBook.isMaintainCurves()) {
+					fourHeapBook.setMaintainCurves(true);
+				}
+				return fourHeapBook;
+			}
 		}
-		writeStats(supplyStats, asks, new AscendingOrderComparator());
+		return null;
+	}
+
+	public void writeSupplyStats() {
+		writeStats(supplyStats, getSupplyCurve(), false);
 	}
 
 	public void writeDemandStats() {
-		Iterator<Order> i = auction.getAuctioneer().bidIterator();
-		List<Order> bids = new ArrayList<Order>();
-		while (i.hasNext()) {
-			Order bid = i.next();
-			assert bid.isBid();
-			bids.add(bid);
+		writeStats(demandStats, getDemandCurve(), true);
+	}
+
+	/**
+	 * @return The supply curve maintained by the order book, or if the book
+	 *         does not maintain curves a curve built from its asks.
+	 */
+	@Override
+	public PriceLevelTree getSupplyCurve() {
+		FourHeapOrderBook book = getCurveBook();
+		if (book != null) {
+			return book.getSupplyCurve();
+		}
+		supplyCurve.clear();
+		for (Iterator<Order> i = auction.getAuctioneer().askIterator(); i
+				.hasNext();) {
+			supplyCurve.add(i.next());
+		}
+		return supplyCurve;
+	}
+
+	/**
+	 * @return The demand curve maintained by the order book, or if the book
+	 *         does not maintain curves a curve built from its bids.
+	 */
+	@Override
+	public PriceLevelTree getDemandCurve() {
+		FourHeapOrderBook book = getCurveBook();
+		if (book != null) {
+			return book.getDemandCurve();
+		}
+		demandCurve.clear();
+		for (Iterator<Order> i = auction.getAuctioneer().bidIterator(); i
+				.hasNext();) {
+			demandCurve.add(i.next());
 		}
-		writeStats(demandStats, bids, new DescendingOrderComparator());
+		return demandCurve;
 	}
 
 	@Override
@@ -0,0 +1,192 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Map;
+
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jabm.report.ReportVariables;
+import net.sourceforge.jasa.market.AuctionRuntimeException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * A decorator which records the variables of the underlying report in the
+ * columnar binary format written by {@link ColumnarTimeSeriesWriter}, as a
+ * compact alternative to CSV output. The columns are taken from the
+ * variable bindings of the first record; variables bound to Integer or Long
+ * values are stored as int or long columns, and all others as doubles. The
+ * bindings of the underlying report are passed through unchanged.
+ * </p>
+ * 
+ * <p>
+ * A new file named <i>prefix</i><i>suffix</i>-<i>n</i><i>extension</i> is
+ * written for each simulation, and is closed when the report is disposed.
+ * Files can be converted to CSV with {@link ColumnarTimeSeriesExport}.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class ColumnarReportVariables implements ReportVariables, Serializable {
+
+	protected ReportVariables reportVariables;
+
+	protected Object fileNamePrefix = "";
+
+	protected Object fileNameSuffix = "";
+
+	protected String fileNameExtension = ".jts";
+
+	protected int blockSize = ColumnarTimeSeriesWriter.DEFAULT_BLOCK_SIZE;
+
+	protected transient ColumnarTimeSeriesWriter writer;
+
+	protected ArrayList<Object> columns = new ArrayList<Object>();
+
+	protected int fileNumber = 0;
+
+	static Logger logger = Logger.getLogger(ColumnarReportVariables.class);
+
+	public ColumnarReportVariables() {
+	}
+
+	public ColumnarReportVariables(ReportVariables reportVariables) {
+		this.reportVariables = reportVariables;
+	}
+
+	@Override
+	public void compute(SimEvent event) {
+		reportVariables.compute(event);
+		Map<Object, Number> bindings = reportVariables.getVariableBindings();
+		if (writer == null) {
+			open(bindings);
+		}
+		for (int c = 0; c < columns.size(); c++) {
+			Number value = bindings.get(columns.get(c));
+			if (value == null) {
+				writer.newData(Double.NaN);
+			} else if (value instanceof Integer || value instanceof Long) {
+				writer.newData(value.longValue());
+			} else {
+				writer.newData(value.doubleValue());
+			}
+		}
+	}
+
+	protected void open(Map<Object, Number> bindings) {
+		columns.clear();
+		columns.addAll(bindings.keySet());
+		String[] names = new String[columns.size()];
+		byte[] types = new byte[columns.size()];
+		for (int c = 0; c < names.length; c++) {
+			Object key = columns.get(c);
+			Number value = bindings.get(key);
+			names[c] = key.toString();
+			if (value instanceof Integer) {
+				types[c] = ColumnarTimeSeriesCodec.INT;
+			} else if (value instanceof Long) {
+				types[c] = ColumnarTimeSeriesCodec.LONG;
+			} else {
+				types[c] = ColumnarTimeSeriesCodec.DOUBLE;
+			}
+		}
+		String fileName = "" + fileNamePrefix + fileNameSuffix + "-"
+				+ fileNumber++ + fileNameExtension;
+		logger.info("Writing columnar time series to " + fileName);
+		try {
+			writer = new ColumnarTimeSeriesWriter(new FileOutputStream(fileName),
+					names, types, blockSize);
+		} catch (IOException e) {
+			throw new AuctionRuntimeException(e);
+		}
+	}
+
+	@Override
+	public void dispose(SimEvent event) {
+		reportVariables.dispose(event);
+		if (writer != null) {
+			writer.close();
+			writer = null;
+		}
+	}
+
+	@Override
+	public void initialise(SimEvent event) {
+		reportVariables.initialise(event);
+	}
+
+	@Override
+	public void eventOccurred(SimEvent event) {
+		reportVariables.eventOccurred(event);
+	}
+
+	@Override
+	public Map<Object, Number> getVariableBindings() {
+		return reportVariables.getVariableBindings();
+	}
+
+	@Override
+	public String getName() {
+		return reportVariables.getName();
+	}
+
+	public ReportVariables getReportVariables() {
+		return reportVariables;
+	}
+
+	public void setReportVariables(ReportVariables reportVariables) {
+		this.reportVariables = reportVariables;
+	}
+
+	public Object getFileNamePrefix() {
+		return fileNamePrefix;
+	}
+
+	public void setFileNamePrefix(Object fileNamePrefix) {
+		this.fileNamePrefix = fileNamePrefix;
+	}
+
+	public Object getFileNameSuffix() {
+		return fileNameSuffix;
+	}
+
+	public void setFileNameSuffix(Object fileNameSuffix) {
+		this.fileNameSuffix = fileNameSuffix;
+	}
+
+	public String getFileNameExtension() {
+		return fileNameExtension;
+	}
+
+	public void setFileNameExtension(String fileNameExtension) {
+		this.fileNameExtension = fileNameExtension;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	public void setBlockSize(int blockSize) {
+		this.blockSize = blockSize;
+	}
+
+}
@@ -0,0 +1,272 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Block compression used by the columnar time-series format. Integer columns
+ * are encoded as delta-of-deltas with a variable-length bit prefix, so that
+ * regularly spaced ticks cost a single bit per row. Double columns are
+ * encoded by XOR-ing each value with its predecessor and storing only the
+ * meaningful bits, so that slowly changing prices compress well.
+ * </p>
+ * 
+ * @see ColumnarTimeSeriesWriter
+ * @see ColumnarTimeSeriesReader
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class ColumnarTimeSeriesCodec {
+
+	public static final byte INT = 0;
+
+	public static final byte LONG = 1;
+
+	public static final byte DOUBLE = 2;
+
+	public static final int MAGIC = 0x4a545343;
+
+	public static final int VERSION = 1;
+
+	public static String typeName(byte type) {
+		switch (type) {
+		case INT:
+			return "int";
+		case LONG:
+			return "long";
+		case DOUBLE:
+			return "double";
+		default:
+			throw new IllegalArgumentException("Unknown column type " + type);
+		}
+	}
+
+	public static void encode(byte type, long[] values, int n, BitOutput out) {
+		if (type == DOUBLE) {
+			encodeDoubles(values, n, out);
+		} else {
+			encodeIntegers(values, n, out);
+		}
+	}
+
+	public static void decode(byte type, BitInput in, long[] values, int n) {
+		if (type == DOUBLE) {
+			decodeDoubles(in, values, n);
+		} else {
+			decodeIntegers(in, values, n);
+		}
+	}
+
+	public static void encodeIntegers(long[] values, int n, BitOutput out) {
+		long previous = 0;
+		long previousDelta = 0;
+		for (int i = 0; i < n; i++) {
+			long delta = values[i] - previous;
+			long dod = delta - previousDelta;
+			if (i == 0) {
+				out.writeBits(values[0], 64);
+			} else if (dod == 0) {
+				out.writeBits(0, 1);
+			} else if (dod >= -64 && dod <= 63) {
+				out.writeBits(0x2, 2);
+				out.writeBits(dod, 7);
+			} else if (dod >= -256 && dod <= 255) {
+				out.writeBits(0x6, 3);
+				out.writeBits(dod, 9);
+			} else if (dod >= -2048 && dod <= 2047) {
+				out.writeBits(0xe, 4);
+				out.writeBits(dod, 12);
+			} else {
+				out.writeBits(0xf, 4);
+				out.writeBits(dod, 64);
+			}
+			previousDelta = i == 0 ? 0 : delta;
+			previous = values[i];
+		}
+	}
+
+	public static void decodeIntegers(BitInput in, long[] values, int n) {
+		long previous = 0;
+		long previousDelta = 0;
+		for (int i = 0; i < n; i++) {
+			if (i == 0) {
+				values[0] = in.readBits(64);
+				previous = values[0];
+				continue;
+			}
+			long dod;
+			if (in.readBits(1) == 0) {
+				dod = 0;
+			} else if (in.readBits(1) == 0) {
+				dod = in.readSignedBits(7);
+			} else if (in.readBits(1) == 0) {
+				dod = in.readSignedBits(9);
+			} else if (in.readBits(1) == 0) {
+				dod = in.readSignedBits(12);
+			} else {
+				dod = in.readBits(64);
+			}
+			long delta = previousDelta + dod;
+			values[i] = previous + delta;
+			previousDelta = delta;
+			previous = values[i];
+		}
+	}
+
+	/**
+	 * Encode raw double bits as produced by Double.doubleToRawLongBits.
+	 */
+	public static void encodeDoubles(long[] bits, int n, BitOutput out) {
+		long previous = 0;
+		int leading = -1;
+		int trailing = 0;
+		for (int i = 0; i < n; i++) {
+			if (i == 0) {
+				out.writeBits(bits[0], 64);
+				previous = bits[0];
+				continue;
+			}
+			long xor = bits[i] ^ previous;
+			if (xor == 0) {
+				out.writeBits(0, 1);
+			} else {
+				int lz = Math.min(Long.numberOfLeadingZeros(xor), 31);
+				int tz = Long.numberOfTrailingZeros(xor);
+				if (leading >= 0 && lz >= leading && tz >= trailing) {
+					out.writeBits(0x2, 2);
+					out.writeBits(xor >>> trailing, 64 - leading - trailing);
+				} else {
+					int significant = 64 - lz - tz;
+					out.writeBits(0x3, 2);
+					out.writeBits(lz, 5);
+					out.writeBits(significant & 0x3f, 6);
+					out.writeBits(xor >>> tz, significant);
+					leading = lz;
+					trailing = tz;
+				}
+			}
+			previous = bits[i];
+		}
+	}
+
+	public static void decodeDoubles(BitInput in, long[] bits, int n) {
+		long previous = 0;
+		int leading = 0;
+		int trailing = 0;
+		for (int i = 0; i < n; i++) {
+			if (i == 0) {
+				bits[0] = in.readBits(64);
+				previous = bits[0];
+				continue;
+			}
+			if (in.readBits(1) == 0) {
+				bits[i] = previous;
+				continue;
+			}
+			if (in.readBits(1) == 1) {
+				leading = (int) in.readBits(5);
+				int significant = (int) in.readBits(6);
+				if (significant == 0) {
+					significant = 64;
+				}
+				trailing = 64 - leading - significant;
+			}
+			long xor = in.readBits(64 - leading - trailing) << trailing;
+			bits[i] = previous ^ xor;
+			previous = bits[i];
+		}
+	}
+
+	/**
+	 * Accumulates bits into a growable byte array.
+	 */
+	public static class BitOutput {
+
+		protected byte[] bytes = new byte[4096];
+
+		protected int bitPosition;
+
+		public void writeBits(long value, int n) {
+			ensureCapacity(bitPosition + n);
+			for (int i = n - 1; i >= 0; i--) {
+				if (((value >>> i) & 1L) != 0) {
+					bytes[bitPosition >>> 3] |= (byte) (0x80 >>> (bitPosition & 7));
+				}
+				bitPosition++;
+			}
+		}
+
+		protected void ensureCapacity(int bits) {
+			int required = (bits + 7) >>> 3;
+			if (required > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+			}
+		}
+
+		public int getLengthInBytes() {
+			return (bitPosition + 7) >>> 3;
+		}
+
+		public byte[] getBytes() {
+			return bytes;
+		}
+
+		public void clear() {
+			Arrays.fill(bytes, 0, getLengthInBytes(), (byte) 0);
+			bitPosition = 0;
+		}
+
+	}
+
+	/**
+	 * Reads bits from a region of a (possibly memory-mapped) buffer.
+	 */
+	public static class BitInput {
+
+		protected ByteBuffer buffer;
+
+		protected int offset;
+
+		protected long bitPosition;
+
+		public BitInput(ByteBuffer buffer, int offset) {
+			this.buffer = buffer;
+			this.offset = offset;
+		}
+
+		public long readBits(int n) {
+			long result = 0;
+			for (int i = 0; i < n; i++) {
+				int b = buffer.get(offset + (int) (bitPosition >>> 3));
+				int bit = (b >>> (7 - (int) (bitPosition & 7))) & 1;
+				result = (result << 1) | bit;
+				bitPosition++;
+			}
+			return result;
+		}
+
+		public long readSignedBits(int n) {
+			long value = readBits(n);
+			return (value << (64 - n)) >> (64 - n);
+		}
+
+	}
+
+}
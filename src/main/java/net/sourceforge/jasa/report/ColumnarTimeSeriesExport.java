@@ -0,0 +1,99 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Command-line tool to convert a file written by
+ * {@link ColumnarTimeSeriesWriter} into CSV. Usage:
+ * 
+ * <pre>
+ * java net.sourceforge.jasa.report.ColumnarTimeSeriesExport input [output.csv]
+ * </pre>
+ * 
+ * If no output file is given the CSV is written to standard output.
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class ColumnarTimeSeriesExport {
+
+	public static void export(ColumnarTimeSeriesReader reader, Writer out)
+			throws IOException {
+		int numColumns = reader.getNumColumns();
+		String[] names = reader.getColumnNames();
+		byte[] types = reader.getColumnTypes();
+		for (int c = 0; c < numColumns; c++) {
+			if (c > 0) {
+				out.write(',');
+			}
+			out.write(names[c]);
+		}
+		out.write('\n');
+		long[][] block = new long[numColumns][reader.maxBlockRows()];
+		StringBuilder line = new StringBuilder();
+		for (int b = 0; b < reader.getNumBlocks(); b++) {
+			MappedByteBuffer mapped = reader.mapBlock(b);
+			int rows = 0;
+			for (int c = 0; c < numColumns; c++) {
+				rows = reader.readBlock(mapped, b, c, block[c]);
+			}
+			for (int r = 0; r < rows; r++) {
+				line.setLength(0);
+				for (int c = 0; c < numColumns; c++) {
+					if (c > 0) {
+						line.append(',');
+					}
+					if (types[c] == ColumnarTimeSeriesCodec.DOUBLE) {
+						line.append(Double.longBitsToDouble(block[c][r]));
+					} else {
+						line.append(block[c][r]);
+					}
+				}
+				line.append('\n');
+				out.write(line.toString());
+			}
+		}
+		out.flush();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: ColumnarTimeSeriesExport input [output.csv]");
+			System.exit(1);
+		}
+		ColumnarTimeSeriesReader reader = new ColumnarTimeSeriesReader(args[0]);
+		Writer out;
+		if (args.length > 1) {
+			out = new BufferedWriter(new FileWriter(args[1]));
+		} else {
+			out = new BufferedWriter(new OutputStreamWriter(System.out));
+		}
+		try {
+			export(reader, out);
+		} finally {
+			out.close();
+			reader.close();
+		}
+	}
+
+}
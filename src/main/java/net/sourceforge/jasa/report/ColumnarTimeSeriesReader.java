@@ -0,0 +1,242 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import net.sourceforge.jasa.report.ColumnarTimeSeriesCodec.BitInput;
+
+/**
+ * <p>
+ * Reads files written by {@link ColumnarTimeSeriesWriter}. The footer is read
+ * on construction; blocks are memory-mapped on demand and decoded one column
+ * at a time, so that large files can be processed block by block without
+ * reading them into memory.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class ColumnarTimeSeriesReader {
+
+	protected RandomAccessFile file;
+
+	protected FileChannel channel;
+
+	protected String[] names;
+
+	protected byte[] types;
+
+	protected long[] blockOffsets;
+
+	protected int[] blockRows;
+
+	/**
+	 * The compressed length of each column in each block, indexed by block
+	 * then column.
+	 */
+	protected int[][] columnLengths;
+
+	protected long numRows;
+
+	public ColumnarTimeSeriesReader(File file) throws IOException {
+		this.file = new RandomAccessFile(file, "r");
+		this.channel = this.file.getChannel();
+		readFooter();
+	}
+
+	public ColumnarTimeSeriesReader(String filename) throws IOException {
+		this(new File(filename));
+	}
+
+	protected void readFooter() throws IOException {
+		long size = channel.size();
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 8);
+		checkMagic(header.getInt());
+		int version = header.getInt();
+		if (version != ColumnarTimeSeriesCodec.VERSION) {
+			throw new IOException("Unsupported version " + version);
+		}
+		ByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, size - 12,
+				12);
+		long footerOffset = tail.getLong();
+		checkMagic(tail.getInt());
+		ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY,
+				footerOffset, size - 12 - footerOffset);
+		int numColumns = footer.getInt();
+		names = new String[numColumns];
+		types = new byte[numColumns];
+		for (int c = 0; c < numColumns; c++) {
+			types[c] = footer.get();
+			names[c] = readUTF(footer);
+		}
+		int numBlocks = footer.getInt();
+		blockOffsets = new long[numBlocks];
+		blockRows = new int[numBlocks];
+		columnLengths = new int[numBlocks][numColumns];
+		numRows = 0;
+		for (int b = 0; b < numBlocks; b++) {
+			blockOffsets[b] = footer.getLong();
+			blockRows[b] = footer.getInt();
+			for (int c = 0; c < numColumns; c++) {
+				columnLengths[b][c] = footer.getInt();
+			}
+			numRows += blockRows[b];
+		}
+	}
+
+	protected void checkMagic(int magic) throws IOException {
+		if (magic != ColumnarTimeSeriesCodec.MAGIC) {
+			throw new IOException("Not a columnar time-series file");
+		}
+	}
+
+	protected String readUTF(ByteBuffer buffer) throws IOException {
+		int length = buffer.getShort() & 0xffff;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	/**
+	 * Memory-map the specified block.
+	 */
+	public MappedByteBuffer mapBlock(int block) throws IOException {
+		long length = 0;
+		for (int c = 0; c < names.length; c++) {
+			length += columnLengths[block][c];
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, blockOffsets[block],
+				length);
+	}
+
+	/**
+	 * Decode a single column of a block into the supplied array. Doubles are
+	 * returned as raw long bits.
+	 * 
+	 * @return The number of rows decoded.
+	 */
+	public int readBlock(int block, int column, long[] values)
+			throws IOException {
+		return readBlock(mapBlock(block), block, column, values);
+	}
+
+	protected int readBlock(ByteBuffer mapped, int block, int column,
+			long[] values) {
+		int offset = 0;
+		for (int c = 0; c < column; c++) {
+			offset += columnLengths[block][c];
+		}
+		int rows = blockRows[block];
+		ColumnarTimeSeriesCodec.decode(types[column],
+				new BitInput(mapped, offset), values, rows);
+		return rows;
+	}
+
+	/**
+	 * Decode an entire integer column.
+	 */
+	public long[] readLongColumn(int column) throws IOException {
+		long[] result = new long[checkedRows()];
+		long[] block = new long[maxBlockRows()];
+		int position = 0;
+		for (int b = 0; b < blockOffsets.length; b++) {
+			int rows = readBlock(b, column, block);
+			for (int r = 0; r < rows; r++) {
+				result[position++] = types[column] == ColumnarTimeSeriesCodec.DOUBLE 
+						? (long) Double.longBitsToDouble(block[r]) : block[r];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Decode an entire column as doubles.
+	 */
+	public double[] readDoubleColumn(int column) throws IOException {
+		double[] result = new double[checkedRows()];
+		long[] block = new long[maxBlockRows()];
+		int position = 0;
+		for (int b = 0; b < blockOffsets.length; b++) {
+			int rows = readBlock(b, column, block);
+			for (int r = 0; r < rows; r++) {
+				result[position++] = types[column] == ColumnarTimeSeriesCodec.DOUBLE 
+						? Double.longBitsToDouble(block[r]) : block[r];
+			}
+		}
+		return result;
+	}
+
+	public int getColumnIndex(String name) {
+		for (int c = 0; c < names.length; c++) {
+			if (names[c].equals(name)) {
+				return c;
+			}
+		}
+		throw new IllegalArgumentException("No such column " + name);
+	}
+
+	protected int checkedRows() {
+		if (numRows > Integer.MAX_VALUE) {
+			throw new IllegalStateException(
+					"Too many rows to read into memory; read by block instead");
+		}
+		return (int) numRows;
+	}
+
+	public int maxBlockRows() {
+		int max = 0;
+		for (int b = 0; b < blockRows.length; b++) {
+			max = Math.max(max, blockRows[b]);
+		}
+		return max;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+		file.close();
+	}
+
+	public String[] getColumnNames() {
+		return names;
+	}
+
+	public byte[] getColumnTypes() {
+		return types;
+	}
+
+	public int getNumColumns() {
+		return names.length;
+	}
+
+	public int getNumBlocks() {
+		return blockOffsets.length;
+	}
+
+	public int getBlockRows(int block) {
+		return blockRows[block];
+	}
+
+	public long getNumRows() {
+		return numRows;
+	}
+
+}
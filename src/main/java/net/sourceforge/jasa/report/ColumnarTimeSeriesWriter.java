@@ -0,0 +1,205 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+import net.sourceforge.jasa.market.AuctionRuntimeException;
+import net.sourceforge.jasa.report.ColumnarTimeSeriesCodec.BitOutput;
+
+/**
+ * <p>
+ * Writes a time series in a compact columnar binary format. Each column has a
+ * fixed type (int, long or double). Rows are buffered into blocks; when a
+ * block is full each column is compressed separately using
+ * {@link ColumnarTimeSeriesCodec} and appended to the file. On
+ * {@link #close()} a footer is written describing the columns and the offset
+ * and row count of every block, so that readers can locate and
+ * memory-map individual blocks.
+ * </p>
+ * 
+ * <p>
+ * File layout: magic, version, blocks, footer, footer offset (long), magic.
+ * </p>
+ * 
+ * @see ColumnarTimeSeriesReader
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class ColumnarTimeSeriesWriter {
+
+	public static final int DEFAULT_BLOCK_SIZE = 8192;
+
+	protected DataOutputStream out;
+
+	protected String[] names;
+
+	protected byte[] types;
+
+	protected int blockSize;
+
+	/**
+	 * The values of the current block, indexed by column then row. Doubles
+	 * are held as raw long bits.
+	 */
+	protected long[][] values;
+
+	protected int rows;
+
+	protected int column;
+
+	protected long position;
+
+	protected ArrayList<long[]> blockIndex = new ArrayList<long[]>();
+
+	protected BitOutput bits = new BitOutput();
+
+	protected boolean closed;
+
+	public ColumnarTimeSeriesWriter(OutputStream out, String[] names,
+			byte[] types, int blockSize) {
+		if (names.length != types.length) {
+			throw new IllegalArgumentException(
+					"Column names and types must have the same length");
+		}
+		this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		this.names = names;
+		this.types = types;
+		this.blockSize = blockSize;
+		this.values = new long[names.length][blockSize];
+		try {
+			this.out.writeInt(ColumnarTimeSeriesCodec.MAGIC);
+			this.out.writeInt(ColumnarTimeSeriesCodec.VERSION);
+		} catch (IOException e) {
+			throw new AuctionRuntimeException(e);
+		}
+		position = 8;
+	}
+
+	public ColumnarTimeSeriesWriter(String filename, String[] names,
+			byte[] types) throws FileNotFoundException {
+		this(new FileOutputStream(filename), names, types, DEFAULT_BLOCK_SIZE);
+	}
+
+	public void newData(int value) {
+		newData((long) value);
+	}
+
+	public void newData(long value) {
+		if (types[column] == ColumnarTimeSeriesCodec.DOUBLE) {
+			append(Double.doubleToRawLongBits(value));
+		} else {
+			append(value);
+		}
+	}
+
+	public void newData(double value) {
+		if (types[column] == ColumnarTimeSeriesCodec.DOUBLE) {
+			append(Double.doubleToRawLongBits(value));
+		} else {
+			append((long) value);
+		}
+	}
+
+	protected void append(long raw) {
+		values[column][rows] = raw;
+		if (++column == names.length) {
+			column = 0;
+			if (++rows == blockSize) {
+				writeBlock();
+			}
+		}
+	}
+
+	/**
+	 * Compress and write the rows buffered so far as a new block.
+	 */
+	protected void writeBlock() {
+		if (rows == 0) {
+			return;
+		}
+		try {
+			long[] entry = new long[2 + names.length];
+			entry[0] = position;
+			entry[1] = rows;
+			for (int c = 0; c < names.length; c++) {
+				bits.clear();
+				ColumnarTimeSeriesCodec.encode(types[c], values[c], rows, bits);
+				int length = bits.getLengthInBytes();
+				out.write(bits.getBytes(), 0, length);
+				entry[2 + c] = length;
+				position += length;
+			}
+			blockIndex.add(entry);
+			rows = 0;
+		} catch (IOException e) {
+			throw new AuctionRuntimeException(e);
+		}
+	}
+
+	/**
+	 * Write any partially filled block followed by the footer and close the
+	 * underlying stream.
+	 */
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		writeBlock();
+		try {
+			long footerOffset = position;
+			out.writeInt(names.length);
+			for (int c = 0; c < names.length; c++) {
+				out.writeByte(types[c]);
+				out.writeUTF(names[c]);
+			}
+			out.writeInt(blockIndex.size());
+			for (long[] entry : blockIndex) {
+				out.writeLong(entry[0]);
+				out.writeInt((int) entry[1]);
+				for (int c = 0; c < names.length; c++) {
+					out.writeInt((int) entry[2 + c]);
+				}
+			}
+			out.writeLong(footerOffset);
+			out.writeInt(ColumnarTimeSeriesCodec.MAGIC);
+			out.close();
+		} catch (IOException e) {
+			throw new AuctionRuntimeException(e);
+		}
+	}
+
+	public String[] getColumnNames() {
+		return names;
+	}
+
+	public byte[] getColumnTypes() {
+		return types;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jabm.event.SimulationEvent;
+import net.sourceforge.jabm.report.ReportVariables;
+
+/**
+ * <p>
+ * Publishes the community structure of the trade network, as tracked
+ * incrementally by the {@link StreamingLabelPropagation} of a
+ * {@link TradeNetworkReport}. The variables are the number of communities,
+ * the modularity of the partition, the size of the largest community, the
+ * mean community size and the sizes of the <code>numSizes</code> largest
+ * communities. Enabling this report enables community tracking in the
+ * trade network report.
+ * </p>
+ * 
+ * <p>
+ * The tracker does all of its work as transactions are recorded, so
+ * computing these variables costs O(number of communities), to find the
+ * community sizes.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class CommunityReportVariables implements ReportVariables, Serializable {
+
+	protected TradeNetworkReport tradeNetworkReport;
+
+	protected String name = "communities";
+
+	protected int numSizes = 5;
+
+	protected int time;
+
+	protected int numCommunities;
+
+	protected double modularity;
+
+	protected ArrayList<Integer> sizes = new ArrayList<Integer>();
+
+	protected double meanSize;
+
+	public CommunityReportVariables() {
+	}
+
+	public CommunityReportVariables(TradeNetworkReport tradeNetworkReport) {
+		setTradeNetworkReport(tradeNetworkReport);
+	}
+
+	@Override
+	public void compute(SimEvent event) {
+		if (event instanceof SimulationEvent) {
+			time = (int) ((SimulationEvent) event).getSimulation()
+					.getSimulationTime().getTicks();
+		}
+		StreamingLabelPropagation<?> tracker = tradeNetworkReport
+				.getCommunityTracker();
+		numCommunities = tracker.getNumberOfCommunities();
+		modularity = tracker.getModularity();
+		sizes = tracker.getCommunitySizes();
+		meanSize = numCommunities == 0 ? 0
+				: (double) tracker.getNumberOfVertices() / numCommunities;
+	}
+
+	@Override
+	public Map<Object, Number> getVariableBindings() {
+		LinkedHashMap<Object, Number> result = new LinkedHashMap<Object, Number>();
+		result.put(name + ".t", time);
+		result.put(name + ".count", numCommunities);
+		result.put(name + ".modularity", modularity);
+		result.put(name + ".largest", sizes.isEmpty() ? 0 : sizes.get(0));
+		result.put(name + ".meansize", meanSize);
+		for (int i = 0; i < numSizes; i++) {
+			result.put(name + ".size." + (i + 1), i < sizes.size() ? sizes
+					.get(i) : 0);
+		}
+		return result;
+	}
+
+	@Override
+	public void eventOccurred(SimEvent event) {
+	}
+
+	@Override
+	public void initialise(SimEvent event) {
+		numCommunities = 0;
+		modularity = 0;
+		sizes = new ArrayList<Integer>();
+		meanSize = 0;
+	}
+
+	@Override
+	public void dispose(SimEvent event) {
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public TradeNetworkReport getTradeNetworkReport() {
+		return tradeNetworkReport;
+	}
+
+	public void setTradeNetworkReport(TradeNetworkReport tradeNetworkReport) {
+		this.tradeNetworkReport = tradeNetworkReport;
+		if (!tradeNetworkReport.isTrackCommunities()) {
+			tradeNetworkReport.setTrackCommunities(true);
+		}
+	}
+
+	public int getNumSizes() {
+		return numSizes;
+	}
+
+	public void setNumSizes(int numSizes) {
+		this.numSizes = numSizes;
+	}
+
+}
@@ -0,0 +1,473 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.sourceforge.jabm.agent.Agent;
+import net.sourceforge.jasa.agent.AbstractTradingAgent;
+import net.sourceforge.jasa.agent.valuation.ValuationListener;
+import net.sourceforge.jasa.agent.valuation.ValuationPolicy;
+import net.sourceforge.jasa.market.Market;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Maintains the competitive equilibrium of a market incrementally. The
+ * truthful demand and supply schedules are kept as price-ordered aggregate
+ * quantities which are only updated for those traders whose valuation has
+ * changed since the last query, as signalled by their
+ * {@link ValuationPolicy}. The equilibrium price range, quantity and the
+ * surplus of each agent can then be read repeatedly without re-running a
+ * direct-revelation auction.
+ * </p>
+ * 
+ * <p>
+ * The tracker assumes that each trader's quantity and trading direction only
+ * change together with its valuation. Valuation policies whose value depends
+ * on the market state, such as the ReturnForecastValuationPolicy, do not
+ * issue notifications, and {@link #invalidate()} must be called whenever such
+ * a value may have changed.
+ * </p>
+ * 
+ * <p>
+ * A single tracker can be shared between several reports by configuring it
+ * as a bean and setting it as the <code>equilibriumTracker</code> property of
+ * each report.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class CompetitiveEquilibriumTracker implements Serializable {
+
+	protected Market auction;
+
+	/**
+	 * The traders being tracked, indexed by their slot in this tracker.
+	 */
+	protected ArrayList<AbstractTradingAgent> traders 
+		= new ArrayList<AbstractTradingAgent>();
+
+	protected ArrayList<TrackedValuation> listeners 
+		= new ArrayList<TrackedValuation>();
+
+	protected Map<AbstractTradingAgent, Integer> slots 
+		= new IdentityHashMap<AbstractTradingAgent, Integer>();
+
+	protected double[] values = new double[0];
+
+	protected int[] quantities = new int[0];
+
+	protected boolean[] bids = new boolean[0];
+
+	protected boolean[] dirty = new boolean[0];
+
+	protected int[] dirtySlots = new int[0];
+
+	protected int numDirty;
+
+	/**
+	 * Aggregate truthful demand, keyed by price.
+	 */
+	protected TreeMap<Double, int[]> demand = new TreeMap<Double, int[]>();
+
+	/**
+	 * Aggregate truthful supply, keyed by price.
+	 */
+	protected TreeMap<Double, int[]> supply = new TreeMap<Double, int[]>();
+
+	protected boolean invalid = true;
+
+	/**
+	 * Set while truthful orders are being read from the traders so that
+	 * notifications raised as a side-effect are ignored.
+	 */
+	protected transient boolean updating;
+
+	protected boolean equilibriumStale = true;
+
+	protected boolean allocationStale = true;
+
+	protected boolean equilibriaFound;
+
+	protected double minPrice;
+
+	protected double maxPrice;
+
+	protected int quantity;
+
+	/**
+	 * The lowest matched bid price and the number of units matched at that
+	 * price.
+	 */
+	protected double marginalBidPrice;
+
+	protected int marginalBidQuantity;
+
+	/**
+	 * The highest matched ask price and the number of units matched at that
+	 * price.
+	 */
+	protected double marginalAskPrice;
+
+	protected int marginalAskQuantity;
+
+	/**
+	 * The number of units allocated to each trader in equilibrium, indexed by
+	 * slot.
+	 */
+	protected int[] matchedQuantities = new int[0];
+
+	static Logger logger = Logger.getLogger(CompetitiveEquilibriumTracker.class);
+
+	public CompetitiveEquilibriumTracker() {
+	}
+
+	public CompetitiveEquilibriumTracker(Market auction) {
+		setAuction(auction);
+	}
+
+	public Market getAuction() {
+		return auction;
+	}
+
+	public void setAuction(Market auction) {
+		if (auction != this.auction) {
+			this.auction = auction;
+			invalidate();
+		}
+	}
+
+	/**
+	 * Discard all tracked state so that the schedules are rebuilt from
+	 * scratch on the next query.
+	 */
+	public void invalidate() {
+		invalid = true;
+	}
+
+	/**
+	 * Mark the specified trader as requiring its truthful order to be
+	 * refreshed on the next query.
+	 */
+	public void valuationChanged(AbstractTradingAgent agent) {
+		Integer slot = slots.get(agent);
+		if (slot == null) {
+			invalidate();
+		} else {
+			markDirty(slot);
+		}
+	}
+
+	public boolean equilibriaExists() {
+		update();
+		return equilibriaFound;
+	}
+
+	public double getMinPrice() {
+		update();
+		return minPrice;
+	}
+
+	public double getMaxPrice() {
+		update();
+		return maxPrice;
+	}
+
+	public double getMidEquilibriumPrice() {
+		update();
+		return (minPrice + maxPrice) / 2;
+	}
+
+	public int getQuantity() {
+		update();
+		return quantity;
+	}
+
+	/**
+	 * @return The number of units traded by the specified agent in
+	 *         competitive equilibrium.
+	 */
+	public int getMatchedQuantity(AbstractTradingAgent agent) {
+		update();
+		Integer slot = slots.get(agent);
+		if (slot == null || !equilibriaFound) {
+			return 0;
+		}
+		if (allocationStale) {
+			allocate();
+		}
+		return matchedQuantities[slot];
+	}
+
+	/**
+	 * @return The surplus available to the specified agent when trading its
+	 *         equilibrium quantity at the mid equilibrium price.
+	 */
+	public double getEquilibriumSurplus(AbstractTradingAgent agent) {
+		int q = getMatchedQuantity(agent);
+		if (q == 0) {
+			return 0;
+		}
+		int slot = slots.get(agent);
+		double ep = (minPrice + maxPrice) / 2;
+		if (bids[slot]) {
+			return (values[slot] - ep) * q;
+		} else {
+			return (ep - values[slot]) * q;
+		}
+	}
+
+	/**
+	 * Bring the schedules and the equilibrium up to date.
+	 */
+	protected void update() {
+		updating = true;
+		try {
+			doUpdate();
+		} finally {
+			updating = false;
+		}
+	}
+
+	protected void doUpdate() {
+		if (invalid || auction.getNumberOfTraders() != traders.size()) {
+			rebuild();
+		} else if (numDirty > 0) {
+			refreshDirty();
+		}
+		if (equilibriumStale) {
+			computeEquilibrium();
+		}
+	}
+
+	protected void rebuild() {
+		detachListeners();
+		demand.clear();
+		supply.clear();
+		Iterator<Agent> i = auction.getTraderIterator();
+		while (i.hasNext()) {
+			AbstractTradingAgent agent = (AbstractTradingAgent) i.next();
+			int slot = traders.size();
+			traders.add(agent);
+			slots.put(agent, slot);
+			TrackedValuation listener = new TrackedValuation(this, slot);
+			listeners.add(listener);
+			agent.getValuationPolicy().addValuationListener(listener);
+		}
+		int n = traders.size();
+		values = new double[n];
+		quantities = new int[n];
+		bids = new boolean[n];
+		dirty = new boolean[n];
+		dirtySlots = new int[n];
+		matchedQuantities = new int[n];
+		numDirty = 0;
+		for (int slot = 0; slot < n; slot++) {
+			enter(slot);
+		}
+		invalid = false;
+		equilibriumStale = true;
+	}
+
+	protected void detachListeners() {
+		for (int slot = 0; slot < traders.size(); slot++) {
+			traders.get(slot).getValuationPolicy().removeValuationListener(
+					listeners.get(slot));
+		}
+		traders.clear();
+		listeners.clear();
+		slots.clear();
+	}
+
+	protected void refreshDirty() {
+		for (int i = 0; i < numDirty; i++) {
+			int slot = dirtySlots[i];
+			dirty[slot] = false;
+			withdraw(slot);
+			enter(slot);
+		}
+		numDirty = 0;
+		equilibriumStale = true;
+	}
+
+	protected void markDirty(int slot) {
+		if (!updating && slot < dirty.length && !dirty[slot]) {
+			dirty[slot] = true;
+			dirtySlots[numDirty++] = slot;
+		}
+	}
+
+	/**
+	 * Record the current truthful order of the trader in the given slot.
+	 */
+	protected void enter(int slot) {
+		AbstractTradingAgent trader = traders.get(slot);
+		values[slot] = trader.getValuation(auction);
+		quantities[slot] = trader.determineQuantity(auction);
+		bids[slot] = trader.isBuyer(auction);
+		adjust(bids[slot] ? demand : supply, values[slot], quantities[slot]);
+	}
+
+	/**
+	 * Remove the previously recorded truthful order of the trader in the
+	 * given slot.
+	 */
+	protected void withdraw(int slot) {
+		adjust(bids[slot] ? demand : supply, values[slot], -quantities[slot]);
+	}
+
+	protected void adjust(TreeMap<Double, int[]> schedule, double price,
+			int delta) {
+		if (delta == 0) {
+			return;
+		}
+		int[] level = schedule.get(price);
+		if (level == null) {
+			level = new int[1];
+			schedule.put(price, level);
+		}
+		level[0] += delta;
+		if (level[0] <= 0) {
+			schedule.remove(price);
+		}
+	}
+
+	/**
+	 * Walk down the demand schedule and up the supply schedule matching units
+	 * while the bid price is at least the ask price. The resulting price range
+	 * is identical to that of a {@link net.sourceforge.jasa.market.FourHeapOrderBook}
+	 * populated with the truthful orders.
+	 */
+	protected void computeEquilibrium() {
+		quantity = 0;
+		Iterator<Map.Entry<Double, int[]>> bidLevels = 
+			demand.descendingMap().entrySet().iterator();
+		Iterator<Map.Entry<Double, int[]>> askLevels = 
+			supply.entrySet().iterator();
+		Map.Entry<Double, int[]> bid = bidLevels.hasNext() ? bidLevels.next() : null;
+		Map.Entry<Double, int[]> ask = askLevels.hasNext() ? askLevels.next() : null;
+		int bidRemaining = bid == null ? 0 : bid.getValue()[0];
+		int askRemaining = ask == null ? 0 : ask.getValue()[0];
+		marginalBidQuantity = 0;
+		marginalAskQuantity = 0;
+		while (bid != null && ask != null && bid.getKey() >= ask.getKey()) {
+			int q = Math.min(bidRemaining, askRemaining);
+			quantity += q;
+			if (marginalBidPrice != bid.getKey() || marginalBidQuantity == 0) {
+				marginalBidPrice = bid.getKey();
+				marginalBidQuantity = 0;
+			}
+			if (marginalAskPrice != ask.getKey() || marginalAskQuantity == 0) {
+				marginalAskPrice = ask.getKey();
+				marginalAskQuantity = 0;
+			}
+			marginalBidQuantity += q;
+			marginalAskQuantity += q;
+			bidRemaining -= q;
+			askRemaining -= q;
+			if (bidRemaining == 0) {
+				bid = bidLevels.hasNext() ? bidLevels.next() : null;
+				bidRemaining = bid == null ? 0 : bid.getValue()[0];
+			}
+			if (askRemaining == 0) {
+				ask = askLevels.hasNext() ? askLevels.next() : null;
+				askRemaining = ask == null ? 0 : ask.getValue()[0];
+			}
+		}
+		equilibriaFound = quantity > 0;
+		if (equilibriaFound) {
+			double hiUnmatchedBid = 
+				bid == null ? Double.NEGATIVE_INFINITY : bid.getKey();
+			double loUnmatchedAsk = 
+				ask == null ? Double.POSITIVE_INFINITY : ask.getKey();
+			minPrice = Math.max(marginalAskPrice, hiUnmatchedBid);
+			maxPrice = Math.min(loUnmatchedAsk, marginalBidPrice);
+			assert minPrice <= maxPrice;
+		}
+		equilibriumStale = false;
+		allocationStale = true;
+	}
+
+	/**
+	 * Allocate the equilibrium quantity to individual traders. Traders with
+	 * strictly better prices than the marginal price trade their entire
+	 * quantity; units at the marginal price are allocated in trader order.
+	 */
+	protected void allocate() {
+		int bidMarginRemaining = marginalBidQuantity;
+		int askMarginRemaining = marginalAskQuantity;
+		for (int slot = 0; slot < traders.size(); slot++) {
+			int q = quantities[slot];
+			double v = values[slot];
+			int matched = 0;
+			if (bids[slot]) {
+				if (v > marginalBidPrice) {
+					matched = q;
+				} else if (v == marginalBidPrice) {
+					matched = Math.min(q, bidMarginRemaining);
+					bidMarginRemaining -= matched;
+				}
+			} else {
+				if (v < marginalAskPrice) {
+					matched = q;
+				} else if (v == marginalAskPrice) {
+					matched = Math.min(q, askMarginRemaining);
+					askMarginRemaining -= matched;
+				}
+			}
+			matchedQuantities[slot] = Math.max(matched, 0);
+		}
+		allocationStale = false;
+	}
+
+	public String toString() {
+		return "(" + getClass() + " equilibriaFound:" + equilibriaFound
+				+ " minPrice:" + minPrice + " maxPrice:" + maxPrice
+				+ " quantity:" + quantity + ")";
+	}
+
+	/**
+	 * Listens to the valuation policy of a single tracked trader.
+	 */
+	public static class TrackedValuation implements ValuationListener,
+			Serializable {
+
+		protected CompetitiveEquilibriumTracker tracker;
+
+		protected int slot;
+
+		public TrackedValuation(CompetitiveEquilibriumTracker tracker,
+				int slot) {
+			this.tracker = tracker;
+			this.slot = slot;
+		}
+
+		@Override
+		public void valuationChanged(ValuationPolicy policy) {
+			tracker.markDirty(slot);
+		}
+
+	}
+
+}
@@ -34,6 +34,8 @@ public class DailyStatsReport extends PriceStatisticsReport {
 
 	protected Vector<SummaryStats[]> dailyStats;
 
+	protected Vector<QuantileSketch[]> dailySketches;
+
 	static Logger logger = Logger.getLogger(DailyStatsReport.class);
 
 	public DailyStatsReport() {
@@ -56,6 +58,20 @@ public class DailyStatsReport extends PriceStatisticsReport {
 		return dailyStats.get(day)[TRANS_PRICE];
 	}
 
+	public QuantileSketch getTransPriceSketch(int day) {
+		if (day > dailySketches.size() - 1) {
+			return null;
+		}
+		return dailySketches.get(day)[TRANS_PRICE];
+	}
+
+	public QuantileSketch getReturnSketch(int day) {
+		if (day > dailySketches.size() - 1) {
+			return null;
+		}
+		return dailySketches.get(day)[RETURN];
+	}
+
 	public SummaryStats getPreviousDayTransPriceStats() {
 		if (auction.getDay() <= 0) {
 			return null;
@@ -72,6 +88,13 @@ public class DailyStatsReport extends PriceStatisticsReport {
 				stats[i].reset();
 			}
 			dailyStats.add(currentStats);
+			QuantileSketch[] currentSketches = new QuantileSketch[sketches.length];
+			for (int i = 0; i < sketches.length; i++) {
+				currentSketches[i] = (QuantileSketch) sketches[i].clone();
+				sketches[i].reset();
+				histograms[i].reset();
+			}
+			dailySketches.add(currentSketches);
 		} catch (CloneNotSupportedException e) {
 			e.printStackTrace();
 			logger.error(e.getMessage());
@@ -93,11 +116,13 @@ public class DailyStatsReport extends PriceStatisticsReport {
 	public void initialise() {
 		super.initialise();
 		dailyStats = new Vector<SummaryStats[]>();
+		dailySketches = new Vector<QuantileSketch[]>();
 	}
 
 	public void reset() {
 		super.reset();
 		dailyStats.clear();
+		dailySketches.clear();
 	}
 
 }
@@ -18,6 +18,7 @@ package net.sourceforge.jasa.report;
 
 import net.sourceforge.jabm.event.RoundFinishedEvent;
 import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jabm.event.SimulationFinishedEvent;
 import net.sourceforge.jabm.report.DataWriter;
 import net.sourceforge.jasa.event.OrderPlacedEvent;
 import net.sourceforge.jasa.event.TransactionExecutedEvent;
@@ -60,6 +61,22 @@ public class DataWriterReport extends AbstractAuctionReport {
 	 */
 	protected DataWriter transPriceLog = null;
 
+	/**
+	 * Optional asynchronous output for all of the above series. Each record
+	 * consists of the series identifier, the time and the value.
+	 */
+	protected AsyncRecordWriter recordWriter = null;
+
+	public static final int SERIES_ASK_QUOTE = 0;
+
+	public static final int SERIES_BID_QUOTE = 1;
+
+	public static final int SERIES_BID = 2;
+
+	public static final int SERIES_ASK = 3;
+
+	public static final int SERIES_TRANSACTION_PRICE = 4;
+
 
 	public DataWriterReport() {
 		this(null, null, null, null, null);
@@ -83,6 +100,19 @@ public class DataWriterReport extends AbstractAuctionReport {
 			updateShoutLog((OrderPlacedEvent) event);
 		} else if (event instanceof RoundFinishedEvent) {
 			updateQuoteLog((RoundFinishedEvent) event);
+		} else if (event instanceof SimulationFinishedEvent) {
+			onSimulationFinished();
+		}
+	}
+
+	/**
+	 * Drain and close the asynchronous writer, if any, so that its thread
+	 * does not outlive the simulation.
+	 */
+	public void onSimulationFinished() {
+		if (recordWriter != null) {
+			recordWriter.close();
+			recordWriter = null;
 		}
 	}
 
@@ -98,6 +128,10 @@ public class DataWriterReport extends AbstractAuctionReport {
 			bidQuoteLog.newData(time);
 			bidQuoteLog.newData(quote.getBid());
 		}
+		if (recordWriter != null) {
+			writeRecord(SERIES_ASK_QUOTE, time, quote.getAsk());
+			writeRecord(SERIES_BID_QUOTE, time, quote.getBid());
+		}
 		dataUpdated();
 	}
 
@@ -106,6 +140,10 @@ public class DataWriterReport extends AbstractAuctionReport {
 			transPriceLog.newData(event.getTime());
 			transPriceLog.newData(event.getPrice());
 		}
+		if (recordWriter != null) {
+			writeRecord(SERIES_TRANSACTION_PRICE, event.getTime(),
+			    event.getPrice());
+		}
 		dataUpdated();
 	}
 
@@ -123,9 +161,33 @@ public class DataWriterReport extends AbstractAuctionReport {
 				askLog.newData(shout.getPriceAsDouble());
 			}
 		}
+		if (recordWriter != null) {
+			writeRecord(shout.isBid() ? SERIES_BID : SERIES_ASK, time,
+			    shout.getPriceAsDouble());
+		}
 		dataUpdated();
 	}
 
+	protected void writeRecord(int series, int time, double value) {
+		recordWriter.newData(series);
+		recordWriter.newData(time);
+		recordWriter.newData(value);
+	}
+
+	public AsyncRecordWriter getRecordWriter() {
+		return recordWriter;
+	}
+
+	/**
+	 * Configure an asynchronous writer with three columns to receive all
+	 * series. The writer is closed at the end of the simulation.
+	 */
+	public void setRecordWriter(AsyncRecordWriter recordWriter) {
+		this.recordWriter = recordWriter;
+		recordWriter.setIntegerColumn(0, true);
+		recordWriter.setIntegerColumn(1, true);
+	}
+
 	public void dataUpdated() {
 	}
 
@@ -0,0 +1,92 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import net.sourceforge.jabm.event.RoundFinishedEvent;
+import net.sourceforge.jabm.event.SimEvent;
+
+/**
+ * A report which records the price given by a
+ * {@link MarketPriceReportVariables} at the end of each round, passing the
+ * series through a {@link DecimationPolicy} to reduce the volume of output.
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class DecimatedPriceTimeSeriesReport extends TimeSeriesReport
+		implements PointSink {
+
+	protected MarketPriceReportVariables priceVariables;
+
+	protected DecimationPolicy decimationPolicy = new LTTBDecimationPolicy();
+
+	protected double[] point = new double[1];
+
+	public DecimatedPriceTimeSeriesReport(String filename) {
+		super(filename);
+	}
+
+	public DecimatedPriceTimeSeriesReport() {
+		this(null);
+	}
+
+	@Override
+	public void eventOccurred(SimEvent event) {
+		super.eventOccurred(event);
+		if (event instanceof RoundFinishedEvent) {
+			onRoundFinished((RoundFinishedEvent) event);
+		}
+	}
+
+	public void onRoundFinished(RoundFinishedEvent event) {
+		int tick = (int) event.getSimulation().getSimulationTime().getTicks();
+		point[0] = priceVariables.getPrice(event);
+		decimationPolicy.newPoint(tick, point, this);
+	}
+
+	public void newPoint(int tick, double[] values) {
+		newRecord(tick, values[0]);
+	}
+
+	@Override
+	public void onSimulationStarting() {
+		super.onSimulationStarting();
+		decimationPolicy.reset();
+	}
+
+	@Override
+	public void onSimulationFinished() {
+		decimationPolicy.flush(this);
+		super.onSimulationFinished();
+	}
+
+	public MarketPriceReportVariables getPriceVariables() {
+		return priceVariables;
+	}
+
+	public void setPriceVariables(MarketPriceReportVariables priceVariables) {
+		this.priceVariables = priceVariables;
+	}
+
+	public DecimationPolicy getDecimationPolicy() {
+		return decimationPolicy;
+	}
+
+	public void setDecimationPolicy(DecimationPolicy decimationPolicy) {
+		this.decimationPolicy = decimationPolicy;
+	}
+
+}
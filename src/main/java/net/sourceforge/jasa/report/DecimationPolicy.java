@@ -0,0 +1,40 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+/**
+ * <p>
+ * A policy for reducing the number of points in a time series before it is
+ * written or plotted. Points are offered one at a time and the selected
+ * points are passed on to a {@link PointSink}, possibly after a delay; any
+ * points held back are released when the series is flushed.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public interface DecimationPolicy {
+
+	public void newPoint(int tick, double[] values, PointSink sink);
+
+	/**
+	 * Release any points which are still buffered at the end of the series.
+	 */
+	public void flush(PointSink sink);
+
+	public void reset();
+
+}
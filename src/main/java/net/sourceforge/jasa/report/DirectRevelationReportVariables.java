@@ -87,7 +87,17 @@ public abstract class DirectRevelationReportVariables extends
 	public void compute(SimEvent event) {
 		super.compute(event);
 		initialise();
-		simulateDirectRevelation();
+		if (requiresDirectRevelation()) {
+			simulateDirectRevelation();
+		}
+	}
+
+	/**
+	 * @return true if the truthful order book needs to be populated in order
+	 *         to compute the variables of this report.
+	 */
+	protected boolean requiresDirectRevelation() {
+		return true;
 	}
 
 	/**
@@ -96,15 +106,21 @@ public abstract class DirectRevelationReportVariables extends
 	protected void simulateDirectRevelation() {
 		Iterator<Agent> traders = auction.getTraderIterator();
 		while (traders.hasNext()) {
-			AbstractTradingAgent trader = (AbstractTradingAgent) traders.next();
-			int quantity = trader.determineQuantity(auction);
-			double value = trader.getValuation(auction);
-			boolean isBid = trader.isBuyer(auction);
-			Order shout = new Order(trader, quantity, value, isBid);
+			Order shout = truthfulShout((AbstractTradingAgent) traders.next());
 			shouts.add(shout);
 			enumerateTruthfulShout(shout);
 		}
 	}
+	
+	/**
+	 * @return A new shout from the specified trader at its private valuation.
+	 */
+	protected Order truthfulShout(AbstractTradingAgent trader) {
+		int quantity = trader.determineQuantity(auction);
+		double value = trader.getValuation(auction);
+		boolean isBid = trader.isBuyer(auction);
+		return new Order(trader, quantity, value, isBid);
+	}
 
 	public void initialise() {
 		shouts.clear();
@@ -15,9 +15,6 @@
 
 package net.sourceforge.jasa.report;
 
-import gnu.trove.iterator.TObjectDoubleIterator;
-import gnu.trove.map.hash.TObjectDoubleHashMap;
-
 import java.util.Iterator;
 import java.util.Map;
 
@@ -25,8 +22,10 @@ import net.sourceforge.jabm.agent.Agent;
 import net.sourceforge.jabm.event.SimEvent;
 import net.sourceforge.jabm.util.Resetable;
 import net.sourceforge.jasa.agent.AbstractTradingAgent;
+import net.sourceforge.jasa.agent.AgentDoubleColumn;
 import net.sourceforge.jasa.agent.TokenTradingAgent;
 import net.sourceforge.jasa.market.Market;
+import net.sourceforge.jasa.market.MarketLedger;
 
 import org.apache.log4j.Logger;
 
@@ -54,11 +53,10 @@ public class DynamicSurplusReport extends AbstractMarketStatsReport implements
 	protected EquilibriumReportVariables equilibriaStats;
 
 	/**
-	 * Total theoretically available profits per agent. This table maps
-	 * AbstractTradingAgent keys onto double values.
+	 * Total theoretically available profits per agent, indexed by the
+	 * agent's index in the market.
 	 */
-	private TObjectDoubleHashMap<AbstractTradingAgent> surplusTable = 
-		new TObjectDoubleHashMap<AbstractTradingAgent>();
+	private AgentDoubleColumn surplusTable = new AgentDoubleColumn();
 
 	/**
 	 * The quantity that each agent can theoretically trade per day. This should
@@ -68,6 +66,11 @@ public class DynamicSurplusReport extends AbstractMarketStatsReport implements
 
 	protected double efficiency;
 
+	/**
+	 * If set, the equilibrium price is read from this shared tracker.
+	 */
+	protected CompetitiveEquilibriumTracker equilibriumTracker;
+
 	public static final String P_DEF_BASE = "dynamicsurplusreport";
 
 	public static final String P_QUANTITY = "quantity";
@@ -98,8 +101,14 @@ public class DynamicSurplusReport extends AbstractMarketStatsReport implements
 	}
 
 	public void compute(SimEvent event) {
-		equilibriaStats.compute(event);
-		double ep = equilibriaStats.calculateMidEquilibriumPrice();
+		double ep;
+		if (equilibriumTracker != null) {
+			equilibriumTracker.setAuction(auction);
+			ep = equilibriumTracker.getMidEquilibriumPrice();
+		} else {
+			equilibriaStats.compute(event);
+			ep = equilibriaStats.calculateMidEquilibriumPrice();
+		}
 
 		Iterator<Agent> i = auction.getTraderIterator();
 		while (i.hasNext()) {
@@ -111,22 +120,18 @@ public class DynamicSurplusReport extends AbstractMarketStatsReport implements
 	}
 
 	public double getEquilibriumProfits(AbstractTradingAgent agent) {
-		return surplusTable.get(agent);
+		return surplusTable.get(auction.getAgentIndex().indexOf(agent));
 	}
 
 	public double calculateTotalEquilibriumSurplus() {
-		double totalSurplus = 0;
-		TObjectDoubleIterator<AbstractTradingAgent> i = surplusTable.iterator();
-		while (i.hasNext()) {
-			i.advance();
-			@SuppressWarnings("unused")
-			AbstractTradingAgent agent = i.key();
-			totalSurplus += i.value();
-		}
-		return totalSurplus;
+		return surplusTable.sum();
 	}
 
 	public double calculateTotalProfits() {
+		MarketLedger ledger = auction.getLedger();
+		if (ledger != null) {
+			return ledger.getTotalPayoff();
+		}
 		double totalProfits = 0;
 		Iterator<Agent> i = auction.getTraderIterator();
 		while (i.hasNext()) {
@@ -141,9 +146,7 @@ public class DynamicSurplusReport extends AbstractMarketStatsReport implements
 	 * amount.
 	 */
 	protected void updateStats(AbstractTradingAgent agent, double lastSurplus) {
-		if (!surplusTable.adjustValue(agent, lastSurplus)) {
-			surplusTable.put(agent, lastSurplus);
-		}
+		surplusTable.add(auction.getAgentIndex().register(agent), lastSurplus);
 	}
 
 	/**
@@ -196,6 +199,15 @@ public class DynamicSurplusReport extends AbstractMarketStatsReport implements
 		return vars;
 	}
 
+	public CompetitiveEquilibriumTracker getEquilibriumTracker() {
+		return equilibriumTracker;
+	}
+
+	public void setEquilibriumTracker(
+			CompetitiveEquilibriumTracker equilibriumTracker) {
+		this.equilibriumTracker = equilibriumTracker;
+	}
+
 	public int getQuantity() {
 		return quantity;
 	}
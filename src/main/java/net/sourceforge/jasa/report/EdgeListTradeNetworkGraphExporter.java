@@ -0,0 +1,66 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+
+import net.sourceforge.jabm.report.CSVWriter;
+
+/**
+ * Export the trade network as a CSV edge list with one (source, target,
+ * weight) record per edge.  In delta mode each record also contains the
+ * number of transactions recorded by the report at the time of the export,
+ * so that the weights of edges which are not written can be decayed to
+ * that point.
+ * 
+ * @see AbstractSparseTradeNetworkGraphExporter
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class EdgeListTradeNetworkGraphExporter extends
+		AbstractSparseTradeNetworkGraphExporter {
+
+	protected CSVWriter out;
+
+	@Override
+	public void exportGraph() {
+		try {
+			initialiseOut();
+			final long transactions = tradeNetworkReport.getTransactions();
+			visitEdges(new EdgeVisitor() {
+				public void visit(int source, int target, double weight) {
+					out.newData(source);
+					out.newData(target);
+					out.newData(weight);
+					if (delta) {
+						out.newData(transactions);
+					}
+				}
+			});
+			out.close();
+		} catch (FileNotFoundException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public void initialiseOut() throws FileNotFoundException {
+		String fileName = baseFileName + "-" + this.graphNumber + ".csv";
+		out = new CSVWriter(new FileOutputStream(fileName), delta ? 4 : 3);
+	}
+
+}
@@ -16,12 +16,18 @@
 package net.sourceforge.jasa.report;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import net.sourceforge.jabm.agent.Agent;
 import net.sourceforge.jabm.event.SimEvent;
 import net.sourceforge.jabm.event.SimulationStartingEvent;
+import net.sourceforge.jasa.agent.AbstractTradingAgent;
+import net.sourceforge.jasa.market.DuplicateShoutException;
+import net.sourceforge.jasa.market.FourHeapOrderBook;
 import net.sourceforge.jasa.market.Market;
 import net.sourceforge.jasa.market.Order;
 
@@ -35,12 +41,21 @@ import org.springframework.beans.factory.InitializingBean;
  * given market.
  * </p>
  * 
+ * <p>
+ * The calculation can also be performed off the simulation thread by an
+ * {@link AsynchronousReportVariables}: the snapshot holds a copy of the
+ * truthful shouts of every trader, or the equilibrium read from the 
+ * tracker if one is configured, and the equilibrium is computed from the
+ * snapshot using a private order book.
+ * </p>
+ * 
  * @author Steve Phelps
  * @version $Revision$
  */
 
 public class EquilibriumReportVariables extends DirectRevelationReportVariables
-		implements Serializable, InitializingBean {
+		implements SnapshotComputation<EquilibriumReportVariables.Equilibrium>,
+		Serializable, InitializingBean {
 
 	/**
 	 * The minimum equilibrium price.
@@ -61,6 +76,12 @@ public class EquilibriumReportVariables extends DirectRevelationReportVariables
 
 	protected int quantity;
 
+	/**
+	 * If set, the equilibrium is read from this shared tracker instead of
+	 * being recomputed from a truthful order book.
+	 */
+	protected CompetitiveEquilibriumTracker equilibriumTracker;
+
 	public static final String VAR_EXISTS = "equilibria.exists";
 
 	public static final String VAR_MINPRICE = "equilibria.minprice";
@@ -84,22 +105,80 @@ public class EquilibriumReportVariables extends DirectRevelationReportVariables
 	@Override
 	public void compute(SimEvent event) {
 		super.compute(event);
-		Order hiAsk = shoutEngine.getHighestMatchedAsk();
-		Order loBid = shoutEngine.getLowestMatchedBid();
-		if (hiAsk == null || loBid == null) {
-			equilibriaFound = false;
+		if (equilibriumTracker != null) {
+			computeFromTracker();
+			return;
+		}
+		Equilibrium equilibrium = new Equilibrium();
+		equilibrium.calculate(shoutEngine);
+		equilibriaFound = equilibrium.exists;
+		if (equilibriaFound) {
+			minPrice = equilibrium.minPrice;
+			maxPrice = equilibrium.maxPrice;
+			quantity = equilibrium.quantity;
+			matchedShouts = equilibrium.matchedShouts;
+		}
+	}
+	
+	public Equilibrium takeSnapshot(SimEvent event) {
+		Equilibrium snapshot = new Equilibrium();
+		if (equilibriumTracker != null) {
+			equilibriumTracker.setAuction(auction);
+			snapshot.exists = equilibriumTracker.equilibriaExists();
+			snapshot.minPrice = equilibriumTracker.getMinPrice();
+			snapshot.maxPrice = equilibriumTracker.getMaxPrice();
+			snapshot.quantity = equilibriumTracker.getQuantity();
 		} else {
-			calculateEquilibriaPriceRange();
-			equilibriaFound = true;
-			matchedShouts = shoutEngine.matchOrders();
-			calculateEquilibriaQuantity();
+			snapshot.shouts = new ArrayList<Order>();
+			Iterator<Agent> traders = auction.getTraderIterator();
+			while (traders.hasNext()) {
+				snapshot.shouts.add(
+						truthfulShout((AbstractTradingAgent) traders.next()));
+			}
 		}
+		return snapshot;
+	}
+	
+	public Map<Object, Number> compute(Equilibrium snapshot) {
+		if (snapshot.shouts != null) {
+			FourHeapOrderBook orderBook = new FourHeapOrderBook();
+			for(Order shout : snapshot.shouts) {
+				try {
+					orderBook.add(shout);
+				} catch (DuplicateShoutException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			snapshot.calculate(orderBook);
+		}
+		Map<Object, Number> result = new LinkedHashMap<Object, Number>();
+		result.put(VAR_MINPRICE, snapshot.minPrice);
+		result.put(VAR_EXISTS, snapshot.exists ? 1 : 0);
+		result.put(VAR_QUANTITY, (long) snapshot.quantity);
+		result.put(VAR_MAXPRICE, snapshot.maxPrice);
+		return result;
 	}
 	
 	public void calculate() {
 		compute(null);
 	}
 
+	protected void computeFromTracker() {
+		equilibriumTracker.setAuction(auction);
+		matchedShouts = null;
+		equilibriaFound = equilibriumTracker.equilibriaExists();
+		if (equilibriaFound) {
+			minPrice = equilibriumTracker.getMinPrice();
+			maxPrice = equilibriumTracker.getMaxPrice();
+			quantity = equilibriumTracker.getQuantity();
+		}
+	}
+
+	@Override
+	protected boolean requiresDirectRevelation() {
+		return equilibriumTracker == null;
+	}
+
 	@Override
 	public void eventOccurred(SimEvent event) {
 		super.eventOccurred(event);
@@ -109,28 +188,6 @@ public class EquilibriumReportVariables extends DirectRevelationReportVariables
 		} 
 	}
 
-	protected void calculateEquilibriaQuantity() {
-		quantity = 0;
-		Iterator<Order> i = matchedShouts.iterator();
-		while (i.hasNext()) {
-			@SuppressWarnings("unused")
-			Order bid = i.next();
-			Order ask = i.next();
-			quantity += ask.getQuantity();
-		}
-	}
-
-	protected void calculateEquilibriaPriceRange() {
-
-		minPrice = Order.maxPrice(shoutEngine.getHighestMatchedAsk(), shoutEngine
-		    .getHighestUnmatchedBid());
-
-		maxPrice = Order.minPrice(shoutEngine.getLowestUnmatchedAsk(), shoutEngine
-		    .getLowestMatchedBid());
-
-		assert minPrice <= maxPrice;
-	}
-
 	public void initialise() {
 		super.initialise();
 		quantity = 0;
@@ -156,6 +213,15 @@ public class EquilibriumReportVariables extends DirectRevelationReportVariables
 		return (getMinPrice() + getMaxPrice()) / 2;
 	}
 
+	public CompetitiveEquilibriumTracker getEquilibriumTracker() {
+		return equilibriumTracker;
+	}
+
+	public void setEquilibriumTracker(
+			CompetitiveEquilibriumTracker equilibriumTracker) {
+		this.equilibriumTracker = equilibriumTracker;
+	}
+
 	public String toString() {
 		return "(" + getClass() + " equilibriaFound:" + equilibriaFound
 		    + " minPrice:" + minPrice + " maxPrice:" + maxPrice + ")";
@@ -201,7 +267,51 @@ public class EquilibriumReportVariables extends DirectRevelationReportVariables
 //		result.add(VAR_MINPRICE);
 //		return result;
 //	}
-	
-	
+
+	/**
+	 * The equilibrium of a set of truthful shouts.  When used as a snapshot,
+	 * <code>shouts</code> holds the shouts from which the equilibrium is 
+	 * to be computed, or is null if it was read from the tracker.
+	 */
+	public static class Equilibrium {
+
+		protected List<Order> shouts;
+
+		protected List<Order> matchedShouts;
+
+		protected boolean exists = false;
+
+		protected double minPrice;
+
+		protected double maxPrice;
+
+		protected int quantity;
+
+		/**
+		 * Calculate the equilibrium price range and quantity of the 
+		 * specified truthful order book.
+		 */
+		public void calculate(FourHeapOrderBook orderBook) {
+			Order hiAsk = orderBook.getHighestMatchedAsk();
+			Order loBid = orderBook.getLowestMatchedBid();
+			if (hiAsk == null || loBid == null) {
+				exists = false;
+				return;
+			}
+			minPrice = Order.maxPrice(hiAsk, orderBook.getHighestUnmatchedBid());
+			maxPrice = Order.minPrice(orderBook.getLowestUnmatchedAsk(), loBid);
+			assert minPrice <= maxPrice;
+			exists = true;
+			matchedShouts = orderBook.matchOrders();
+			quantity = 0;
+			Iterator<Order> i = matchedShouts.iterator();
+			while (i.hasNext()) {
+				@SuppressWarnings("unused")
+				Order bid = i.next();
+				Order ask = i.next();
+				quantity += ask.getQuantity();
+			}
+		}
+	}
 
 }
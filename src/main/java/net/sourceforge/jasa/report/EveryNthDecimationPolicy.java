@@ -0,0 +1,79 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.Serializable;
+
+/**
+ * A decimation policy which keeps every Nth point, together with the last
+ * point of the series so that the end of the series is not lost.
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class EveryNthDecimationPolicy implements DecimationPolicy,
+		Serializable {
+
+	protected int n = 10;
+
+	protected long count;
+
+	protected int lastTick;
+
+	protected double[] lastValues;
+
+	protected boolean lastEmitted;
+
+	public EveryNthDecimationPolicy() {
+	}
+
+	public EveryNthDecimationPolicy(int n) {
+		this.n = n;
+	}
+
+	public void newPoint(int tick, double[] values, PointSink sink) {
+		if (count++ % n == 0) {
+			sink.newPoint(tick, values);
+			lastEmitted = true;
+		} else {
+			lastTick = tick;
+			lastValues = values.clone();
+			lastEmitted = false;
+		}
+	}
+
+	public void flush(PointSink sink) {
+		if (!lastEmitted && lastValues != null) {
+			sink.newPoint(lastTick, lastValues);
+			lastEmitted = true;
+		}
+	}
+
+	public void reset() {
+		count = 0;
+		lastValues = null;
+		lastEmitted = false;
+	}
+
+	public int getN() {
+		return n;
+	}
+
+	public void setN(int n) {
+		this.n = n;
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.Serializable;
+
+/**
+ * Decides when buffered output should be flushed: after a given number of
+ * records have been written, or when a given time has elapsed since the last
+ * flush, whichever comes first.
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class FlushPolicy implements Serializable {
+
+	/**
+	 * The maximum number of records to buffer before flushing.
+	 */
+	protected int maxRecords = 1000;
+
+	/**
+	 * The maximum time in milliseconds to buffer records before flushing.
+	 */
+	protected long maxIntervalMillis = 1000;
+
+	protected int pendingRecords;
+
+	protected long lastFlushTime = System.currentTimeMillis();
+
+	public FlushPolicy() {
+	}
+
+	public FlushPolicy(int maxRecords, long maxIntervalMillis) {
+		this.maxRecords = maxRecords;
+		this.maxIntervalMillis = maxIntervalMillis;
+	}
+
+	/**
+	 * Record that a new record has been buffered.
+	 * 
+	 * @return true if the buffer should now be flushed.
+	 */
+	public boolean recordsWritten(int n) {
+		pendingRecords += n;
+		return isFlushDue();
+	}
+
+	public boolean recordWritten() {
+		return recordsWritten(1);
+	}
+
+	public boolean isFlushDue() {
+		return pendingRecords > 0
+				&& (pendingRecords >= maxRecords || System.currentTimeMillis()
+						- lastFlushTime >= maxIntervalMillis);
+	}
+
+	/**
+	 * Record that all buffered records have been flushed.
+	 */
+	public void flushed() {
+		pendingRecords = 0;
+		lastFlushTime = System.currentTimeMillis();
+	}
+
+	public int getPendingRecords() {
+		return pendingRecords;
+	}
+
+	public int getMaxRecords() {
+		return maxRecords;
+	}
+
+	public void setMaxRecords(int maxRecords) {
+		this.maxRecords = maxRecords;
+	}
+
+	public long getMaxIntervalMillis() {
+		return maxIntervalMillis;
+	}
+
+	public void setMaxIntervalMillis(long maxIntervalMillis) {
+		this.maxIntervalMillis = maxIntervalMillis;
+	}
+
+}
@@ -16,6 +16,7 @@
 package net.sourceforge.jasa.report;
 
 import net.sourceforge.jasa.agent.AbstractTradingAgent;
+import net.sourceforge.jasa.market.MarketLedger;
 
 /**
  * A historicalDataReport that lists the ratio of actual to theoretical profits of each agent
@@ -32,6 +33,19 @@ public class GroupPayoffReport extends PayoffReport {
 		return agent.getGroup();
 	}
 
+	/**
+	 * Return the total profits of the specified group.  If the market has a
+	 * ledger its running total is used directly.
+	 */
+	@Override
+	public double getProfits(Object key) {
+		MarketLedger ledger = auction.getLedger();
+		if (ledger != null) {
+			return ledger.getGroupPayoff(key);
+		}
+		return super.getProfits(key);
+	}
+
 	public String getKeyName() {
 		return "group";
 	}
@@ -0,0 +1,112 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * <p>
+ * Estimates the tail index of a distribution using the Hill estimator over a
+ * uniform reservoir sample of bounded size. Only strictly positive
+ * observations are sampled, so callers interested in the tails of returns
+ * should supply absolute returns.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class HillEstimator implements Serializable {
+
+	protected double[] reservoir;
+
+	protected int size;
+
+	protected long numObservations;
+
+	/**
+	 * The fraction of the sample treated as the tail.
+	 */
+	protected double tailFraction = 0.1;
+
+	protected RandomEngine prng;
+
+	public HillEstimator(int capacity, RandomEngine prng) {
+		this.reservoir = new double[capacity];
+		this.prng = prng;
+	}
+
+	public void newData(double x) {
+		if (!(x > 0) || Double.isInfinite(x)) {
+			return;
+		}
+		numObservations++;
+		if (size < reservoir.length) {
+			reservoir[size++] = x;
+		} else {
+			long j = (long) (prng.nextDouble() * numObservations);
+			if (j < reservoir.length) {
+				reservoir[(int) j] = x;
+			}
+		}
+	}
+
+	/**
+	 * @return The Hill estimate of the tail index, or NaN if there is
+	 *         insufficient data.
+	 */
+	public double getTailIndex() {
+		if (size < 2) {
+			return Double.NaN;
+		}
+		double[] sorted = Arrays.copyOf(reservoir, size);
+		Arrays.sort(sorted);
+		int k = Math.max(1, Math.min(size - 1, (int) (tailFraction * size)));
+		double threshold = Math.log(sorted[size - k - 1]);
+		double total = 0;
+		for (int i = size - k; i < size; i++) {
+			total += Math.log(sorted[i]) - threshold;
+		}
+		if (total <= 0) {
+			return Double.NaN;
+		}
+		return k / total;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public long getNumObservations() {
+		return numObservations;
+	}
+
+	public double getTailFraction() {
+		return tailFraction;
+	}
+
+	public void setTailFraction(double tailFraction) {
+		this.tailFraction = tailFraction;
+	}
+
+	public void reset() {
+		size = 0;
+		numObservations = 0;
+	}
+
+}
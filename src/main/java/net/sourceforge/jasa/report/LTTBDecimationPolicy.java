@@ -0,0 +1,190 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.Serializable;
+
+/**
+ * <p>
+ * A streaming variant of the Largest-Triangle-Three-Buckets downsampling
+ * algorithm (Steinarsson, 2013), which preserves the visual shape of a
+ * series much better than keeping every Nth point. The series is divided
+ * into buckets of <code>bucketSize</code> points, and from each bucket the
+ * point forming the largest triangle with the previously selected point and
+ * the average of the following bucket is kept. The first and last points of
+ * the series are always kept.
+ * </p>
+ * 
+ * <p>
+ * Only two buckets are held in memory at any time. The value used to
+ * measure the triangles is <code>values[valueIndex]</code>.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class LTTBDecimationPolicy implements DecimationPolicy, Serializable {
+
+	protected int bucketSize = 10;
+
+	protected int valueIndex = 0;
+
+	protected Bucket current;
+
+	protected Bucket next;
+
+	protected boolean started;
+
+	protected int selectedTick;
+
+	protected double selectedValue;
+
+	public LTTBDecimationPolicy() {
+		reset();
+	}
+
+	public LTTBDecimationPolicy(int bucketSize, int valueIndex) {
+		this.bucketSize = bucketSize;
+		this.valueIndex = valueIndex;
+		reset();
+	}
+
+	public void newPoint(int tick, double[] values, PointSink sink) {
+		if (!started) {
+			emit(tick, values, sink);
+			started = true;
+			return;
+		}
+		next.add(tick, values);
+		if (next.size == bucketSize) {
+			if (current.size > 0) {
+				select(current, next.getMeanTick(), next.getMeanValue(), sink);
+			}
+			Bucket empty = current;
+			empty.size = 0;
+			current = next;
+			next = empty;
+		}
+	}
+
+	public void flush(PointSink sink) {
+		if (current.size > 0) {
+			if (next.size > 0) {
+				select(current, next.getMeanTick(), next.getMeanValue(), sink);
+			} else {
+				// The last point of the series is emitted below.
+				current.size--;
+				if (current.size > 0) {
+					select(current, current.ticks[current.size],
+							current.values[current.size][valueIndex], sink);
+				}
+				current.size++;
+			}
+		}
+		Bucket last = next.size > 0 ? next : current;
+		if (last.size > 0) {
+			emit(last.ticks[last.size - 1], last.values[last.size - 1], sink);
+		}
+		current.size = 0;
+		next.size = 0;
+	}
+
+	protected void select(Bucket bucket, double nextTick, double nextValue,
+			PointSink sink) {
+		int best = 0;
+		double maxArea = -1;
+		for (int i = 0; i < bucket.size; i++) {
+			double area = Math.abs((selectedTick - nextTick)
+					* (bucket.values[i][valueIndex] - selectedValue)
+					- (selectedTick - bucket.ticks[i])
+					* (nextValue - selectedValue));
+			if (area > maxArea) {
+				maxArea = area;
+				best = i;
+			}
+		}
+		emit(bucket.ticks[best], bucket.values[best], sink);
+	}
+
+	protected void emit(int tick, double[] values, PointSink sink) {
+		selectedTick = tick;
+		selectedValue = values[valueIndex];
+		sink.newPoint(tick, values);
+	}
+
+	public void reset() {
+		current = new Bucket(bucketSize);
+		next = new Bucket(bucketSize);
+		started = false;
+	}
+
+	public int getBucketSize() {
+		return bucketSize;
+	}
+
+	public void setBucketSize(int bucketSize) {
+		this.bucketSize = bucketSize;
+		reset();
+	}
+
+	public int getValueIndex() {
+		return valueIndex;
+	}
+
+	public void setValueIndex(int valueIndex) {
+		this.valueIndex = valueIndex;
+	}
+
+	protected class Bucket implements Serializable {
+
+		int[] ticks;
+
+		double[][] values;
+
+		int size;
+
+		Bucket(int capacity) {
+			ticks = new int[capacity];
+			values = new double[capacity][];
+		}
+
+		void add(int tick, double[] point) {
+			ticks[size] = tick;
+			if (values[size] == null || values[size].length != point.length) {
+				values[size] = new double[point.length];
+			}
+			System.arraycopy(point, 0, values[size], 0, point.length);
+			size++;
+		}
+
+		double getMeanTick() {
+			double total = 0;
+			for (int i = 0; i < size; i++) {
+				total += ticks[i];
+			}
+			return total / size;
+		}
+
+		double getMeanValue() {
+			double total = 0;
+			for (int i = 0; i < size; i++) {
+				total += values[i][valueIndex];
+			}
+			return total / size;
+		}
+	}
+
+}
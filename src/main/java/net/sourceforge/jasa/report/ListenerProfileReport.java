@@ -0,0 +1,200 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jabm.event.SimulationFinishedEvent;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Produces a ranked summary of the cost of event dispatch recorded by a
+ * {@link ProfilingSimulationController}: for each listener and event type,
+ * the number of events handled, the cumulative time and the cumulative
+ * memory allocated, ordered by time. If <code>aggregateByClass</code> is
+ * set, listeners of the same class, such as the traders in a population,
+ * are combined into a single entry. The summary is logged when each
+ * simulation finishes.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class ListenerProfileReport extends AbstractAuctionReport {
+
+	protected ProfilingSimulationController controller;
+
+	protected boolean aggregateByClass = true;
+
+	/**
+	 * The number of entries to log.
+	 */
+	protected int maxEntries = 20;
+
+	static Logger logger = Logger.getLogger(ListenerProfileReport.class);
+
+	@Override
+	public void eventOccurred(SimEvent event) {
+		super.eventOccurred(event);
+		if (event instanceof SimulationFinishedEvent) {
+			produceUserOutput();
+		}
+	}
+
+	public void reset() {
+	}
+
+	/**
+	 * @return The profile entries ordered by decreasing cumulative time.
+	 */
+	public List<Entry> getRanking() {
+		Map<String, Entry> entries = new HashMap<String, Entry>();
+		for (ProfiledEventListener profile : controller.getProfiles()) {
+			String listener = aggregateByClass ? profile.getListener()
+					.getClass().getSimpleName() : profile.getName();
+			for (Map.Entry<Class<?>, long[]> cost : profile.getCosts()
+					.entrySet()) {
+				String key = listener + "/" + cost.getKey().getSimpleName();
+				Entry entry = entries.get(key);
+				if (entry == null) {
+					entry = new Entry(listener, cost.getKey().getSimpleName());
+					entries.put(key, entry);
+				}
+				long[] values = cost.getValue();
+				entry.count += values[ProfiledEventListener.COUNT];
+				entry.nanos += values[ProfiledEventListener.NANOS];
+				entry.bytes += values[ProfiledEventListener.BYTES];
+			}
+		}
+		List<Entry> ranking = new ArrayList<Entry>(entries.values());
+		Collections.sort(ranking, new Comparator<Entry>() {
+			public int compare(Entry a, Entry b) {
+				return a.nanos < b.nanos ? 1 : (a.nanos > b.nanos ? -1 : 0);
+			}
+		});
+		return ranking;
+	}
+
+	public void produceUserOutput() {
+		List<Entry> ranking = getRanking();
+		long totalNanos = 0;
+		for (Entry entry : ranking) {
+			totalNanos += entry.nanos;
+		}
+		logger.info("");
+		logger.info("Event dispatch cost by listener");
+		logger.info("-------------------------------");
+		logger.info("");
+		if (!ProfiledEventListener.isAllocationMeasured()) {
+			logger.info("(allocation measurement is not supported by this JVM)");
+		}
+		for (int i = 0; i < ranking.size() && i < maxEntries; i++) {
+			Entry entry = ranking.get(i);
+			logger.info(String.format(
+					"%3d. %-40s %-28s %10d events %10.1f ms %5.1f%% %12d bytes",
+					i + 1, entry.listener, entry.eventType, entry.count,
+					entry.nanos / 1E6, 100.0 * entry.nanos
+							/ Math.max(1, totalNanos), entry.bytes));
+		}
+		logger.info("");
+	}
+
+	@Override
+	public Map<Object, Number> getVariableBindings() {
+		Map<Object, Number> vars = super.getVariableBindings();
+		for (Entry entry : getRanking()) {
+			String prefix = "profile." + entry.listener + "." + entry.eventType;
+			vars.put(new ReportVariable(prefix + ".count", "events handled"),
+					entry.count);
+			vars.put(new ReportVariable(prefix + ".ms", "time in milliseconds"),
+					entry.nanos / 1E6);
+			vars.put(new ReportVariable(prefix + ".bytes", "bytes allocated"),
+					entry.bytes);
+		}
+		return vars;
+	}
+
+	public ProfilingSimulationController getController() {
+		return controller;
+	}
+
+	public void setController(ProfilingSimulationController controller) {
+		this.controller = controller;
+	}
+
+	public boolean isAggregateByClass() {
+		return aggregateByClass;
+	}
+
+	public void setAggregateByClass(boolean aggregateByClass) {
+		this.aggregateByClass = aggregateByClass;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	public static class Entry {
+
+		protected String listener;
+
+		protected String eventType;
+
+		protected long count;
+
+		protected long nanos;
+
+		protected long bytes;
+
+		public Entry(String listener, String eventType) {
+			this.listener = listener;
+			this.eventType = eventType;
+		}
+
+		public String getListener() {
+			return listener;
+		}
+
+		public String getEventType() {
+			return eventType;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A histogram with a fixed number of logarithmically-spaced bins. Positive
+ * and negative observations are binned separately by magnitude, so the same
+ * class can be used for prices and for returns. Magnitudes below the lowest
+ * bin are counted as zero and magnitudes above the highest bin are counted
+ * in the highest bin.
+ * </p>
+ * 
+ * <p>
+ * Memory is fixed at construction time, and two histograms with the same
+ * binning can be merged by adding their counts.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class LogHistogram implements Serializable, Cloneable {
+
+	protected double minMagnitude;
+
+	protected int numDecades;
+
+	protected int binsPerDecade;
+
+	protected long[] positive;
+
+	protected long[] negative;
+
+	protected long zero;
+
+	protected long count;
+
+	public LogHistogram(double minMagnitude, int numDecades, int binsPerDecade) {
+		this.minMagnitude = minMagnitude;
+		this.numDecades = numDecades;
+		this.binsPerDecade = binsPerDecade;
+		this.positive = new long[numDecades * binsPerDecade];
+		this.negative = new long[numDecades * binsPerDecade];
+	}
+
+	public void newData(double x) {
+		if (Double.isNaN(x)) {
+			return;
+		}
+		count++;
+		double magnitude = Math.abs(x);
+		if (magnitude < minMagnitude) {
+			zero++;
+		} else if (x > 0) {
+			positive[getBin(magnitude)]++;
+		} else {
+			negative[getBin(magnitude)]++;
+		}
+	}
+
+	public int getBin(double magnitude) {
+		if (Double.isInfinite(magnitude)) {
+			return positive.length - 1;
+		}
+		int bin = (int) Math.floor(Math.log10(magnitude / minMagnitude)
+				* binsPerDecade);
+		return Math.max(0, Math.min(positive.length - 1, bin));
+	}
+
+	/**
+	 * Add the counts of the specified histogram, which must have the same
+	 * binning as this one.
+	 */
+	public void merge(LogHistogram other) {
+		if (other.minMagnitude != minMagnitude
+				|| other.numDecades != numDecades
+				|| other.binsPerDecade != binsPerDecade) {
+			throw new IllegalArgumentException(
+					"Cannot merge histograms with different binning");
+		}
+		for (int i = 0; i < positive.length; i++) {
+			positive[i] += other.positive[i];
+			negative[i] += other.negative[i];
+		}
+		zero += other.zero;
+		count += other.count;
+	}
+
+	/**
+	 * @return The lower bound of the magnitudes counted in the specified bin.
+	 */
+	public double getBinLowerBound(int bin) {
+		return minMagnitude * Math.pow(10, (double) bin / binsPerDecade);
+	}
+
+	public int getNumBins() {
+		return positive.length;
+	}
+
+	public long getPositiveCount(int bin) {
+		return positive[bin];
+	}
+
+	public long getNegativeCount(int bin) {
+		return negative[bin];
+	}
+
+	public long getZeroCount() {
+		return zero;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMinMagnitude() {
+		return minMagnitude;
+	}
+
+	public int getNumDecades() {
+		return numDecades;
+	}
+
+	public int getBinsPerDecade() {
+		return binsPerDecade;
+	}
+
+	public void reset() {
+		Arrays.fill(positive, 0);
+		Arrays.fill(negative, 0);
+		zero = 0;
+		count = 0;
+	}
+
+	public Object clone() throws CloneNotSupportedException {
+		LogHistogram copy = (LogHistogram) super.clone();
+		copy.positive = positive.clone();
+		copy.negative = negative.clone();
+		return copy;
+	}
+
+}
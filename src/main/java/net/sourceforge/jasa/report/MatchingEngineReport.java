@@ -0,0 +1,124 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.util.Map;
+
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jabm.event.SimulationFinishedEvent;
+import net.sourceforge.jabm.event.SimulationStartingEvent;
+import net.sourceforge.jasa.market.LatencyHistogram;
+import net.sourceforge.jasa.market.MatchingEngineProbe;
+import net.sourceforge.jasa.market.MatchingEngineProbe.StageStatistics;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Reports the latency and throughput of each stage of the matching engine
+ * as recorded by {@link MatchingEngineProbe}: the number of operations, the
+ * mean, median, 90th and 99th percentile and maximum latency in
+ * nanoseconds, and the mean and maximum depth of the order book. A summary
+ * is logged when each simulation finishes.
+ * </p>
+ * 
+ * <p>
+ * Nothing is recorded unless the JVM is started with
+ * <code>-Djasa.instrumentation=true</code>.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class MatchingEngineReport extends AbstractAuctionReport {
+
+	/**
+	 * If true, the statistics are cleared at the start of each simulation,
+	 * otherwise they accumulate over the whole batch.
+	 */
+	protected boolean resetEachSimulation = true;
+
+	static Logger logger = Logger.getLogger(MatchingEngineReport.class);
+
+	@Override
+	public void eventOccurred(SimEvent event) {
+		super.eventOccurred(event);
+		if (event instanceof SimulationStartingEvent) {
+			if (resetEachSimulation) {
+				MatchingEngineProbe.reset();
+			}
+		} else if (event instanceof SimulationFinishedEvent) {
+			produceUserOutput();
+		}
+	}
+
+	public void reset() {
+	}
+
+	public void produceUserOutput() {
+		if (!MatchingEngineProbe.ENABLED) {
+			return;
+		}
+		logger.info("");
+		logger.info("Matching engine latency");
+		logger.info("-----------------------");
+		logger.info("");
+		StageStatistics[] stages = MatchingEngineProbe.getSnapshot();
+		for (int i = 0; i < stages.length; i++) {
+			if (stages[i].getCount() > 0) {
+				logger.info(stages[i]);
+			}
+		}
+		logger.info("");
+	}
+
+	@Override
+	public Map<Object, Number> getVariableBindings() {
+		Map<Object, Number> vars = super.getVariableBindings();
+		if (!MatchingEngineProbe.ENABLED) {
+			return vars;
+		}
+		StageStatistics[] stages = MatchingEngineProbe.getSnapshot();
+		for (int i = 0; i < stages.length; i++) {
+			String stage = stages[i].getName();
+			LatencyHistogram latency = stages[i].getLatency();
+			vars.put(makeVar(stage, "count"), stages[i].getCount());
+			vars.put(makeVar(stage, "mean"), latency.getMean());
+			vars.put(makeVar(stage, "p50"), latency.getValueAtPercentile(50));
+			vars.put(makeVar(stage, "p90"), latency.getValueAtPercentile(90));
+			vars.put(makeVar(stage, "p99"), latency.getValueAtPercentile(99));
+			vars.put(makeVar(stage, "max"), latency.getMax());
+			vars.put(makeVar(stage, "meandepth"),
+					stages[i].getMeanBookDepth());
+			vars.put(makeVar(stage, "maxdepth"), stages[i].getMaxBookDepth());
+		}
+		return vars;
+	}
+
+	protected ReportVariable makeVar(String stage, String statistic) {
+		return new ReportVariable("matching." + stage + "." + statistic,
+				stage + " " + statistic);
+	}
+
+	public boolean isResetEachSimulation() {
+		return resetEachSimulation;
+	}
+
+	public void setResetEachSimulation(boolean resetEachSimulation) {
+		this.resetEachSimulation = resetEachSimulation;
+	}
+
+}
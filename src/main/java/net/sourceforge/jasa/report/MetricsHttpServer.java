@@ -0,0 +1,280 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+import org.jfree.data.time.TimePeriodValue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>
+ * Serves the metrics of a {@link MetricsReport}, together with JVM garbage
+ * collection and allocation statistics and the current values on the
+ * {@link ReportVariableBoard}, in the Prometheus text exposition format at
+ * <code>http://host:port/metrics</code>. The server uses the HTTP server
+ * built into the JDK and runs on a single daemon thread.
+ * </p>
+ * 
+ * <p>
+ * Rates per second are computed from the change in each counter since the
+ * previous scrape.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class MetricsHttpServer implements HttpHandler {
+
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	public static final String PREFIX = "jasa_";
+
+	protected MetricsReport metrics;
+
+	protected HttpServer server;
+
+	protected ExecutorService executor;
+
+	protected long lastScrapeNanos;
+
+	protected long lastOrders;
+
+	protected long lastTransactions;
+
+	protected long lastRounds;
+
+	protected long lastAllocatedBytes;
+
+	static Logger logger = Logger.getLogger(MetricsHttpServer.class);
+
+	public MetricsHttpServer(MetricsReport metrics, int port)
+			throws IOException {
+		this.metrics = metrics;
+		this.server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.createContext("/metrics", this);
+	}
+
+	public void start() {
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "metrics-http");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+		logger.info("Serving metrics on port "
+				+ server.getAddress().getPort());
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdown();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public void handle(HttpExchange exchange) throws IOException {
+		try {
+			byte[] body = scrape().getBytes("UTF-8");
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * @return The current metrics in the Prometheus text format.
+	 */
+	public synchronized String scrape() {
+		StringBuilder out = new StringBuilder(4096);
+		long now = System.nanoTime();
+		double elapsed = lastScrapeNanos == 0 ? 0
+				: (now - lastScrapeNanos) / 1E9;
+		lastScrapeNanos = now;
+
+		long orders = metrics.getOrders();
+		long transactions = metrics.getTransactions();
+		long rounds = metrics.getRounds();
+		counter(out, "orders_total", "Orders placed", orders);
+		counter(out, "trades_total", "Transactions executed", transactions);
+		counter(out, "volume_total", "Quantity traded", metrics.getVolume());
+		counter(out, "rounds_total", "Rounds completed", rounds);
+		counter(out, "simulations_total", "Simulations started",
+				metrics.getSimulations());
+		gauge(out, "orders_per_second", "Orders placed per second",
+				rate(orders - lastOrders, elapsed));
+		gauge(out, "trades_per_second", "Transactions executed per second",
+				rate(transactions - lastTransactions, elapsed));
+		gauge(out, "rounds_per_second", "Rounds completed per second",
+				rate(rounds - lastRounds, elapsed));
+		lastOrders = orders;
+		lastTransactions = transactions;
+		lastRounds = rounds;
+
+		gauge(out, "book_depth", "Depth of the order book",
+				metrics.getBookDepth());
+		gauge(out, "quote_bid", "Current bid quote", metrics.getBid());
+		gauge(out, "quote_ask", "Current ask quote", metrics.getAsk());
+		gauge(out, "quote_spread", "Current bid-ask spread",
+				metrics.getSpread());
+		gauge(out, "last_price", "Last transaction price",
+				metrics.getLastPrice());
+
+		writeJvmMetrics(out, elapsed);
+		writeReportVariableBoard(out);
+		return out.toString();
+	}
+
+	protected void writeJvmMetrics(StringBuilder out, double elapsed) {
+		String name = PREFIX + "gc_collections_total";
+		header(out, name, "Garbage collections", "counter");
+		for (GarbageCollectorMXBean gc : ManagementFactory
+				.getGarbageCollectorMXBeans()) {
+			sample(out, name, "gc", gc.getName(), gc.getCollectionCount());
+		}
+		name = PREFIX + "gc_time_seconds_total";
+		header(out, name, "Time spent in garbage collection", "counter");
+		for (GarbageCollectorMXBean gc : ManagementFactory
+				.getGarbageCollectorMXBeans()) {
+			sample(out, name, "gc", gc.getName(),
+					gc.getCollectionTime() / 1000.0);
+		}
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		gauge(out, "heap_used_bytes", "Heap memory in use", memory
+				.getHeapMemoryUsage().getUsed());
+		long allocated = getAllocatedBytes();
+		if (allocated >= 0) {
+			counter(out, "allocated_bytes_total",
+					"Bytes allocated by the simulation thread", allocated);
+			gauge(out, "allocation_bytes_per_second",
+					"Allocation rate of the simulation thread",
+					rate(allocated - lastAllocatedBytes, elapsed));
+			lastAllocatedBytes = allocated;
+		}
+	}
+
+	/**
+	 * @return The number of bytes allocated by the simulation thread, or -1
+	 *         if this is not supported by the JVM.
+	 */
+	protected long getAllocatedBytes() {
+		long threadId = metrics.getSimulationThreadId();
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threadId < 0
+				|| !(threads instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+		if (!hotspot.isThreadAllocatedMemorySupported()
+				|| !hotspot.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		return hotspot.getThreadAllocatedBytes(threadId);
+	}
+
+	protected void writeReportVariableBoard(StringBuilder out) {
+		ReportVariableBoard board = ReportVariableBoard.getInstance();
+		// Copying the synchronized key set takes the board's lock only briefly.
+		ArrayList<String> snapshot = new ArrayList<String>(board.getVarNames());
+		if (snapshot.isEmpty()) {
+			return;
+		}
+		String name = PREFIX + "report_variable";
+		header(out, name, "Current values on the report variable board",
+				"gauge");
+		for (String variable : snapshot) {
+			TimePeriodValue value = board.getValue(variable);
+			if (value != null && value.getValue() != null) {
+				sample(out, name, "name", variable, value.getValue()
+						.doubleValue());
+			}
+		}
+	}
+
+	protected static double rate(long delta, double elapsed) {
+		return elapsed > 0 ? delta / elapsed : 0;
+	}
+
+	protected static void counter(StringBuilder out, String name,
+			String help, double value) {
+		header(out, PREFIX + name, help, "counter");
+		sample(out, PREFIX + name, null, null, value);
+	}
+
+	protected static void gauge(StringBuilder out, String name, String help,
+			double value) {
+		header(out, PREFIX + name, help, "gauge");
+		sample(out, PREFIX + name, null, null, value);
+	}
+
+	protected static void header(StringBuilder out, String name, String help,
+			String type) {
+		out.append("# HELP ").append(name).append(' ').append(help)
+				.append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type)
+				.append('\n');
+	}
+
+	protected static void sample(StringBuilder out, String name,
+			String label, String labelValue, double value) {
+		out.append(name);
+		if (label != null) {
+			out.append('{').append(label).append("=\"")
+					.append(escape(labelValue)).append("\"}");
+		}
+		out.append(' ').append(format(value)).append('\n');
+	}
+
+	protected static String format(double value) {
+		if (Double.isNaN(value)) {
+			return "NaN";
+		} else if (Double.isInfinite(value)) {
+			return value > 0 ? "+Inf" : "-Inf";
+		} else if (value == Math.rint(value) && Math.abs(value) < 1E15) {
+			return Long.toString((long) value);
+		}
+		return Double.toString(value);
+	}
+
+	protected static String escape(String labelValue) {
+		return labelValue.replace("\\", "\\\\").replace("\"", "\\\"")
+				.replace("\n", "\\n");
+	}
+
+}
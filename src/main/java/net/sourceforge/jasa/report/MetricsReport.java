@@ -0,0 +1,207 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sourceforge.jabm.event.RoundFinishedEvent;
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jabm.event.SimulationStartingEvent;
+import net.sourceforge.jasa.event.OrderPlacedEvent;
+import net.sourceforge.jasa.event.TransactionExecutedEvent;
+import net.sourceforge.jasa.market.AuctionRuntimeException;
+import net.sourceforge.jasa.market.MarketQuote;
+import net.sourceforge.jasa.market.MarketSimulation;
+import net.sourceforge.jasa.market.auctioneer.AbstractAuctioneer;
+import net.sourceforge.jasa.market.auctioneer.Auctioneer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * A report which maintains live counters and gauges describing a running
+ * simulation, so that long headless sweeps can be monitored. The values are
+ * published over HTTP in the Prometheus text format by a
+ * {@link MetricsHttpServer}, which is started when the first simulation
+ * starts if <code>port</code> is non-zero.
+ * </p>
+ * 
+ * <p>
+ * All values are written only by the simulation thread, using ordered
+ * stores which do not stall it, and may be read at any time by the
+ * exporter without pausing the run.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class MetricsReport extends AbstractAuctionReport {
+
+	protected final AtomicLong orders = new AtomicLong();
+
+	protected final AtomicLong transactions = new AtomicLong();
+
+	protected final AtomicLong volume = new AtomicLong();
+
+	protected final AtomicLong rounds = new AtomicLong();
+
+	protected final AtomicLong simulations = new AtomicLong();
+
+	protected volatile int bookDepth;
+
+	protected volatile double bid = Double.NaN;
+
+	protected volatile double ask = Double.NaN;
+
+	protected volatile double lastPrice = Double.NaN;
+
+	/**
+	 * The id of the thread delivering events, used to measure the
+	 * allocation rate of the simulation.
+	 */
+	protected volatile long simulationThreadId = -1;
+
+	protected int port = 9404;
+
+	protected transient MetricsHttpServer server;
+
+	static Logger logger = Logger.getLogger(MetricsReport.class);
+
+	@Override
+	public void eventOccurred(SimEvent event) {
+		super.eventOccurred(event);
+		if (event instanceof OrderPlacedEvent) {
+			increment(orders, 1);
+		} else if (event instanceof TransactionExecutedEvent) {
+			TransactionExecutedEvent transaction = (TransactionExecutedEvent) event;
+			increment(transactions, 1);
+			increment(volume, transaction.getQuantity());
+			lastPrice = transaction.getPrice();
+		} else if (event instanceof RoundFinishedEvent) {
+			onRoundFinished((RoundFinishedEvent) event);
+		} else if (event instanceof SimulationStartingEvent) {
+			onSimulationStarting();
+		}
+	}
+
+	public void onRoundFinished(RoundFinishedEvent event) {
+		increment(rounds, 1);
+		MarketSimulation simulation = (MarketSimulation) event.getSimulation();
+		MarketQuote quote = simulation.getQuote();
+		bid = quote.getBid();
+		ask = quote.getAsk();
+		Auctioneer auctioneer = simulation.getAuctioneer();
+		if (auctioneer instanceof AbstractAuctioneer) {
+			bookDepth = ((AbstractAuctioneer) auctioneer).getOrderBook()
+					.getDepth();
+		}
+	}
+
+	public void onSimulationStarting() {
+		increment(simulations, 1);
+		simulationThreadId = Thread.currentThread().getId();
+		if (server == null && port != 0) {
+			try {
+				server = new MetricsHttpServer(this, port);
+				server.start();
+			} catch (IOException e) {
+				throw new AuctionRuntimeException(e);
+			}
+		}
+	}
+
+	public void reset() {
+		// Counters are cumulative over all simulations in the run.
+	}
+
+	/**
+	 * Increment a counter which is only ever written by the simulation
+	 * thread; this avoids the cost of an atomic read-modify-write.
+	 */
+	protected static void increment(AtomicLong counter, long delta) {
+		counter.lazySet(counter.get() + delta);
+	}
+
+	public void stopServer() {
+		if (server != null) {
+			server.stop();
+			server = null;
+		}
+	}
+
+	public long getOrders() {
+		return orders.get();
+	}
+
+	public long getTransactions() {
+		return transactions.get();
+	}
+
+	public long getVolume() {
+		return volume.get();
+	}
+
+	public long getRounds() {
+		return rounds.get();
+	}
+
+	public long getSimulations() {
+		return simulations.get();
+	}
+
+	public int getBookDepth() {
+		return bookDepth;
+	}
+
+	public double getBid() {
+		return bid;
+	}
+
+	public double getAsk() {
+		return ask;
+	}
+
+	public double getSpread() {
+		double spread = ask - bid;
+		return Double.isInfinite(spread) ? Double.NaN : spread;
+	}
+
+	public double getLastPrice() {
+		return lastPrice;
+	}
+
+	public long getSimulationThreadId() {
+		return simulationThreadId;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * Set the port on which metrics are served, or zero to disable the HTTP
+	 * server.
+	 */
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	public MetricsHttpServer getServer() {
+		return server;
+	}
+
+}
@@ -0,0 +1,234 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import net.sourceforge.jabm.event.RoundFinishedEvent;
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jasa.event.TransactionExecutedEvent;
+
+/**
+ * <p>
+ * A report which aggregates transactions into price bars instead of writing
+ * one record per trade. Bars are closed either every
+ * <code>ticksPerBar</code> ticks, or, if <code>transactionsPerBar</code> is
+ * positive, after that many transactions. Each record consists of the tick
+ * at which the bar closed followed by the open, high, low and close prices,
+ * the volume traded, the volume-weighted average price, the time-weighted
+ * average price and the number of transactions. The time-weighted price
+ * weights the last traded price by the number of ticks for which it
+ * prevailed.
+ * </p>
+ * 
+ * <p>
+ * A time bar in which nothing traded carries the previous close forward
+ * with zero volume. If a {@link DecimationPolicy} is configured, bars are
+ * passed through it before being written.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class OHLCVBarReport extends TimeSeriesReport implements PointSink {
+
+	public static final int OPEN = 0;
+
+	public static final int HIGH = 1;
+
+	public static final int LOW = 2;
+
+	public static final int CLOSE = 3;
+
+	public static final int VOLUME = 4;
+
+	public static final int VWAP = 5;
+
+	public static final int TWAP = 6;
+
+	public static final int TRANSACTIONS = 7;
+
+	public static final String[] COLUMN_NAMES = { "t", "open", "high", "low",
+			"close", "volume", "vwap", "twap", "transactions" };
+
+	protected int ticksPerBar = 100;
+
+	protected int transactionsPerBar = 0;
+
+	protected DecimationPolicy decimationPolicy;
+
+	protected double[] bar = new double[COLUMN_NAMES.length - 1];
+
+	protected int barStartTick;
+
+	protected double lastPrice = Double.NaN;
+
+	protected int lastPriceTick;
+
+	protected double value;
+
+	protected double timeWeightedValue;
+
+	protected int timeWeightedTicks;
+
+	public OHLCVBarReport(String filename) {
+		super(filename);
+		numColumns = COLUMN_NAMES.length;
+	}
+
+	public OHLCVBarReport() {
+		this(null);
+	}
+
+	@Override
+	public void eventOccurred(SimEvent event) {
+		super.eventOccurred(event);
+		if (event instanceof TransactionExecutedEvent) {
+			onTransactionExecuted((TransactionExecutedEvent) event);
+		} else if (event instanceof RoundFinishedEvent) {
+			onRoundFinished((RoundFinishedEvent) event);
+		}
+	}
+
+	public void onTransactionExecuted(TransactionExecutedEvent event) {
+		int tick = event.getTime();
+		double price = event.getPrice();
+		accumulateTime(tick);
+		if (bar[TRANSACTIONS] == 0) {
+			bar[OPEN] = price;
+			bar[HIGH] = price;
+			bar[LOW] = price;
+		} else {
+			bar[HIGH] = Math.max(bar[HIGH], price);
+			bar[LOW] = Math.min(bar[LOW], price);
+		}
+		bar[CLOSE] = price;
+		bar[VOLUME] += event.getQuantity();
+		bar[TRANSACTIONS]++;
+		value += price * event.getQuantity();
+		lastPrice = price;
+		if (transactionsPerBar > 0 && bar[TRANSACTIONS] >= transactionsPerBar) {
+			closeBar(tick);
+		}
+	}
+
+	public void onRoundFinished(RoundFinishedEvent event) {
+		roundFinished((int) event.getSimulation().getSimulationTime()
+				.getTicks());
+	}
+
+	/**
+	 * Close the current time bar if it has lasted for ticksPerBar ticks.
+	 */
+	public void roundFinished(int tick) {
+		accumulateTime(tick);
+		if (transactionsPerBar <= 0 && tick - barStartTick >= ticksPerBar) {
+			closeBar(tick);
+		}
+	}
+
+	protected void accumulateTime(int tick) {
+		if (!Double.isNaN(lastPrice) && tick > lastPriceTick) {
+			timeWeightedValue += lastPrice * (tick - lastPriceTick);
+			timeWeightedTicks += tick - lastPriceTick;
+		}
+		lastPriceTick = tick;
+	}
+
+	protected void closeBar(int tick) {
+		if (bar[TRANSACTIONS] == 0) {
+			if (Double.isNaN(lastPrice)) {
+				// Nothing has traded yet
+				startBar(tick);
+				return;
+			}
+			bar[OPEN] = bar[HIGH] = bar[LOW] = bar[CLOSE] = lastPrice;
+		}
+		bar[VWAP] = bar[VOLUME] > 0 ? value / bar[VOLUME] : Double.NaN;
+		bar[TWAP] = timeWeightedTicks > 0 ? timeWeightedValue
+				/ timeWeightedTicks : bar[CLOSE];
+		if (decimationPolicy != null) {
+			decimationPolicy.newPoint(tick, bar, this);
+		} else {
+			newPoint(tick, bar);
+		}
+		startBar(tick);
+	}
+
+	protected void startBar(int tick) {
+		for (int i = 0; i < bar.length; i++) {
+			bar[i] = 0;
+		}
+		value = 0;
+		timeWeightedValue = 0;
+		timeWeightedTicks = 0;
+		barStartTick = tick;
+	}
+
+	public void newPoint(int tick, double[] values) {
+		newRecord(tick, values);
+	}
+
+	@Override
+	public void onSimulationStarting() {
+		super.onSimulationStarting();
+		lastPrice = Double.NaN;
+		lastPriceTick = 0;
+		startBar(0);
+		if (decimationPolicy != null) {
+			decimationPolicy.reset();
+		}
+	}
+
+	@Override
+	public void onSimulationFinished() {
+		if (bar[TRANSACTIONS] > 0) {
+			closeBar(lastPriceTick);
+		}
+		if (decimationPolicy != null) {
+			decimationPolicy.flush(this);
+		}
+		super.onSimulationFinished();
+	}
+
+	@Override
+	protected String[] getColumnNames() {
+		return COLUMN_NAMES;
+	}
+
+	public int getTicksPerBar() {
+		return ticksPerBar;
+	}
+
+	public void setTicksPerBar(int ticksPerBar) {
+		this.ticksPerBar = ticksPerBar;
+	}
+
+	public int getTransactionsPerBar() {
+		return transactionsPerBar;
+	}
+
+	public void setTransactionsPerBar(int transactionsPerBar) {
+		this.transactionsPerBar = transactionsPerBar;
+	}
+
+	public DecimationPolicy getDecimationPolicy() {
+		return decimationPolicy;
+	}
+
+	public void setDecimationPolicy(DecimationPolicy decimationPolicy) {
+		this.decimationPolicy = decimationPolicy;
+	}
+
+}
@@ -23,6 +23,8 @@ import java.util.Map;
 import net.sourceforge.jabm.agent.Agent;
 import net.sourceforge.jabm.util.SummaryStats;
 import net.sourceforge.jasa.agent.AbstractTradingAgent;
+import net.sourceforge.jasa.agent.AgentIndex;
+import net.sourceforge.jasa.market.MarketLedger;
 
 import org.apache.log4j.Logger;
 
@@ -47,26 +49,42 @@ public abstract class PayoffReport extends DynamicSurplusReport implements
 		int numAgents = auction.getPopulation().size();
 		double averageSurplus = calculateTotalEquilibriumSurplus() / numAgents;
 		table.clear();
-		Iterator<Agent> i = auction.getTraderIterator();
-		while (i.hasNext()) {
-			AbstractTradingAgent agent = (AbstractTradingAgent) i.next();
-			double profits = agent.getTotalPayoff();
-			double payoff = 1;
-			if (averageSurplus != 0) {
-				payoff = profits / averageSurplus;
+		MarketLedger ledger = auction.getLedger();
+		if (ledger != null) {
+			// read the payoffs earned in this market from the ledger columns
+			AgentIndex agentIndex = ledger.getAgentIndex();
+			int n = agentIndex.size();
+			for(int i = 0; i < n; i++) {
+				AbstractTradingAgent agent = 
+					(AbstractTradingAgent) agentIndex.getAgent(i);
+				recordProfits(agent, ledger.getPayoff(i), averageSurplus);
 			}
-			Object key = getKey(agent);
-			PayoffStats stats = table.get(key);
-			if (stats == null) {
-				stats = new PayoffStats(1, profits);
-				table.put(key, stats);
-			} else {
-				stats.profits += profits;
-				stats.numAgents++;
+		} else {
+			Iterator<Agent> i = auction.getTraderIterator();
+			while (i.hasNext()) {
+				AbstractTradingAgent agent = (AbstractTradingAgent) i.next();
+				recordProfits(agent, agent.getTotalPayoff(), averageSurplus);
 			}
-			stats.recordPayoff(payoff);
 		}
 	}
+	
+	protected void recordProfits(AbstractTradingAgent agent, double profits,
+			double averageSurplus) {
+		double payoff = 1;
+		if (averageSurplus != 0) {
+			payoff = profits / averageSurplus;
+		}
+		Object key = getKey(agent);
+		PayoffStats stats = table.get(key);
+		if (stats == null) {
+			stats = new PayoffStats(1, profits);
+			table.put(key, stats);
+		} else {
+			stats.profits += profits;
+			stats.numAgents++;
+		}
+		stats.recordPayoff(payoff);
+	}
 
 	public double getProfits(Object key) {
 		PayoffStats stats = table.get(key);
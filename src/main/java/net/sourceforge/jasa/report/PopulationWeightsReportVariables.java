@@ -1,6 +1,7 @@
 package net.sourceforge.jasa.report;
 
 import java.io.Serializable;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
@@ -17,8 +18,13 @@ import net.sourceforge.jasa.agent.valuation.ReturnForecastValuationPolicy;
 import net.sourceforge.jasa.agent.valuation.ReturnForecaster;
 import net.sourceforge.jasa.agent.valuation.ValuationPolicy;
 
+/**
+ * Reports the distribution of forecasting weights across the population.
+ * The weights can be captured as a snapshot and summarised on another
+ * thread by wrapping this class in an {@link AsynchronousReportVariables}.
+ */
 public class PopulationWeightsReportVariables extends AbstractReportVariables 
-		implements Serializable {
+		implements SnapshotComputation<double[][]>, Serializable {
 
 	protected SummaryStatistics[] weightStatistics =
 			new SummaryStatistics[NUM_WEIGHTS];
@@ -53,11 +59,23 @@ public class PopulationWeightsReportVariables extends AbstractReportVariables
 	}
 
 	public void computeWeightStatistics(SimEvent event) {
+		initialiseStatistics();
+		double[][] snapshot = takeSnapshot(event);
+		for(int i=0; i<snapshot.length; i++) {
+			recordStatistics(snapshot[i]);
+		}
+	}
+
+	/**
+	 * Copy the weights of every agent in the population.
+	 */
+	public double[][] takeSnapshot(SimEvent event) {
 		SimulationEvent simEvent = (SimulationEvent) event;
 		Simulation simulation = (Simulation) simEvent.getSimulation();
 		Population population = simulation.getPopulation();
 		
-		initialiseStatistics();
+		double[][] snapshot = new double[population.size()][];
+		int i = 0;
 		for(Agent agent : population.getAgents()) {
 			ValuationPolicy policy =
 					((AbstractTradingAgent) agent).getValuationPolicy();
@@ -65,8 +83,26 @@ public class PopulationWeightsReportVariables extends AbstractReportVariables
 					.getForecaster();
 			double[] weights = 
 					((LinearWeightedReturnForecaster) forecaster).getWeights();
-			recordStatistics(weights);
+			snapshot[i++] = weights.clone();
 		}
+		return snapshot;
+	}
+
+	public Map<Object, Number> compute(double[][] snapshot) {
+		SummaryStatistics[] statistics = new SummaryStatistics[NUM_WEIGHTS];
+		for(int i=0; i<NUM_WEIGHTS; i++) {
+			statistics[i] = new SummaryStatistics();
+		}
+		for(int j=0; j<snapshot.length; j++) {
+			for(int i=0; i<NUM_WEIGHTS; i++) {
+				statistics[i].addValue(snapshot[j][i]);
+			}
+		}
+		Map<Object, Number> result = new LinkedHashMap<Object, Number>();
+		for(int i=0; i<NUM_WEIGHTS; i++) {
+			recordMoments("weights." + i, result, statistics[i]);
+		}
+		return result;
 	}
 
 	@Override
@@ -38,6 +38,14 @@ import org.apache.log4j.Logger;
  * transaction prices, and market quote prices.
  * </p>
  * 
+ * <p>
+ * In addition to the moments, the distributions of transaction prices, bid
+ * and ask prices, spreads and log returns are tracked using constant-memory
+ * streaming sketches, from which quantiles are reported when
+ * {@link #setReportQuantiles} is enabled. Sketches from different
+ * replications can be combined using {@link #merge}.
+ * </p>
+ * 
  * @author Steve Phelps
  * @version $Revision$
  */
@@ -59,6 +67,47 @@ public class PriceStatisticsReport extends AbstractAuctionReport implements
 
 	protected static final int ASK_QUOTE = 4;
 
+	protected static final int SPREAD = 5;
+
+	protected static final int RETURN = 6;
+
+	protected static final String[] SKETCH_NAMES = { "transactionprice",
+	    "bidprice", "askprice", "bidquote", "askquote", "spread", "return" };
+
+	protected static final double[] QUANTILES = { 0.01, 0.05, 0.25, 0.5,
+	    0.75, 0.95, 0.99 };
+
+	protected QuantileSketch[] sketches;
+
+	protected LogHistogram[] histograms;
+
+	/**
+	 * The accuracy parameter of the quantile sketches.
+	 */
+	protected int sketchSize = QuantileSketch.DEFAULT_K;
+
+	/**
+	 * Whether the quantiles of the streaming sketches are included in the
+	 * variable bindings.
+	 */
+	protected boolean reportQuantiles = false;
+
+	/**
+	 * Whether the individual histogram bin counts are included in the
+	 * variable bindings.
+	 */
+	protected boolean reportHistograms = false;
+
+	protected double priceHistogramMinimum = 0.01;
+
+	protected double returnHistogramMinimum = 1E-6;
+
+	protected int histogramDecades = 8;
+
+	protected int histogramBinsPerDecade = 10;
+
+	protected double lastTransactionPrice = Double.NaN;
+
 	public PriceStatisticsReport() {
 		initialise();
 	}
@@ -81,18 +130,51 @@ public class PriceStatisticsReport extends AbstractAuctionReport implements
 		MarketQuote quote = simulation.getQuote();
 		stats[BID_QUOTE].newData((double) quote.getBid());
 		stats[ASK_QUOTE].newData((double) quote.getAsk());
+		updateSketch(BID_QUOTE, quote.getBid());
+		updateSketch(ASK_QUOTE, quote.getAsk());
+		if (!Double.isInfinite(quote.getBid())
+				&& !Double.isInfinite(quote.getAsk())) {
+			updateSketch(SPREAD, quote.getAsk() - quote.getBid());
+		}
 	}
 
 	public void updateTransPriceLog(TransactionExecutedEvent event) {
-		stats[TRANS_PRICE].newData(event.getPrice());
+		double price = event.getPrice();
+		stats[TRANS_PRICE].newData(price);
+		updateSketch(TRANS_PRICE, price);
+		if (lastTransactionPrice > 0 && price > 0) {
+			updateSketch(RETURN, Math.log(price / lastTransactionPrice));
+		}
+		lastTransactionPrice = price;
 	}
 
 	public void updateShoutLog(OrderPlacedEvent event) {
 		Order shout = event.getOrder();
 		if (shout.isBid()) {
 			stats[BID_PRICE].newData(shout.getPriceAsDouble());
+			updateSketch(BID_PRICE, shout.getPriceAsDouble());
 		} else {
 			stats[ASK_PRICE].newData(shout.getPriceAsDouble());
+			updateSketch(ASK_PRICE, shout.getPriceAsDouble());
+		}
+	}
+
+	protected void updateSketch(int variable, double value) {
+		if (Double.isInfinite(value)) {
+			return;
+		}
+		sketches[variable].newData(value);
+		histograms[variable].newData(value);
+	}
+
+	/**
+	 * Combine the distributions observed by another report, for example one
+	 * from a parallel replication, into the sketches of this report.
+	 */
+	public void merge(PriceStatisticsReport other) {
+		for (int i = 0; i < sketches.length; i++) {
+			sketches[i].merge(other.sketches[i]);
+			histograms[i].merge(other.histograms[i]);
 		}
 	}
 
@@ -116,6 +198,38 @@ public class PriceStatisticsReport extends AbstractAuctionReport implements
 		return stats[ASK_QUOTE];
 	}
 
+	public QuantileSketch getTransPriceSketch() {
+		return sketches[TRANS_PRICE];
+	}
+
+	public QuantileSketch getBidPriceSketch() {
+		return sketches[BID_PRICE];
+	}
+
+	public QuantileSketch getAskPriceSketch() {
+		return sketches[ASK_PRICE];
+	}
+
+	public QuantileSketch getSpreadSketch() {
+		return sketches[SPREAD];
+	}
+
+	public QuantileSketch getReturnSketch() {
+		return sketches[RETURN];
+	}
+
+	public LogHistogram getTransPriceHistogram() {
+		return histograms[TRANS_PRICE];
+	}
+
+	public LogHistogram getSpreadHistogram() {
+		return histograms[SPREAD];
+	}
+
+	public LogHistogram getReturnHistogram() {
+		return histograms[RETURN];
+	}
+
 	public void initialise() {
 		stats = new SummaryStats[] {
 		    new SummaryStats("Transaction Price"),
@@ -123,12 +237,34 @@ public class PriceStatisticsReport extends AbstractAuctionReport implements
 		    new SummaryStats("Ask Price"),
 		    new SummaryStats("Bid Quote"),
 		    new SummaryStats("Ask Quote") };
+		initialiseSketches();
+	}
+
+	/**
+	 * Create empty sketches and histograms using the current configuration.
+	 */
+	protected void initialiseSketches() {
+		sketches = new QuantileSketch[SKETCH_NAMES.length];
+		histograms = new LogHistogram[SKETCH_NAMES.length];
+		for (int i = 0; i < SKETCH_NAMES.length; i++) {
+			sketches[i] = new QuantileSketch(sketchSize);
+			double minimum = i == RETURN ? returnHistogramMinimum
+			    : priceHistogramMinimum;
+			histograms[i] = new LogHistogram(minimum, histogramDecades,
+			    histogramBinsPerDecade);
+		}
+		lastTransactionPrice = Double.NaN;
 	}
 
 	public void reset() {
 		for (int i = 0; i < stats.length; i++) {
 			((SummaryStats) stats[i]).reset();
 		}
+		for (int i = 0; i < sketches.length; i++) {
+			sketches[i].reset();
+			histograms[i].reset();
+		}
+		lastTransactionPrice = Double.NaN;
 	}
 
 	public Object clone() throws CloneNotSupportedException {
@@ -142,6 +278,12 @@ public class PriceStatisticsReport extends AbstractAuctionReport implements
 			for (int i = 0; i < stats.length; i++) {
 				copy.stats[i] = (SummaryStats) stats[i].clone();
 			}
+			copy.sketches = new QuantileSketch[sketches.length];
+			copy.histograms = new LogHistogram[histograms.length];
+			for (int i = 0; i < sketches.length; i++) {
+				copy.sketches[i] = (QuantileSketch) sketches[i].clone();
+				copy.histograms[i] = (LogHistogram) histograms[i].clone();
+			}
 		} catch (CloneNotSupportedException e) {
 			logger.error(e.getMessage());
 			e.printStackTrace();
@@ -165,6 +307,14 @@ public class PriceStatisticsReport extends AbstractAuctionReport implements
 		createReportVars(vars, "bidprice", stats[BID_PRICE]);
 		createReportVars(vars, "askquote", stats[ASK_QUOTE]);
 		createReportVars(vars, "bidquote", stats[BID_QUOTE]);
+		for (int i = 0; i < sketches.length; i++) {
+			if (reportQuantiles) {
+				createQuantileVars(vars, SKETCH_NAMES[i], sketches[i]);
+			}
+			if (reportHistograms) {
+				createHistogramVars(vars, SKETCH_NAMES[i], histograms[i]);
+			}
+		}
 		return vars;
 	}
 
@@ -187,6 +337,92 @@ public class PriceStatisticsReport extends AbstractAuctionReport implements
 		vars.put(makeVar(var, "stdev"), new Double(stats.getStdDev()));
 	}
 
+	protected void createQuantileVars(Map<Object,Number> vars, String var,
+	    QuantileSketch sketch) {
+		for (int i = 0; i < QUANTILES.length; i++) {
+			String moment = "p" + Math.round(QUANTILES[i] * 100);
+			vars.put(makeVar(var, moment),
+			    new Double(sketch.getQuantile(QUANTILES[i])));
+		}
+	}
+
+	protected void createHistogramVars(Map<Object,Number> vars, String var,
+	    LogHistogram histogram) {
+		vars.put(makeVar(var, "hist.zero"), new Long(histogram.getZeroCount()));
+		for (int bin = 0; bin < histogram.getNumBins(); bin++) {
+			vars.put(makeVar(var, "hist." + bin),
+			    new Long(histogram.getPositiveCount(bin)));
+			vars.put(makeVar(var, "hist.-" + bin),
+			    new Long(histogram.getNegativeCount(bin)));
+		}
+	}
+
+	public int getSketchSize() {
+		return sketchSize;
+	}
+
+	/**
+	 * Set the accuracy parameter of the quantile sketches. Changing the
+	 * configuration of the sketches or histograms discards any data they
+	 * hold.
+	 */
+	public void setSketchSize(int sketchSize) {
+		this.sketchSize = sketchSize;
+		initialiseSketches();
+	}
+
+	public boolean isReportQuantiles() {
+		return reportQuantiles;
+	}
+
+	public void setReportQuantiles(boolean reportQuantiles) {
+		this.reportQuantiles = reportQuantiles;
+	}
+
+	public boolean isReportHistograms() {
+		return reportHistograms;
+	}
+
+	public void setReportHistograms(boolean reportHistograms) {
+		this.reportHistograms = reportHistograms;
+	}
+
+	public double getPriceHistogramMinimum() {
+		return priceHistogramMinimum;
+	}
+
+	public void setPriceHistogramMinimum(double priceHistogramMinimum) {
+		this.priceHistogramMinimum = priceHistogramMinimum;
+		initialiseSketches();
+	}
+
+	public double getReturnHistogramMinimum() {
+		return returnHistogramMinimum;
+	}
+
+	public void setReturnHistogramMinimum(double returnHistogramMinimum) {
+		this.returnHistogramMinimum = returnHistogramMinimum;
+		initialiseSketches();
+	}
+
+	public int getHistogramDecades() {
+		return histogramDecades;
+	}
+
+	public void setHistogramDecades(int histogramDecades) {
+		this.histogramDecades = histogramDecades;
+		initialiseSketches();
+	}
+
+	public int getHistogramBinsPerDecade() {
+		return histogramBinsPerDecade;
+	}
+
+	public void setHistogramBinsPerDecade(int histogramBinsPerDecade) {
+		this.histogramBinsPerDecade = histogramBinsPerDecade;
+		initialiseSketches();
+	}
+
 	protected ReportVariable makeVar(String varName, String moment) {
 		return new ReportVariable("pricestats." + varName + "." + moment, varName
 		    + " distribution " + moment);
@@ -0,0 +1,126 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sourceforge.jabm.event.EventListener;
+import net.sourceforge.jabm.event.SimEvent;
+
+/**
+ * <p>
+ * Wraps an event listener and records the cumulative time and memory
+ * allocated by its <code>eventOccurred</code> method, broken down by the
+ * class of event. Allocations are measured using the per-thread allocation
+ * counters of the HotSpot <code>ThreadMXBean</code> where these are
+ * available.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class ProfiledEventListener implements EventListener {
+
+	protected EventListener listener;
+
+	protected String name;
+
+	/**
+	 * The count, elapsed nanoseconds and allocated bytes for each event
+	 * class.
+	 */
+	protected Map<Class<?>, long[]> costs = new HashMap<Class<?>, long[]>();
+
+	protected static final com.sun.management.ThreadMXBean allocationBean = getAllocationBean();
+
+	public static final int COUNT = 0;
+
+	public static final int NANOS = 1;
+
+	public static final int BYTES = 2;
+
+	public ProfiledEventListener(EventListener listener, String name) {
+		this.listener = listener;
+		this.name = name;
+	}
+
+	public void eventOccurred(SimEvent event) {
+		long threadId = Thread.currentThread().getId();
+		long bytes = allocatedBytes(threadId);
+		long start = System.nanoTime();
+		try {
+			listener.eventOccurred(event);
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			long allocated = allocatedBytes(threadId) - bytes;
+			long[] cost = costs.get(event.getClass());
+			if (cost == null) {
+				cost = new long[3];
+				costs.put(event.getClass(), cost);
+			}
+			cost[COUNT]++;
+			cost[NANOS] += elapsed;
+			cost[BYTES] += allocated;
+		}
+	}
+
+	protected static long allocatedBytes(long threadId) {
+		if (allocationBean == null) {
+			return 0;
+		}
+		return allocationBean.getThreadAllocatedBytes(threadId);
+	}
+
+	protected static com.sun.management.ThreadMXBean getAllocationBean() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+			if (hotspot.isThreadAllocatedMemorySupported()) {
+				hotspot.setThreadAllocatedMemoryEnabled(true);
+				return hotspot;
+			}
+		}
+		return null;
+	}
+
+	public static boolean isAllocationMeasured() {
+		return allocationBean != null;
+	}
+
+	public EventListener getListener() {
+		return listener;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Map<Class<?>, long[]> getCosts() {
+		return costs;
+	}
+
+	public void reset() {
+		costs.clear();
+	}
+
+	public String toString() {
+		return "(" + getClass() + " listener:" + listener + ")";
+	}
+
+}
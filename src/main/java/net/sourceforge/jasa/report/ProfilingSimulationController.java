@@ -0,0 +1,121 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.jabm.SpringSimulationController;
+import net.sourceforge.jabm.event.EventListener;
+import net.sourceforge.jabm.event.SimEvent;
+
+/**
+ * <p>
+ * A simulation controller which profiles the cost of event dispatch. Every
+ * listener registered with this scheduler is wrapped in a
+ * {@link ProfiledEventListener} which measures the time and memory
+ * allocated while handling each type of event. To use it, replace
+ * <code>SpringSimulationController</code> with this class in the
+ * configuration and add a {@link ListenerProfileReport} to the reports.
+ * Listeners are registered in wrapped form; removing a listener removes its
+ * wrapper, and the profile gathered so far is retained.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class ProfilingSimulationController extends SpringSimulationController {
+
+	protected Map<EventListener, ProfiledEventListener> profiledListeners = new IdentityHashMap<EventListener, ProfiledEventListener>();
+
+	protected List<ProfiledEventListener> profiles = new ArrayList<ProfiledEventListener>();
+
+	@Override
+	public void addListener(Class<? extends SimEvent> eventType,
+			EventListener listener) {
+		super.addListener(eventType, profile(listener));
+	}
+
+	@Override
+	public void addListener(EventListener listener) {
+		super.addListener(profile(listener));
+	}
+
+	@Override
+	public void removeListener(Class<? extends SimEvent> eventType,
+			EventListener listener) {
+		// the listener may still be registered for other event types, so the
+		// wrapper is kept
+		super.removeListener(eventType, lookup(listener, false));
+	}
+
+	@Override
+	public void removeListener(EventListener listener) {
+		super.removeListener(lookup(listener, true));
+	}
+
+	/**
+	 * @return The wrapper registered for the given listener, or the listener
+	 *         itself if it has not been wrapped.
+	 */
+	protected EventListener lookup(EventListener listener, boolean remove) {
+		synchronized (profiledListeners) {
+			ProfiledEventListener profiled = remove ? 
+					profiledListeners.remove(listener) : 
+					profiledListeners.get(listener);
+			if (profiled == null) {
+				return listener;
+			}
+			return profiled;
+		}
+	}
+
+	/**
+	 * @return The wrapper for the given listener, creating it if the listener
+	 *         has not been registered before.
+	 */
+	protected EventListener profile(EventListener listener) {
+		if (listener instanceof ProfiledEventListener) {
+			return listener;
+		}
+		synchronized (profiledListeners) {
+			ProfiledEventListener profiled = profiledListeners.get(listener);
+			if (profiled == null) {
+				String name = listener.getClass().getSimpleName() + "#"
+						+ profiles.size();
+				profiled = new ProfiledEventListener(listener, name);
+				profiledListeners.put(listener, profiled);
+				profiles.add(profiled);
+			}
+			return profiled;
+		}
+	}
+
+	public List<ProfiledEventListener> getProfiles() {
+		synchronized (profiledListeners) {
+			return new ArrayList<ProfiledEventListener>(profiles);
+		}
+	}
+
+	public void resetProfiles() {
+		for (ProfiledEventListener profile : getProfiles()) {
+			profile.reset();
+		}
+	}
+
+}
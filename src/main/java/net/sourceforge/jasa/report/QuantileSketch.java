@@ -0,0 +1,325 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * <p>
+ * A mergeable streaming sketch of a distribution, based on the KLL algorithm
+ * of Karnin, Lang and Liberty (2016). Values are held in a hierarchy of
+ * compactors; whenever the sketch is full the lowest full compactor is
+ * sorted and every other value is promoted to the next level with double
+ * weight. Memory is bounded by roughly 3k values regardless of the number
+ * of observations, and the rank error is approximately 1.7/k.
+ * </p>
+ * 
+ * <p>
+ * Sketches with the same k can be merged, for example to combine the
+ * distributions observed in parallel replications.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class QuantileSketch implements Serializable, Cloneable {
+
+	public static final int DEFAULT_K = 200;
+
+	protected static final double CAPACITY_DECAY = 2.0 / 3.0;
+
+	protected int k;
+
+	protected double[][] levels = new double[0][];
+
+	protected int[] sizes = new int[0];
+
+	protected int numLevels = 0;
+
+	protected long n;
+
+	protected double min = Double.NaN;
+
+	protected double max = Double.NaN;
+
+	/**
+	 * State of the generator used to choose which half of a compactor is
+	 * promoted; deterministic so that results are reproducible.
+	 */
+	protected long randomState = 0x9E3779B97F4A7C15L;
+
+	protected transient double[] sortedValues;
+
+	protected transient long[] cumulativeWeights;
+
+	public QuantileSketch(int k) {
+		this.k = k;
+		addLevel();
+	}
+
+	public QuantileSketch() {
+		this(DEFAULT_K);
+	}
+
+	public void newData(double x) {
+		if (Double.isNaN(x)) {
+			return;
+		}
+		if (n == 0 || x < min) {
+			min = x;
+		}
+		if (n == 0 || x > max) {
+			max = x;
+		}
+		n++;
+		append(0, x);
+		while (getRetainedItems() > getMaximumItems()) {
+			compress();
+		}
+		sortedValues = null;
+	}
+
+	/**
+	 * Merge the specified sketch into this one.
+	 */
+	public void merge(QuantileSketch other) {
+		if (other.n == 0) {
+			return;
+		}
+		for (int h = 0; h < other.numLevels; h++) {
+			while (numLevels <= h) {
+				addLevel();
+			}
+			for (int i = 0; i < other.sizes[h]; i++) {
+				append(h, other.levels[h][i]);
+			}
+		}
+		if (n == 0 || other.min < min) {
+			min = other.min;
+		}
+		if (n == 0 || other.max > max) {
+			max = other.max;
+		}
+		n += other.n;
+		while (getRetainedItems() > getMaximumItems()) {
+			compress();
+		}
+		sortedValues = null;
+	}
+
+	/**
+	 * @return An estimate of the q-quantile, where 0 <= q <= 1.
+	 */
+	public double getQuantile(double q) {
+		if (n == 0) {
+			return Double.NaN;
+		}
+		if (q <= 0) {
+			return min;
+		}
+		if (q >= 1) {
+			return max;
+		}
+		sort();
+		long total = cumulativeWeights[cumulativeWeights.length - 1];
+		double target = q * total;
+		int i = Arrays.binarySearch(cumulativeWeights, (long) Math.ceil(target));
+		if (i < 0) {
+			i = -i - 1;
+		}
+		return sortedValues[Math.min(i, sortedValues.length - 1)];
+	}
+
+	public double getMedian() {
+		return getQuantile(0.5);
+	}
+
+	/**
+	 * @return An estimate of the fraction of observations less than or equal
+	 *         to x.
+	 */
+	public double getRank(double x) {
+		if (n == 0) {
+			return Double.NaN;
+		}
+		sort();
+		int i = Arrays.binarySearch(sortedValues, x);
+		if (i < 0) {
+			i = -i - 2;
+		} else {
+			while (i + 1 < sortedValues.length && sortedValues[i + 1] == x) {
+				i++;
+			}
+		}
+		if (i < 0) {
+			return 0;
+		}
+		return (double) cumulativeWeights[i]
+				/ cumulativeWeights[cumulativeWeights.length - 1];
+	}
+
+	public long getN() {
+		return n;
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	public int getK() {
+		return k;
+	}
+
+	public void reset() {
+		levels = new double[0][];
+		sizes = new int[0];
+		numLevels = 0;
+		addLevel();
+		n = 0;
+		min = Double.NaN;
+		max = Double.NaN;
+		sortedValues = null;
+	}
+
+	public int getRetainedItems() {
+		int total = 0;
+		for (int h = 0; h < numLevels; h++) {
+			total += sizes[h];
+		}
+		return total;
+	}
+
+	protected int getMaximumItems() {
+		int total = 0;
+		for (int h = 0; h < numLevels; h++) {
+			total += capacity(h);
+		}
+		return total;
+	}
+
+	protected int capacity(int level) {
+		int depth = numLevels - level - 1;
+		return Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+	}
+
+	protected void addLevel() {
+		levels = Arrays.copyOf(levels, numLevels + 1);
+		sizes = Arrays.copyOf(sizes, numLevels + 1);
+		levels[numLevels] = new double[Math.max(2, k / 4)];
+		numLevels++;
+	}
+
+	protected void append(int level, double x) {
+		if (sizes[level] == levels[level].length) {
+			levels[level] = Arrays.copyOf(levels[level], sizes[level] * 2);
+		}
+		levels[level][sizes[level]++] = x;
+	}
+
+	/**
+	 * Compact the lowest level which has reached its capacity.
+	 */
+	protected void compress() {
+		for (int h = 0; h < numLevels; h++) {
+			if (sizes[h] >= capacity(h)) {
+				if (h + 1 == numLevels) {
+					addLevel();
+				}
+				double[] values = levels[h];
+				int size = sizes[h];
+				Arrays.sort(values, 0, size);
+				// With an odd number of items the largest stays behind.
+				int compacted = size & ~1;
+				int offset = nextBit();
+				for (int i = offset; i < compacted; i += 2) {
+					append(h + 1, values[i]);
+				}
+				if (compacted < size) {
+					values[0] = values[size - 1];
+					sizes[h] = 1;
+				} else {
+					sizes[h] = 0;
+				}
+				return;
+			}
+		}
+	}
+
+	protected int nextBit() {
+		randomState ^= randomState << 13;
+		randomState ^= randomState >>> 7;
+		randomState ^= randomState << 17;
+		return (int) (randomState & 1);
+	}
+
+	protected void sort() {
+		if (sortedValues != null) {
+			return;
+		}
+		int total = getRetainedItems();
+		double[] values = new double[total];
+		long[] weights = new long[total];
+		int j = 0;
+		for (int h = 0; h < numLevels; h++) {
+			for (int i = 0; i < sizes[h]; i++) {
+				values[j] = levels[h][i];
+				weights[j] = 1L << h;
+				j++;
+			}
+		}
+		Integer[] order = new Integer[total];
+		for (int i = 0; i < total; i++) {
+			order[i] = i;
+		}
+		final double[] v = values;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Double.compare(v[a], v[b]);
+			}
+		});
+		sortedValues = new double[total];
+		cumulativeWeights = new long[total];
+		long cumulative = 0;
+		for (int i = 0; i < total; i++) {
+			sortedValues[i] = values[order[i]];
+			cumulative += weights[order[i]];
+			cumulativeWeights[i] = cumulative;
+		}
+	}
+
+	public Object clone() throws CloneNotSupportedException {
+		QuantileSketch copy = (QuantileSketch) super.clone();
+		copy.levels = new double[numLevels][];
+		for (int h = 0; h < numLevels; h++) {
+			copy.levels[h] = levels[h].clone();
+		}
+		copy.sizes = sizes.clone();
+		copy.sortedValues = null;
+		return copy;
+	}
+
+	public String toString() {
+		return "(" + getClass() + " n:" + n + " min:" + min + " median:"
+				+ getMedian() + " max:" + max + ")";
+	}
+
+}
@@ -96,6 +96,12 @@ public class ReportVariableBoardUpdater extends AbstractAuctionReport implements
 
 	protected double alpha;
 
+	/**
+	 * If set, the equilibrium is read from this shared tracker instead of
+	 * being recomputed from a truthful order book on each market open.
+	 */
+	protected CompetitiveEquilibriumTracker equilibriumTracker;
+
 	public ReportVariableBoardUpdater() {
 		initialize();
 	}
@@ -161,13 +167,23 @@ public class ReportVariableBoardUpdater extends AbstractAuctionReport implements
 			transPriceAuction.devSquareSum += Math.pow(
 			    ((TransactionExecutedEvent) event).getPrice() - equilPrice, 2);
 		} else if (event instanceof MarketOpenEvent) {
-			EquilibriumReportVariables eqmReport = new EquilibriumReportVariables(getAuction());
-			eqmReport.calculate();
-			equilPrice = eqmReport.calculateMidEquilibriumPrice();
+			if (equilibriumTracker != null) {
+				equilibriumTracker.setAuction(getAuction());
+				equilPrice = equilibriumTracker.getMidEquilibriumPrice();
+			} else {
+				EquilibriumReportVariables eqmReport = 
+					new EquilibriumReportVariables(getAuction());
+				eqmReport.calculate();
+				equilPrice = eqmReport.calculateMidEquilibriumPrice();
+			}
 			ReportVariableBoard.getInstance().reportValue(EQUIL_PRICE,
 			    new TimePeriodValue(time, equilPrice));
 
-			pCE = computeTheoreticalProfit();
+			if (equilibriumTracker != null) {
+				pCE = computeTrackedTheoreticalProfit();
+			} else {
+				pCE = computeTheoreticalProfit();
+			}
 			eA = 0;
 			alpha = Double.NaN;
 
@@ -289,6 +305,32 @@ public class ReportVariableBoardUpdater extends AbstractAuctionReport implements
 
 	}
 
+	private double computeTrackedTheoreticalProfit() {
+		double pCE = 0;
+		if (!equilibriumTracker.equilibriaExists()) {
+			return pCE;
+		}
+		Iterator<Agent> traders = auction.getTraderIterator();
+		while (traders.hasNext()) {
+			AbstractTradingAgent trader = (AbstractTradingAgent) traders.next();
+			int quantity = equilibriumTracker.getMatchedQuantity(trader);
+			if (quantity > 0) {
+				pCE += trader.equilibriumProfitsEachDay(getAuction(), equilPrice,
+				    quantity);
+			}
+		}
+		return pCE;
+	}
+
+	public CompetitiveEquilibriumTracker getEquilibriumTracker() {
+		return equilibriumTracker;
+	}
+
+	public void setEquilibriumTracker(
+	    CompetitiveEquilibriumTracker equilibriumTracker) {
+		this.equilibriumTracker = equilibriumTracker;
+	}
+
 	public double getEA() {
 		return eA;
 	}
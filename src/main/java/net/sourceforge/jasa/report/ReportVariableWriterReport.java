@@ -15,6 +15,7 @@
 
 package net.sourceforge.jasa.report;
 
+import java.io.FileNotFoundException;
 import java.text.DecimalFormat;
 import java.util.HashMap;
 import java.util.Map;
@@ -23,12 +24,14 @@ import java.util.Observer;
 
 import net.sourceforge.jabm.event.RoundFinishedEvent;
 import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jabm.event.SimulationFinishedEvent;
 import net.sourceforge.jabm.report.CSVWriter;
 import net.sourceforge.jabm.util.SummaryStats;
 import net.sourceforge.jasa.event.EndOfDayEvent;
 import net.sourceforge.jasa.event.MarketClosedEvent;
 import net.sourceforge.jasa.event.MarketOpenEvent;
 import net.sourceforge.jasa.event.TransactionExecutedEvent;
+import net.sourceforge.jasa.market.AuctionRuntimeException;
 import net.sourceforge.jasa.market.Market;
 
 import org.apache.log4j.Logger;
@@ -67,6 +70,24 @@ public class ReportVariableWriterReport implements AuctionReport,
 	 */
 	protected Market auction;
 
+	/**
+	 * Policies deciding when the transaction, round and day logs are flushed.
+	 * All logs are flushed when the market closes and when the simulation
+	 * finishes.
+	 */
+	protected FlushPolicy transactionFlushPolicy = new FlushPolicy();
+
+	protected FlushPolicy roundFlushPolicy = new FlushPolicy();
+
+	protected FlushPolicy dayFlushPolicy = new FlushPolicy();
+
+	/**
+	 * If non-null, the auction, day, round and transaction logs are written
+	 * on background threads by AsyncRecordWriters to files with this prefix
+	 * instead of synchronously by their CSVWriters.
+	 */
+	protected String asynchronousBaseFilename = null;
+
 	static DecimalFormat formatter = new DecimalFormat(
 	    "+#########0.000;-#########.000");
 
@@ -146,6 +167,9 @@ public class ReportVariableWriterReport implements AuctionReport,
 		} else if (event instanceof MarketClosedEvent) {
 			updateAuctionLog((MarketClosedEvent) event);
 			updateSettingLog((MarketClosedEvent) event);
+			flushAll();
+		} else if (event instanceof SimulationFinishedEvent) {
+			flushAll();
 		} else if (event instanceof TransactionExecutedEvent) {
 			updateTransactionLog((TransactionExecutedEvent) event);
 		}
@@ -174,7 +198,7 @@ public class ReportVariableWriterReport implements AuctionReport,
 	public void generateHeader() {
 
 		if (!initialized) {
-			String headers[] = { "market", "day", "round", "transaction" };
+			String headers[] = { "day", "round", "transaction" };
 
 			if (settingLog != null) {
 				generateCaseEnumHeader(settingLog);
@@ -183,50 +207,28 @@ public class ReportVariableWriterReport implements AuctionReport,
 				settingLog.flush();
 			}
 
-			if (auctionLog != null) {
-				generateCaseEnumHeader(auctionLog);
-				for (int i = 0; i < 1; i++) {
-					auctionLog.newData(headers[i]);
-				}
-				auctionLog.generateHeader();
-				auctionLog.endRecord();
-				auctionLog.flush();
-			}
-
-			if (dayLog != null) {
-				generateCaseEnumHeader(dayLog);
-				for (int i = 0; i < 2; i++) {
-					dayLog.newData(headers[i]);
-				}
-				dayLog.generateHeader();
-				dayLog.endRecord();
-				dayLog.flush();
-			}
-
-			if (roundLog != null) {
-				generateCaseEnumHeader(roundLog);
-				for (int i = 0; i < 3; i++) {
-					roundLog.newData(headers[i]);
-				}
-				roundLog.generateHeader();
-				roundLog.endRecord();
-				roundLog.flush();
-			}
-
-			if (transactionLog != null) {
-				generateCaseEnumHeader(transactionLog);
-				for (int i = 0; i < 4; i++) {
-					transactionLog.newData(headers[i]);
-				}
-				transactionLog.generateHeader();
-				transactionLog.endRecord();
-				transactionLog.flush();
-			}
+			writeHeader(auctionLog, "auction", headers, 0);
+			writeHeader(dayLog, "day", headers, 1);
+			writeHeader(roundLog, "round", headers, 2);
+			writeHeader(transactionLog, "transaction", headers, 3);
 
 			initialized = true;
 		}
 	}
 
+	protected void writeHeader(InternalRVWriterReport log, String name,
+	    String[] headers, int leadingColumns) {
+		if (log == null) {
+			return;
+		}
+		if (asynchronousBaseFilename != null) {
+			log.openAsynchronous(asynchronousBaseFilename + name + ".csv",
+			    leadingColumns);
+		}
+		generateCaseEnumHeader(log);
+		log.writeHeader(headers, leadingColumns);
+	}
+
 	/**
 	 * Generates the names of fields in the CSV file header for market properties
 	 * configured by CaseEnum to define different auctions.
@@ -263,12 +265,11 @@ public class ReportVariableWriterReport implements AuctionReport,
 		if (transactionLog != null) {
 			generateCaseCombination(transactionLog);
 //			transactionLog.newData(auction.getId());
-			transactionLog.newData(auction.getDay());
-			transactionLog.newData(auction.getRound());
-			transactionLog.newData(transactionCount++);
+			transactionLog.record(auction.getDay());
+			transactionLog.record(auction.getRound());
+			transactionLog.record(transactionCount++);
 			transactionLog.update();
-			transactionLog.endRecord();
-			transactionLog.flush();
+			transactionLog.endRecord(transactionFlushPolicy);
 		}
 	}
 
@@ -276,11 +277,10 @@ public class ReportVariableWriterReport implements AuctionReport,
 		if (roundLog != null) {
 			generateCaseCombination(roundLog);
 //			roundLog.newData(auction.getId());
-			roundLog.newData(auction.getDay());
-			roundLog.newData(auction.getRound());
+			roundLog.record(auction.getDay());
+			roundLog.record(auction.getRound());
 			roundLog.update();
-			roundLog.endRecord();
-			roundLog.flush();
+			roundLog.endRecord(roundFlushPolicy);
 		}
 	}
 
@@ -288,10 +288,9 @@ public class ReportVariableWriterReport implements AuctionReport,
 		if (dayLog != null) {
 			generateCaseCombination(dayLog);
 //			dayLog.newData(auction.getId());
-			dayLog.newData(auction.getDay());
+			dayLog.record(auction.getDay());
 			dayLog.update();
-			dayLog.endRecord();
-			dayLog.flush();
+			dayLog.endRecord(dayFlushPolicy);
 		}
 	}
 
@@ -300,11 +299,61 @@ public class ReportVariableWriterReport implements AuctionReport,
 			generateCaseCombination(auctionLog);
 //			auctionLog.newData(auction.getId());
 			auctionLog.update();
-			auctionLog.endRecord();
-			auctionLog.flush();
+			auctionLog.endRecord(null);
+			auctionLog.flush(null);
+		}
+	}
+
+	/**
+	 * Flush any records buffered in the transaction, round and day logs,
+	 * waiting for asynchronous logs to reach their files.
+	 */
+	public void flushAll() {
+		flush(transactionLog, transactionFlushPolicy);
+		flush(roundLog, roundFlushPolicy);
+		flush(dayLog, dayFlushPolicy);
+		flush(auctionLog, null);
+	}
+
+	protected void flush(InternalRVWriterReport log, FlushPolicy policy) {
+		if (log != null) {
+			log.flush(policy);
 		}
 	}
 
+	/**
+	 * Configure the maximum number of records buffered by each log before it
+	 * is flushed.
+	 */
+	public void setMaxBufferedRecords(int maxRecords) {
+		transactionFlushPolicy.setMaxRecords(maxRecords);
+		roundFlushPolicy.setMaxRecords(maxRecords);
+		dayFlushPolicy.setMaxRecords(maxRecords);
+	}
+
+	/**
+	 * Configure the maximum time in milliseconds that records are buffered by
+	 * each log before it is flushed.
+	 */
+	public void setMaxFlushIntervalMillis(long maxIntervalMillis) {
+		transactionFlushPolicy.setMaxIntervalMillis(maxIntervalMillis);
+		roundFlushPolicy.setMaxIntervalMillis(maxIntervalMillis);
+		dayFlushPolicy.setMaxIntervalMillis(maxIntervalMillis);
+	}
+
+	public String getAsynchronousBaseFilename() {
+		return asynchronousBaseFilename;
+	}
+
+	/**
+	 * Write the auction, day, round and transaction logs asynchronously to
+	 * files named by appending the log name to the given prefix. This must be
+	 * configured before the market opens.
+	 */
+	public void setAsynchronousBaseFilename(String asynchronousBaseFilename) {
+		this.asynchronousBaseFilename = asynchronousBaseFilename;
+	}
+
 	public void updateSettingLog(MarketClosedEvent event) {
 		if (settingLog != null) {
 			settingLog.setAuction(event.getAuction());
@@ -331,11 +380,114 @@ public class ReportVariableWriterReport implements AuctionReport,
 
 		protected String varNames[];
 
+		protected AsyncRecordWriter recordWriter;
+
 		public InternalRVWriterReport() {
 			setAutowrap(false);
 			setAppend(false);
 		}
 
+		/**
+		 * Write records to the given file on a background thread instead of
+		 * through this CSVWriter.
+		 * 
+		 * @param leadingColumns
+		 *          The number of integer columns preceding the report
+		 *          variables in each record.
+		 */
+		public void openAsynchronous(String filename, int leadingColumns) {
+			try {
+				recordWriter = new AsyncRecordWriter(filename, leadingColumns
+				    + varNames.length);
+			} catch (FileNotFoundException e) {
+				throw new AuctionRuntimeException(e);
+			}
+			for (int i = 0; i < leadingColumns; i++) {
+				recordWriter.setIntegerColumn(i, true);
+			}
+			recordWriter.setFormat(formatter);
+		}
+
+		public void writeHeader(String[] headers, int leadingColumns) {
+			if (recordWriter != null) {
+				String[] names = new String[leadingColumns + varNames.length];
+				System.arraycopy(headers, 0, names, 0, leadingColumns);
+				System.arraycopy(varNames, 0, names, leadingColumns,
+				    varNames.length);
+				recordWriter.writeHeader(names);
+			} else {
+				for (int i = 0; i < leadingColumns; i++) {
+					newData(headers[i]);
+				}
+				generateHeader();
+				endRecord();
+				flush();
+			}
+		}
+
+		public void record(int value) {
+			if (recordWriter != null) {
+				recordWriter.newData(value);
+			} else {
+				newData(value);
+			}
+		}
+
+		/**
+		 * Complete the current record, flushing the log if the policy
+		 * requires it. Asynchronous records are complete once every column
+		 * has been written, and are flushed by the writer thread.
+		 */
+		public void endRecord(FlushPolicy policy) {
+			if (recordWriter == null) {
+				endRecord();
+				if (policy != null && policy.recordWritten()) {
+					flush();
+					policy.flushed();
+				}
+			}
+		}
+
+		/**
+		 * Flush any buffered records, waiting for asynchronous records to be
+		 * written.
+		 */
+		public void flush(FlushPolicy policy) {
+			if (recordWriter != null) {
+				recordWriter.drain();
+			} else if (policy == null || policy.getPendingRecords() > 0) {
+				flush();
+				if (policy != null) {
+					policy.flushed();
+				}
+			}
+		}
+
+		public AsyncRecordWriter getRecordWriter() {
+			return recordWriter;
+		}
+
+		/**
+		 * Write the value of a report variable to the asynchronous log in the
+		 * same form as {@link #update()} writes it synchronously: doubles are
+		 * formatted, other numbers are written as they are, and missing
+		 * variables are written as -1.
+		 */
+		protected void recordValue(TimePeriodValue tpValue) {
+			if (tpValue == null) {
+				recordWriter.newData(-1);
+				return;
+			}
+			Object value = tpValue.getValue();
+			if (value instanceof Double || value instanceof Float) {
+				recordWriter.newData(((Number) value).doubleValue());
+			} else if (value instanceof Number) {
+				recordWriter.newData(((Number) value).longValue());
+			} else {
+				recordWriter.newData(Double.NaN);
+			}
+		}
+
 //		public void setup(ParameterDatabase parameters, Parameter base) {
 //			super.setup(parameters, base);
 //
@@ -358,7 +510,9 @@ public class ReportVariableWriterReport implements AuctionReport,
 			TimePeriodValue tpValue;
 			for (int i = 0; i < varNames.length; i++) {
 				tpValue = ReportVariableBoard.getInstance().getValue(varNames[i]);
-				if (tpValue != null) {
+				if (recordWriter != null) {
+					recordValue(tpValue);
+				} else if (tpValue != null) {
 					if (tpValue.getValue() instanceof Double) {
 						newData(formatter.format(((Double) tpValue.getValue())
 						    .doubleValue()));
@@ -15,75 +15,38 @@
 
 package net.sourceforge.jasa.report;
 
-import java.util.ArrayList;
-
 import net.sourceforge.jabm.report.DataWriter;
-import net.sourceforge.jasa.agent.AbstractTradingAgent;
-import net.sourceforge.jasa.market.AscendingOrderComparator;
-import net.sourceforge.jasa.market.DescendingOrderComparator;
 import net.sourceforge.jasa.market.Market;
-import net.sourceforge.jasa.market.Order;
 
 import org.apache.log4j.Logger;
 
 
 /**
+ * <p>
  * A class to calculate the supply and demand curves and write them to the
  * specified <code>DataWriter</code>s. This can be used to log data to
  * <code>DataSeriesWriter</code>s, which can then be viewed in a JSci graph
  * or a swing table.
+ * </p>
+ * 
+ * <p>
+ * The reported curves are those of the orders standing in the market. They
+ * are maintained by the order book as orders are added, removed and matched
+ * (see {@link net.sourceforge.jasa.market.FourHeapOrderBook#setMaintainCurves(boolean)}),
+ * so computing them does not enumerate the traders.
+ * </p>
  * 
  * @author Steve Phelps
  * @version $Revision$
  */
 
-public class ReportedSupplyAndDemandStats extends SupplyAndDemandStats {
-
-	/**
-	 * The sorted list of agent's truthful bids (ie buyers' private values).
-	 */
-	protected ArrayList<Order> bids = new ArrayList<Order>();
-
-	/**
-	 * The sorted list of agents' truthful asks (ie sellers' private values).
-	 */
-	protected ArrayList<Order> asks = new ArrayList<Order>();
+public class ReportedSupplyAndDemandStats extends AuctionStateStats {
 
-	static Logger logger = Logger.getLogger(TrueSupplyAndDemandStats.class);
+	static Logger logger = Logger.getLogger(ReportedSupplyAndDemandStats.class);
 
 	public ReportedSupplyAndDemandStats(Market auction,
 	    DataWriter supplyStats, DataWriter demandStats) {
 		super(auction, supplyStats, demandStats);
 	}
 
-	public void writeSupplyStats() {
-		writeStats(supplyStats, asks, new AscendingOrderComparator());
-	}
-
-	public void writeDemandStats() {
-		writeStats(demandStats, bids, new DescendingOrderComparator());
-	}
-
-	protected void enumerateTruthfulShout(Order truthfulShout) {
-		// super.enumerateTruthfulShout(truthfulShout);
-		AbstractTradingAgent agent = (AbstractTradingAgent) truthfulShout
-		    .getAgent();
-		Order actualShout = agent.getCurrentOrder();
-		if (agent.active() && actualShout != null) {
-			if (actualShout.isBid()) {
-				bids.add(actualShout);
-			} else {
-				asks.add(actualShout);
-			}
-		}
-		super.enumerateTruthfulShout(truthfulShout);
-	}
-
-	public void initialise() {
-		super.initialise();
-		asks.clear();
-		bids.clear();
-	}
-
-
 }
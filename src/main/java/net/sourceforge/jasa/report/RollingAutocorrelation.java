@@ -0,0 +1,177 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.Serializable;
+
+/**
+ * <p>
+ * Maintains the mean, variance and autocorrelation at a fixed set of lags
+ * over a sliding window of the most recent observations. Each update costs
+ * O(number of lags) and memory is bounded by the window size plus the
+ * largest lag. The running sums are periodically recomputed from the
+ * retained observations so that rounding errors do not accumulate.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class RollingAutocorrelation implements Serializable {
+
+	protected int window;
+
+	protected int[] lags;
+
+	protected double[] history;
+
+	protected long count;
+
+	protected double sum;
+
+	protected double sumOfSquares;
+
+	protected double[] lagSums;
+
+	protected int updatesSinceRecompute;
+
+	public RollingAutocorrelation(int window, int[] lags) {
+		this.window = window;
+		this.lags = lags.clone();
+		int maxLag = 0;
+		for (int i = 0; i < lags.length; i++) {
+			if (lags[i] < 1) {
+				throw new IllegalArgumentException("Lags must be positive");
+			}
+			maxLag = Math.max(maxLag, lags[i]);
+		}
+		this.history = new double[window + maxLag];
+		this.lagSums = new double[lags.length];
+	}
+
+	public void newData(double x) {
+		for (int i = 0; i < lags.length; i++) {
+			if (count >= lags[i]) {
+				lagSums[i] += x * get(count - lags[i]);
+			}
+		}
+		if (count >= window) {
+			long evicted = count - window;
+			double y = get(evicted);
+			sum -= y;
+			sumOfSquares -= y * y;
+			for (int i = 0; i < lags.length; i++) {
+				if (evicted >= lags[i]) {
+					lagSums[i] -= y * get(evicted - lags[i]);
+				}
+			}
+		}
+		// The slot being overwritten is older than any value read above.
+		history[(int) (count % history.length)] = x;
+		sum += x;
+		sumOfSquares += x * x;
+		count++;
+		if (++updatesSinceRecompute >= window) {
+			recompute();
+		}
+	}
+
+	protected double get(long t) {
+		return history[(int) (t % history.length)];
+	}
+
+	protected long getFirst() {
+		return Math.max(0, count - window);
+	}
+
+	protected void recompute() {
+		long first = getFirst();
+		sum = 0;
+		sumOfSquares = 0;
+		for (int i = 0; i < lagSums.length; i++) {
+			lagSums[i] = 0;
+		}
+		for (long t = first; t < count; t++) {
+			double x = get(t);
+			sum += x;
+			sumOfSquares += x * x;
+			for (int i = 0; i < lags.length; i++) {
+				if (t >= lags[i]) {
+					lagSums[i] += x * get(t - lags[i]);
+				}
+			}
+		}
+		updatesSinceRecompute = 0;
+	}
+
+	/**
+	 * @return The number of observations currently in the window.
+	 */
+	public int getSize() {
+		return (int) Math.min(count, window);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return sum / getSize();
+	}
+
+	public double getVariance() {
+		double mean = getMean();
+		return sumOfSquares / getSize() - mean * mean;
+	}
+
+	public double getSumOfSquares() {
+		return sumOfSquares;
+	}
+
+	/**
+	 * @param i
+	 *            The index of the lag in the array passed to the
+	 *            constructor.
+	 * @return The sample autocorrelation over the current window.
+	 */
+	public double getAutocorrelation(int i) {
+		long pairs = count - Math.max(getFirst(), lags[i]);
+		double variance = getVariance();
+		if (pairs <= 0 || !(variance > 0)) {
+			return Double.NaN;
+		}
+		double mean = getMean();
+		return (lagSums[i] / pairs - mean * mean) / variance;
+	}
+
+	public int[] getLags() {
+		return lags;
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	public void reset() {
+		count = 0;
+		sum = 0;
+		sumOfSquares = 0;
+		updatesSinceRecompute = 0;
+		for (int i = 0; i < lagSums.length; i++) {
+			lagSums[i] = 0;
+		}
+	}
+
+}
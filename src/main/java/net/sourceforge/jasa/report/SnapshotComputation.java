@@ -0,0 +1,43 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.util.Map;
+
+import net.sourceforge.jabm.event.SimEvent;
+
+/**
+ * <p>
+ * A report computation which is split into two parts so that it can be
+ * performed off the simulation thread by an
+ * {@link AsynchronousReportVariables}. {@link #takeSnapshot} is called on
+ * the simulation thread and should cheaply copy the state it needs into an
+ * object which is not modified afterwards; {@link #compute} is then called
+ * on a worker thread and must depend only on the snapshot.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public interface SnapshotComputation<S> {
+
+	public S takeSnapshot(SimEvent event);
+
+	public Map<Object, Number> compute(S snapshot);
+
+	public String getName();
+
+}
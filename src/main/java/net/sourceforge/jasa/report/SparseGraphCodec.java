@@ -0,0 +1,187 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * <p>
+ * A binary format for sparse weighted graphs, in either coordinate (COO) or
+ * compressed sparse row (CSR) layout.  Every file starts with a header of
+ * the magic number, version, layout, flags, the number of vertices, the
+ * number of stored edges and the transaction count at which the graph was
+ * captured.  A COO body is a sequence of (int source, int target, double
+ * weight) triples. A CSR body is numVertices + 1 int row offsets, followed
+ * by the int targets and then the double weights of the edges in row
+ * order.
+ * </p>
+ * 
+ * <p>
+ * If the delta flag is set, the file only contains the edges that changed
+ * since the previous file in the sequence.  Edges which have been removed
+ * are stored with a weight of zero.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class SparseGraphCodec {
+
+	public static final int MAGIC = 0x4a544e53;
+
+	public static final int VERSION = 1;
+
+	public static final byte COO = 0;
+
+	public static final byte CSR = 1;
+
+	public static final byte FLAG_DELTA = 1;
+
+	/**
+	 * The edges of a sparse graph in coordinate form.
+	 */
+	public static class SparseGraph {
+
+		public byte layout;
+
+		public boolean delta;
+
+		public int numVertices;
+
+		public long transactions;
+
+		public int numEdges;
+
+		public int[] sources;
+
+		public int[] targets;
+
+		public double[] weights;
+	}
+
+	public static byte parseLayout(String name) {
+		if ("coo".equalsIgnoreCase(name)) {
+			return COO;
+		} else if ("csr".equalsIgnoreCase(name)) {
+			return CSR;
+		} else {
+			throw new IllegalArgumentException("Unknown layout " + name);
+		}
+	}
+
+	/**
+	 * Write the first numEdges edges in the supplied arrays. The arrays are
+	 * not modified, and the edges may be in any order.
+	 */
+	public static void write(DataOutput out, byte layout, boolean delta,
+			int numVertices, long transactions, int[] sources, int[] targets,
+			double[] weights, int numEdges) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeByte(layout);
+		out.writeByte(delta ? FLAG_DELTA : 0);
+		out.writeInt(numVertices);
+		out.writeInt(numEdges);
+		out.writeLong(transactions);
+		if (layout == COO) {
+			for (int e = 0; e < numEdges; e++) {
+				out.writeInt(sources[e]);
+				out.writeInt(targets[e]);
+				out.writeDouble(weights[e]);
+			}
+		} else if (layout == CSR) {
+			writeCSR(out, numVertices, sources, targets, weights, numEdges);
+		} else {
+			throw new IllegalArgumentException("Unknown layout " + layout);
+		}
+	}
+
+	protected static void writeCSR(DataOutput out, int numVertices,
+			int[] sources, int[] targets, double[] weights, int numEdges)
+			throws IOException {
+		// Counting sort of the edges by source in O(numVertices + numEdges)
+		int[] offsets = new int[numVertices + 1];
+		for (int e = 0; e < numEdges; e++) {
+			offsets[sources[e] + 1]++;
+		}
+		for (int v = 0; v < numVertices; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+		int[] order = new int[numEdges];
+		int[] next = offsets.clone();
+		for (int e = 0; e < numEdges; e++) {
+			order[next[sources[e]]++] = e;
+		}
+		for (int v = 0; v <= numVertices; v++) {
+			out.writeInt(offsets[v]);
+		}
+		for (int i = 0; i < numEdges; i++) {
+			out.writeInt(targets[order[i]]);
+		}
+		for (int i = 0; i < numEdges; i++) {
+			out.writeDouble(weights[order[i]]);
+		}
+	}
+
+	public static SparseGraph read(DataInput in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a sparse graph file");
+		}
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported version " + version);
+		}
+		SparseGraph graph = new SparseGraph();
+		graph.layout = in.readByte();
+		graph.delta = (in.readByte() & FLAG_DELTA) != 0;
+		graph.numVertices = in.readInt();
+		graph.numEdges = in.readInt();
+		graph.transactions = in.readLong();
+		int n = graph.numEdges;
+		graph.sources = new int[n];
+		graph.targets = new int[n];
+		graph.weights = new double[n];
+		if (graph.layout == COO) {
+			for (int e = 0; e < n; e++) {
+				graph.sources[e] = in.readInt();
+				graph.targets[e] = in.readInt();
+				graph.weights[e] = in.readDouble();
+			}
+		} else if (graph.layout == CSR) {
+			int[] offsets = new int[graph.numVertices + 1];
+			for (int v = 0; v <= graph.numVertices; v++) {
+				offsets[v] = in.readInt();
+			}
+			for (int v = 0; v < graph.numVertices; v++) {
+				for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+					graph.sources[e] = v;
+				}
+			}
+			for (int e = 0; e < n; e++) {
+				graph.targets[e] = in.readInt();
+			}
+			for (int e = 0; e < n; e++) {
+				graph.weights[e] = in.readDouble();
+			}
+		} else {
+			throw new IOException("Unknown layout " + graph.layout);
+		}
+		return graph;
+	}
+
+}
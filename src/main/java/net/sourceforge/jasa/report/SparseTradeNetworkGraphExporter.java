@@ -0,0 +1,93 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.sourceforge.jasa.market.AuctionRuntimeException;
+
+/**
+ * Export the trade network in the binary sparse format of
+ * {@link SparseGraphCodec}, in either COO or CSR layout.
+ * 
+ * @see AbstractSparseTradeNetworkGraphExporter
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class SparseTradeNetworkGraphExporter extends
+		AbstractSparseTradeNetworkGraphExporter {
+
+	protected byte layout = SparseGraphCodec.CSR;
+
+	protected int[] sources = new int[0];
+
+	protected int[] targets = new int[0];
+
+	protected double[] weights = new double[0];
+
+	protected int numEdges;
+
+	@Override
+	public void exportGraph() {
+		numEdges = 0;
+		visitEdges(new EdgeVisitor() {
+			public void visit(int source, int target, double weight) {
+				if (numEdges == sources.length) {
+					int capacity = Math.max(16, numEdges * 2);
+					sources = Arrays.copyOf(sources, capacity);
+					targets = Arrays.copyOf(targets, capacity);
+					weights = Arrays.copyOf(weights, capacity);
+				}
+				sources[numEdges] = source;
+				targets[numEdges] = target;
+				weights[numEdges] = weight;
+				numEdges++;
+			}
+		});
+		String fileName = baseFileName + "-" + this.graphNumber + ".jtn";
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(fileName)));
+			try {
+				SparseGraphCodec.write(out, layout, delta, getNumVertices(),
+						tradeNetworkReport.getTransactions(), sources, targets,
+						weights, numEdges);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new AuctionRuntimeException(e);
+		}
+	}
+
+	public String getLayout() {
+		return layout == SparseGraphCodec.COO ? "coo" : "csr";
+	}
+
+	/**
+	 * @param layout
+	 *            Either "coo" or "csr".
+	 */
+	public void setLayout(String layout) {
+		this.layout = SparseGraphCodec.parseLayout(layout);
+	}
+
+}
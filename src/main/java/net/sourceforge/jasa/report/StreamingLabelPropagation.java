@@ -0,0 +1,422 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Tracks the community structure of an undirected weighted graph whose
+ * weights decay exponentially over time, using streaming label
+ * propagation. Each vertex carries a community label, and when the weight
+ * of an edge changes its end-points are relabelled with the label of
+ * greatest total weight among their neighbours. Changes of label spread to
+ * neighbours through a work queue, but at most <code>maxEvaluations</code>
+ * vertices are evaluated per update, so the cost of each update is bounded
+ * by that number times the maximum degree.
+ * </p>
+ * 
+ * <p>
+ * Weights follow the lazy-decay convention of {@link TradeNetworkReport}:
+ * every weight decays by a factor of <code>decay</code> per unit of time,
+ * and is only brought up to date when it is read or changed. Since all
+ * weights decay at the same rate, the aggregates from which the modularity
+ * is computed (the total weight, the internal weight of each community,
+ * and the sum of squared community degrees) can be decayed lazily in the
+ * same way, and the modularity is available in O(1).
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class StreamingLabelPropagation<V> implements Serializable {
+
+	public static final int DEFAULT_MAX_EVALUATIONS = 32;
+
+	/**
+	 * The factor by which weights decay per unit of time.
+	 */
+	protected double decay;
+
+	protected int maxEvaluations = DEFAULT_MAX_EVALUATIONS;
+
+	protected long time;
+
+	protected HashMap<V, Vertex<V>> vertices = new HashMap<V, Vertex<V>>();
+
+	protected HashMap<Integer, Community> communities = 
+		new HashMap<Integer, Community>();
+
+	protected int nextLabel = 0;
+
+	/**
+	 * The total weight of all edges.
+	 */
+	protected DecayingSum totalWeight = new DecayingSum();
+
+	/**
+	 * The total weight of edges within communities.
+	 */
+	protected DecayingSum internalWeight = new DecayingSum();
+
+	/**
+	 * The sum over communities of the square of the total degree, which
+	 * decays at twice the rate of the weights.
+	 */
+	protected DecayingSum squaredDegrees = new DecayingSum();
+
+	protected ArrayDeque<Vertex<V>> queue = new ArrayDeque<Vertex<V>>();
+
+	protected long evaluations;
+
+	protected long relabellings;
+
+	/**
+	 * A value which decays exponentially, and is only brought up to date
+	 * when it is read or changed.
+	 */
+	public static class DecayingSum implements Serializable {
+
+		protected double value;
+
+		protected long time;
+
+		public double get(long t, double decay) {
+			if (t == time || value == 0) {
+				return value;
+			}
+			return value * Math.pow(decay, t - time);
+		}
+
+		public void add(double delta, long t, double decay) {
+			value = get(t, decay) + delta;
+			time = t;
+		}
+
+		public void clear() {
+			value = 0;
+			time = 0;
+		}
+	}
+
+	protected static class Vertex<V> implements Serializable {
+
+		V vertex;
+
+		int label;
+
+		boolean queued;
+
+		HashMap<Vertex<V>, DecayingSum> neighbours = 
+			new HashMap<Vertex<V>, DecayingSum>();
+
+		Vertex(V vertex, int label) {
+			this.vertex = vertex;
+			this.label = label;
+		}
+	}
+
+	protected static class Community implements Serializable {
+
+		int size;
+
+		DecayingSum degree = new DecayingSum();
+	}
+
+	public StreamingLabelPropagation(double decay) {
+		this.decay = decay;
+	}
+
+	public StreamingLabelPropagation() {
+		this(1.0);
+	}
+
+	/**
+	 * Change the weight of the undirected edge between two vertices.
+	 * 
+	 * @param a
+	 *            One end-point.
+	 * @param b
+	 *            The other end-point.
+	 * @param delta
+	 *            The change in the current weight of the edge.  When the
+	 *            weight of the edge falls to zero the edge is removed.
+	 * @param t
+	 *            The current time, which must not decrease.
+	 */
+	public void addWeight(V a, V b, double delta, long t) {
+		if (a.equals(b) || delta == 0) {
+			return;
+		}
+		time = t;
+		Vertex<V> va = getVertex(a);
+		Vertex<V> vb = getVertex(b);
+		DecayingSum edge = va.neighbours.get(vb);
+		if (edge == null) {
+			if (delta < 0) {
+				return;
+			}
+			edge = new DecayingSum();
+			va.neighbours.put(vb, edge);
+			vb.neighbours.put(va, edge);
+		}
+		double before = edge.get(t, decay);
+		if (before + delta <= before * 1E-9) {
+			// The edge has been removed, so discard any rounding residue
+			delta = -before;
+			va.neighbours.remove(vb);
+			vb.neighbours.remove(va);
+		} else {
+			edge.add(delta, t, decay);
+		}
+		changeEdgeWeight(va, vb, delta);
+		removeIfIsolated(va);
+		removeIfIsolated(vb);
+		enqueue(va);
+		enqueue(vb);
+		propagate();
+	}
+
+	/**
+	 * Remove the edge between two vertices.
+	 */
+	public void removeEdge(V a, V b, long t) {
+		Vertex<V> va = vertices.get(a);
+		Vertex<V> vb = vertices.get(b);
+		if (va == null || vb == null) {
+			return;
+		}
+		DecayingSum edge = va.neighbours.get(vb);
+		if (edge != null) {
+			addWeight(a, b, -edge.get(t, decay), t);
+		}
+	}
+
+	protected Vertex<V> getVertex(V v) {
+		Vertex<V> vertex = vertices.get(v);
+		if (vertex == null) {
+			vertex = new Vertex<V>(v, nextLabel++);
+			vertices.put(v, vertex);
+			getCommunity(vertex.label).size++;
+		}
+		return vertex;
+	}
+
+	protected Community getCommunity(int label) {
+		Community community = communities.get(label);
+		if (community == null) {
+			community = new Community();
+			communities.put(label, community);
+		}
+		return community;
+	}
+
+	protected void removeIfIsolated(Vertex<V> vertex) {
+		if (vertex.neighbours.isEmpty()) {
+			vertices.remove(vertex.vertex);
+			leave(vertex.label);
+		}
+	}
+
+	protected void leave(int label) {
+		Community community = communities.get(label);
+		if (--community.size == 0) {
+			changeDegree(community, -community.degree.get(time, decay));
+			communities.remove(label);
+		}
+	}
+
+	/**
+	 * Update the aggregates for a change in the weight of the edge between
+	 * two vertices.
+	 */
+	protected void changeEdgeWeight(Vertex<V> a, Vertex<V> b, double delta) {
+		totalWeight.add(delta, time, decay);
+		changeDegree(communities.get(a.label), delta);
+		changeDegree(communities.get(b.label), delta);
+		if (a.label == b.label) {
+			internalWeight.add(delta, time, decay);
+		}
+	}
+
+	protected void changeDegree(Community community, double delta) {
+		double before = community.degree.get(time, decay);
+		community.degree.add(delta, time, decay);
+		double after = community.degree.value;
+		squaredDegrees.add(after * after - before * before, time, decay
+				* decay);
+	}
+
+	protected void enqueue(Vertex<V> vertex) {
+		if (!vertex.queued && vertices.containsKey(vertex.vertex)) {
+			vertex.queued = true;
+			queue.add(vertex);
+		}
+	}
+
+	protected void propagate() {
+		int budget = maxEvaluations;
+		while (!queue.isEmpty() && budget-- > 0) {
+			Vertex<V> vertex = queue.poll();
+			vertex.queued = false;
+			if (relabel(vertex)) {
+				for (Vertex<V> neighbour : vertex.neighbours.keySet()) {
+					enqueue(neighbour);
+				}
+			}
+		}
+		// Vertices left over will be evaluated on later updates
+	}
+
+	/**
+	 * Move a vertex to the community of greatest weight among its
+	 * neighbours, keeping its current label in the event of a tie.
+	 * 
+	 * @return true if the label of the vertex changed.
+	 */
+	protected boolean relabel(Vertex<V> vertex) {
+		evaluations++;
+		HashMap<Integer, Double> scores = new HashMap<Integer, Double>();
+		double degree = 0;
+		for (Map.Entry<Vertex<V>, DecayingSum> entry : vertex.neighbours
+				.entrySet()) {
+			double w = entry.getValue().get(time, decay);
+			degree += w;
+			Integer label = entry.getKey().label;
+			Double score = scores.get(label);
+			scores.put(label, score == null ? w : score + w);
+		}
+		int current = vertex.label;
+		Double currentScore = scores.get(current);
+		double bestScore = currentScore == null ? 0 : currentScore;
+		int best = current;
+		for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+			if (entry.getValue() > bestScore) {
+				bestScore = entry.getValue();
+				best = entry.getKey();
+			}
+		}
+		if (best == current) {
+			return false;
+		}
+		double oldInternal = currentScore == null ? 0 : currentScore;
+		changeDegree(communities.get(current), -degree);
+		internalWeight.add(bestScore - oldInternal, time, decay);
+		leave(current);
+		vertex.label = best;
+		Community community = getCommunity(best);
+		community.size++;
+		changeDegree(community, degree);
+		relabellings++;
+		return true;
+	}
+
+	/**
+	 * @return The modularity of the current partition with respect to the
+	 *         current weights.
+	 */
+	public double getModularity() {
+		double m = totalWeight.get(time, decay);
+		if (m <= 0) {
+			return 0;
+		}
+		double q = internalWeight.get(time, decay) / m
+				- squaredDegrees.get(time, decay * decay) / (4 * m * m);
+		return Math.max(-0.5, Math.min(1, q));
+	}
+
+	/**
+	 * @return The number of communities among vertices with at least one
+	 *         edge.
+	 */
+	public int getNumberOfCommunities() {
+		return communities.size();
+	}
+
+	/**
+	 * @return The sizes of the communities in descending order.
+	 */
+	public ArrayList<Integer> getCommunitySizes() {
+		ArrayList<Integer> sizes = new ArrayList<Integer>(communities.size());
+		for (Community community : communities.values()) {
+			sizes.add(community.size);
+		}
+		Collections.sort(sizes, Collections.reverseOrder());
+		return sizes;
+	}
+
+	public int getLargestCommunitySize() {
+		int largest = 0;
+		for (Community community : communities.values()) {
+			largest = Math.max(largest, community.size);
+		}
+		return largest;
+	}
+
+	/**
+	 * @return The label of the community of the specified vertex, or -1 if
+	 *         it has no edges.
+	 */
+	public int getLabel(V v) {
+		Vertex<V> vertex = vertices.get(v);
+		return vertex == null ? -1 : vertex.label;
+	}
+
+	public int getNumberOfVertices() {
+		return vertices.size();
+	}
+
+	public void clear() {
+		vertices.clear();
+		communities.clear();
+		queue.clear();
+		totalWeight.clear();
+		internalWeight.clear();
+		squaredDegrees.clear();
+		nextLabel = 0;
+		time = 0;
+	}
+
+	public double getDecay() {
+		return decay;
+	}
+
+	public void setDecay(double decay) {
+		this.decay = decay;
+	}
+
+	public int getMaxEvaluations() {
+		return maxEvaluations;
+	}
+
+	public void setMaxEvaluations(int maxEvaluations) {
+		this.maxEvaluations = maxEvaluations;
+	}
+
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	public long getRelabellings() {
+		return relabellings;
+	}
+
+}
@@ -0,0 +1,321 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sourceforge.jabm.event.RoundFinishedEvent;
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jabm.report.ReportVariables;
+
+import org.springframework.beans.factory.annotation.Required;
+
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * <p>
+ * Computes the stylized facts of the price series online, so that they do
+ * not have to be recovered offline from CSV dumps of the price and spread
+ * time series. At the end of each round the price is taken from
+ * <code>priceVariables</code> and the spread from
+ * <code>spreadVariables</code>, and the following are updated:
+ * </p>
+ * <ul>
+ * <li>the autocorrelation of log returns and of absolute log returns at each
+ * of the configured lags over a rolling window;</li>
+ * <li>the excess kurtosis of log returns;</li>
+ * <li>the Hill estimate of the tail index of absolute returns, over a
+ * bounded reservoir sample;</li>
+ * <li>the realized volatility over the rolling window; and</li>
+ * <li>the mean and autocorrelation of the spread over the rolling window.</li>
+ * </ul>
+ * 
+ * <p>
+ * Each round costs O(number of lags) and memory is bounded by the window and
+ * reservoir sizes. Because sorting the reservoir is comparatively
+ * expensive, the tail index is only re-estimated every
+ * <code>tailIndexInterval</code> rounds. The reservoir is sampled using
+ * the <code>prng</code> property, which should be the simulation's shared
+ * random number generator so that runs are reproducible.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class StylizedFactsReportVariables implements ReportVariables,
+		Serializable {
+
+	protected MarketPriceReportVariables priceVariables;
+
+	protected MarketPriceReportVariables spreadVariables;
+
+	protected String name = "stylizedfacts";
+
+	protected int window = 250;
+
+	protected int[] lags = new int[] { 1, 2, 5, 10 };
+
+	protected int reservoirSize = 1000;
+
+	protected double tailFraction = 0.1;
+
+	protected int tailIndexInterval = 100;
+
+	protected RandomEngine prng;
+
+	protected RollingAutocorrelation returns;
+
+	protected RollingAutocorrelation absoluteReturns;
+
+	protected RollingAutocorrelation spreads;
+
+	protected HillEstimator hillEstimator;
+
+	protected double tailIndex;
+
+	protected double lastPrice;
+
+	protected int time;
+
+	protected long n;
+
+	protected double mean;
+
+	protected double m2;
+
+	protected double m3;
+
+	protected double m4;
+
+	public StylizedFactsReportVariables() {
+		initialise(null);
+	}
+
+	@Override
+	public void compute(SimEvent event) {
+		eventOccurred(event);
+	}
+
+	@Override
+	public void eventOccurred(SimEvent event) {
+		if (event instanceof RoundFinishedEvent) {
+			onRoundFinished((RoundFinishedEvent) event);
+		}
+	}
+
+	public void onRoundFinished(RoundFinishedEvent event) {
+		time = (int) event.getSimulation().getSimulationTime().getTicks();
+		double price = priceVariables.getPrice(event);
+		if (price > 0 && !Double.isInfinite(price)) {
+			if (lastPrice > 0) {
+				newReturn(Math.log(price / lastPrice));
+			}
+			lastPrice = price;
+		}
+		if (spreadVariables != null) {
+			double spread = spreadVariables.getPrice(event);
+			if (!Double.isNaN(spread) && !Double.isInfinite(spread)) {
+				spreads.newData(spread);
+			}
+		}
+	}
+
+	public void newReturn(double r) {
+		returns.newData(r);
+		absoluteReturns.newData(Math.abs(r));
+		hillEstimator.newData(Math.abs(r));
+		updateMoments(r);
+		if (n % tailIndexInterval == 0) {
+			tailIndex = hillEstimator.getTailIndex();
+		}
+	}
+
+	/**
+	 * Update the central moments using the one-pass formulae of Terriberry.
+	 */
+	protected void updateMoments(double x) {
+		long n1 = n;
+		n++;
+		double delta = x - mean;
+		double deltaN = delta / n;
+		double deltaN2 = deltaN * deltaN;
+		double term1 = delta * deltaN * n1;
+		mean += deltaN;
+		m4 += term1 * deltaN2 * (n * n - 3 * n + 3) + 6 * deltaN2 * m2 - 4
+				* deltaN * m3;
+		m3 += term1 * deltaN * (n - 2) - 3 * deltaN * m2;
+		m2 += term1;
+	}
+
+	/**
+	 * @return The excess kurtosis of all returns observed so far.
+	 */
+	public double getKurtosis() {
+		if (n < 4 || m2 == 0) {
+			return Double.NaN;
+		}
+		return n * m4 / (m2 * m2) - 3;
+	}
+
+	public double getRealizedVolatility() {
+		return Math.sqrt(returns.getSumOfSquares());
+	}
+
+	public double getTailIndex() {
+		return tailIndex;
+	}
+
+	public RollingAutocorrelation getReturns() {
+		return returns;
+	}
+
+	public RollingAutocorrelation getAbsoluteReturns() {
+		return absoluteReturns;
+	}
+
+	public RollingAutocorrelation getSpreads() {
+		return spreads;
+	}
+
+	@Override
+	public Map<Object, Number> getVariableBindings() {
+		LinkedHashMap<Object, Number> result = new LinkedHashMap<Object, Number>();
+		result.put(name + ".t", time);
+		for (int i = 0; i < lags.length; i++) {
+			result.put(name + ".return.acf." + lags[i],
+					returns.getAutocorrelation(i));
+		}
+		for (int i = 0; i < lags.length; i++) {
+			result.put(name + ".absreturn.acf." + lags[i],
+					absoluteReturns.getAutocorrelation(i));
+		}
+		result.put(name + ".kurtosis", getKurtosis());
+		result.put(name + ".hill", tailIndex);
+		result.put(name + ".realizedvol", getRealizedVolatility());
+		if (spreadVariables != null) {
+			result.put(name + ".spread.mean", spreads.getMean());
+			for (int i = 0; i < lags.length; i++) {
+				result.put(name + ".spread.acf." + lags[i],
+						spreads.getAutocorrelation(i));
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void initialise(SimEvent event) {
+		returns = new RollingAutocorrelation(window, lags);
+		absoluteReturns = new RollingAutocorrelation(window, lags);
+		spreads = new RollingAutocorrelation(window, lags);
+		hillEstimator = new HillEstimator(reservoirSize, prng);
+		hillEstimator.setTailFraction(tailFraction);
+		tailIndex = Double.NaN;
+		lastPrice = Double.NaN;
+		time = 0;
+		n = 0;
+		mean = 0;
+		m2 = 0;
+		m3 = 0;
+		m4 = 0;
+	}
+
+	@Override
+	public void dispose(SimEvent event) {
+		tailIndex = hillEstimator.getTailIndex();
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public MarketPriceReportVariables getPriceVariables() {
+		return priceVariables;
+	}
+
+	public void setPriceVariables(MarketPriceReportVariables priceVariables) {
+		this.priceVariables = priceVariables;
+	}
+
+	public MarketPriceReportVariables getSpreadVariables() {
+		return spreadVariables;
+	}
+
+	public void setSpreadVariables(MarketPriceReportVariables spreadVariables) {
+		this.spreadVariables = spreadVariables;
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	public void setWindow(int window) {
+		this.window = window;
+		initialise(null);
+	}
+
+	public int[] getLags() {
+		return lags;
+	}
+
+	public void setLags(int[] lags) {
+		this.lags = lags;
+		initialise(null);
+	}
+
+	public int getReservoirSize() {
+		return reservoirSize;
+	}
+
+	public void setReservoirSize(int reservoirSize) {
+		this.reservoirSize = reservoirSize;
+		initialise(null);
+	}
+
+	public double getTailFraction() {
+		return tailFraction;
+	}
+
+	public void setTailFraction(double tailFraction) {
+		this.tailFraction = tailFraction;
+		hillEstimator.setTailFraction(tailFraction);
+	}
+
+	public int getTailIndexInterval() {
+		return tailIndexInterval;
+	}
+
+	public void setTailIndexInterval(int tailIndexInterval) {
+		this.tailIndexInterval = tailIndexInterval;
+	}
+
+	public RandomEngine getPrng() {
+		return prng;
+	}
+
+	@Required
+	public void setPrng(RandomEngine prng) {
+		this.prng = prng;
+		initialise(null);
+	}
+
+}
@@ -17,17 +17,31 @@ package net.sourceforge.jasa.report;
 
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 
+import net.sourceforge.jabm.agent.Agent;
+import net.sourceforge.jabm.event.SimEvent;
 import net.sourceforge.jabm.report.DataWriter;
 import net.sourceforge.jasa.market.Market;
 import net.sourceforge.jasa.market.Order;
+import net.sourceforge.jasa.market.PriceLevelTree;
 
 import org.apache.log4j.Logger;
 
 
 /**
+ * <p>
+ * Writes the supply and demand curves of a market.  The curves are
+ * maintained incrementally rather than by simulating a direct-revelation
+ * auction on every computation: subclasses call
+ * {@link #updateCurves(Agent, Order)} whenever an agent's order changes, or
+ * read curves that are already maintained elsewhere, such as by the order
+ * book.  The curves can be written as a step series in O(levels) without
+ * sorting.
+ * </p>
+ * 
  * @author Steve Phelps
  * @version $Revision$
  */
@@ -43,6 +57,31 @@ public abstract class SupplyAndDemandStats extends DirectRevelationReportVariabl
 	 * The DataWriter to write the demand curve to.
 	 */
 	protected DataWriter demandStats;
+
+	/**
+	 * The cumulative supply curve maintained by updateCurves().
+	 */
+	protected PriceLevelTree supplyCurve = new PriceLevelTree();
+
+	/**
+	 * The cumulative demand curve maintained by updateCurves().
+	 */
+	protected PriceLevelTree demandCurve = new PriceLevelTree();
+
+	/**
+	 * The order most recently contributed to the curves by each agent.
+	 */
+	protected HashMap<Agent, Contribution> contributions = 
+		new HashMap<Agent, Contribution>();
+
+	protected static class Contribution {
+
+		double price;
+
+		int quantity;
+
+		boolean isBid;
+	}
 	
 	static Logger logger = Logger.getLogger(SupplyAndDemandStats.class);
 
@@ -67,6 +106,109 @@ public abstract class SupplyAndDemandStats extends DirectRevelationReportVariabl
 		writeSupplyStats();
 		writeDemandStats();
 	}
+
+	@Override
+	protected boolean requiresDirectRevelation() {
+		return false;
+	}
+
+	@Override
+	public void initialise(SimEvent event) {
+		super.initialise(event);
+		supplyCurve.clear();
+		demandCurve.clear();
+		contributions.clear();
+	}
+
+	/**
+	 * Record the order currently contributed to the curves by the specified
+	 * agent, replacing its previous contribution only if the price, quantity
+	 * or side has changed.
+	 * 
+	 * @param agent
+	 *          The agent.
+	 * @param order
+	 *          The agent's current order, or null if it is not currently
+	 *          contributing to the curves.
+	 */
+	protected void updateCurves(Agent agent, Order order) {
+		Contribution contribution = contributions.get(agent);
+		if (contribution == null) {
+			contribution = new Contribution();
+			contributions.put(agent, contribution);
+		}
+		if (order == null) {
+			withdraw(contribution);
+			return;
+		}
+		double price = order.getPriceAsDouble();
+		int quantity = order.getQuantity();
+		boolean isBid = order.isBid();
+		if (contribution.quantity == quantity && contribution.price == price
+				&& contribution.isBid == isBid) {
+			return;
+		}
+		withdraw(contribution);
+		contribution.price = price;
+		contribution.quantity = quantity;
+		contribution.isBid = isBid;
+		(isBid ? demandCurve : supplyCurve).add(price, quantity);
+	}
+
+	protected void withdraw(Contribution contribution) {
+		if (contribution.quantity > 0) {
+			(contribution.isBid ? demandCurve : supplyCurve).remove(
+					contribution.price, contribution.quantity);
+			contribution.quantity = 0;
+		}
+	}
+
+	/**
+	 * Write a cumulative curve as a step series, visiting the price levels
+	 * in ascending order for a supply curve or descending order for a
+	 * demand curve.  Each level is written as the four values (qty, price,
+	 * qty1, price) where qty is the cumulative quantity before the level
+	 * and qty1 the cumulative quantity including it.
+	 */
+	public void writeStats(final DataWriter stats, PriceLevelTree curve,
+			boolean descending) {
+		curve.visit(new PriceLevelTree.LevelVisitor() {
+			public void visit(double price, long quantity, long cumulative) {
+				stats.newData(cumulative - quantity);
+				stats.newData(price);
+				stats.newData(cumulative);
+				stats.newData(price);
+			}
+		}, descending);
+	}
+
+	/**
+	 * @return The step series of a curve as the values that
+	 *         {@link #writeStats(DataWriter, PriceLevelTree, boolean)}
+	 *         would write.
+	 */
+	public double[] getSteps(PriceLevelTree curve, boolean descending) {
+		final double[] steps = new double[curve.getNumberOfLevels() * 4];
+		curve.visit(new PriceLevelTree.LevelVisitor() {
+			int i = 0;
+			public void visit(double price, long quantity, long cumulative) {
+				steps[i++] = cumulative - quantity;
+				steps[i++] = price;
+				steps[i++] = cumulative;
+				steps[i++] = price;
+			}
+		}, descending);
+		return steps;
+	}
+
+	public PriceLevelTree getSupplyCurve() {
+		return supplyCurve;
+	}
+
+	public PriceLevelTree getDemandCurve() {
+		return demandCurve;
+	}
+
 	public void writeStats(DataWriter stats, List<Order> shouts, 
 							Comparator<Order> comparator) {
 		int qty = 0, qty1 = 0;
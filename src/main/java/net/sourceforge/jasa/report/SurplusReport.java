@@ -107,7 +107,9 @@ public class SurplusReport extends EquilibriumReportVariables {
 
 	public void calculate() {
 		super.calculate();
-		if (matchedShouts != null) {
+		if (equilibriumTracker != null) {
+			calculateEquilibriumProfitsFromTracker();
+		} else if (matchedShouts != null) {
 			Iterator<Order> i = matchedShouts.iterator();
 			while (i.hasNext()) {
 				Order bid = i.next();
@@ -134,6 +136,24 @@ public class SurplusReport extends EquilibriumReportVariables {
 //		assert eA <= 100 + 10E-6 && eA >= 0;
 	}
 
+	protected void calculateEquilibriumProfitsFromTracker() {
+		if (!equilibriaFound) {
+			return;
+		}
+		Iterator<Agent> i = auction.getTraderIterator();
+		while (i.hasNext()) {
+			AbstractTradingAgent trader = (AbstractTradingAgent) i.next();
+			int quantity = equilibriumTracker.getMatchedQuantity(trader);
+			if (quantity > 0) {
+				if (trader.isBuyer(auction)) {
+					pBCE += equilibriumProfits(quantity, trader);
+				} else {
+					pSCE += equilibriumProfits(quantity, trader);
+				}
+			}
+		}
+	}
+
 	protected void calculateActualProfits() {
 		pSA = 0;
 		pBA = 0;
@@ -21,6 +21,27 @@ public abstract class TimeSeriesReport extends AbstractAuctionReport {
 	
 	protected int n = 0;
 	
+	/**
+	 * If true, records are written on a background thread by an
+	 * AsyncRecordWriter instead of synchronously by the CSVWriter.
+	 */
+	protected boolean asynchronous = false;
+	
+	protected AsyncRecordWriter recordWriter;
+	
+	/**
+	 * If true, records are written in the columnar binary format as an int
+	 * tick followed by double values.
+	 */
+	protected boolean binary = false;
+	
+	protected ColumnarTimeSeriesWriter columnarWriter;
+	
+	/**
+	 * The number of columns in each record.
+	 */
+	protected int numColumns = 2;
+	
 	static Logger logger = Logger.getLogger(TimeSeriesReport.class);
 	
 	public TimeSeriesReport(String filename) {
@@ -55,15 +76,31 @@ public abstract class TimeSeriesReport extends AbstractAuctionReport {
 
 
 	public void onSimulationFinished() {
-		csvWriter.close();
+		if (columnarWriter != null) {
+			columnarWriter.close();
+			columnarWriter = null;
+		} else if (recordWriter != null) {
+			recordWriter.close();
+			recordWriter = null;
+		} else {
+			csvWriter.close();
+		}
 	}
 	
 	public void onSimulationStarting() {
 		try {
-			String filename = baseFilename + n + ".csv";
+			String filename = baseFilename + n + (binary ? ".jts" : ".csv");
 			logger.info("Writing time series to " + filename);
-			csvWriter = 
-				new CSVWriter(new FileOutputStream(filename), 2);
+			if (binary) {
+				columnarWriter = new ColumnarTimeSeriesWriter(filename,
+						getColumnNames(), getColumnTypes());
+			} else if (asynchronous) {
+				recordWriter = new AsyncRecordWriter(filename, numColumns);
+				recordWriter.setIntegerColumn(0, true);
+			} else {
+				csvWriter = 
+					new CSVWriter(new FileOutputStream(filename), numColumns);
+			}
 			n++;
 		} catch (IOException e) {
 			throw new AuctionRuntimeException(e);
@@ -81,6 +118,87 @@ public abstract class TimeSeriesReport extends AbstractAuctionReport {
 		this.csvWriter = dataWriter;
 	}
 
+	/**
+	 * Write a record consisting of a tick and a single value to whichever
+	 * output has been configured.
+	 */
+	protected void newRecord(int tick, double value) {
+		if (columnarWriter != null) {
+			columnarWriter.newData(tick);
+			columnarWriter.newData(value);
+		} else if (recordWriter != null) {
+			recordWriter.newData(tick);
+			recordWriter.newData(value);
+		} else {
+			csvWriter.newData(tick);
+			csvWriter.newData(value);
+		}
+	}
+	
+	/**
+	 * Write a record consisting of a tick and several values, which must
+	 * match the number of columns configured for this report.
+	 */
+	protected void newRecord(int tick, double[] values) {
+		if (columnarWriter != null) {
+			columnarWriter.newData(tick);
+			for (int i = 0; i < values.length; i++) {
+				columnarWriter.newData(values[i]);
+			}
+		} else if (recordWriter != null) {
+			recordWriter.newData(tick);
+			for (int i = 0; i < values.length; i++) {
+				recordWriter.newData(values[i]);
+			}
+		} else {
+			csvWriter.newData(tick);
+			for (int i = 0; i < values.length; i++) {
+				csvWriter.newData(values[i]);
+			}
+		}
+	}
+	
+	/**
+	 * The column names used for binary output.
+	 */
+	protected String[] getColumnNames() {
+		String[] names = new String[numColumns];
+		names[0] = "t";
+		for (int i = 1; i < numColumns; i++) {
+			names[i] = "value" + (numColumns > 2 ? i : "");
+		}
+		return names;
+	}
+	
+	protected byte[] getColumnTypes() {
+		byte[] types = new byte[numColumns];
+		types[0] = ColumnarTimeSeriesCodec.INT;
+		for (int i = 1; i < numColumns; i++) {
+			types[i] = ColumnarTimeSeriesCodec.DOUBLE;
+		}
+		return types;
+	}
+
+	public boolean isBinary() {
+		return binary;
+	}
+
+	public void setBinary(boolean binary) {
+		this.binary = binary;
+	}
+
+	public boolean isAsynchronous() {
+		return asynchronous;
+	}
+
+	public void setAsynchronous(boolean asynchronous) {
+		this.asynchronous = asynchronous;
+	}
+
+	public AsyncRecordWriter getRecordWriter() {
+		return recordWriter;
+	}
+
 	public String getBaseFilename() {
 		return baseFilename;
 	}
@@ -3,8 +3,8 @@ package net.sourceforge.jasa.report;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 import net.sourceforge.jabm.Population;
 import net.sourceforge.jabm.agent.Agent;
@@ -23,6 +23,7 @@ import org.apache.log4j.Logger;
 import edu.uci.ics.jung.algorithms.shortestpath.DijkstraShortestPath;
 import edu.uci.ics.jung.graph.DirectedSparseGraph;
 import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.util.Pair;
 
 public class TradeNetworkReport extends AbstractModel implements
 		 Report, Serializable, RelationshipTracker {
@@ -42,6 +43,25 @@ public class TradeNetworkReport extends AbstractModel implements
 	
 	protected Population population;
 	
+	/**
+	 * The number of transactions recorded since the graph was last reset.
+	 * Edge weights are decayed lazily as a function of this counter.
+	 */
+	protected long transactions;
+	
+	/**
+	 * Edges ordered by the transaction count at which their decayed weight
+	 * falls below the threshold.
+	 */
+	protected PriorityQueue<EdgeExpiry> expiryQueue = 
+		new PriorityQueue<EdgeExpiry>();
+	
+	/**
+	 * Tracks the community structure of the network as edges are updated,
+	 * or null if communities are not being tracked.
+	 */
+	protected StreamingLabelPropagation<Agent> communityTracker;
+	
 	static Logger logger = Logger.getLogger(TradeNetworkReport.class);
 
 //	protected Set<Set<Agent>> communities; 
@@ -108,7 +128,12 @@ public class TradeNetworkReport extends AbstractModel implements
 	
 	public void resetGraph(SimulationEvent event) {
 		maximumWeight = Double.NEGATIVE_INFINITY;
+		transactions = 0;
 		clearGraph();
+		if (communityTracker != null) {
+			communityTracker.clear();
+			communityTracker.setDecay(1 - alpha);
+		}
 		Population population = 
 			event.getSimulation().getSimulationController().getPopulation();
 		for(Agent agent : population.getAgents()) {
@@ -117,6 +142,7 @@ public class TradeNetworkReport extends AbstractModel implements
 	}
 	
 	public void clearGraph() {
+		expiryQueue.clear();
 		clearEdges();
 		clearVertices();
 //		communities = new HashSet<Set<Agent>>();
@@ -132,8 +158,12 @@ public class TradeNetworkReport extends AbstractModel implements
 		
 		assert x != null && y != null;
 		
+		transactions++;
+		
 		TransactionList edge = (TransactionList) graph.findEdge(x, y);
 		
+		double before = edge == null ? 0 : edge.getValue();
+		
 		if (edge == null) {
 			edge = new TransactionList();
 			edge.add(transaction);
@@ -150,30 +180,79 @@ public class TradeNetworkReport extends AbstractModel implements
 		
 		if (edge.getValue() < threshold) {
 			graph.removeEdge(edge);
+			updateCommunities(x, y, -before);
+		} else {
+			scheduleExpiry(edge);
+			updateCommunities(x, y, edge.getValue() - before);
 		}
 		
-		LinkedList<WeightedEdge> edgeRemovals = new LinkedList<WeightedEdge>();
-		for(WeightedEdge otherEdge : graph.getEdges()) {
-			if (otherEdge != edge) {
-				((TransactionList) otherEdge).add();
-				if (otherEdge.getValue() < threshold) {
-					edgeRemovals.add(otherEdge);
+		pruneExpiredEdges();
+	}
+	
+	protected void scheduleExpiry(TransactionList edge) {
+		long expiry = edge.computeExpiry();
+		if (expiry < Long.MAX_VALUE) {
+			expiryQueue.add(new EdgeExpiry(edge, expiry));
+		}
+	}
+	
+	/**
+	 * Remove every edge whose decayed weight has fallen below the threshold
+	 * as of the current transaction.  Entries for edges which have since been
+	 * updated or removed are discarded.
+	 */
+	public void pruneExpiredEdges() {
+		while (!expiryQueue.isEmpty() 
+				&& expiryQueue.peek().expiry <= transactions) {
+			EdgeExpiry entry = expiryQueue.poll();
+			TransactionList edge = entry.edge;
+			if (entry.expiry == edge.expiry) {
+				if (communityTracker != null) {
+					Pair<Agent> endpoints = graph.getEndpoints(edge);
+					if (endpoints != null) {
+						updateCommunities(endpoints.getFirst(), 
+								endpoints.getSecond(), -edge.getValue());
+					}
 				}
+				graph.removeEdge(edge);
 			}
 		}
-		for(WeightedEdge deleteEdge : edgeRemovals) {
-			graph.removeEdge(deleteEdge);
+	}
+	
+	/**
+	 * @return The number of transactions recorded since the graph was last
+	 *         reset.
+	 */
+	public long getTransactions() {
+		return transactions;
+	}
+
+	protected void updateCommunities(Agent x, Agent y, double delta) {
+		if (communityTracker != null) {
+			communityTracker.addWeight(x, y, delta, transactions);
 		}
-//		
-//		LinkedList<Agent> vertexRemovals = new LinkedList<Agent>();
-//		for(Agent i : graph.getVertices()) {
-//			if (graph.inDegree(i) == 0 && graph.outDegree(i) == 0) {
-//				vertexRemovals.add(i);
-//			}
-//		}
-//		for(Agent i : vertexRemovals) {
-//			graph.removeVertex(i);
-//		}
+	}
+	
+	/**
+	 * Enable or disable incremental tracking of the community structure of
+	 * the network.  Tracking starts from the next edge update, so it should
+	 * be enabled before the simulation starts.
+	 */
+	public void setTrackCommunities(boolean trackCommunities) {
+		if (trackCommunities) {
+			communityTracker = 
+				new StreamingLabelPropagation<Agent>(1 - alpha);
+		} else {
+			communityTracker = null;
+		}
+	}
+	
+	public boolean isTrackCommunities() {
+		return communityTracker != null;
+	}
+	
+	public StreamingLabelPropagation<Agent> getCommunityTracker() {
+		return communityTracker;
 	}
 	
 	public double getMaximumInvestment() {
@@ -258,10 +337,27 @@ public class TradeNetworkReport extends AbstractModel implements
 		this.population = population;
 	}
 	
+	/**
+	 * An edge in the trade network whose weight is an exponentially-decayed
+	 * volume of trade.  The weight decays by a factor of (1 - alpha) for each
+	 * transaction elsewhere in the network, but the decay is only applied 
+	 * when the weight is read or updated, so that recording a transaction
+	 * does not require visiting every edge.
+	 */
 	public class TransactionList implements WeightedEdge {
 		
+		/**
+		 * The weight of this edge as of the transaction lastUpdate.
+		 */
 		double value = Double.NaN;
 		
+		long lastUpdate;
+		
+		/**
+		 * The transaction count at which this edge is scheduled for removal.
+		 */
+		long expiry = Long.MAX_VALUE;
+		
 //		static double recency = 0.05;
 		
 		public TransactionList() {
@@ -272,12 +368,16 @@ public class TradeNetworkReport extends AbstractModel implements
 			if (Double.isNaN(value)) {
 				value = value(e);
 			} else {
-				value = alpha * value(e) + (1 - alpha) * value;
+				value = alpha * value(e) + (1 - alpha) * decayedValue(
+						transactions - 1);
 			}
+			lastUpdate = transactions;
 		}
 		
 		public void add() {
-			value = (1 - alpha) * value;
+			value = (1 - alpha) * getValue();
+			lastUpdate = transactions;
+			scheduleExpiry(this);
 		}
 		
 		public double value(TransactionExecutedEvent event) {
@@ -286,9 +386,76 @@ public class TradeNetworkReport extends AbstractModel implements
 		}
 		
 		public double getValue() {
-			return value;
+			return decayedValue(transactions);
 		}
 		
+		/**
+		 * The transaction count at which a transaction was last recorded on
+		 * this edge.
+		 */
+		public long getLastUpdate() {
+			return lastUpdate;
+		}
+		
+		/**
+		 * The weight of this edge as of the specified transaction count.
+		 */
+		public double decayedValue(long t) {
+			if (t <= lastUpdate) {
+				return value;
+			}
+			return value * Math.pow(1 - alpha, t - lastUpdate);
+		}
+		
+		/**
+		 * Compute the first transaction count after the last update at which
+		 * the weight of this edge falls below the threshold.
+		 */
+		long computeExpiry() {
+			double decay = 1 - alpha;
+			if (decay >= 1 || value <= 0 || threshold <= 0) {
+				expiry = Long.MAX_VALUE;
+				return expiry;
+			}
+			long k = 1;
+			if (decay > 0) {
+				double estimate = Math.log(threshold / value) / Math.log(decay);
+				if (estimate > 1) {
+					k = (long) Math.floor(estimate);
+				}
+				while (k > 1 && decayedValue(lastUpdate + k - 1) < threshold) {
+					k--;
+				}
+				while (decayedValue(lastUpdate + k) >= threshold) {
+					k++;
+				}
+			}
+			expiry = lastUpdate + k;
+			return expiry;
+		}
+		
+	}
+	
+	static class EdgeExpiry implements Comparable<EdgeExpiry> {
+		
+		TransactionList edge;
+		
+		long expiry;
+		
+		public EdgeExpiry(TransactionList edge, long expiry) {
+			this.edge = edge;
+			this.expiry = expiry;
+		}
+
+		public int compareTo(EdgeExpiry other) {
+			if (expiry < other.expiry) {
+				return -1;
+			} else if (expiry > other.expiry) {
+				return 1;
+			} else {
+				return 0;
+			}
+		}
 	}
 
 	@Override
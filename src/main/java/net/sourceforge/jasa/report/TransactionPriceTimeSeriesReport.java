@@ -39,7 +39,6 @@ public class TransactionPriceTimeSeriesReport extends TimeSeriesReport {
 	}
 
 	public void onTransactionExecuted(TransactionExecutedEvent event) {
-		csvWriter.newData(event.getTime());
-		csvWriter.newData(event.getPrice());		
+		newRecord(event.getTime(), event.getPrice());
 	}
 }
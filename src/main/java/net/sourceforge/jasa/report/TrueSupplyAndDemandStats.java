@@ -15,22 +15,40 @@
 
 package net.sourceforge.jasa.report;
 
-import java.util.ArrayList;
-
+import java.io.Serializable;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import net.sourceforge.jabm.agent.Agent;
+import net.sourceforge.jabm.event.SimEvent;
 import net.sourceforge.jabm.report.DataWriter;
-import net.sourceforge.jasa.market.AscendingOrderComparator;
-import net.sourceforge.jasa.market.DescendingOrderComparator;
+import net.sourceforge.jasa.agent.AbstractTradingAgent;
+import net.sourceforge.jasa.agent.valuation.ValuationListener;
+import net.sourceforge.jasa.agent.valuation.ValuationPolicy;
 import net.sourceforge.jasa.market.Market;
-import net.sourceforge.jasa.market.Order;
 
 import org.apache.log4j.Logger;
 
 
 /**
+ * <p>
  * A class to calculate the supply and demand curves and write them to the
  * specified <code>DataWriter</code>s. This can be used to log data to
  * <code>DataSeriesWriter</code>s, which can then be viewed in a JSci graph
  * or a swing table.
+ * </p>
+ * 
+ * <p>
+ * The curves are built from the truthful order of every trader the first
+ * time they are computed, and thereafter only the orders of traders whose
+ * {@link ValuationPolicy} has signalled a change of valuation are
+ * re-entered. As with the {@link CompetitiveEquilibriumTracker}, each
+ * trader's quantity and trading direction are assumed to change only
+ * together with its valuation, and {@link #invalidate()} must be called
+ * whenever a valuation which does not issue notifications may have changed.
+ * </p>
  * 
  * @author Steve Phelps
  * @version $Revision$
@@ -39,14 +57,25 @@ import org.apache.log4j.Logger;
 public class TrueSupplyAndDemandStats extends SupplyAndDemandStats {
 
 	/**
-	 * The sorted list of agent's truthful bids (ie buyers' private values).
+	 * The listener attached to the valuation policy of each trader.
 	 */
-	protected ArrayList<Order> bids = new ArrayList<Order>();
+	protected Map<AbstractTradingAgent, TruthfulValuation> listeners =
+		new IdentityHashMap<AbstractTradingAgent, TruthfulValuation>();
 
 	/**
-	 * The sorted list of agents' truthful asks (ie sellers' private values).
+	 * The traders whose valuation has changed since their truthful order was
+	 * last entered in the curves.
 	 */
-	protected ArrayList<Order> asks = new ArrayList<Order>();
+	protected LinkedHashSet<AbstractTradingAgent> dirty = 
+		new LinkedHashSet<AbstractTradingAgent>();
+
+	protected boolean invalid = true;
+
+	/**
+	 * Set while truthful orders are being read from the traders so that
+	 * notifications raised as a side-effect are ignored.
+	 */
+	protected transient boolean updating;
 
 	static Logger logger = Logger.getLogger(TrueSupplyAndDemandStats.class);
 
@@ -56,30 +85,113 @@ public class TrueSupplyAndDemandStats extends SupplyAndDemandStats {
 	}
 
 	public void writeSupplyStats() {
-		writeStats(supplyStats, asks, new AscendingOrderComparator());
+		writeStats(supplyStats, supplyCurve, false);
 	}
 
 	public void writeDemandStats() {
-		writeStats(demandStats, bids, new DescendingOrderComparator());
+		writeStats(demandStats, demandCurve, true);
 	}
 
-	protected void enumerateTruthfulShout(Order shout) {
-		Order copyOfShout = new Order();
-		copyOfShout.copyFrom(shout);
+	@Override
+	public void compute(SimEvent event) {
+		super.compute(event);
+		updating = true;
+		try {
+			if (invalid || auction.getNumberOfTraders() != listeners.size()) {
+				rebuild();
+			} else {
+				for (AbstractTradingAgent agent : dirty) {
+					updateCurves(agent, truthfulShout(agent));
+				}
+			}
+			dirty.clear();
+		} finally {
+			updating = false;
+		}
+	}
 
-		if (shout.isBid()) {
-			bids.add(copyOfShout);
-		} else {
-			asks.add(copyOfShout);
+	/**
+	 * Enter the truthful order of every trader in the market and listen for
+	 * changes to their valuations.
+	 */
+	protected void rebuild() {
+		detachListeners();
+		supplyCurve.clear();
+		demandCurve.clear();
+		contributions.clear();
+		Iterator<Agent> traders = auction.getTraderIterator();
+		while (traders.hasNext()) {
+			AbstractTradingAgent agent = (AbstractTradingAgent) traders.next();
+			TruthfulValuation listener = new TruthfulValuation(this, agent);
+			listeners.put(agent, listener);
+			agent.getValuationPolicy().addValuationListener(listener);
+			updateCurves(agent, truthfulShout(agent));
+		}
+		invalid = false;
+	}
+
+	protected void detachListeners() {
+		for (Map.Entry<AbstractTradingAgent, TruthfulValuation> entry : 
+				listeners.entrySet()) {
+			entry.getKey().getValuationPolicy().removeValuationListener(
+					entry.getValue());
+		}
+		listeners.clear();
+	}
+
+	/**
+	 * Mark the specified trader as requiring its truthful order to be
+	 * re-entered in the curves on the next computation.
+	 */
+	public void valuationChanged(AbstractTradingAgent agent) {
+		if (!updating) {
+			dirty.add(agent);
 		}
-		super.enumerateTruthfulShout(shout);
 	}
 
-	public void initialise() {
-		super.initialise();
-		asks.clear();
-		bids.clear();
+	/**
+	 * Discard the curves so that they are rebuilt from every trader on the
+	 * next computation.
+	 */
+	public void invalidate() {
+		invalid = true;
+	}
+
+	@Override
+	public void initialise(SimEvent event) {
+		super.initialise(event);
+		detachListeners();
+		dirty.clear();
+		invalidate();
 	}
 
+	@Override
+	public void dispose(SimEvent event) {
+		super.dispose(event);
+		detachListeners();
+	}
+
+	/**
+	 * Listens to the valuation policy of a single trader.
+	 */
+	public static class TruthfulValuation implements ValuationListener,
+			Serializable {
+
+		protected TrueSupplyAndDemandStats stats;
+
+		protected AbstractTradingAgent agent;
+
+		public TruthfulValuation(TrueSupplyAndDemandStats stats,
+				AbstractTradingAgent agent) {
+			this.stats = stats;
+			this.agent = agent;
+		}
+
+		@Override
+		public void valuationChanged(ValuationPolicy policy) {
+			stats.valuationChanged(agent);
+		}
+
+	}
 
 }
@@ -0,0 +1,344 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.view;
+
+import java.awt.Dimension;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.apache.commons.collections15.Transformer;
+
+import edu.uci.ics.jung.algorithms.layout.AbstractLayout;
+import edu.uci.ics.jung.algorithms.util.IterativeContext;
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.util.Pair;
+
+/**
+ * <p>
+ * A force-directed layout in the style of Fruchterman and Reingold which
+ * is designed to be updated incrementally as the graph changes. Repulsion
+ * is only computed between vertices in neighbouring cells of a grid whose
+ * cells are twice the ideal edge length, so each step costs O(V + E)
+ * rather than O(V<sup>2</sup>).
+ * </p>
+ * 
+ * <p>
+ * The layout cools until it converges, after which {@link #done()} returns
+ * true. When the graph changes, {@link #warmStart()} raises the temperature
+ * only to a fraction of its initial value, so that the layout continues
+ * from the current positions rather than starting again. Vertices which
+ * have not yet been placed are positioned near the centroid of their
+ * placed neighbours.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class IncrementalForceLayout<V, E> extends AbstractLayout<V, E>
+		implements IterativeContext {
+
+	/**
+	 * The weight of each edge, which scales its attraction.  If null every
+	 * edge has unit weight.
+	 */
+	protected Transformer<E, ? extends Number> edgeWeights;
+
+	protected double temperature;
+
+	/**
+	 * The factor by which the temperature is reduced at each step.
+	 */
+	protected double coolingRate = 0.95;
+
+	/**
+	 * The temperature below which the layout has converged.
+	 */
+	protected double minTemperature = 0.5;
+
+	/**
+	 * The temperature after a warm start as a fraction of the initial
+	 * temperature.
+	 */
+	protected double warmStartFraction = 0.1;
+
+	/**
+	 * The maximum weight by which the attraction of an edge is scaled.
+	 */
+	protected double maxWeight = 10;
+
+	protected HashSet<V> placed = new HashSet<V>();
+
+	protected Random random = new Random(1);
+
+	protected int steps = 0;
+
+	public IncrementalForceLayout(Graph<V, E> graph) {
+		super(graph);
+	}
+
+	public IncrementalForceLayout(Graph<V, E> graph,
+			Transformer<E, ? extends Number> edgeWeights) {
+		super(graph);
+		this.edgeWeights = edgeWeights;
+	}
+
+	public void initialize() {
+		placed.clear();
+		temperature = getInitialTemperature();
+	}
+
+	public void reset() {
+		initialize();
+	}
+
+	@Override
+	public void setSize(Dimension size) {
+		super.setSize(size);
+		if (temperature == 0) {
+			temperature = getInitialTemperature();
+		}
+	}
+
+	/**
+	 * Continue the layout from the current positions after the graph has
+	 * changed.
+	 */
+	public void warmStart() {
+		temperature = Math.max(temperature, getInitialTemperature()
+				* warmStartFraction);
+	}
+
+	public boolean done() {
+		return temperature < minTemperature;
+	}
+
+	protected double getInitialTemperature() {
+		Dimension d = getSize();
+		return d == null ? 0 : Math.max(d.width, d.height) / 10.0;
+	}
+
+	protected double getIdealLength(int numVertices) {
+		Dimension d = getSize();
+		return Math.sqrt((double) d.width * d.height / Math.max(1, numVertices));
+	}
+
+	public synchronized void step() {
+		Graph<V, E> graph = getGraph();
+		int n = graph.getVertexCount();
+		if (n == 0 || getSize() == null) {
+			temperature = 0;
+			return;
+		}
+		steps++;
+		ArrayList<V> vertices = new ArrayList<V>(graph.getVertices());
+		HashMap<V, Integer> index = new HashMap<V, Integer>(n * 2);
+		for (int i = 0; i < n; i++) {
+			index.put(vertices.get(i), i);
+		}
+		for (int i = 0; i < n; i++) {
+			place(vertices.get(i));
+		}
+		double[] x = new double[n];
+		double[] y = new double[n];
+		for (int i = 0; i < n; i++) {
+			Point2D p = transform(vertices.get(i));
+			x[i] = p.getX();
+			y[i] = p.getY();
+		}
+		double k = getIdealLength(n);
+		double[] dx = new double[n];
+		double[] dy = new double[n];
+		calculateRepulsion(x, y, dx, dy, k);
+		calculateAttraction(graph, index, x, y, dx, dy, k);
+		moveVertices(vertices, x, y, dx, dy);
+		temperature *= coolingRate;
+	}
+
+	/**
+	 * Position a vertex which has not been placed before near the centroid
+	 * of its placed neighbours, or at random if it has none.
+	 */
+	protected void place(V v) {
+		if (placed.contains(v)) {
+			return;
+		}
+		double sx = 0, sy = 0;
+		int count = 0;
+		for (V neighbour : getGraph().getNeighbors(v)) {
+			if (placed.contains(neighbour)) {
+				Point2D p = transform(neighbour);
+				sx += p.getX();
+				sy += p.getY();
+				count++;
+			}
+		}
+		Dimension d = getSize();
+		if (count > 0) {
+			double jitter = getIdealLength(getGraph().getVertexCount()) / 2;
+			setLocation(v, clamp(sx / count + (random.nextDouble() - 0.5)
+					* jitter, d.width), clamp(sy / count
+					+ (random.nextDouble() - 0.5) * jitter, d.height));
+		} else if (!locations.containsKey(v)) {
+			setLocation(v, random.nextDouble() * d.width, random.nextDouble()
+					* d.height);
+		}
+		placed.add(v);
+	}
+
+	protected void calculateRepulsion(double[] x, double[] y, double[] dx,
+			double[] dy, double k) {
+		int n = x.length;
+		double cellSize = 2 * k;
+		Dimension d = getSize();
+		int columns = Math.max(1, (int) Math.ceil(d.width / cellSize));
+		int rows = Math.max(1, (int) Math.ceil(d.height / cellSize));
+		int[] head = new int[columns * rows];
+		int[] next = new int[n];
+		Arrays.fill(head, -1);
+		int[] cell = new int[n];
+		for (int i = 0; i < n; i++) {
+			int c = Math.min(columns - 1, Math.max(0, (int) (x[i] / cellSize)));
+			int r = Math.min(rows - 1, Math.max(0, (int) (y[i] / cellSize)));
+			cell[i] = r * columns + c;
+			next[i] = head[cell[i]];
+			head[cell[i]] = i;
+		}
+		double k2 = k * k;
+		double cutoff2 = cellSize * cellSize;
+		for (int i = 0; i < n; i++) {
+			int c = cell[i] % columns;
+			int r = cell[i] / columns;
+			for (int rr = Math.max(0, r - 1); rr <= Math.min(rows - 1, r + 1); rr++) {
+				for (int cc = Math.max(0, c - 1); cc <= Math.min(columns - 1,
+						c + 1); cc++) {
+					for (int j = head[rr * columns + cc]; j >= 0; j = next[j]) {
+						if (j == i) {
+							continue;
+						}
+						double ddx = x[i] - x[j];
+						double ddy = y[i] - y[j];
+						double dist2 = ddx * ddx + ddy * ddy;
+						if (dist2 > cutoff2) {
+							continue;
+						}
+						if (dist2 < 1E-4) {
+							ddx = random.nextDouble() - 0.5;
+							ddy = random.nextDouble() - 0.5;
+							dist2 = ddx * ddx + ddy * ddy;
+						}
+						double force = k2 / dist2;
+						dx[i] += ddx * force;
+						dy[i] += ddy * force;
+					}
+				}
+			}
+		}
+	}
+
+	protected void calculateAttraction(Graph<V, E> graph,
+			HashMap<V, Integer> index, double[] x, double[] y, double[] dx,
+			double[] dy, double k) {
+		for (E edge : graph.getEdges()) {
+			Pair<V> endpoints = graph.getEndpoints(edge);
+			int i = index.get(endpoints.getFirst());
+			int j = index.get(endpoints.getSecond());
+			if (i == j) {
+				continue;
+			}
+			double weight = 1;
+			if (edgeWeights != null) {
+				Number w = edgeWeights.transform(edge);
+				if (w != null) {
+					weight = Math.min(maxWeight, Math.max(0, w.doubleValue()));
+				}
+			}
+			double ddx = x[i] - x[j];
+			double ddy = y[i] - y[j];
+			double dist = Math.sqrt(ddx * ddx + ddy * ddy);
+			double force = weight * dist / k;
+			dx[i] -= ddx * force;
+			dy[i] -= ddy * force;
+			dx[j] += ddx * force;
+			dy[j] += ddy * force;
+		}
+	}
+
+	protected void moveVertices(ArrayList<V> vertices, double[] x,
+			double[] y, double[] dx, double[] dy) {
+		Dimension d = getSize();
+		for (int i = 0; i < x.length; i++) {
+			V v = vertices.get(i);
+			if (isLocked(v)) {
+				continue;
+			}
+			double length = Math.sqrt(dx[i] * dx[i] + dy[i] * dy[i]);
+			if (length > 0) {
+				double scale = Math.min(length, temperature) / length;
+				setLocation(v, clamp(x[i] + dx[i] * scale, d.width), clamp(y[i]
+						+ dy[i] * scale, d.height));
+			}
+		}
+	}
+
+	protected static double clamp(double value, double max) {
+		return Math.max(0, Math.min(max, value));
+	}
+
+	public boolean isIncremental() {
+		return true;
+	}
+
+	public double getTemperature() {
+		return temperature;
+	}
+
+	public int getSteps() {
+		return steps;
+	}
+
+	public double getCoolingRate() {
+		return coolingRate;
+	}
+
+	public void setCoolingRate(double coolingRate) {
+		this.coolingRate = coolingRate;
+	}
+
+	public double getMinTemperature() {
+		return minTemperature;
+	}
+
+	public void setMinTemperature(double minTemperature) {
+		this.minTemperature = minTemperature;
+	}
+
+	public double getWarmStartFraction() {
+		return warmStartFraction;
+	}
+
+	public void setWarmStartFraction(double warmStartFraction) {
+		this.warmStartFraction = warmStartFraction;
+	}
+
+	public void setEdgeWeights(Transformer<E, ? extends Number> edgeWeights) {
+		this.edgeWeights = edgeWeights;
+	}
+
+}
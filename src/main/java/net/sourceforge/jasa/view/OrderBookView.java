@@ -34,7 +34,9 @@ import javax.swing.table.TableModel;
 
 import net.sourceforge.jabm.event.SimEvent;
 import net.sourceforge.jabm.report.ReportWithGUI;
+import net.sourceforge.jasa.event.MarketClosedEvent;
 import net.sourceforge.jasa.event.MarketEvent;
+import net.sourceforge.jasa.event.RoundClosingEvent;
 import net.sourceforge.jasa.market.Order;
 import net.sourceforge.jasa.market.auctioneer.Auctioneer;
 
@@ -42,8 +44,18 @@ import org.pf.joi.Inspector;
 import org.springframework.beans.factory.InitializingBean;
 
 /**
+ * <p>
  * A report which provides a graphical table depicting the order-book
  * which is updated live as the simulation progresses.
+ * </p>
+ * 
+ * <p>
+ * The simulation thread takes a snapshot of the prices and quantities in
+ * the book only when the table is showing and a {@link ThrottledRenderer}
+ * is ready for a new frame, and the table is repainted from the snapshot
+ * on the event-dispatch thread at no more than maxFrameRate frames per
+ * second.  The book is always captured at the close of a round.
+ * </p>
  * 
  * @author Steve Phelps
  */
@@ -63,6 +75,69 @@ public class OrderBookView extends JTable implements ReportWithGUI, TableModel,
 
 	protected int maxDepth;
 
+	/**
+	 * The snapshot currently displayed; only accessed on the EDT.
+	 */
+	protected BookSnapshot snapshot = new BookSnapshot(
+			new ArrayList<Order>(0), new ArrayList<Order>(0), 0);
+
+	protected ThrottledRenderer<BookSnapshot> renderer = 
+		new ThrottledRenderer<BookSnapshot>() {
+			protected void render(BookSnapshot snapshot) {
+				OrderBookView.this.snapshot = snapshot;
+				notifyTableChanged();
+			}
+		};
+
+	/**
+	 * The prices and quantities of the orders in the book at the time a
+	 * snapshot was taken.  The orders themselves are retained only so that
+	 * they can be inspected.
+	 */
+	public static class BookSnapshot {
+
+		protected Order[] bids;
+
+		protected double[] bidPrices;
+
+		protected int[] bidQuantities;
+
+		protected Order[] asks;
+
+		protected double[] askPrices;
+
+		protected int[] askQuantities;
+
+		public BookSnapshot(List<Order> bids, List<Order> asks, int maxDepth) {
+			int numBids = maxDepth > 0 ? Math.min(maxDepth, bids.size())
+					: bids.size();
+			int numAsks = maxDepth > 0 ? Math.min(maxDepth, asks.size())
+					: asks.size();
+			this.bids = new Order[numBids];
+			this.bidPrices = new double[numBids];
+			this.bidQuantities = new int[numBids];
+			for (int i = 0; i < numBids; i++) {
+				Order bid = bids.get(i);
+				this.bids[i] = bid;
+				this.bidPrices[i] = bid.getPriceAsDouble();
+				this.bidQuantities[i] = bid.getQuantity();
+			}
+			this.asks = new Order[numAsks];
+			this.askPrices = new double[numAsks];
+			this.askQuantities = new int[numAsks];
+			for (int i = 0; i < numAsks; i++) {
+				Order ask = asks.get(i);
+				this.asks[i] = ask;
+				this.askPrices[i] = ask.getPriceAsDouble();
+				this.askQuantities[i] = ask.getQuantity();
+			}
+		}
+
+		public int getDepth() {
+			return Math.max(bids.length, asks.length);
+		}
+	}
+
 	DecimalFormat priceFormat = new DecimalFormat("#00000.0000");
 
 	DecimalFormat qtyFormat = new DecimalFormat("#00000");
@@ -100,6 +175,15 @@ public class OrderBookView extends JTable implements ReportWithGUI, TableModel,
 		this.asks = auctioneer.getUnmatchedAsks();
 	}
 
+	/**
+	 * Capture the current state of the book.  This is invoked on the
+	 * simulation thread.
+	 */
+	public BookSnapshot takeSnapshot() {
+		update();
+		return new BookSnapshot(bids, asks, maxDepth);
+	}
+
 	public int getMaxDepth() {
 		return maxDepth;
 	}
@@ -110,12 +194,8 @@ public class OrderBookView extends JTable implements ReportWithGUI, TableModel,
 
 	@Override
 	public int getRowCount() {
-		this.currentDepth = Math.max(asks.size(), bids.size());
-		if (maxDepth > 0) {
-			return Math.min(maxDepth, currentDepth);
-		} else {
-			return currentDepth;
-		}
+		this.currentDepth = snapshot.getDepth();
+		return currentDepth;
 	}
 
 	@Override
@@ -150,19 +230,22 @@ public class OrderBookView extends JTable implements ReportWithGUI, TableModel,
 
 	@Override
 	public Object getValueAt(int rowIndex, int columnIndex) {
+		BookSnapshot book = snapshot;
+		int numBids = book.bids.length;
+		int numAsks = book.asks.length;
 		switch (columnIndex) {
 		case 0:
-			return rowIndex < bids.size() ? priceFormat.format(bids.get(
-					rowIndex).getPriceAsDouble()) : "";
+			return rowIndex < numBids ? priceFormat
+					.format(book.bidPrices[rowIndex]) : "";
 		case 1:
-			return rowIndex < bids.size() ? qtyFormat.format(bids.get(rowIndex)
-					.getQuantity()) : "";
+			return rowIndex < numBids ? qtyFormat
+					.format(book.bidQuantities[rowIndex]) : "";
 		case 2:
-			return rowIndex < asks.size() ? priceFormat.format(asks.get(
-					rowIndex).getPriceAsDouble()) : "";
+			return rowIndex < numAsks ? priceFormat
+					.format(book.askPrices[rowIndex]) : "";
 		case 3:
-			return rowIndex < asks.size() ? qtyFormat.format(asks.get(rowIndex)
-					.getQuantity()) : "";
+			return rowIndex < numAsks ? qtyFormat
+					.format(book.askQuantities[rowIndex]) : "";
 		}
 		return "";
 	}
@@ -191,9 +274,10 @@ public class OrderBookView extends JTable implements ReportWithGUI, TableModel,
 	public void onMarketEvent(SimEvent event) {
 		this.auctioneer = ((MarketEvent) event).getAuction()
 				.getAuctioneer();
-		if (this.isShowing()) {
-			update();
-			notifyTableChanged();
+		if (this.isShowing()
+				&& (renderer.isDue() || event instanceof RoundClosingEvent 
+						|| event instanceof MarketClosedEvent)) {
+			renderer.publish(takeSnapshot());
 		}
 	}
 
@@ -214,10 +298,9 @@ public class OrderBookView extends JTable implements ReportWithGUI, TableModel,
             	int row = getSelectedRow();
             	int column = getSelectedColumn();
             	Order order = null;
-            	if (column > 1) {
-            		order = asks.get(row);
-            	} else {
-            		order = bids.get(row);
+            	Order[] orders = column > 1 ? snapshot.asks : snapshot.bids;
+            	if (row >= 0 && row < orders.length) {
+            		order = orders[row];
             	}
             	if (order != null) {
             		Inspector.inspect(order);
@@ -241,6 +324,18 @@ public class OrderBookView extends JTable implements ReportWithGUI, TableModel,
 		return result;
 	}
 
+	public int getMaxFrameRate() {
+		return renderer.getMaxFrameRate();
+	}
+
+	public void setMaxFrameRate(int maxFrameRate) {
+		renderer.setMaxFrameRate(maxFrameRate);
+	}
+
+	public ThrottledRenderer<BookSnapshot> getRenderer() {
+		return renderer;
+	}
+
 	public Auctioneer getAuctioneer() {
 		return auctioneer;
 	}
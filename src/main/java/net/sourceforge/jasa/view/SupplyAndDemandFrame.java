@@ -17,7 +17,6 @@ package net.sourceforge.jasa.view;
 
 import java.awt.BorderLayout;
 import java.awt.Dimension;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -70,6 +69,42 @@ public abstract class SupplyAndDemandFrame
 
 	protected float maxX;
 
+	/**
+	 * The stats used to compute the curves, which are kept for the duration
+	 * of a simulation so that the curves can be updated incrementally.
+	 */
+	protected SupplyAndDemandStats stats;
+
+	/**
+	 * Draws snapshots of the curves on the EDT at a capped frame rate.
+	 */
+	protected ThrottledRenderer<CurveSnapshot> renderer = 
+		new ThrottledRenderer<CurveSnapshot>() {
+			protected void render(CurveSnapshot snapshot) {
+				renderCurves(snapshot);
+			}
+		};
+
+	/**
+	 * The step series of the supply and demand curves at the time a
+	 * snapshot was taken.
+	 */
+	public static class CurveSnapshot {
+
+		protected double[] supply;
+
+		protected double[] demand;
+
+		protected InteractionsFinishedEvent event;
+
+		public CurveSnapshot(double[] supply, double[] demand,
+				InteractionsFinishedEvent event) {
+			this.supply = supply;
+			this.demand = demand;
+			this.event = event;
+		}
+	}
+
 	private JPanel panel;
 
 	public static final int SERIES_SUPPLY = 0;
@@ -122,11 +157,44 @@ public abstract class SupplyAndDemandFrame
 	public void updateData() {
 		supplyCurve.clear();
 		demandCurve.clear();
-		SupplyAndDemandStats stats = getSupplyAndDemandStats();
-		stats.compute(null);
+		computeStats();
 		stats.produceUserOutput();
 	}
 
+	protected void computeStats() {
+		if (stats == null) {
+			stats = getSupplyAndDemandStats();
+		}
+		stats.compute(null);
+	}
+
+	/**
+	 * Compute the curves on the simulation thread and capture their step
+	 * series.
+	 */
+	public CurveSnapshot takeSnapshot(InteractionsFinishedEvent event) {
+		computeStats();
+		return new CurveSnapshot(
+				stats.getSteps(stats.getSupplyCurve(), false),
+				stats.getSteps(stats.getDemandCurve(), true), event);
+	}
+
+	/**
+	 * Replace the data series with those in the snapshot and redraw the
+	 * chart.  This is invoked on the EDT.
+	 */
+	protected void renderCurves(CurveSnapshot snapshot) {
+		supplyCurve.clear();
+		demandCurve.clear();
+		for (int i = 0; i < snapshot.supply.length; i++) {
+			supplyCurve.newData(snapshot.supply[i]);
+		}
+		for (int i = 0; i < snapshot.demand.length; i++) {
+			demandCurve.newData(snapshot.demand[i]);
+		}
+		dataset.datasetChanged(snapshot.event);
+	}
+
 	@Override
 	public void eventOccurred(final SimEvent event) {
 		if (event instanceof SimulationStartingEvent) {
@@ -139,30 +207,20 @@ public abstract class SupplyAndDemandFrame
 	}
 
 	public void onInteractionsFinished(final InteractionsFinishedEvent event) {
-		if (panel.isShowing()) {
-			try {
-				updateData();
-				SwingUtilities.invokeAndWait(new Runnable() {
-					public void run() {
-						dataset.datasetChanged(event);
-					}
-				});
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-			} catch (InvocationTargetException e) {
-				logger.error(e);
-				throw new RuntimeException(e);
-			}
+		if (panel.isShowing() && renderer.isDue()) {
+			renderer.publish(takeSnapshot(event));
 		}
 	}
 
 	public void onSimulationFinished() {
+		renderer.stop();
 		close();
 	}
 
 	public void onSimulationStarting(final SimEvent event) {
 		this.auction = (Market) 
 				((SimulationStartingEvent) event).getSimulation();
+		this.stats = null;
 		open();
 	}
 
@@ -185,6 +243,14 @@ public abstract class SupplyAndDemandFrame
 		return panel;
 	}
 
+	public int getMaxFrameRate() {
+		return renderer.getMaxFrameRate();
+	}
+
+	public void setMaxFrameRate(int maxFrameRate) {
+		renderer.setMaxFrameRate(maxFrameRate);
+	}
+
 	public abstract String getGraphName();
 
 	public abstract SupplyAndDemandStats getSupplyAndDemandStats();
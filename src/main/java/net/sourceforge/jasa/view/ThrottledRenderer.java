@@ -0,0 +1,198 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.view;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * <p>
+ * Decouples the simulation thread from the Swing event-dispatch thread
+ * (EDT). The simulation publishes immutable snapshots of the state to be
+ * drawn, which never blocks, and the EDT renders the most recent snapshot
+ * at a capped frame rate. Snapshots published between two frames are
+ * coalesced, so only the latest is rendered.
+ * </p>
+ * 
+ * <p>
+ * Since building a snapshot is itself a cost borne by the simulation,
+ * callers should only do so when {@link #isDue()} returns true, ie when a
+ * frame interval has elapsed since the last snapshot and the EDT has
+ * consumed it.  A snapshot that must not be lost, such as the final state
+ * of a simulation, can be published unconditionally. The timer stops
+ * itself when no snapshots have been published for a second.
+ * </p>
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public abstract class ThrottledRenderer<S> implements ActionListener {
+
+	public static final int DEFAULT_MAX_FRAME_RATE = 20;
+
+	protected final AtomicReference<S> pending = new AtomicReference<S>();
+
+	protected volatile long publishedVersion = 0;
+
+	protected volatile long renderedVersion = 0;
+
+	protected volatile long coalesced = 0;
+
+	protected volatile long lastPublished;
+
+	protected volatile boolean running = false;
+
+	protected long frameInterval;
+
+	protected int idleFrames = 0;
+
+	protected Timer timer;
+
+	public ThrottledRenderer(int maxFrameRate) {
+		setMaxFrameRate(maxFrameRate);
+		this.lastPublished = System.nanoTime() - frameInterval;
+	}
+
+	public ThrottledRenderer() {
+		this(DEFAULT_MAX_FRAME_RATE);
+	}
+
+	/**
+	 * Render a snapshot.  This is always invoked on the EDT.
+	 */
+	protected abstract void render(S snapshot);
+
+	/**
+	 * @return true if a new snapshot would be rendered in the next frame,
+	 *         ie the last one has been consumed and a frame interval has
+	 *         elapsed since it was published.
+	 */
+	public boolean isDue() {
+		return pending.get() == null
+				&& System.nanoTime() - lastPublished >= frameInterval;
+	}
+
+	/**
+	 * Publish a snapshot to be rendered in the next frame, replacing any
+	 * snapshot which has not yet been rendered. This method does not block
+	 * and may be invoked from any thread.
+	 */
+	public void publish(S snapshot) {
+		if (pending.getAndSet(snapshot) != null) {
+			coalesced++;
+		}
+		publishedVersion++;
+		lastPublished = System.nanoTime();
+		if (!running) {
+			start();
+		}
+	}
+
+	protected void start() {
+		running = true;
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				if (timer == null) {
+					timer = new Timer((int) Math.max(1,
+							frameInterval / 1000000), ThrottledRenderer.this);
+					timer.setCoalesce(true);
+				}
+				idleFrames = 0;
+				if (!timer.isRunning()) {
+					timer.start();
+				}
+			}
+		});
+	}
+
+	public void actionPerformed(ActionEvent event) {
+		S snapshot = pending.getAndSet(null);
+		if (snapshot != null) {
+			idleFrames = 0;
+			renderedVersion = publishedVersion;
+			render(snapshot);
+		} else if (++idleFrames * frameInterval >= 1000000000L) {
+			timer.stop();
+			running = false;
+			// A snapshot published while stopping would otherwise be stranded
+			if (pending.get() != null) {
+				start();
+			}
+		}
+	}
+
+	/**
+	 * Render any pending snapshot immediately.  This must be invoked on the
+	 * EDT.
+	 */
+	public void flush() {
+		S snapshot = pending.getAndSet(null);
+		if (snapshot != null) {
+			renderedVersion = publishedVersion;
+			render(snapshot);
+		}
+	}
+
+	public void stop() {
+		pending.set(null);
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				if (timer != null) {
+					timer.stop();
+				}
+				running = false;
+			}
+		});
+	}
+
+	public void setMaxFrameRate(int maxFrameRate) {
+		this.frameInterval = 1000000000L / maxFrameRate;
+		if (timer != null) {
+			timer.setDelay((int) Math.max(1, frameInterval / 1000000));
+		}
+	}
+
+	public int getMaxFrameRate() {
+		return (int) (1000000000L / frameInterval);
+	}
+
+	/**
+	 * @return The number of snapshots published so far.
+	 */
+	public long getPublishedVersion() {
+		return publishedVersion;
+	}
+
+	/**
+	 * @return The version of the snapshot most recently rendered.
+	 */
+	public long getRenderedVersion() {
+		return renderedVersion;
+	}
+
+	/**
+	 * @return The number of snapshots which were replaced before they could
+	 *         be rendered.
+	 */
+	public long getCoalesced() {
+		return coalesced;
+	}
+
+}
@@ -8,9 +8,11 @@ import java.awt.Stroke;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
 import java.io.Serializable;
-import java.lang.reflect.InvocationTargetException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.Map;
 
@@ -38,7 +40,7 @@ import org.pf.joi.Inspector;
 
 import edu.uci.ics.jung.algorithms.layout.GraphElementAccessor;
 import edu.uci.ics.jung.algorithms.layout.Layout;
-import edu.uci.ics.jung.algorithms.layout.SpringLayout;
+import edu.uci.ics.jung.algorithms.layout.util.Relaxer;
 import edu.uci.ics.jung.graph.DirectedSparseGraph;
 import edu.uci.ics.jung.graph.Graph;
 import edu.uci.ics.jung.graph.util.Pair;
@@ -55,7 +57,21 @@ public class TradeNetworkView  implements ReportWithGUI,
 
 	protected VisualizationViewer<Agent, WeightedEdge> viewer;
 
-	protected SpringLayout<Agent, WeightedEdge> layout;
+	protected IncrementalForceLayout<Agent, WeightedEdge> layout;
+
+	/**
+	 * The weight of each displayed edge as of the last snapshot rendered.
+	 * Edges are drawn with these weights rather than their live values,
+	 * which are updated by the simulation thread.
+	 */
+	protected HashMap<WeightedEdge, Double> weights = 
+		new HashMap<WeightedEdge, Double>();
+
+	/**
+	 * The number of edges added, removed and reweighted by the most recent
+	 * update.
+	 */
+	protected int edgesAdded, edgesRemoved, edgesReweighted;
 
 	protected int updates = 0;
 
@@ -73,6 +89,53 @@ public class TradeNetworkView  implements ReportWithGUI,
 
 	protected Graph<Agent, WeightedEdge> myGraph;
 
+	/**
+	 * Renders snapshots of the trade network on the EDT at a capped frame
+	 * rate, so that the simulation thread never waits for the view.
+	 */
+	protected ThrottledRenderer<EdgeSnapshot> renderer = 
+		new ThrottledRenderer<EdgeSnapshot>() {
+			protected void render(EdgeSnapshot snapshot) {
+				renderGraph(snapshot);
+			}
+		};
+
+	/**
+	 * The edges of the trade network, and their end-points, at the time a
+	 * snapshot was taken.
+	 */
+	public static class EdgeSnapshot {
+
+		protected ArrayList<WeightedEdge> edges;
+
+		protected ArrayList<Agent> sources;
+
+		protected ArrayList<Agent> destinations;
+
+		protected double[] weights;
+
+		public EdgeSnapshot(Graph<Agent, WeightedEdge> graph) {
+			int n = graph.getEdgeCount();
+			edges = new ArrayList<WeightedEdge>(n);
+			sources = new ArrayList<Agent>(n);
+			destinations = new ArrayList<Agent>(n);
+			weights = new double[n];
+			for (WeightedEdge edge : graph.getEdges()) {
+				Pair<Agent> endPoints = graph.getEndpoints(edge);
+				assert endPoints.getFirst() != null
+						&& endPoints.getSecond() != null;
+				weights[edges.size()] = edge.getValue();
+				edges.add(edge);
+				sources.add(endPoints.getFirst());
+				destinations.add(endPoints.getSecond());
+			}
+		}
+
+		public int size() {
+			return edges.size();
+		}
+	}
+
 	public String fileName = "data/graph.net";
 
 	public static final DecimalFormat fitnessFormatter = new DecimalFormat(
@@ -88,7 +151,12 @@ public class TradeNetworkView  implements ReportWithGUI,
 		
 		this.tradeNetwork = tradeNetwork;
 		myGraph = new DirectedSparseGraph<Agent, WeightedEdge>();
-		layout = new SpringLayout<Agent, WeightedEdge>(myGraph);
+		layout = new IncrementalForceLayout<Agent, WeightedEdge>(myGraph,
+				new Transformer<WeightedEdge, Double>() {
+					public Double transform(WeightedEdge edge) {
+						return weights.get(edge);
+					}
+				});
 		SwingUtilities.invokeLater(new Runnable() {
 			public void run() {
 				intialiseGUI();
@@ -166,7 +234,7 @@ public class TradeNetworkView  implements ReportWithGUI,
 		viewer.getRenderContext().setEdgeStrokeTransformer(
 				new Transformer<WeightedEdge, Stroke>() {
 					public Stroke transform(WeightedEdge strength) {
-						double r = strength.getValue();
+						double r = getWeight(strength);
 //								/ tradeNetwork.getMaximumInvestment();
 						return new BasicStroke((float) r * weightScale); 
 					}
@@ -175,7 +243,7 @@ public class TradeNetworkView  implements ReportWithGUI,
 		viewer.getRenderContext().setEdgeLabelTransformer(
 				new Transformer<WeightedEdge, String>() {
 					public String transform(WeightedEdge strength) {
-						return scoreFormatter.format(strength.getValue());
+						return scoreFormatter.format(getWeight(strength));
 					}
 				});
 		
@@ -234,42 +302,78 @@ public class TradeNetworkView  implements ReportWithGUI,
 
 	public void onInteractionsFinished() {
 		interactions++;
-		if ((interactions % updateFrequency) == 0) {
+		if ((interactions % updateFrequency) == 0 && renderer.isDue()) {
 			updateGraph();
 		}
 	}
 	
 	public void onSimulationFinished() {
-		clearGraph();
+		renderer.stop();
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				clearGraph();
+				weights.clear();
+				layout.reset();
+			}
+		});
 	}
 
+	/**
+	 * Publish a snapshot of the trade network to be drawn in the next frame.
+	 * This is invoked on the simulation thread and does not block.
+	 */
 	public void updateGraph() {
+		renderer.publish(new EdgeSnapshot(tradeNetwork.getGraph()));
+	}
 
-		try {
-			SwingUtilities.invokeAndWait(new Runnable() {
-				public void run() {
-					viewer.getModel().getRelaxer().pause();
-					clearEdges();
-					Graph<Agent, WeightedEdge> graph = tradeNetwork
-							.getGraph();
-					Collection<WeightedEdge> edges = new LinkedList<WeightedEdge>(
-							graph.getEdges());
-					for (WeightedEdge edge : edges) {
-						Pair<Agent> endPoints = graph.getEndpoints(edge);
-						Agent first = endPoints.getFirst();
-						Agent second = endPoints.getSecond();
-						assert first != null && second != null;
-						myGraph.addEdge(edge, first, second);
-					}
-					viewer.getModel().getRelaxer().resume();
-				}
-			});
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-		} catch (InvocationTargetException e) {
-			throw new RuntimeException(e);
+	/**
+	 * Bring the displayed graph up to date with the snapshot by removing
+	 * edges which are no longer present, adding new ones, and reweighting
+	 * the remainder, and warm-start the layout if the structure of the graph
+	 * has changed.  This is invoked on the EDT.
+	 */
+	protected void renderGraph(EdgeSnapshot snapshot) {
+		Relaxer relaxer = viewer.getModel().getRelaxer();
+		relaxer.pause();
+		IdentityHashMap<WeightedEdge, Boolean> current = 
+			new IdentityHashMap<WeightedEdge, Boolean>(snapshot.size() * 2);
+		for (int i = 0; i < snapshot.size(); i++) {
+			current.put(snapshot.edges.get(i), Boolean.TRUE);
+		}
+		edgesAdded = edgesRemoved = edgesReweighted = 0;
+		for (WeightedEdge edge : new ArrayList<WeightedEdge>(
+				myGraph.getEdges())) {
+			if (!current.containsKey(edge)) {
+				myGraph.removeEdge(edge);
+				weights.remove(edge);
+				edgesRemoved++;
+			}
+		}
+		for (int i = 0; i < snapshot.size(); i++) {
+			WeightedEdge edge = snapshot.edges.get(i);
+			Double previous = weights.put(edge, snapshot.weights[i]);
+			if (previous == null) {
+				myGraph.addEdge(edge, snapshot.sources.get(i),
+						snapshot.destinations.get(i));
+				edgesAdded++;
+			} else if (previous.doubleValue() != snapshot.weights[i]) {
+				edgesReweighted++;
+			}
 		}
+		boolean converged = layout.done();
+		if (edgesAdded > 0 || edgesRemoved > 0) {
+			layout.warmStart();
+		}
+		relaxer.resume();
+		if (converged && !layout.done()) {
+			relaxer.relax();
+		}
+		viewer.repaint();
+	}
 
+	protected double getWeight(WeightedEdge edge) {
+		Double weight = weights.get(edge);
+		return weight == null ? 0 : weight.doubleValue();
 	}
 
 	public Map<Object, Number> getVariableBindings() {
@@ -338,6 +442,14 @@ public class TradeNetworkView  implements ReportWithGUI,
 	}
 
 
+	public int getMaxFrameRate() {
+		return renderer.getMaxFrameRate();
+	}
+
+	public void setMaxFrameRate(int maxFrameRate) {
+		renderer.setMaxFrameRate(maxFrameRate);
+	}
+
 	public float getWeightScale() {
 		return weightScale;
 	}
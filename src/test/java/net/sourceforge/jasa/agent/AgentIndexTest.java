@@ -0,0 +1,109 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.agent;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jabm.SpringSimulationController;
+import net.sourceforge.jasa.market.MarketSimulation;
+
+public class AgentIndexTest extends TestCase {
+
+	protected MarketSimulation market;
+	
+	protected AgentIndex agentIndex;
+	
+	public AgentIndexTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		market = new MarketSimulation();
+		market.setSimulationController(new SpringSimulationController());
+		agentIndex = market.getAgentIndex();
+	}
+
+	public void testDenseIndices() {
+		MockTrader trader1 = new MockTrader(this, 0, 0, market);
+		MockTrader trader2 = new MockTrader(this, 0, 0, market);
+		assertEquals(-1, agentIndex.indexOf(trader1));
+		market.register(trader1);
+		market.register(trader2);
+		assertEquals(0, agentIndex.indexOf(trader1));
+		assertEquals(1, agentIndex.indexOf(trader2));
+		assertEquals(2, agentIndex.size());
+		assertTrue(agentIndex.getAgent(1) == trader2);
+		assertEquals(0, agentIndex.register(trader1));
+		assertEquals(2, agentIndex.size());
+	}
+	
+	public void testSharedColumns() {
+		MockTrader trader1 = new MockTrader(this, 0, 0, market);
+		MockTrader trader2 = new MockTrader(this, 0, 0, market);
+		AgentDoubleColumn column = agentIndex.getDoubleColumn("payoff");
+		assertTrue(column == agentIndex.getDoubleColumn("payoff"));
+		column.add(agentIndex.register(trader1), 1.5);
+		column.add(agentIndex.register(trader2), 2.0);
+		column.add(agentIndex.register(trader1), 1.0);
+		assertEquals(2.5, column.get(agentIndex.indexOf(trader1)), 10E-6);
+		assertEquals(4.5, column.sum(), 10E-6);
+		assertEquals(0.0, column.get(1000), 10E-6);
+	}
+	
+	public void testClear() {
+		MockTrader trader = new MockTrader(this, 0, 0, market);
+		AgentIntColumn column = agentIndex.getIntColumn("trades");
+		column.set(agentIndex.register(trader), 3);
+		agentIndex.clear();
+		assertEquals(-1, agentIndex.indexOf(trader));
+		assertEquals(0, agentIndex.size());
+		assertEquals(0, column.sum());
+		assertFalse(agentIndex.isRegistered(trader));
+	}
+
+	public void testIndexOfDoesNotRegister() {
+		MockTrader trader = new MockTrader(this, 0, 0, market);
+		assertEquals(-1, agentIndex.indexOf(trader));
+		assertEquals(0, agentIndex.size());
+		assertFalse(agentIndex.isRegistered(trader));
+	}
+	
+	public void testAgentInSeveralIndices() {
+		MockTrader trader1 = new MockTrader(this, 0, 0, market);
+		MockTrader trader2 = new MockTrader(this, 0, 0, market);
+		AgentIndex other = new AgentIndex();
+		agentIndex.register(trader1);
+		agentIndex.register(trader2);
+		other.register(trader2);
+		assertEquals(1, agentIndex.indexOf(trader2));
+		assertEquals(0, other.indexOf(trader2));
+		assertEquals(-1, other.indexOf(trader1));
+		assertTrue(other.isRegistered(trader2, 0));
+		assertFalse(agentIndex.isRegistered(trader2, 0));
+		other.clear();
+		assertEquals(1, agentIndex.indexOf(trader2));
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(AgentIndexTest.class);
+	}
+
+}
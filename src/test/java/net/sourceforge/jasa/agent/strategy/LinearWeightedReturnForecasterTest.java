@@ -0,0 +1,62 @@
+package net.sourceforge.jasa.agent.strategy;
+
+import junit.framework.TestCase;
+import net.sourceforge.jasa.agent.valuation.FundamentalistForecaster;
+import net.sourceforge.jasa.agent.valuation.LinearWeightedReturnForecaster;
+import net.sourceforge.jasa.agent.valuation.ReturnForecasterWithTimeHorizon;
+import cern.jet.random.AbstractContinousDistribution;
+import cern.jet.random.Uniform;
+import cern.jet.random.engine.MersenneTwister64;
+
+public class LinearWeightedReturnForecasterTest extends TestCase {
+
+	LinearWeightedReturnForecaster parent;
+	
+	LinearWeightedReturnForecaster child;
+	
+	MockMarket market;
+
+	public void setUp() throws Exception {
+		market = new MockMarket();
+		market.price = 400.0;
+		parent = createForecaster(new double[] { 0.2, 0.8 });
+		child = createForecaster(new double[] { 0.9, 0.1 });
+	}
+	
+	public LinearWeightedReturnForecaster createForecaster(double[] weights)
+			throws Exception {
+		FundamentalistForecaster fundamentalist = new FundamentalistForecaster();
+		fundamentalist.setFundamentalPrice(500.0);
+		LinearWeightedReturnForecaster forecaster = 
+				new LinearWeightedReturnForecaster();
+		forecaster.setForecasters(new ReturnForecasterWithTimeHorizon[] {
+				fundamentalist, fundamentalist });
+		forecaster.setDistributions(new AbstractContinousDistribution[] {
+				new Uniform(0, 1, new MersenneTwister64(1)),
+				new Uniform(0, 1, new MersenneTwister64(2)) });
+		forecaster.setWeights(weights);
+		forecaster.afterPropertiesSet();
+		return forecaster;
+	}
+
+	public void testCopyFromReusesWeights() {
+		double[] childWeights = child.getWeights();
+		child.copyFrom(parent);
+		assertSame(childWeights, child.getWeights());
+		assertEquals(0.2, child.getWeights()[0], 0);
+		assertEquals(0.8, child.getWeights()[1], 0);
+		assertEquals(parent.getNextPeriodReturnForecast(market),
+				child.getNextPeriodReturnForecast(market), 0);
+		parent.getWeights()[0] = 0.5;
+		assertEquals(0.2, child.getWeights()[0], 0);
+	}
+	
+	public void testInitialiseWeightsInPlace() {
+		double[] weights = child.getWeights();
+		child.initialiseWeights();
+		assertSame(weights, child.getWeights());
+		assertTrue(weights[0] >= 0 && weights[0] <= 1);
+		assertTrue(weights[0] != 0.9);
+	}
+	
+}
@@ -8,8 +8,10 @@ import net.sourceforge.jabm.SimulationController;
 import net.sourceforge.jabm.SimulationTime;
 import net.sourceforge.jabm.agent.Agent;
 import net.sourceforge.jasa.agent.AbstractTradingAgent;
+import net.sourceforge.jasa.agent.AgentIndex;
 import net.sourceforge.jasa.market.AuctionException;
 import net.sourceforge.jasa.market.Market;
+import net.sourceforge.jasa.market.MarketLedger;
 import net.sourceforge.jasa.market.MarketQuote;
 import net.sourceforge.jasa.market.Order;
 import net.sourceforge.jasa.market.ShoutsNotVisibleException;
@@ -21,6 +23,8 @@ public class MockMarket implements Market, Simulation {
 	
 	protected double price;
 	
+	protected AgentIndex agentIndex = new AgentIndex();
+	
 	@Override
 	public void clear(Order ask, Order bid, double price) {
 		// TODO Auto-generated method stub
@@ -163,6 +167,16 @@ public class MockMarket implements Market, Simulation {
 		return null;
 	}
 
+	@Override
+	public AgentIndex getAgentIndex() {
+		return agentIndex;
+	}
+
+	@Override
+	public MarketLedger getLedger() {
+		return null;
+	}
+
 	@Override
 	public void run() {
 		// TODO Auto-generated method stub
@@ -0,0 +1,130 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.agent.valuation;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jasa.random.SplitMixRandomEngine;
+import cern.jet.random.engine.MersenneTwister64;
+
+public class CorrelatedPathGeneratorTest extends TestCase {
+
+	public static final double[][] CORRELATION = new double[][] {
+		{ 1.0, 0.8, -0.3 },
+		{ 0.8, 1.0, 0.0 },
+		{ -0.3, 0.0, 1.0 } };
+
+	public CorrelatedPathGeneratorTest(String name) {
+		super(name);
+	}
+
+	public void testCholesky() {
+		double[] l = CorrelatedPathGenerator.cholesky(CORRELATION);
+		int n = CORRELATION.length;
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				double sum = 0;
+				for (int k = 0; k < n; k++) {
+					sum += l[i * n + k] * l[j * n + k];
+				}
+				assertEquals(CORRELATION[i][j], sum, 1E-12);
+				if (j > i) {
+					assertEquals(0.0, l[i * n + j], 0);
+				}
+			}
+		}
+		try {
+			CorrelatedPathGenerator.cholesky(new double[][] { { 1, 2 }, { 2, 1 } });
+			fail("Expected a non positive-definite matrix to be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testReturnMoments() {
+		double dt = 0.01;
+		double[] drift = new double[] { 0.1, 0.0, -0.2 };
+		double[] volatility = new double[] { 0.2, 0.4, 0.3 };
+		CorrelatedPathGenerator generator = new CorrelatedPathGenerator(drift,
+				volatility, CORRELATION, dt, new SplitMixRandomEngine(5));
+		int steps = 100000;
+		double[][] paths = new double[3][steps + 1];
+		generator.generatePaths(new double[] { 100, 50, 10 }, paths);
+		double[][] returns = new double[3][steps];
+		for (int i = 0; i < 3; i++) {
+			for (int t = 0; t < steps; t++) {
+				returns[i][t] = Math.log(paths[i][t + 1] / paths[i][t]);
+			}
+		}
+		for (int i = 0; i < 3; i++) {
+			assertEquals(volatility[i] * Math.sqrt(dt), 
+					Math.sqrt(covariance(returns[i], returns[i])), 0.001);
+			for (int j = 0; j < i; j++) {
+				double rho = covariance(returns[i], returns[j])
+						/ Math.sqrt(covariance(returns[i], returns[i])
+								* covariance(returns[j], returns[j]));
+				assertEquals(CORRELATION[i][j], rho, 0.02);
+			}
+		}
+	}
+
+	public void testReproducibleWithJumps() {
+		double[][] a = generate(new MersenneTwister64(17));
+		double[][] b = generate(new MersenneTwister64(17));
+		int jumps = 0;
+		for (int t = 0; t < a[0].length; t++) {
+			assertEquals(a[0][t], b[0][t], 0);
+			assertEquals(a[1][t], b[1][t], 0);
+			if (t > 0 && Math.abs(Math.log(a[0][t] / a[0][t - 1])) > 0.3) {
+				jumps++;
+			}
+		}
+		assertTrue(jumps > 0);
+	}
+
+	protected double[][] generate(MersenneTwister64 prng) {
+		CorrelatedPathGenerator generator = new CorrelatedPathGenerator(
+				new double[] { 0.0, 0.0 }, new double[] { 0.1, 0.1 }, null,
+				new double[] { 5.0, 0.0 }, new double[] { -0.5, 0.0 },
+				new double[] { 0.1, 0.0 }, 0.01, prng);
+		double[][] paths = new double[2][2000];
+		generator.generatePaths(new double[] { 1.0, 1.0 }, paths);
+		return paths;
+	}
+
+	protected double covariance(double[] x, double[] y) {
+		double mx = 0, my = 0;
+		for (int i = 0; i < x.length; i++) {
+			mx += x[i];
+			my += y[i];
+		}
+		mx /= x.length;
+		my /= y.length;
+		double sum = 0;
+		for (int i = 0; i < x.length; i++) {
+			sum += (x[i] - mx) * (y[i] - my);
+		}
+		return sum / x.length;
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(CorrelatedPathGeneratorTest.class);
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.agent.valuation;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import cern.jet.random.engine.MersenneTwister64;
+
+public class PriceProcessBankTest extends TestCase {
+
+	public static final int STEPS = 50;
+
+	public static final double[] INITIAL_PRICES = new double[] { 100, 50 };
+
+	public PriceProcessBankTest(String name) {
+		super(name);
+	}
+
+	public void testInitialPrices() throws Exception {
+		PriceProcessBank bank = createBank(0, 1);
+		bank.afterPropertiesSet();
+		for (int i = 0; i < INITIAL_PRICES.length; i++) {
+			assertEquals(INITIAL_PRICES[i], bank.getPrice(i), 0);
+			assertEquals(INITIAL_PRICES[i], bank.getPriceWrapper(i).getValue(),
+					0);
+		}
+	}
+
+	public void testInitialPricesValidated() throws Exception {
+		PriceProcessBank bank = createBank(0, 1);
+		bank.setInitialPrices(new double[] { 100 });
+		try {
+			bank.afterPropertiesSet();
+			fail("Expected the wrong number of initial prices to be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+		bank = createBank(0, 1);
+		bank.setInitialPrices(new double[] { 100, 0 });
+		try {
+			bank.afterPropertiesSet();
+			fail("Expected a non-positive initial price to be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testSharedPaths() throws Exception {
+		PriceProcessBank original = createBank(STEPS, 1);
+		original.afterPropertiesSet();
+		double[][] paths = original.getPaths();
+		double[][] expected = new double[paths.length][];
+		for (int i = 0; i < paths.length; i++) {
+			expected[i] = paths[i].clone();
+		}
+
+		PriceProcessBank replica = createBank(STEPS, 2);
+		replica.setPaths(paths);
+		replica.afterPropertiesSet();
+		for (int replication = 0; replication < 2; replication++) {
+			replica.initialise();
+			assertSame(paths, replica.getPaths());
+			for (int t = 0; t <= STEPS; t++) {
+				for (int i = 0; i < paths.length; i++) {
+					assertEquals(expected[i][t], replica.getPrice(i), 0);
+					assertEquals(expected[i][t], 
+							replica.getPriceWrapper(i).getValue(), 0);
+				}
+				if (t < STEPS) {
+					replica.step();
+				}
+			}
+		}
+	}
+
+	public void testGeneratedPathsRegenerated() throws Exception {
+		PriceProcessBank bank = createBank(STEPS, 1);
+		bank.afterPropertiesSet();
+		double first = bank.getPaths()[0][STEPS];
+		bank.initialise();
+		assertFalse(first == bank.getPaths()[0][STEPS]);
+		assertFalse(bank.isSharedPaths());
+	}
+
+	protected PriceProcessBank createBank(int precomputedSteps, long seed) {
+		PriceProcessBank bank = new PriceProcessBank();
+		bank.setDrift(new double[] { 0.05, 0.0 });
+		bank.setVolatility(new double[] { 0.2, 0.3 });
+		bank.setCorrelation(new double[][] { { 1.0, 0.5 }, { 0.5, 1.0 } });
+		bank.setDt(0.01);
+		bank.setInitialPrices(INITIAL_PRICES.clone());
+		bank.setPrecomputedSteps(precomputedSteps);
+		bank.setPrng(new MersenneTwister64((int) seed));
+		return bank;
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(PriceProcessBankTest.class);
+	}
+}
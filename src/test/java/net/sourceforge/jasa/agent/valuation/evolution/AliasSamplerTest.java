@@ -0,0 +1,69 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.agent.valuation.evolution;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+public class AliasSamplerTest extends TestCase {
+
+	public static final int SAMPLES = 200000;
+
+	public AliasSamplerTest(String name) {
+		super(name);
+	}
+
+	public void testFrequencies() {
+		double[] weights = new double[] { 1, 0, 3, 6, 0.5, 9.5 };
+		AliasSampler sampler = new AliasSampler(2);
+		double total = sampler.build(weights, 0, weights.length);
+		assertEquals(20.0, total, 1E-9);
+		RandomEngine prng = new MersenneTwister64(7);
+		int[] counts = new int[weights.length];
+		for (int i = 0; i < SAMPLES; i++) {
+			counts[sampler.sample(prng)]++;
+		}
+		for (int i = 0; i < weights.length; i++) {
+			double expected = weights[i] / total;
+			double observed = counts[i] / (double) SAMPLES;
+			assertEquals("index " + i, expected, observed, 0.01);
+		}
+		assertEquals(0, counts[1]);
+	}
+
+	public void testOffsetAndInvalidWeights() {
+		double[] weights = new double[] { 100, -2, Double.NaN, 4, 0 };
+		AliasSampler sampler = new AliasSampler();
+		assertEquals(4.0, sampler.build(weights, 1, 4), 1E-9);
+		assertTrue(sampler.isValid());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(2, sampler.sample(i / 1000.0));
+		}
+		assertEquals(0.0, sampler.build(weights, 4, 1), 0);
+		assertFalse(sampler.isValid());
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(AliasSamplerTest.class);
+	}
+}
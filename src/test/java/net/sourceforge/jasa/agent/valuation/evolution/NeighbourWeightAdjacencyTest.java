@@ -0,0 +1,126 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.agent.valuation.evolution;
+
+import java.util.HashMap;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.commons.collections15.Transformer;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+import edu.uci.ics.jung.graph.DirectedSparseGraph;
+import edu.uci.ics.jung.graph.Graph;
+
+public class NeighbourWeightAdjacencyTest extends TestCase {
+
+	protected HashMap<String, Double> edgeWeights;
+
+	protected Transformer<String, Double> transformer;
+
+	public NeighbourWeightAdjacencyTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		edgeWeights = new HashMap<String, Double>();
+		transformer = new Transformer<String, Double>() {
+			public Double transform(String edge) {
+				return edgeWeights.get(edge);
+			}
+		};
+	}
+
+	protected void addEdge(Graph<Integer, String> graph, int a, int b,
+			double weight) {
+		String edge = a + "->" + b;
+		graph.addEdge(edge, a, b);
+		edgeWeights.put(edge, weight);
+	}
+
+	public void testCombinedWeights() {
+		Graph<Integer, String> graph = new DirectedSparseGraph<Integer, String>();
+		graph.addVertex(3);
+		addEdge(graph, 0, 1, 2.0);
+		addEdge(graph, 1, 0, 0.5);
+		addEdge(graph, 1, 2, 4.0);
+		NeighbourWeightAdjacency<Integer, String> adjacency = 
+			new NeighbourWeightAdjacency<Integer, String>(graph, transformer);
+		assertEquals(4, adjacency.getNumberOfVertices());
+		int v0 = adjacency.indexOf(0);
+		int v1 = adjacency.indexOf(1);
+		int v2 = adjacency.indexOf(2);
+		int v3 = adjacency.indexOf(3);
+		assertEquals(1, adjacency.getDegree(v0));
+		assertEquals(2, adjacency.getDegree(v1));
+		assertEquals(1, adjacency.getDegree(v2));
+		assertEquals(0, adjacency.getDegree(v3));
+		assertEquals(2.5, adjacency.getWeight(v0, v1), 0);
+		assertEquals(2.5, adjacency.getWeight(v1, v0), 0);
+		assertEquals(4.0, adjacency.getWeight(v1, v2), 0);
+		assertEquals(0.0, adjacency.getWeight(v0, v2), 0);
+		assertEquals(-1, adjacency.indexOf(99));
+	}
+
+	public void testAgreesWithGraph() {
+		RandomEngine prng = new MersenneTwister64(3);
+		Graph<Integer, String> graph = new DirectedSparseGraph<Integer, String>();
+		int n = 50;
+		for (int i = 0; i < n; i++) {
+			graph.addVertex(i);
+		}
+		for (int e = 0; e < 300; e++) {
+			int a = (int) (prng.nextDouble() * n);
+			int b = (int) (prng.nextDouble() * n);
+			if (a != b && graph.findEdge(a, b) == null) {
+				addEdge(graph, a, b, prng.nextDouble());
+			}
+		}
+		NeighbourWeightAdjacency<Integer, String> adjacency = 
+			new NeighbourWeightAdjacency<Integer, String>(transformer);
+		// Build twice to check that the buffers are reused correctly
+		adjacency.build(new DirectedSparseGraph<Integer, String>());
+		adjacency.build(graph);
+		for (int i = 0; i < n; i++) {
+			int v = adjacency.getVertex(i);
+			assertEquals(graph.getNeighborCount(v), adjacency.getDegree(i));
+			for (int p = adjacency.getRowStart(i); p < adjacency.getRowEnd(i); p++) {
+				int u = adjacency.getVertex(adjacency.getNeighbour(p));
+				double expected = 0;
+				String in = graph.findEdge(u, v);
+				if (in != null) {
+					expected += edgeWeights.get(in);
+				}
+				String out = graph.findEdge(v, u);
+				if (out != null) {
+					expected += edgeWeights.get(out);
+				}
+				assertEquals(expected, adjacency.getWeight(p), 1E-12);
+			}
+		}
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(NeighbourWeightAdjacencyTest.class);
+	}
+}
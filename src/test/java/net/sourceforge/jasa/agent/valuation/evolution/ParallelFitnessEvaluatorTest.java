@@ -0,0 +1,97 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.agent.valuation.evolution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jasa.agent.MockTrader;
+import net.sourceforge.jasa.market.MarketSimulation;
+import cern.jet.random.engine.MersenneTwister64;
+
+public class ParallelFitnessEvaluatorTest extends TestCase {
+
+	public static final int NUM_AGENTS = 1000;
+
+	protected ArrayList<MockTrader> agents;
+
+	protected PayoffFitnessFunction fitnessFunction;
+
+	protected ExecutorService executor;
+
+	public ParallelFitnessEvaluatorTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		MarketSimulation market = new MarketSimulation();
+		MersenneTwister64 prng = new MersenneTwister64(7);
+		agents = new ArrayList<MockTrader>(NUM_AGENTS);
+		for (int i = 0; i < NUM_AGENTS; i++) {
+			MockTrader agent = new MockTrader(this, 0, 0, market);
+			agent.setPayoff(prng.nextDouble() * 100 - 50);
+			agents.add(agent);
+		}
+		fitnessFunction = new PayoffFitnessFunction();
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	public void testParallelMatchesSerial() {
+		double[] serial = new double[NUM_AGENTS];
+		for (int i = 0; i < NUM_AGENTS; i++) {
+			serial[i] = fitnessFunction.getFitness(agents.get(i));
+		}
+		ParallelFitnessEvaluator evaluator = 
+				new ParallelFitnessEvaluator(executor);
+		// small chunks so that the population is split across the workers
+		evaluator.setMinChunkSize(8);
+		for (int trial = 0; trial < 10; trial++) {
+			double[] parallel = new double[NUM_AGENTS];
+			evaluator.evaluate(fitnessFunction, agents, parallel);
+			assertTrue(Arrays.equals(serial, parallel));
+		}
+	}
+
+	public void testSmallPopulationEvaluatedSerially() {
+		ParallelFitnessEvaluator evaluator = 
+				new ParallelFitnessEvaluator(executor);
+		double[] fitnesses = new double[NUM_AGENTS + 1];
+		fitnesses[NUM_AGENTS] = -1;
+		evaluator.evaluate(fitnessFunction, agents, fitnesses);
+		for (int i = 0; i < NUM_AGENTS; i++) {
+			assertEquals(agents.get(i).getPayoff(), fitnesses[i], 0);
+		}
+		assertEquals(-1, fitnesses[NUM_AGENTS], 0);
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(ParallelFitnessEvaluatorTest.class);
+	}
+
+}
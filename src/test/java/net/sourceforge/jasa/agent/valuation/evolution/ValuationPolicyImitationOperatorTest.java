@@ -0,0 +1,174 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.agent.valuation.evolution;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jabm.SpringSimulationController;
+import net.sourceforge.jabm.event.EventListener;
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jasa.agent.MockTrader;
+import net.sourceforge.jasa.agent.valuation.FundamentalistForecaster;
+import net.sourceforge.jasa.agent.valuation.LinearWeightedReturnForecaster;
+import net.sourceforge.jasa.agent.valuation.ReturnForecastValuationPolicy;
+import net.sourceforge.jasa.agent.valuation.ReturnForecasterWithTimeHorizon;
+import net.sourceforge.jasa.market.MarketSimulation;
+import cern.jet.random.AbstractContinousDistribution;
+import cern.jet.random.Uniform;
+import cern.jet.random.engine.MersenneTwister64;
+
+public class ValuationPolicyImitationOperatorTest extends TestCase {
+
+	protected CountingSimulationController controller;
+
+	protected MarketSimulation market;
+
+	protected MockTrader parent;
+
+	protected MockTrader child;
+
+	protected ValuationPolicyImitationOperator operator;
+
+	public ValuationPolicyImitationOperatorTest(String name) {
+		super(name);
+	}
+
+	public void setUp() throws Exception {
+		controller = new CountingSimulationController();
+		market = new MarketSimulation(controller);
+		parent = createAgent(new double[] { 0.2, 0.8 }, 0.5);
+		child = createAgent(new double[] { 0.9, 0.1 }, 2.0);
+		operator = new ValuationPolicyImitationOperator();
+		operator.setInPlace(true);
+		controller.added = 0;
+		controller.removed = 0;
+	}
+
+	public MockTrader createAgent(double[] weights, double forecastError)
+			throws Exception {
+		FundamentalistForecaster fundamentalist = new FundamentalistForecaster();
+		fundamentalist.setFundamentalPrice(500.0);
+		ErrorStateForecaster forecaster = new ErrorStateForecaster();
+		forecaster.setForecasters(new ReturnForecasterWithTimeHorizon[] {
+				fundamentalist, fundamentalist });
+		forecaster.setDistributions(new AbstractContinousDistribution[] {
+				new Uniform(0, 1, new MersenneTwister64(1)),
+				new Uniform(0, 1, new MersenneTwister64(2)) });
+		forecaster.setWeights(weights);
+		forecaster.afterPropertiesSet();
+		forecaster.setForecastError(forecastError);
+		ReturnForecastValuationPolicy policy = 
+				new ReturnForecastValuationPolicy();
+		policy.setForecaster(forecaster);
+		MockTrader agent = new MockTrader(this, 0, 0, market);
+		agent.setValuationPolicy(policy);
+		policy.subscribeToEvents(market);
+		return agent;
+	}
+
+	public void testInPlaceImitationKeepsListeners() {
+		ReturnForecastValuationPolicy policy = 
+				(ReturnForecastValuationPolicy) child.getValuationPolicy();
+		ErrorStateForecaster forecaster = 
+				(ErrorStateForecaster) policy.getForecaster();
+		operator.inheritBehaviour(child, parent);
+		assertEquals(0, controller.added);
+		assertEquals(0, controller.removed);
+		assertSame(policy, child.getValuationPolicy());
+		assertSame(forecaster, policy.getForecaster());
+	}
+
+	public void testInPlaceImitationCopiesState() {
+		ErrorStateForecaster childForecaster = getForecaster(child);
+		ErrorStateForecaster parentForecaster = getForecaster(parent);
+		double[] weights = childForecaster.getWeights();
+		operator.inheritBehaviour(child, parent);
+		assertSame(weights, childForecaster.getWeights());
+		assertNotSame(parentForecaster.getWeights(), weights);
+		assertEquals(0.2, weights[0], 0);
+		assertEquals(0.8, weights[1], 0);
+		assertEquals(0.5, childForecaster.getForecastError(), 0);
+		// the parent's subsequent learning is not shared with the child
+		parentForecaster.getWeights()[0] = 0.7;
+		parentForecaster.setForecastError(3.0);
+		assertEquals(0.2, weights[0], 0);
+		assertEquals(0.5, childForecaster.getForecastError(), 0);
+	}
+
+	protected ErrorStateForecaster getForecaster(MockTrader agent) {
+		return (ErrorStateForecaster) 
+				((ReturnForecastValuationPolicy) agent.getValuationPolicy())
+						.getForecaster();
+	}
+
+	/**
+	 * A forecaster whose error state can be set directly.
+	 */
+	public static class ErrorStateForecaster extends
+			LinearWeightedReturnForecaster {
+
+		public void setForecastError(double forecastError) {
+			this.totalSquaredError = forecastError;
+		}
+	}
+
+	/**
+	 * Counts the listeners added to and removed from the simulation.
+	 */
+	public static class CountingSimulationController extends
+			SpringSimulationController {
+
+		int added;
+
+		int removed;
+
+		@Override
+		public void addListener(Class<? extends SimEvent> eventType,
+				EventListener listener) {
+			added++;
+			super.addListener(eventType, listener);
+		}
+
+		@Override
+		public void addListener(EventListener listener) {
+			added++;
+			super.addListener(listener);
+		}
+
+		@Override
+		public void removeListener(Class<? extends SimEvent> eventType,
+				EventListener listener) {
+			removed++;
+			super.removeListener(eventType, listener);
+		}
+
+		@Override
+		public void removeListener(EventListener listener) {
+			removed++;
+			super.removeListener(listener);
+		}
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(ValuationPolicyImitationOperatorTest.class);
+	}
+
+}
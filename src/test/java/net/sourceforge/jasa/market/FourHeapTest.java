@@ -18,6 +18,7 @@ package net.sourceforge.jasa.market;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Random;
 
 import junit.framework.Test;
@@ -543,6 +544,148 @@ public class FourHeapTest extends TestCase {
 //
 //	}
 	
+	public void testCurvesAreMaintained() throws DuplicateShoutException {
+		TradingAgent buyer = new MockTrader(this, 10, 0, auction);
+		TradingAgent seller = new MockTrader(this, 10, 0, auction);
+		book.setMaintainCurves(true);
+		Order bid1 = new Order(buyer, 3, 10.0, true);
+		Order bid2 = new Order(buyer, 2, 8.0, true);
+		Order ask1 = new Order(seller, 4, 7.0, false);
+		Order ask2 = new Order(seller, 1, 12.0, false);
+		book.add(bid1);
+		book.add(bid2);
+		book.add(ask1);
+		book.add(ask2);
+		assertCurvesMatchBook();
+		assertEquals(5, book.getDemandCurve().getTotalQuantity());
+		assertEquals(5, book.getSupplyCurve().getTotalQuantity());
+		assertEquals(4, book.getSupplyCurve().getQuantityAtOrBelow(7.0));
+		assertEquals(5, book.getSupplyCurve().getQuantityAtOrBelow(12.0));
+		assertEquals(3, book.getDemandCurve().getQuantityAtOrAbove(9.0));
+		book.remove(ask2);
+		assertEquals(4, book.getSupplyCurve().getTotalQuantity());
+		assertCurvesMatchBook();
+		book.matchOrders();
+		assertCurvesMatchBook();
+		book.reset();
+		assertTrue(book.getSupplyCurve().isEmpty());
+		assertTrue(book.getDemandCurve().isEmpty());
+	}
+
+	public void testMultiUnitMatchingWithSeparateTraders()
+			throws DuplicateShoutException {
+		TradingAgent buyer = new MockTrader(this, 10, 0, auction);
+		TradingAgent seller = new MockTrader(this, 10, 0, auction);
+		book.add(new Order(buyer, 3, 10.0, true));
+		book.add(new Order(buyer, 2, 8.0, true));
+		book.add(new Order(seller, 4, 7.0, false));
+		book.add(new Order(seller, 1, 12.0, false));
+		assertEquals(4, matchedVolume(book.matchOrders()));
+		assertEquals(1, book.getHighestUnmatchedBid().getQuantity());
+		assertEquals(12.0, book.getLowestUnmatchedAsk().getPriceAsDouble(), 0);
+	}
+
+	/**
+	 * Regression test: when a matched order is split in matchOrders() the
+	 * remainder is still matched, and must not be re-entered through
+	 * addBid() as if it were a new order.
+	 */
+	public void testSplitMatchedRemainderStaysMatched()
+			throws DuplicateShoutException {
+		TradingAgent buyer = new MockTrader(this, 10, 0, auction);
+		TradingAgent seller1 = new MockTrader(this, 10, 0, auction);
+		TradingAgent seller2 = new MockTrader(this, 10, 0, auction);
+		book.add(new Order(buyer, 3, 10.0, true));
+		book.add(new Order(seller1, 2, 6.0, false));
+		book.add(new Order(seller2, 2, 5.0, false));
+		assertEquals(3, matchedVolume(book.matchOrders()));
+		assertNull(book.getHighestUnmatchedBid());
+		Order ask = book.getLowestUnmatchedAsk();
+		assertEquals(1, ask.getQuantity());
+		assertEquals(6.0, ask.getPriceAsDouble(), 0);
+	}
+
+	/**
+	 * Regression test: when unifyShout() splits the order at the top of a
+	 * heap, the top must be moved before the remainder is put back, since
+	 * the remainder has the same price and could otherwise be moved in its
+	 * place.
+	 */
+	public void testUnifyMovesTopBeforeRemainder()
+			throws DuplicateShoutException {
+		TradingAgent buyer1 = new MockTrader(this, 10, 0, auction);
+		TradingAgent seller = new MockTrader(this, 10, 0, auction);
+		TradingAgent buyer2 = new MockTrader(this, 10, 0, auction);
+		book.add(new Order(buyer1, 3, 5.0, true));
+		book.add(new Order(seller, 1, 1.0, false));
+		book.add(new Order(buyer2, 4, 10.0, true));
+		List<Order> matched = book.matchOrders();
+		assertEquals(1, matchedVolume(matched));
+		assertEquals(10.0, matched.get(0).getPriceAsDouble(), 0);
+		assertNull(book.getLowestUnmatchedAsk());
+		assertEquals(6, Order.totalVolume(book.bOut));
+	}
+
+	public void testCurvesAfterRandomOrders() throws DuplicateShoutException {
+		book.setMaintainCurves(true);
+		MockTrader[] traders = new MockTrader[4];
+		for (int t = 0; t < traders.length; t++) {
+			traders[t] = new MockTrader(this, 10, 0, auction);
+		}
+		List<Order> placed = new ArrayList<Order>();
+		for (int i = 0; i < 500; i++) {
+			Order shout = randomShout(traders[i % traders.length]);
+			if (shout.getQuantity() == 0) {
+				shout.setQuantity(1);
+			}
+			book.add(shout);
+			placed.add(shout);
+			assertCurvesMatchBook();
+			if (i % 7 == 0) {
+				book.remove(placed.remove(randGenerator.nextInt(placed.size())));
+				assertCurvesMatchBook();
+			}
+			if (i % 50 == 0) {
+				book.matchOrders();
+				assertCurvesMatchBook();
+			}
+		}
+		book.matchOrders();
+		assertCurvesMatchBook();
+	}
+
+	/**
+	 * Check that the list returned by matchOrders() pairs bids with asks of
+	 * the same quantity at a price the bid accepts.
+	 * 
+	 * @return The total quantity traded.
+	 */
+	protected int matchedVolume(List<Order> matched) {
+		int volume = 0;
+		for (int i = 0; i < matched.size(); i += 2) {
+			Order bid = matched.get(i);
+			Order ask = matched.get(i + 1);
+			assertTrue(bid.isBid());
+			assertTrue(ask.isAsk());
+			assertEquals(bid.getQuantity(), ask.getQuantity());
+			assertTrue(bid.getPriceAsDouble() >= ask.getPriceAsDouble());
+			volume += bid.getQuantity();
+		}
+		return volume;
+	}
+
+	protected void assertCurvesMatchBook() {
+		long asks = 0, bids = 0;
+		for (Iterator<Order> i = book.askIterator(); i.hasNext();) {
+			asks += i.next().getQuantity();
+		}
+		for (Iterator<Order> i = book.bidIterator(); i.hasNext();) {
+			bids += i.next().getQuantity();
+		}
+		assertEquals(asks, book.getSupplyCurve().getTotalQuantity());
+		assertEquals(bids, book.getDemandCurve().getTotalQuantity());
+	}
+	
 	public static void main(String[] args) {
 		junit.textui.TestRunner.run(suite());
 	}
@@ -557,9 +700,28 @@ class TestShoutEngine extends FourHeapOrderBook {
 
 	private static final double TOLERANCE = 0.01;
 
+	protected boolean reinserting = false;
+
 	@Override
 	public void checkIntegrity() {
-		checkBalanced();
+		if (!reinserting) {
+			checkBalanced();
+		}
+	}
+
+	/**
+	 * Removing a matched order moves its counterparts back through the book
+	 * one at a time, so the heaps are only balanced once all of them have
+	 * been reinserted.
+	 */
+	@Override
+	protected void reinsert(PriorityQueue<Order> heap, int quantity) {
+		reinserting = true;
+		try {
+			super.reinsert(heap, quantity);
+		} finally {
+			reinserting = false;
+		}
 	}
 
 	protected void checkBalanced() {
@@ -590,12 +752,4 @@ class TestShoutEngine extends FourHeapOrderBook {
 		}
 	}
 
-	public void add(Order shout) throws DuplicateShoutException {
-		if (shout.isAsk()) {
-			addAsk(shout);
-		} else {
-			addBid(shout);
-		}
-	}
-
 }
\ No newline at end of file
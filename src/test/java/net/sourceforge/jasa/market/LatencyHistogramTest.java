@@ -0,0 +1,82 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market;
+
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+public class LatencyHistogramTest extends TestCase {
+
+	public LatencyHistogramTest(String name) {
+		super(name);
+	}
+
+	public void testSmallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.recordValue(i);
+		}
+		assertEquals(100, histogram.getTotalCount());
+		assertEquals(50, histogram.getValueAtPercentile(50));
+		assertEquals(99, histogram.getValueAtPercentile(99));
+		assertEquals(100, histogram.getMax());
+		assertEquals(50.5, histogram.getMean(), 1E-9);
+	}
+
+	public void testRelativeError() {
+		RandomEngine prng = new MersenneTwister64(3);
+		LatencyHistogram histogram = new LatencyHistogram();
+		long[] values = new long[100000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long) Math.exp(prng.nextDouble() * 20);
+			histogram.recordValue(values[i]);
+		}
+		Arrays.sort(values);
+		double[] percentiles = { 10, 50, 90, 99, 99.9 };
+		for (int i = 0; i < percentiles.length; i++) {
+			long exact = values[(int) Math.ceil(percentiles[i] / 100
+					* values.length) - 1];
+			long estimate = histogram.getValueAtPercentile(percentiles[i]);
+			assertTrue(estimate >= exact);
+			assertTrue(estimate <= exact * 1.01 + 1);
+		}
+	}
+
+	public void testAdd() {
+		LatencyHistogram a = new LatencyHistogram();
+		LatencyHistogram b = new LatencyHistogram();
+		a.recordValue(1000);
+		b.recordValue(1L << 50);
+		a.add(b);
+		assertEquals(2, a.getTotalCount());
+		assertEquals(1L << 50, a.getMax());
+		assertEquals(1L << 50, a.getValueAtPercentile(100));
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(LatencyHistogramTest.class);
+	}
+
+}
@@ -0,0 +1,134 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jabm.SpringSimulationController;
+import net.sourceforge.jasa.agent.MockTrader;
+
+public class MarketLedgerTest extends TestCase {
+
+	protected MarketSimulation market;
+	
+	protected MarketLedger ledger;
+	
+	protected MockTrader buyer;
+	
+	protected MockTrader seller;
+	
+	public MarketLedgerTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		market = new MarketSimulation();
+		market.setSimulationController(new SpringSimulationController());
+		ledger = new MarketLedger();
+		market.setLedger(ledger);
+		buyer = new MockTrader(this, 0, 1000, 150, market);
+		seller = new MockTrader(this, 10, 0, 50, market);
+		market.register(buyer);
+		market.register(seller);
+	}
+	
+	public void testOpenCopiesPositions() {
+		assertTrue(ledger.isOpen(buyer));
+		assertTrue(buyer.getAccount() instanceof LedgerAccount);
+		assertEquals(1000.0, buyer.getFunds(), 10E-6);
+		assertEquals(10, seller.getStock());
+		assertEquals(1000.0, ledger.getFunds(market.getAgentIndex().indexOf(buyer)), 10E-6);
+	}
+
+	public void testSettle() {
+		double surplus = ledger.settle(buyer, seller, 110, 100, 2);
+		assertEquals(10.0, surplus, 10E-6);
+		assertEquals(890.0, buyer.getFunds(), 10E-6);
+		assertEquals(100.0, seller.getFunds(), 10E-6);
+		assertEquals(2, buyer.getStock());
+		assertEquals(8, seller.getStock());
+	}
+	
+	public void testBatchSettle() {
+		int b = market.getAgentIndex().indexOf(buyer);
+		int s = market.getAgentIndex().indexOf(seller);
+		double surplus = ledger.settle(2, new int[] { b, b }, 
+				new int[] { s, s }, new double[] { 100, 120 }, 
+				new double[] { 100, 120 }, new int[] { 1, 1 });
+		assertEquals(0.0, surplus, 10E-6);
+		assertEquals(780.0, buyer.getFunds(), 10E-6);
+		assertEquals(8, seller.getStock());
+	}
+	
+	public void testViewsTransfer() {
+		buyer.getAccount().transfer(seller.getAccount(), 50);
+		assertEquals(950.0, ledger.getFunds(market.getAgentIndex().indexOf(buyer)), 10E-6);
+		assertEquals(50.0, ledger.getFunds(market.getAgentIndex().indexOf(seller)), 10E-6);
+		seller.getCommodityHolding().transfer(buyer.getCommodityHolding(), 3);
+		assertEquals(3, ledger.getStock(market.getAgentIndex().indexOf(buyer)));
+	}
+	
+	public void testPayoffTotals() {
+		Object group = "group";
+		ledger.recordPayoff(buyer, group, true, 40);
+		ledger.recordPayoff(seller, group, false, 10);
+		ledger.recordPayoff(seller, null, false, 5);
+		assertEquals(40.0, ledger.getTotalBuyerPayoff(), 10E-6);
+		assertEquals(15.0, ledger.getTotalSellerPayoff(), 10E-6);
+		assertEquals(50.0, ledger.getGroupPayoff(group), 10E-6);
+		ledger.resetPayoff(buyer, group);
+		assertEquals(15.0, ledger.getTotalPayoff(), 10E-6);
+		assertEquals(10.0, ledger.getGroupPayoff(group), 10E-6);
+	}
+
+	public void testLedgerPerMarket() {
+		MarketSimulation market2 = new MarketSimulation();
+		market2.setSimulationController(new SpringSimulationController());
+		MarketLedger ledger2 = new MarketLedger();
+		market2.setLedger(ledger2);
+		market2.register(buyer);
+		market2.register(seller);
+		assertTrue(ledger2.isOpen(buyer));
+		assertFalse(ledger2.isHeld(market2.getAgentIndex().indexOf(buyer)));
+		assertTrue(buyer.getLedger() == ledger);
+		
+		// positions remain in the first ledger
+		ledger2.settle(buyer, seller, 110, 100, 1);
+		assertEquals(890.0, ledger.getFunds(market.getAgentIndex().indexOf(buyer)),
+				10E-6);
+		assertEquals(1, buyer.getStock());
+		assertEquals(9, seller.getStock());
+		
+		// payoffs are recorded in the ledger of the market that filled the order
+		buyer.orderFilled(market2, new Order(buyer, 1, 110, true), 110, 1);
+		assertEquals(buyer.getLastPayoff(), ledger2.getTotalBuyerPayoff(), 10E-6);
+		assertEquals(0.0, ledger.getTotalPayoff(), 10E-6);
+		
+		buyer.initialise();
+		assertEquals(0.0, ledger2.getTotalPayoff(), 10E-6);
+		assertEquals(1000.0, buyer.getFunds(), 10E-6);
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(MarketLedgerTest.class);
+	}
+
+}
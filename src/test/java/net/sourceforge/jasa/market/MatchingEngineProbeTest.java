@@ -0,0 +1,96 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jasa.market.MatchingEngineProbe.StageStatistics;
+
+public class MatchingEngineProbeTest extends TestCase {
+
+	static final int NUM_RECORDS = 100000;
+
+	public MatchingEngineProbeTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		MatchingEngineProbe.reset();
+	}
+
+	public void testSnapshotWhileRecording() throws InterruptedException {
+		Thread worker = new Thread() {
+			public void run() {
+				for (int i = 0; i < NUM_RECORDS; i++) {
+					MatchingEngineProbe.record(MatchingEngineProbe.BOOK_ADD,
+							System.nanoTime(), i % 10);
+				}
+			}
+		};
+		worker.start();
+		long previous = 0;
+		while (worker.isAlive()) {
+			StageStatistics stage = 
+					MatchingEngineProbe.getSnapshot()[MatchingEngineProbe.BOOK_ADD];
+			long count = stage.getCount();
+			assertTrue(count >= previous);
+			// the histogram and depth statistics are copied consistently
+			assertEquals(count, stage.bookDepthSamples);
+			previous = count;
+		}
+		worker.join();
+		StageStatistics stage = 
+				MatchingEngineProbe.getSnapshot()[MatchingEngineProbe.BOOK_ADD];
+		assertEquals(NUM_RECORDS, stage.getCount());
+		assertEquals(4.5, stage.getMeanBookDepth(), 1E-9);
+		assertEquals(9, stage.getMaxBookDepth());
+	}
+
+	public void testDeadThreadsRetired() throws InterruptedException {
+		int before = MatchingEngineProbe.getNumberOfRecorders();
+		Thread[] workers = new Thread[4];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread() {
+				public void run() {
+					MatchingEngineProbe.record(MatchingEngineProbe.CLEAR,
+							System.nanoTime(), -1);
+				}
+			};
+			workers[i].start();
+		}
+		for (int i = 0; i < workers.length; i++) {
+			workers[i].join();
+		}
+		StageStatistics[] snapshot = MatchingEngineProbe.getSnapshot();
+		// the statistics of the terminated threads are retained
+		assertEquals(workers.length, 
+				snapshot[MatchingEngineProbe.CLEAR].getCount());
+		assertTrue(MatchingEngineProbe.getNumberOfRecorders() <= before);
+		MatchingEngineProbe.reset();
+		assertEquals(0, MatchingEngineProbe.getSnapshot()[
+				MatchingEngineProbe.CLEAR].getCount());
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(MatchingEngineProbeTest.class);
+	}
+
+}
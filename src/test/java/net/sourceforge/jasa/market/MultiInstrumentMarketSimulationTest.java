@@ -0,0 +1,169 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jabm.SpringSimulationController;
+import net.sourceforge.jabm.event.AgentArrivalEvent;
+import net.sourceforge.jabm.event.RoundFinishedEvent;
+import net.sourceforge.jasa.agent.MockStrategy;
+import net.sourceforge.jasa.agent.MockTrader;
+import net.sourceforge.jasa.market.auctioneer.ClearingHouseAuctioneer;
+import net.sourceforge.jasa.market.rules.UniformPricingPolicy;
+
+public class MultiInstrumentMarketSimulationTest extends TestCase {
+
+	public static final String[] SYMBOLS = { "A", "B", "C", "D" };
+
+	MultiInstrumentMarketSimulation exchange;
+
+	MockTrader[] traders;
+
+	public MultiInstrumentMarketSimulationTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		exchange = new MultiInstrumentMarketSimulation();
+		exchange.setSimulationController(new SpringSimulationController());
+		for (int i = 0; i < SYMBOLS.length; i++) {
+			ClearingHouseAuctioneer auctioneer = new ClearingHouseAuctioneer(null);
+			auctioneer.setPricingPolicy(new UniformPricingPolicy(0.5));
+			exchange.addInstrument(SYMBOLS[i], auctioneer);
+		}
+		traders = new MockTrader[2 * SYMBOLS.length];
+		for (int i = 0; i < traders.length; i++) {
+			traders[i] = new MockTrader(this, 10, 10000, 100, exchange);
+		}
+	}
+
+	public void testIndependentBooks() throws Exception {
+		for (int i = 0; i < SYMBOLS.length; i++) {
+			double price = 100 * (i + 1);
+			exchange.placeOrder(SYMBOLS[i], new Order(traders[2 * i], 1,
+					price + 10, true));
+			exchange.placeOrder(SYMBOLS[i], new Order(traders[2 * i + 1], 1,
+					price - 10, false));
+		}
+		for (int i = 0; i < SYMBOLS.length; i++) {
+			assertEquals(0, exchange.getInstrument(SYMBOLS[i])
+					.getNumberOfPendingTransactions());
+		}
+		exchange.fireEvent(new RoundFinishedEvent(exchange));
+		for (int i = 0; i < SYMBOLS.length; i++) {
+			double price = 100 * (i + 1);
+			InstrumentMarket market = exchange.getInstrument(SYMBOLS[i]);
+			assertEquals(price, traders[2 * i].lastWinningPrice, 1E-9);
+			assertEquals(price, traders[2 * i + 1].lastWinningPrice, 1E-9);
+			assertEquals(price, market.getLastTransactionPrice(), 1E-9);
+			assertSame(market, exchange.getQuoteProvider(SYMBOLS[i]));
+			assertFalse(market.isDeferSettlement());
+			assertEquals(0, market.getNumberOfPendingTransactions());
+			assertEquals(1, market.getHolding(traders[2 * i]).getQuantity());
+			assertEquals(-1, market.getHolding(traders[2 * i + 1]).getQuantity());
+			assertEquals(0, market.getHolding(traders[(2 * i + 2)
+					% traders.length]).getQuantity());
+		}
+		for (int i = 0; i < traders.length; i++) {
+			assertEquals(10, traders[i].getStock());
+		}
+		assertEquals(100.0, exchange.getLastTransactionPrice(), 1E-9);
+	}
+
+	public void testHoldingChangesAfterFill() throws Exception {
+		InstrumentMarket market = exchange.getInstrument(SYMBOLS[1]);
+		MockTrader buyer = traders[0];
+		MockTrader seller = traders[1];
+		assertEquals(0, buyer.getHolding(market).getQuantity());
+		exchange.placeOrder(SYMBOLS[1], new Order(buyer, 2, 110, true));
+		exchange.placeOrder(SYMBOLS[1], new Order(seller, 2, 90, false));
+		exchange.fireEvent(new RoundFinishedEvent(exchange));
+		assertEquals(2, buyer.getHolding(market).getQuantity());
+		assertEquals(-2, seller.getHolding(market).getQuantity());
+		assertSame(buyer.getHolding(market), market.getHolding(buyer));
+		assertEquals(0, buyer.getHolding(exchange.getInstrument(SYMBOLS[0]))
+				.getQuantity());
+		assertEquals(10, buyer.getCommodityHolding().getQuantity());
+	}
+
+	public void testAuctioneerPropertyRejected() {
+		try {
+			exchange.setAuctioneer(new ClearingHouseAuctioneer(null));
+			fail("setAuctioneer should be unsupported on an exchange");
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
+	public void testSerialAndParallelAgree() throws Exception {
+		exchange.setParallel(false);
+		testIndependentBooks();
+		double[] serial = new double[traders.length];
+		for (int i = 0; i < traders.length; i++) {
+			serial[i] = traders[i].lastWinningPrice;
+		}
+		setUp();
+		exchange.setParallel(true);
+		testIndependentBooks();
+		for (int i = 0; i < traders.length; i++) {
+			assertEquals(serial[i], traders[i].lastWinningPrice, 0);
+		}
+	}
+
+	public void testAgentArrivalAcrossInstruments() throws Exception {
+		MockStrategy strategy = new MockStrategy(
+				new Order[] { new Order(null, 1, 50, true) }, exchange);
+		MockTrader trader = new MockTrader(this, 10, 10000, 100, strategy,
+				exchange);
+		exchange.register(trader);
+		List<Market> markets = new ArrayList<Market>(trader.getMarkets());
+		assertEquals(new ArrayList<Market>(exchange.getInstruments()), markets);
+		for (int round = 0; round < 3; round++) {
+			trader.onAgentArrival(new AgentArrivalEvent(exchange, trader));
+			for (InstrumentMarket market : exchange.getInstruments()) {
+				List<Order> bids = market.getAuctioneer().getUnmatchedBids();
+				assertEquals(1, bids.size());
+				assertSame(trader.getCurrentOrder(market), bids.get(0));
+			}
+		}
+		for (int i = 0; i < markets.size(); i++) {
+			for (int j = i + 1; j < markets.size(); j++) {
+				assertNotSame(trader.getCurrentOrder(markets.get(i)),
+						trader.getCurrentOrder(markets.get(j)));
+			}
+		}
+	}
+
+	public void testUnknownInstrument() {
+		try {
+			exchange.placeOrder("Z", new Order(traders[0], 1, 10, true));
+			fail("Expected an order for an unknown instrument to be rejected");
+		} catch (AuctionException e) {
+		}
+	}
+
+	public static Test suite() {
+		return new TestSuite(MultiInstrumentMarketSimulationTest.class);
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+public class PriceLevelTreeTest extends TestCase {
+
+	public PriceLevelTreeTest(String name) {
+		super(name);
+	}
+
+	public void testLevelsAreAggregated() {
+		PriceLevelTree tree = new PriceLevelTree();
+		tree.add(10, 2);
+		tree.add(5, 1);
+		tree.add(10, 3);
+		tree.add(7, 4);
+		assertEquals(3, tree.getNumberOfLevels());
+		assertEquals(10, tree.getTotalQuantity());
+		assertEquals(5, tree.getQuantity(10));
+		assertEquals(5, tree.getQuantityAtOrBelow(7));
+		assertEquals(9, tree.getQuantityAtOrAbove(7));
+		assertEquals(7.0, tree.getPrice(1), 0);
+		tree.remove(10, 5);
+		assertEquals(2, tree.getNumberOfLevels());
+		assertEquals(7.0, tree.getMaxPrice(), 0);
+		try {
+			tree.remove(5, 2);
+			fail("Removed more quantity than was present");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testStepSeries() {
+		PriceLevelTree tree = new PriceLevelTree();
+		tree.add(3, 1);
+		tree.add(1, 2);
+		tree.add(2, 3);
+		double[] prices = new double[3];
+		long[] quantities = new long[3];
+		tree.toArrays(prices, quantities, true);
+		assertEquals(3.0, prices[0], 0);
+		assertEquals(1.0, prices[2], 0);
+		assertEquals(2, quantities[2]);
+		final long[] cumulative = new long[3];
+		tree.visit(new PriceLevelTree.LevelVisitor() {
+			int i = 0;
+			public void visit(double price, long quantity, long total) {
+				cumulative[i++] = total;
+			}
+		}, false);
+		assertEquals(2, cumulative[0]);
+		assertEquals(5, cumulative[1]);
+		assertEquals(6, cumulative[2]);
+	}
+
+	public void testAgainstSortedMap() {
+		RandomEngine prng = new MersenneTwister64(7);
+		PriceLevelTree tree = new PriceLevelTree();
+		TreeMap<Double, Long> expected = new TreeMap<Double, Long>();
+		for (int i = 0; i < 20000; i++) {
+			double price = Math.floor(prng.nextDouble() * 200) / 2;
+			Long current = expected.get(price);
+			if (current != null && prng.nextDouble() < 0.45) {
+				long quantity = 1 + (long) (prng.nextDouble() * current);
+				quantity = Math.min(quantity, current);
+				tree.remove(price, quantity);
+				if (quantity == current) {
+					expected.remove(price);
+				} else {
+					expected.put(price, current - quantity);
+				}
+			} else {
+				long quantity = 1 + (long) (prng.nextDouble() * 10);
+				tree.add(price, quantity);
+				expected.put(price, current == null ? quantity : current
+						+ quantity);
+			}
+			if (i % 500 == 0) {
+				assertSame(expected, tree, prng.nextDouble() * 100);
+			}
+		}
+		assertSame(expected, tree, 50);
+	}
+
+	protected void assertSame(TreeMap<Double, Long> expected,
+			PriceLevelTree tree, double probe) {
+		assertEquals(expected.size(), tree.getNumberOfLevels());
+		long total = 0, below = 0;
+		int rank = 0;
+		for (Map.Entry<Double, Long> level : expected.entrySet()) {
+			assertEquals(level.getKey(), tree.getPrice(rank++), 0);
+			total += level.getValue();
+			if (level.getKey() <= probe) {
+				below += level.getValue();
+			}
+		}
+		assertEquals(total, tree.getTotalQuantity());
+		assertEquals(below, tree.getQuantityAtOrBelow(probe));
+		assertEquals(total - below, tree.getQuantityAtOrAbove(Math
+				.nextUp(probe)));
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(PriceLevelTreeTest.class);
+	}
+
+}
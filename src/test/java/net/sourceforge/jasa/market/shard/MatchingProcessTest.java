@@ -0,0 +1,367 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market.shard;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jabm.SpringSimulationController;
+import net.sourceforge.jasa.agent.MockTrader;
+import net.sourceforge.jasa.market.MarketSimulation;
+import net.sourceforge.jasa.market.Order;
+
+public class MatchingProcessTest extends TestCase {
+
+	public static final long TIMEOUT = 60000;
+
+	public static final double FUNDS = 10000;
+
+	public static final int STOCK = 25;
+
+	protected File file;
+
+	public MatchingProcessTest(String name) {
+		super(name);
+	}
+
+	public void setUp() throws IOException {
+		file = File.createTempFile("shard", ".channel");
+		file.deleteOnExit();
+	}
+
+	public void tearDown() {
+		file.delete();
+	}
+
+	public void testFillsAndSettlement() throws Exception {
+		ShardChannel channel = ShardChannel.create(file, 1, 64);
+		MatchingProcess matcher = new MatchingProcess(channel);
+		Shard shard = new Shard(channel, 0);
+		Order bid = new Order(shard.buyer, 2, 110, true);
+		Order ask = new Order(shard.seller, 2, 100, false);
+		shard.auctioneer.newOrder(bid);
+		shard.auctioneer.newOrder(ask);
+		
+		matcher.drainOrders();
+		matcher.applyOrders();
+		matcher.clear();
+		shard.auctioneer.drainMarketData();
+		
+		double price = matcher.getLastTransactionPrice();
+		assertTrue(price >= 100 && price <= 110);
+		assertEquals(FUNDS - 2 * price, shard.buyer.getFunds(), 10E-6);
+		assertEquals(2 * price, shard.seller.getFunds(), 10E-6);
+		assertEquals(2, shard.buyer.getStock());
+		assertEquals(STOCK - 2, shard.seller.getStock());
+		// both sides of the trade are in this shard, so it nets to zero
+		assertEquals(0, shard.auctioneer.getAccount().getFunds(), 10E-6);
+		assertEquals(0, shard.auctioneer.getInventory().getQuantity());
+		assertTrue(shard.auctioneer.orderFilled(bid));
+		assertTrue(shard.auctioneer.orderFilled(ask));
+		assertEquals(0, shard.auctioneer.getNumberOfOutstandingOrders());
+		assertEquals(price, shard.market.getLastTransactionPrice(), 0);
+		channel.close();
+	}
+
+	public void testCancelAfterMatch() throws Exception {
+		ShardChannel channel = ShardChannel.create(file, 1, 64);
+		MatchingProcess matcher = new MatchingProcess(channel);
+		Shard shard = new Shard(channel, 0);
+		Order bid = new Order(shard.buyer, 1, 110, true);
+		Order ask = new Order(shard.seller, 1, 100, false);
+		shard.auctioneer.newOrder(bid);
+		shard.auctioneer.newOrder(ask);
+		matcher.drainOrders();
+		matcher.applyOrders();
+		matcher.clear();
+		
+		// the bid is withdrawn after it has been matched but before the fill
+		// arrives, so the fill is for an order the shard no longer knows
+		shard.auctioneer.removeOrder(bid);
+		shard.auctioneer.drainMarketData();
+		assertEquals(FUNDS, shard.buyer.getFunds(), 10E-6);
+		assertEquals(0, shard.buyer.getStock());
+		assertFalse(shard.auctioneer.orderFilled(bid));
+		assertEquals(STOCK - 1, shard.seller.getStock());
+		assertEquals(1, shard.auctioneer.getInventory().getQuantity());
+		
+		// the late cancellation is ignored by the matching process
+		matcher.drainOrders();
+		matcher.applyOrders();
+		assertNull(matcher.getOrderBook().getHighestUnmatchedBid());
+		channel.close();
+	}
+
+	public void testSelfMatchPrevention() throws Exception {
+		RemoteOrder bid = new RemoteOrder(0, 1, 7, 1, 110, true);
+		RemoteOrder ownAsk = new RemoteOrder(0, 2, 7, 1, 100, false);
+		RemoteOrder otherAsk = new RemoteOrder(1, 3, 7, 1, 100, false);
+		assertFalse(bid.matches(ownAsk));
+		assertFalse(ownAsk.matches(bid));
+		assertTrue(bid.matches(otherAsk));
+		
+		ShardChannel channel = ShardChannel.create(file, 2, 64);
+		MatchingProcess matcher = new MatchingProcess(channel);
+		matcher.newOrder(bid);
+		matcher.newOrder(ownAsk);
+		matcher.clear();
+		ShardMessage message = new ShardMessage();
+		assertTrue(channel.getMarketDataRing(0).poll(message));
+		assertEquals(ShardMessage.QUOTE, message.type);
+		assertEquals(0, message.quantity);
+		assertFalse(channel.getMarketDataRing(0).poll(message));
+		assertTrue(channel.getMarketDataRing(1).poll(message));
+		assertEquals(ShardMessage.QUOTE, message.type);
+		
+		matcher.newOrder(otherAsk);
+		matcher.clear();
+		assertTrue(channel.getMarketDataRing(0).poll(message));
+		assertEquals(ShardMessage.FILL, message.type);
+		assertEquals(1, message.id);
+		assertTrue(channel.getMarketDataRing(1).poll(message));
+		assertEquals(ShardMessage.FILL, message.type);
+		assertEquals(3, message.id);
+		channel.close();
+	}
+
+	/**
+	 * Run two shards against a matching process in separate threads, with 
+	 * one shard leaving part way through. The remaining shard carries on 
+	 * trading, and the matching process finishes once both have left.
+	 */
+	public void testShardLeavesMidRun() throws Exception {
+		final ShardChannel channel = ShardChannel.create(file, 2, 64);
+		channel.getBarrier().setTimeout(TIMEOUT);
+		final MatchingProcess matcher = new MatchingProcess(channel);
+		final AtomicReference<Throwable> error = 
+			new AtomicReference<Throwable>();
+		Thread matcherThread = new Thread() {
+			public void run() {
+				try {
+					matcher.run();
+				} catch (Throwable t) {
+					error.set(t);
+				}
+			}
+		};
+		int[] rounds = new int[] { 5, 20 };
+		Shard[] shards = new Shard[2];
+		Thread[] threads = new Thread[2];
+		for (int s = 0; s < 2; s++) {
+			ShardChannel shardChannel = ShardChannel.open(file);
+			shardChannel.getBarrier().setTimeout(TIMEOUT);
+			shards[s] = new Shard(shardChannel, s);
+			threads[s] = shards[s].trade(rounds[s], error);
+		}
+		matcherThread.start();
+		for (int s = 0; s < 2; s++) {
+			threads[s].start();
+		}
+		for (int s = 0; s < 2; s++) {
+			threads[s].join(TIMEOUT);
+			assertFalse(threads[s].isAlive());
+		}
+		matcherThread.join(TIMEOUT);
+		assertFalse(matcherThread.isAlive());
+		assertNull(error.get());
+		assertTrue(matcher.isFinished());
+		for (int s = 0; s < 2; s++) {
+			assertEquals(rounds[s], shards[s].buyer.getStock());
+			assertEquals(STOCK - rounds[s], shards[s].seller.getStock());
+			assertTrue(shards[s].auctioneer.isClosed());
+		}
+		channel.close();
+	}
+
+	/**
+	 * Check that the matching process tells the shards to close once the
+	 * maximum number of rounds has been reached.
+	 */
+	public void testMaximumRounds() throws Exception {
+		final ShardChannel channel = ShardChannel.create(file, 1, 64);
+		channel.getBarrier().setTimeout(TIMEOUT);
+		final MatchingProcess matcher = new MatchingProcess(channel);
+		matcher.setMaximumRounds(3);
+		final AtomicReference<Throwable> error = 
+			new AtomicReference<Throwable>();
+		Thread matcherThread = new Thread() {
+			public void run() {
+				try {
+					matcher.run();
+				} catch (Throwable t) {
+					error.set(t);
+				}
+			}
+		};
+		ShardChannel shardChannel = ShardChannel.open(file);
+		shardChannel.getBarrier().setTimeout(TIMEOUT);
+		Shard shard = new Shard(shardChannel, 0);
+		Thread shardThread = shard.trade(Integer.MAX_VALUE, error);
+		matcherThread.start();
+		shardThread.start();
+		shardThread.join(TIMEOUT);
+		matcherThread.join(TIMEOUT);
+		assertFalse(shardThread.isAlive());
+		assertFalse(matcherThread.isAlive());
+		assertNull(error.get());
+		assertTrue(shard.market.isClosed());
+		assertEquals(3, shard.buyer.getStock());
+		channel.close();
+	}
+
+	/**
+	 * Run a shard in a child JVM against a matching process in this one,
+	 * with both mapping the same file.
+	 */
+	public void testShardInChildProcess() throws Exception {
+		final int rounds = 10;
+		final ShardChannel channel = ShardChannel.create(file, 1, 64);
+		channel.getBarrier().setTimeout(TIMEOUT);
+		final MatchingProcess matcher = new MatchingProcess(channel);
+		final AtomicReference<Throwable> error = 
+			new AtomicReference<Throwable>();
+		Thread matcherThread = new Thread() {
+			public void run() {
+				try {
+					matcher.run();
+				} catch (Throwable t) {
+					error.set(t);
+				}
+			}
+		};
+		matcherThread.start();
+		String java = System.getProperty("java.home") + File.separator
+				+ "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp",
+				System.getProperty("java.class.path"),
+				ChildShard.class.getName(), file.getPath(),
+				Integer.toString(rounds));
+		builder.redirectErrorStream(true);
+		Process process = builder.start();
+		BufferedReader output = new BufferedReader(new InputStreamReader(
+				process.getInputStream()));
+		String result = null;
+		StringBuilder log = new StringBuilder();
+		for (String line; (line = output.readLine()) != null;) {
+			log.append(line).append('\n');
+			if (line.startsWith(ChildShard.RESULT)) {
+				result = line.substring(ChildShard.RESULT.length());
+			}
+		}
+		assertEquals(log.toString(), 0, process.waitFor());
+		matcherThread.join(TIMEOUT);
+		assertFalse(matcherThread.isAlive());
+		assertNull(error.get());
+		assertTrue(matcher.isFinished());
+		assertEquals(rounds + " " + (STOCK - rounds), result);
+		double price = matcher.getLastTransactionPrice();
+		assertTrue(price >= 100 && price <= 110);
+		channel.close();
+	}
+
+	/**
+	 * The shard run in a child JVM by {@link #testShardInChildProcess()}. It
+	 * opens the channel named by the first argument, trades the number of
+	 * rounds given by the second, and prints the resulting stock of its
+	 * buyer and seller.
+	 */
+	public static class ChildShard {
+
+		public static final String RESULT = "stock: ";
+
+		public static void main(String[] args) {
+			ShardChannel channel = ShardChannel.open(new File(args[0]));
+			channel.getBarrier().setTimeout(TIMEOUT);
+			Shard shard = new MatchingProcessTest("child").new Shard(channel, 0);
+			AtomicReference<Throwable> error = 
+				new AtomicReference<Throwable>();
+			shard.trade(Integer.parseInt(args[1]), error).run();
+			channel.close();
+			if (error.get() != null) {
+				error.get().printStackTrace();
+				System.exit(1);
+			}
+			System.out.println(RESULT + shard.buyer.getStock() + " "
+					+ shard.seller.getStock());
+			System.exit(0);
+		}
+	}
+
+	/**
+	 * A market holding one buyer and one seller which trades through a 
+	 * {@link RemoteAuctioneer}.
+	 */
+	class Shard {
+
+		MarketSimulation market;
+
+		RemoteAuctioneer auctioneer;
+
+		MockTrader buyer;
+
+		MockTrader seller;
+
+		Shard(ShardChannel channel, int shard) {
+			market = new MarketSimulation();
+			market.setSimulationController(new SpringSimulationController());
+			auctioneer = new RemoteAuctioneer(channel, shard);
+			market.setAuctioneer(auctioneer);
+			buyer = new MockTrader(MatchingProcessTest.this, 0, FUNDS, 150,
+					market);
+			seller = new MockTrader(MatchingProcessTest.this, STOCK, 0, 50,
+					market);
+			market.register(buyer);
+			market.register(seller);
+		}
+
+		/**
+		 * @return A thread which places a crossing bid and ask in each round
+		 *         until the specified number of rounds have been traded or 
+		 *         the market is closed, and then leaves.
+		 */
+		Thread trade(final int rounds, final AtomicReference<Throwable> error) {
+			return new Thread() {
+				public void run() {
+					try {
+						for (int r = 0; r < rounds && !market.isClosed(); r++) {
+							auctioneer.newOrder(new Order(buyer, 1, 110, true));
+							auctioneer.newOrder(new Order(seller, 1, 100, false));
+							auctioneer.clear();
+						}
+						auctioneer.leave();
+					} catch (Throwable t) {
+						error.set(t);
+					}
+				}
+			};
+		}
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(MatchingProcessTest.class);
+	}
+
+}
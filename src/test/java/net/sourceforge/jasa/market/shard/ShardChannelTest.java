@@ -0,0 +1,206 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.market.shard;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class ShardChannelTest extends TestCase {
+
+	public static final int MESSAGES = 100000;
+
+	public static final int SHARDS = 3;
+
+	public static final int ROUNDS = 200;
+
+	protected File file;
+
+	public ShardChannelTest(String name) {
+		super(name);
+	}
+
+	public void setUp() throws IOException {
+		file = File.createTempFile("shard", ".channel");
+		file.deleteOnExit();
+	}
+
+	public void tearDown() {
+		file.delete();
+	}
+
+	public void testRingWrapsAround() {
+		MappedRingBuffer ring = new MappedRingBuffer(
+				ByteBuffer.allocate(MappedRingBuffer.getRegionSize(4)), 0, 4);
+		ShardMessage in = new ShardMessage();
+		ShardMessage out = new ShardMessage();
+		for (int i = 0; i < 10; i++) {
+			assertTrue(ring.offer(in.order(1, i, 2 * i, 10.5 + i, i + 1, 
+					i % 2 == 0)));
+			assertTrue(ring.poll(out));
+			assertEquals(ShardMessage.ORDER, out.type);
+			assertEquals(1, out.shard);
+			assertEquals(i, out.id);
+			assertEquals(2 * i, out.agent);
+			assertEquals(10.5 + i, out.price, 0);
+			assertEquals(i + 1, out.quantity);
+			assertEquals(i % 2 == 0, out.bid);
+		}
+		assertFalse(ring.poll(out));
+	}
+
+	public void testRingFull() {
+		MappedRingBuffer ring = new MappedRingBuffer(
+				ByteBuffer.allocate(MappedRingBuffer.getRegionSize(8)), 0, 8);
+		ShardMessage message = new ShardMessage();
+		for (int i = 0; i < 8; i++) {
+			assertTrue(ring.offer(message.cancel(0, i)));
+		}
+		assertFalse(ring.offer(message.cancel(0, 8)));
+		assertEquals(8, ring.size());
+		assertTrue(ring.poll(message));
+		assertEquals(0, message.id);
+		assertTrue(ring.offer(message.cancel(0, 8)));
+	}
+
+	public void testOpenReadsLayout() {
+		ShardChannel created = ShardChannel.create(file, SHARDS, 64);
+		ShardChannel opened = ShardChannel.open(file);
+		assertEquals(SHARDS, opened.getNumShards());
+		assertEquals(64, opened.getCapacity());
+		assertEquals(ShardChannel.getFileSize(SHARDS, 64), file.length());
+		ShardMessage message = new ShardMessage();
+		created.getMarketDataRing(2).put(message.quote(5, 99.0, 101.0, 100.0,
+				7));
+		assertTrue(opened.getMarketDataRing(2).poll(message));
+		assertEquals(ShardMessage.QUOTE, message.type);
+		assertEquals(100.0, message.getLastPrice(), 0);
+		assertFalse(opened.getMarketDataRing(1).poll(message));
+		created.close();
+		opened.close();
+	}
+
+	/**
+	 * Stream messages between two threads through separate mappings of the
+	 * same file, with a ring much smaller than the number of messages.
+	 */
+	public void testCrossMappingTransfer() throws Exception {
+		ShardChannel producerSide = ShardChannel.create(file, 1, 256);
+		final ShardChannel consumerSide = ShardChannel.open(file);
+		final AtomicReference<Throwable> error = 
+			new AtomicReference<Throwable>();
+		final long[] sum = new long[1];
+		Thread consumer = new Thread() {
+			public void run() {
+				try {
+					MappedRingBuffer ring = consumerSide.getOrderRing(0);
+					ShardMessage message = new ShardMessage();
+					int spins = 0;
+					for (int expected = 0; expected < MESSAGES;) {
+						if (ring.poll(message)) {
+							assertEquals(expected, message.id);
+							assertEquals(expected * 0.5, message.price, 0);
+							sum[0] += message.quantity;
+							expected++;
+						} else {
+							spins = MappedRingBuffer.backoff(spins);
+						}
+					}
+				} catch (Throwable t) {
+					error.set(t);
+				}
+			}
+		};
+		consumer.start();
+		MappedRingBuffer ring = producerSide.getOrderRing(0);
+		ShardMessage message = new ShardMessage();
+		long total = 0;
+		for (int i = 0; i < MESSAGES; i++) {
+			ring.put(message.order(0, i, 0, i * 0.5, i % 7 + 1, true));
+			total += i % 7 + 1;
+		}
+		consumer.join(60000);
+		assertNull(error.get());
+		assertFalse(consumer.isAlive());
+		assertEquals(total, sum[0]);
+		producerSide.close();
+		consumerSide.close();
+	}
+
+	/**
+	 * Run several participants through many generations of the barrier, 
+	 * checking that none of them ever gets more than one generation ahead 
+	 * of another, and that a participant which leaves does not hold up the
+	 * others.
+	 */
+	public void testBarrier() throws Exception {
+		ShardChannel.create(file, SHARDS, 16).close();
+		final int participants = SHARDS + 1;
+		final long[] progress = new long[participants];
+		final AtomicReference<Throwable> error = 
+			new AtomicReference<Throwable>();
+		Thread[] threads = new Thread[participants];
+		for (int p = 0; p < participants; p++) {
+			final int participant = p;
+			final ShardChannel channel = ShardChannel.open(file);
+			threads[p] = new Thread() {
+				public void run() {
+					try {
+						SharedMemoryBarrier barrier = channel.getBarrier();
+						barrier.setTimeout(60000);
+						int rounds = participant == 0 ? ROUNDS / 2 : ROUNDS;
+						for (int g = 1; g <= rounds; g++) {
+							synchronized (progress) {
+								progress[participant] = g;
+								for (int q = 0; q < participants; q++) {
+									if (q != 0 || g <= ROUNDS / 2) {
+										assertTrue(progress[q] >= g - 1);
+									}
+								}
+							}
+							barrier.await(participant, g, null);
+						}
+						if (participant == 0) {
+							barrier.arrive(participant, Long.MAX_VALUE);
+						}
+					} catch (Throwable t) {
+						error.set(t);
+					}
+				}
+			};
+			threads[p].start();
+		}
+		for (int p = 0; p < participants; p++) {
+			threads[p].join(60000);
+			assertFalse(threads[p].isAlive());
+		}
+		assertNull(error.get());
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(ShardChannelTest.class);
+	}
+
+}
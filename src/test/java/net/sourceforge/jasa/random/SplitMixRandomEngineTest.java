@@ -0,0 +1,153 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.random;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import cern.jet.random.Normal;
+
+public class SplitMixRandomEngineTest extends TestCase {
+
+	public static final int AGENTS = 64;
+
+	public static final int DRAWS = 1000;
+
+	public SplitMixRandomEngineTest(String name) {
+		super(name);
+	}
+
+	public void testReproducible() {
+		SplitMixRandomEngine a = new SplitMixRandomEngine(42);
+		SplitMixRandomEngine b = new SplitMixRandomEngine(42);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(a.nextLong(), b.nextLong());
+		}
+		assertFalse(new SplitMixRandomEngine(43).nextLong() 
+				== new SplitMixRandomEngine(42).nextLong());
+	}
+
+	public void testBulkFillMatchesSequentialDraws() {
+		SplitMixRandomEngine sequential = new SplitMixRandomEngine(7);
+		SplitMixRandomEngine bulk = new SplitMixRandomEngine(7);
+		double[] values = new double[DRAWS + 3];
+		bulk.fill(values, 3, DRAWS);
+		for (int i = 0; i < DRAWS; i++) {
+			double u = sequential.nextDouble();
+			assertEquals(u, values[3 + i], 0);
+			assertTrue(u > 0 && u < 1);
+		}
+		assertEquals(sequential.getCounter(), bulk.getCounter());
+		assertEquals(sequential.nextLong(), bulk.nextLong());
+	}
+
+	public void testSkipAhead() {
+		SplitMixRandomEngine a = new SplitMixRandomEngine(9);
+		for (int i = 0; i < 500; i++) {
+			a.nextLong();
+		}
+		SplitMixRandomEngine b = new SplitMixRandomEngine(9);
+		b.setCounter(500);
+		assertEquals(a.nextLong(), b.nextLong());
+		assertEquals(a.doubleAt(1000), b.doubleAt(1000), 0);
+	}
+
+	public void testMoments() {
+		SplitMixRandomEngine prng = new SplitMixRandomEngine(3);
+		int n = 200000;
+		double[] values = new double[n];
+		prng.fill(values, 0, n);
+		assertEquals(0.5, mean(values), 0.005);
+		prng.fillNormal(values, 0, n, 1.0, 2.0);
+		double mean = mean(values);
+		assertEquals(1.0, mean, 0.02);
+		double variance = 0;
+		for (int i = 0; i < n; i++) {
+			variance += (values[i] - mean) * (values[i] - mean);
+		}
+		assertEquals(4.0, variance / n, 0.05);
+		// The colt distributions accept the engine unchanged
+		Normal normal = new Normal(0, 1, prng);
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += normal.nextDouble();
+		}
+		assertEquals(0.0, sum / n, 0.01);
+	}
+
+	public void testStreamsAreIndependentOfThreadCount() throws Exception {
+		double[][] serial = drawAll(1);
+		double[][] parallel = drawAll(4);
+		for (int i = 0; i < AGENTS; i++) {
+			for (int j = 0; j < DRAWS; j++) {
+				assertEquals(serial[i][j], parallel[i][j], 0);
+			}
+		}
+		RandomStreams streams = new RandomStreams(1);
+		assertFalse(streams.getStream(0, "valuation").nextLong() == 
+			streams.getStream(0, "noise").nextLong());
+		assertFalse(streams.getStream(0, "valuation").nextLong() == 
+			streams.getStream(1, "valuation").nextLong());
+		double[] across = new double[AGENTS];
+		streams.fillAcross(0, "valuation", 5, across, 0, AGENTS);
+		for (int i = 0; i < AGENTS; i++) {
+			assertEquals(streams.getStream(i, "valuation").doubleAt(5), 
+					across[i], 0);
+		}
+	}
+
+	protected double[][] drawAll(int threads) throws Exception {
+		final RandomStreams streams = new RandomStreams(2013);
+		final double[][] result = new double[AGENTS][DRAWS];
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int i = 0; i < AGENTS; i++) {
+			final int agent = i;
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					streams.getStream(agent, "valuation").fill(result[agent], 0,
+							DRAWS);
+					return null;
+				}
+			});
+		}
+		executor.invokeAll(tasks);
+		executor.shutdown();
+		return result;
+	}
+
+	protected double mean(double[] values) {
+		double sum = 0;
+		for (int i = 0; i < values.length; i++) {
+			sum += values[i];
+		}
+		return sum / values.length;
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(SplitMixRandomEngineTest.class);
+	}
+}
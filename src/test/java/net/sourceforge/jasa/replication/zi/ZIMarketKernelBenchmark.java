@@ -0,0 +1,67 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+package net.sourceforge.jasa.replication.zi;
+
+import net.sourceforge.jasa.market.MarketSimulation;
+import net.sourceforge.jasa.test.PRNGTestSeeds;
+
+import org.apache.log4j.Logger;
+
+import cern.jet.random.engine.MersenneTwister64;
+
+/**
+ * Measures the number of trading rounds simulated per second by the object
+ * engine and by the {@link ZIMarketKernel} on the same ZI-C market. Timings
+ * depend on the machine and on JIT warm-up, so this is run by hand rather
+ * than as part of the test suite.
+ * 
+ * @author Steve Phelps
+ * @version $Revision$
+ */
+public class ZIMarketKernelBenchmark {
+
+	static Logger logger = Logger.getLogger(ZIMarketKernelBenchmark.class);
+
+	public static void main(String[] args) {
+		int days = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		long seed = PRNGTestSeeds.UNIT_TEST_SEED;
+		ZIMarketKernelTest fixture = new ZIMarketKernelTest("benchmark");
+		MarketSimulation market = fixture.createMarket(seed);
+		market.setMaximumDays(days);
+		ZIMarketKernel kernel = ZIMarketKernel.fromMarket(market,
+				new MersenneTwister64((int) seed));
+		kernel.setLengthOfDay(ZIMarketKernelTest.LENGTH_OF_DAY);
+
+		long start = System.nanoTime();
+		market.run();
+		long objectNanos = System.nanoTime() - start;
+
+		// warm up, then time enough days to swamp timer resolution
+		kernel.run(days);
+		int kernelDays = days * 50;
+		start = System.nanoTime();
+		kernel.run(kernelDays);
+		long kernelNanos = System.nanoTime() - start;
+
+		double objectRate = days * ZIMarketKernelTest.LENGTH_OF_DAY
+				/ (objectNanos / 1E9);
+		double kernelRate = kernelDays * ZIMarketKernelTest.LENGTH_OF_DAY
+				/ (kernelNanos / 1E9);
+		logger.info("object engine: " + objectRate + " rounds/s");
+		logger.info("kernel: " + kernelRate + " rounds/s");
+		logger.info("speedup: " + kernelRate / objectRate);
+	}
+
+}
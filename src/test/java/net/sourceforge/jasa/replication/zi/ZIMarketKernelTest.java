@@ -0,0 +1,298 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.replication.zi;
+
+import java.util.Iterator;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jabm.Population;
+import net.sourceforge.jabm.SpringSimulationController;
+import net.sourceforge.jabm.agent.Agent;
+import net.sourceforge.jabm.event.EventListener;
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jabm.init.BasicAgentInitialiser;
+import net.sourceforge.jabm.learning.WidrowHoffLearner;
+import net.sourceforge.jabm.mixing.RandomRobinAgentMixer;
+import net.sourceforge.jabm.util.SummaryStats;
+import net.sourceforge.jasa.agent.TokenTradingAgent;
+import net.sourceforge.jasa.agent.strategy.RandomConstrainedStrategy;
+import net.sourceforge.jasa.agent.strategy.ZIPStrategy;
+import net.sourceforge.jasa.event.TransactionExecutedEvent;
+import net.sourceforge.jasa.market.MarketSimulation;
+import net.sourceforge.jasa.market.auctioneer.ContinuousDoubleAuctioneer;
+import net.sourceforge.jasa.test.PRNGTestSeeds;
+
+import org.apache.log4j.Logger;
+
+import cern.jet.random.Uniform;
+import cern.jet.random.engine.MersenneTwister64;
+
+/**
+ * Validates the {@link ZIMarketKernel} against the object engine by
+ * comparing the distribution of efficiency, transaction prices and volume
+ * of ZI-C and ZIP markets run under the same seeds. Throughput is measured
+ * separately by {@link ZIMarketKernelBenchmark}.
+ */
+public class ZIMarketKernelTest extends TestCase {
+
+	static final int NUM_RUNS = 30;
+
+	static final int NUM_DAYS = 3;
+
+	static final int LENGTH_OF_DAY = 50;
+
+	static final int TRADE_ENTITLEMENT = 1;
+
+	static final int NUM_BUYERS = 11;
+
+	static final int NUM_SELLERS = 11;
+
+	static final double PRIV_VALUE_RANGE_MIN = 75;
+
+	static final double PRIV_VALUE_INCREMENT = 25;
+
+	static final double MAX_MARKUP = 100;
+
+	static Logger logger = Logger.getLogger(ZIMarketKernelTest.class);
+
+	public ZIMarketKernelTest(String name) {
+		super(name);
+	}
+
+	public void testZICEquivalence() {
+		assertEnginesAgree(ZIMarketKernel.ZI_C);
+	}
+
+	public void testZIPEquivalence() {
+		assertEnginesAgree(ZIMarketKernel.ZIP);
+	}
+
+	/**
+	 * Run the same market on both engines under {@link #NUM_RUNS} seeds and
+	 * check that the mean efficiency, mean transaction price and volume
+	 * agree. In each run the object engine and the kernel are given their
+	 * own random number generators seeded with the same value, and the
+	 * kernel draws markups and margins from its own generator rather than
+	 * sharing the strategies' distributions.
+	 */
+	protected void assertEnginesAgree(byte strategy) {
+		SummaryStats objectEfficiency = new SummaryStats("object efficiency");
+		SummaryStats kernelEfficiency = new SummaryStats("kernel efficiency");
+		SummaryStats objectPrice = new SummaryStats("object price");
+		SummaryStats kernelPrice = new SummaryStats("kernel price");
+		SummaryStats objectVolume = new SummaryStats("object volume");
+		SummaryStats kernelVolume = new SummaryStats("kernel volume");
+		for (int run = 0; run < NUM_RUNS; run++) {
+			long seed = PRNGTestSeeds.UNIT_TEST_SEED + run;
+
+			MarketSimulation market = createMarket(seed, strategy);
+			TransactionPriceRecorder prices = new TransactionPriceRecorder();
+			market.addListener(prices);
+			market.run();
+			double payoff = 0;
+			int volume = 0;
+			Iterator<Agent> i = market.getTraderIterator();
+			while (i.hasNext()) {
+				TokenTradingAgent agent = (TokenTradingAgent) i.next();
+				payoff += agent.getTotalPayoff();
+				if (agent.isBuyer(market)) {
+					volume += agent.getQuantityTraded();
+				}
+			}
+
+			ZIMarketKernel kernel = createKernel(strategy, seed);
+			kernel.run(NUM_DAYS);
+
+			objectEfficiency.newData(payoff
+					/ (NUM_DAYS * kernel.getEquilibriumSurplus()));
+			objectVolume.newData(volume);
+			if (prices.stats.getN() > 0) {
+				objectPrice.newData(prices.stats.getMean());
+			}
+			kernelEfficiency.newData(kernel.getMeanEfficiency());
+			kernelVolume.newData(kernel.getNumTransactions());
+			double[] kernelPrices = kernel.getTransactionPrices();
+			if (kernelPrices.length > 0) {
+				kernelPrice.newData(mean(kernelPrices));
+			}
+		}
+		logger.info(objectEfficiency);
+		logger.info(kernelEfficiency);
+		logger.info(objectPrice);
+		logger.info(kernelPrice);
+		logger.info(objectVolume);
+		logger.info(kernelVolume);
+		assertTrue(kernelEfficiency.getMax() <= 1 + 10E-6);
+		assertEquivalent(objectEfficiency, kernelEfficiency);
+		assertEquivalent(objectPrice, kernelPrice);
+		assertEquivalent(objectVolume, kernelVolume);
+	}
+
+	public void testFromMarketCopiesStrategyParameters() {
+		MersenneTwister64 prng = new MersenneTwister64(PRNGTestSeeds.UNIT_TEST_SEED);
+		MarketSimulation market = createMarket(PRNGTestSeeds.UNIT_TEST_SEED);
+		TokenTradingAgent zipTrader = new TokenTradingAgent(100, 
+				TRADE_ENTITLEMENT, market.getSimulationController());
+		ZIPStrategy zip = new ZIPStrategy(zipTrader, prng);
+		zip.setBuy(true);
+		zip.setScaling(0.2);
+		zip.setLearner(new WidrowHoffLearner(0.35, prng));
+		zipTrader.setStrategy(zip);
+		market.register(zipTrader);
+		
+		ZIMarketKernel kernel = ZIMarketKernel.fromMarket(market, prng);
+		for (int i = 0; i < NUM_BUYERS + NUM_SELLERS; i++) {
+			assertEquals(ZIMarketKernel.ZI_C, kernel.strategy[i]);
+			assertNotNull(kernel.markupDistribution[i]);
+		}
+		int z = NUM_BUYERS + NUM_SELLERS;
+		assertEquals(ZIMarketKernel.ZIP, kernel.strategy[z]);
+		assertEquals(0.2, kernel.perturbationScaling[z], 0);
+		assertEquals(0.35, kernel.learningRate[z], 0);
+		assertTrue(kernel.initialMarginDistribution[z] 
+				== zip.getInitialMarginDistribution());
+	}
+	
+	public void testPricesWithinValuations() {
+		ZIMarketKernel kernel = createKernel(ZIMarketKernel.ZI_C);
+		kernel.run(NUM_DAYS);
+		double[] prices = kernel.getTransactionPrices();
+		assertTrue(prices.length > 0);
+		double maxValue = PRIV_VALUE_RANGE_MIN + PRIV_VALUE_INCREMENT
+				* (NUM_BUYERS - 1);
+		for (int t = 0; t < prices.length; t++) {
+			assertTrue(prices[t] >= PRIV_VALUE_RANGE_MIN);
+			assertTrue(prices[t] <= maxValue);
+		}
+	}
+
+	/**
+	 * Check that the means of the two samples lie within two pooled
+	 * standard errors, or 2% of the expected mean if that is wider, of each
+	 * other.
+	 */
+	protected void assertEquivalent(SummaryStats expected, SummaryStats actual) {
+		double se = Math.sqrt(expected.getVariance() / expected.getN()
+				+ actual.getVariance() / actual.getN());
+		double tolerance = Math.max(2 * se, 0.02 * Math.abs(expected.getMean()));
+		assertEquals(expected.getMean(), actual.getMean(), tolerance);
+	}
+
+	protected static double mean(double[] values) {
+		double total = 0;
+		for (int i = 0; i < values.length; i++) {
+			total += values[i];
+		}
+		return total / values.length;
+	}
+
+	protected ZIMarketKernel createKernel(byte strategy) {
+		return createKernel(strategy, PRNGTestSeeds.UNIT_TEST_SEED);
+	}
+
+	/**
+	 * Create a kernel with the same traders as
+	 * {@link #createMarket(long, byte)} and the default parameters of
+	 * its strategies.
+	 */
+	protected ZIMarketKernel createKernel(byte strategy, long seed) {
+		ZIMarketKernel kernel = new ZIMarketKernel(NUM_BUYERS + NUM_SELLERS,
+				new MersenneTwister64((int) seed));
+		double value = PRIV_VALUE_RANGE_MIN;
+		for (int i = 0; i < NUM_BUYERS; i++) {
+			kernel.addTrader(true, value, TRADE_ENTITLEMENT, strategy);
+			value += PRIV_VALUE_INCREMENT;
+		}
+		value = PRIV_VALUE_RANGE_MIN;
+		for (int i = 0; i < NUM_SELLERS; i++) {
+			kernel.addTrader(false, value, TRADE_ENTITLEMENT, strategy);
+			value += PRIV_VALUE_INCREMENT;
+		}
+		kernel.setMaxMarkup(MAX_MARKUP);
+		kernel.setLengthOfDay(LENGTH_OF_DAY);
+		return kernel;
+	}
+
+	protected MarketSimulation createMarket(long seed) {
+		return createMarket(seed, ZIMarketKernel.ZI_C);
+	}
+
+	protected MarketSimulation createMarket(long seed, byte strategy) {
+		MersenneTwister64 prng = new MersenneTwister64((int) seed);
+		MarketSimulation market = new MarketSimulation();
+		SpringSimulationController controller = new SpringSimulationController();
+		market.setSimulationController(controller);
+		market.setPopulation(new Population());
+		market.setAgentMixer(new RandomRobinAgentMixer(prng));
+		market.setAgentInitialiser(new BasicAgentInitialiser());
+		market.setAuctioneer(new ContinuousDoubleAuctioneer(market));
+		market.setLengthOfDay(LENGTH_OF_DAY);
+		market.setMaximumDays(NUM_DAYS);
+		registerTraders(market, controller, prng, NUM_BUYERS, true, strategy);
+		registerTraders(market, controller, prng, NUM_SELLERS, false, strategy);
+		return market;
+	}
+
+	protected void registerTraders(MarketSimulation market,
+			SpringSimulationController controller, MersenneTwister64 prng,
+			int numTraders, boolean areBuyers, byte strategyType) {
+		double value = PRIV_VALUE_RANGE_MIN;
+		for (int i = 0; i < numTraders; i++) {
+			TokenTradingAgent trader = new TokenTradingAgent(value,
+					TRADE_ENTITLEMENT, controller);
+			if (strategyType == ZIMarketKernel.ZIP) {
+				ZIPStrategy strategy = new ZIPStrategy(trader, prng);
+				strategy.setBuy(areBuyers);
+				strategy.setLearner(new WidrowHoffLearner(0.1, prng));
+				trader.setStrategy(strategy);
+			} else {
+				RandomConstrainedStrategy strategy = 
+					new RandomConstrainedStrategy(trader);
+				strategy.setBuy(areBuyers);
+				strategy.setMarkupDistribution(
+						new Uniform(0, MAX_MARKUP, prng));
+				trader.setStrategy(strategy);
+			}
+			market.register(trader);
+			value += PRIV_VALUE_INCREMENT;
+		}
+	}
+
+	/**
+	 * Collects the price of every transaction executed in a market.
+	 */
+	static class TransactionPriceRecorder implements EventListener {
+
+		SummaryStats stats = new SummaryStats("transaction price");
+
+		public void eventOccurred(SimEvent event) {
+			if (event instanceof TransactionExecutedEvent) {
+				stats.newData(((TransactionExecutedEvent) event).getPrice());
+			}
+		}
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(ZIMarketKernelTest.class);
+	}
+
+}
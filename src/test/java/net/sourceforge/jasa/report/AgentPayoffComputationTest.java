@@ -0,0 +1,94 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+package net.sourceforge.jasa.report;
+
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jasa.agent.valuation.AbstractReturnForecaster;
+import net.sourceforge.jasa.agent.valuation.FixedValuer;
+import net.sourceforge.jasa.agent.valuation.ReturnForecastValuationPolicy;
+import net.sourceforge.jasa.market.Market;
+
+public class AgentPayoffComputationTest extends TestCase {
+
+	AgentPayoffComputation computation;
+
+	public AgentPayoffComputationTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		computation = new AgentPayoffComputation();
+	}
+
+	public void testFixedValuationIsRead() {
+		assertEquals(42.0,
+				computation.getValuation(new FixedValuer(42), null), 0);
+	}
+
+	public void testForecastIsNotRecomputed() {
+		ReturnForecastValuationPolicy policy = 
+			new ReturnForecastValuationPolicy();
+		CountingForecaster forecaster = new CountingForecaster();
+		policy.setForecaster(forecaster);
+		assertTrue(Double.isNaN(computation.getValuation(policy, null)));
+		assertEquals(0, forecaster.calls);
+	}
+
+	public void testUnknownValuationsExcluded() {
+		AgentPayoffComputation.Snapshot snapshot = 
+			new AgentPayoffComputation.Snapshot(3);
+		snapshot.payoffs[0] = 1;
+		snapshot.payoffs[1] = 2;
+		snapshot.payoffs[2] = 3;
+		snapshot.valuations[0] = 10;
+		snapshot.valuations[1] = Double.NaN;
+		snapshot.valuations[2] = 20;
+		snapshot.equilibriumSurplus = 12;
+		Map<Object, Number> result = computation.compute(snapshot);
+		assertEquals(6.0, result.get("payoffs.total").doubleValue(), 0);
+		assertEquals(15.0, result.get("payoffs.valuation.mean")
+				.doubleValue(), 1E-10);
+		assertEquals(Math.sqrt(50), result.get("payoffs.valuation.stdev")
+				.doubleValue(), 1E-10);
+		assertEquals(0.5, result.get("payoffs.efficiency").doubleValue(),
+				1E-10);
+	}
+
+	static class CountingForecaster extends AbstractReturnForecaster {
+
+		int calls;
+
+		public double getReturnForecast(Market market) {
+			calls++;
+			return 0;
+		}
+
+		public void dispose() {
+		}
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(AgentPayoffComputationTest.class);
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.DecimalFormat;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class AsyncRecordWriterTest extends TestCase {
+
+	static final int NUM_RECORDS = 100000;
+
+	static final int SMALL_CAPACITY = 64;
+
+	File file;
+
+	AsyncRecordWriter writer;
+
+	public AsyncRecordWriterTest(String name) {
+		super(name);
+	}
+
+	public void setUp() throws IOException {
+		file = File.createTempFile("async", ".csv");
+		file.deleteOnExit();
+		writer = new AsyncRecordWriter(file.getPath(), 2);
+		writer.setIntegerColumn(0, true);
+	}
+
+	public void tearDown() {
+		writer.close();
+		file.delete();
+	}
+
+	public void testDrain() throws IOException {
+		// A small ring forces the producer to wait for the writer thread.
+		writer.close();
+		writer = new AsyncRecordWriter(new FileOutputStream(file).getChannel(),
+				2, SMALL_CAPACITY, 4096);
+		writer.setIntegerColumn(0, true);
+		assertEquals(SMALL_CAPACITY, writer.getCapacity());
+		for (int i = 0; i < NUM_RECORDS; i++) {
+			writer.newData(i);
+			writer.newData(i * 0.5);
+		}
+		writer.drain();
+		assertEquals(NUM_RECORDS, writer.getRecordsWritten());
+		checkFile(NUM_RECORDS);
+	}
+
+	public void testClose() throws IOException {
+		for (int i = 0; i < 10; i++) {
+			writer.newData(i);
+			writer.newData(i * 0.5);
+		}
+		writer.close();
+		assertTrue(writer.isClosed());
+		checkFile(10);
+	}
+
+	public void testHeader() throws IOException {
+		writer.writeHeader(new String[] { "time", "value" });
+		writer.drain();
+		for (int i = 0; i < 10; i++) {
+			writer.newData(i);
+			writer.newData(i * 0.5);
+		}
+		writer.close();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			assertEquals("time,value", reader.readLine());
+		} finally {
+			reader.close();
+		}
+		checkFile(10, 1);
+	}
+
+	public void testFormat() throws IOException {
+		DecimalFormat format = new DecimalFormat("0.000");
+		writer.setFormat(format);
+		writer.newData(1);
+		writer.newData(0.5);
+		writer.newData(2);
+		writer.newData(3);
+		writer.close();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			assertEquals("1,0.500", reader.readLine());
+			// whole numbers are written as they are in any column
+			assertEquals("2,3", reader.readLine());
+		} finally {
+			reader.close();
+		}
+	}
+
+	protected void checkFile(int expectedRecords) throws IOException {
+		checkFile(expectedRecords, 0);
+	}
+
+	protected void checkFile(int expectedRecords, int headerLines)
+			throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			for (int i = 0; i < headerLines; i++) {
+				reader.readLine();
+			}
+			int n = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				assertEquals(n + "," + (n * 0.5), line);
+				n++;
+			}
+			assertEquals(expectedRecords, n);
+		} finally {
+			reader.close();
+		}
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(AsyncRecordWriterTest.class);
+	}
+
+}
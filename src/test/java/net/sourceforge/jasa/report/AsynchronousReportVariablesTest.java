@@ -0,0 +1,145 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jasa.event.EndOfDayEvent;
+
+public class AsynchronousReportVariablesTest extends TestCase {
+
+	static final int NUM_ROUNDS = 200;
+
+	ExecutorService executor;
+
+	AsynchronousReportVariables report;
+
+	int round;
+
+	public AsynchronousReportVariablesTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+		report = new AsynchronousReportVariables(new SlowSquare());
+		report.setExecutor(executor);
+		report.setMaxPending(8);
+	}
+
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	public void testResultsPublishedInOrder() {
+		for (round = 0; round < NUM_ROUNDS; round++) {
+			report.compute(null);
+			assertTrue(report.getNumberPending() <= 8);
+		}
+		report.dispose(null);
+		assertEquals(0, report.getNumberPending());
+		double expected = (NUM_ROUNDS - 1) * (NUM_ROUNDS - 1);
+		assertEquals(expected, report.getVariableBindings().get("square.value")
+				.doubleValue(), 0);
+	}
+
+	public void testBindingsMatchLatestSnapshot() {
+		for (round = 0; round < NUM_ROUNDS; round++) {
+			report.compute(null);
+			if (round % 7 == 0) {
+				report.flush();
+				Map<Object, Number> bindings = report.getVariableBindings();
+				assertEquals(0, report.getNumberPending());
+				assertEquals((double) round * round, 
+						bindings.get("square.value").doubleValue(), 0);
+				assertEquals(round, bindings.get("square.t").longValue());
+			}
+		}
+	}
+
+	public void testBindingsDoNotWait() {
+		final CountDownLatch release = new CountDownLatch(1);
+		report.setComputation(new SlowSquare() {
+			public Map<Object, Number> compute(Integer snapshot) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.compute(snapshot);
+			}
+		});
+		round = 3;
+		report.compute(null);
+		assertTrue(report.getVariableBindings().isEmpty());
+		assertEquals(1, report.getNumberPending());
+		release.countDown();
+		report.eventOccurred(new EndOfDayEvent(null, 0));
+		assertEquals(0, report.getNumberPending());
+		assertEquals(9.0, report.getVariableBindings().get("square.value")
+				.doubleValue(), 0);
+	}
+
+	public void testPendingCreatedOnDemand() {
+		report.pending = null;
+		assertEquals(0, report.getNumberPending());
+		round = 2;
+		report.compute(null);
+		report.flush();
+		assertEquals(4.0, report.getVariableBindings().get("square.value")
+				.doubleValue(), 0);
+	}
+
+	class SlowSquare implements SnapshotComputation<Integer> {
+
+		public Integer takeSnapshot(SimEvent event) {
+			return round;
+		}
+
+		public Map<Object, Number> compute(Integer snapshot) {
+			try {
+				// Later rounds finish sooner to exercise reordering
+				Thread.sleep((NUM_ROUNDS - snapshot) % 3);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			Map<Object, Number> result = new LinkedHashMap<Object, Number>();
+			result.put("square.value", (double) snapshot * snapshot);
+			return result;
+		}
+
+		public String getName() {
+			return "square";
+		}
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(AsynchronousReportVariablesTest.class);
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class ColumnarTimeSeriesTest extends TestCase {
+
+	static final int NUM_ROWS = 20000;
+
+	static final int BLOCK_SIZE = 1000;
+
+	File file;
+
+	Random prng = new Random(1234);
+
+	public ColumnarTimeSeriesTest(String name) {
+		super(name);
+	}
+
+	public void setUp() throws IOException {
+		file = File.createTempFile("series", ".jts");
+		file.deleteOnExit();
+	}
+
+	public void tearDown() {
+		file.delete();
+	}
+
+	public void testRoundTrip() throws IOException {
+		int[] ticks = new int[NUM_ROWS];
+		double[] prices = new double[NUM_ROWS];
+		long[] ids = new long[NUM_ROWS];
+		double price = 100;
+		int tick = 0;
+		for (int i = 0; i < NUM_ROWS; i++) {
+			tick += prng.nextInt(3) == 0 ? prng.nextInt(5000) : 1;
+			if (prng.nextBoolean()) {
+				price += prng.nextGaussian();
+			}
+			ticks[i] = tick;
+			prices[i] = i % 100 == 0 ? Double.NaN : price;
+			ids[i] = prng.nextLong();
+		}
+		ColumnarTimeSeriesWriter writer = new ColumnarTimeSeriesWriter(
+				new FileOutputStream(file), 
+				new String[] { "t", "price", "id" },
+				new byte[] { ColumnarTimeSeriesCodec.INT,
+						ColumnarTimeSeriesCodec.DOUBLE,
+						ColumnarTimeSeriesCodec.LONG }, BLOCK_SIZE);
+		for (int i = 0; i < NUM_ROWS; i++) {
+			writer.newData(ticks[i]);
+			writer.newData(prices[i]);
+			writer.newData(ids[i]);
+		}
+		writer.close();
+
+		ColumnarTimeSeriesReader reader = new ColumnarTimeSeriesReader(file);
+		try {
+			assertEquals(NUM_ROWS, reader.getNumRows());
+			assertEquals(NUM_ROWS / BLOCK_SIZE, reader.getNumBlocks());
+			assertEquals(1, reader.getColumnIndex("price"));
+			long[] t = reader.readLongColumn(0);
+			double[] p = reader.readDoubleColumn(1);
+			long[] id = reader.readLongColumn(2);
+			for (int i = 0; i < NUM_ROWS; i++) {
+				assertEquals(ticks[i], t[i]);
+				assertEquals(Double.doubleToLongBits(prices[i]), 
+						Double.doubleToLongBits(p[i]));
+				assertEquals(ids[i], id[i]);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	public void testRegularSeriesCompresses() throws IOException {
+		ColumnarTimeSeriesWriter writer = new ColumnarTimeSeriesWriter(
+				new FileOutputStream(file), new String[] { "t", "price" },
+				new byte[] { ColumnarTimeSeriesCodec.INT,
+						ColumnarTimeSeriesCodec.DOUBLE }, BLOCK_SIZE);
+		for (int i = 0; i < NUM_ROWS; i++) {
+			writer.newData(i);
+			writer.newData(100.0 + (i / 10));
+		}
+		writer.close();
+		// Each row would take 12 bytes uncompressed.
+		assertTrue(file.length() < NUM_ROWS * 12 / 10);
+	}
+
+	public void testExport() throws IOException {
+		ColumnarTimeSeriesWriter writer = new ColumnarTimeSeriesWriter(
+				new FileOutputStream(file), new String[] { "t", "price" },
+				new byte[] { ColumnarTimeSeriesCodec.INT,
+						ColumnarTimeSeriesCodec.DOUBLE }, BLOCK_SIZE);
+		writer.newData(1);
+		writer.newData(10.5);
+		writer.newData(2);
+		writer.newData(11.0);
+		writer.close();
+		ColumnarTimeSeriesReader reader = new ColumnarTimeSeriesReader(file);
+		StringWriter out = new StringWriter();
+		ColumnarTimeSeriesExport.export(reader, out);
+		reader.close();
+		assertEquals("t,price\n1,10.5\n2,11.0\n", out.toString());
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(ColumnarTimeSeriesTest.class);
+	}
+
+}
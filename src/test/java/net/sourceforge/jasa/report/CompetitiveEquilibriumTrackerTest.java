@@ -0,0 +1,122 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jabm.Population;
+import net.sourceforge.jabm.SimulationController;
+import net.sourceforge.jabm.SpringSimulationController;
+import net.sourceforge.jabm.init.BasicAgentInitialiser;
+import net.sourceforge.jabm.util.MathUtil;
+import net.sourceforge.jasa.agent.MockTrader;
+import net.sourceforge.jasa.agent.strategy.TruthTellingStrategy;
+import net.sourceforge.jasa.agent.valuation.FixedValuer;
+import net.sourceforge.jasa.market.MarketSimulation;
+
+public class CompetitiveEquilibriumTrackerTest extends TestCase {
+
+	MarketSimulation auction;
+
+	MockTrader[] traders;
+
+	FixedValuer[] valuers;
+
+	CompetitiveEquilibriumTracker tracker;
+
+	Random prng = new Random(1234);
+
+	static final int N = 20;
+
+	static final int NS = 10;
+
+	public CompetitiveEquilibriumTrackerTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		auction = new MarketSimulation();
+		SimulationController controller = new SpringSimulationController();
+		auction.setSimulationController(controller);
+		auction.setPopulation(new Population());
+		auction.setAgentInitialiser(new BasicAgentInitialiser());
+		traders = new MockTrader[N];
+		valuers = new FixedValuer[N];
+		for (int i = 0; i < N; i++) {
+			traders[i] = new MockTrader(this, 0, 0, 0, auction);
+			TruthTellingStrategy strategy = new TruthTellingStrategy(traders[i]);
+			traders[i].setStrategy(strategy);
+			strategy.setBuy(i >= NS);
+			valuers[i] = new FixedValuer(prng.nextInt(100));
+			traders[i].setValuationPolicy(valuers[i]);
+			auction.register(traders[i]);
+		}
+		tracker = new CompetitiveEquilibriumTracker(auction);
+	}
+
+	public void testMatchesDirectRevelation() {
+		checkAgainstDirectRevelation();
+		for (int t = 0; t < 200; t++) {
+			int i = prng.nextInt(N);
+			valuers[i].setValue(prng.nextInt(100));
+			checkAgainstDirectRevelation();
+		}
+	}
+
+	public void testValuationPolicyReplaced() {
+		checkAgainstDirectRevelation();
+		traders[0].setValuationPolicy(new FixedValuer(1000));
+		traders[N - 1].setValuationPolicy(new FixedValuer(0));
+		checkAgainstDirectRevelation();
+	}
+
+	public void testEquilibriumQuantityAllocated() {
+		int total = 0;
+		for (int i = 0; i < N; i++) {
+			int q = tracker.getMatchedQuantity(traders[i]);
+			if (i >= NS) {
+				total += q;
+			}
+			assertTrue(tracker.getEquilibriumSurplus(traders[i]) >= 0);
+		}
+		assertEquals(tracker.getQuantity(), total);
+	}
+
+	protected void checkAgainstDirectRevelation() {
+		EquilibriumReportVariables ep = new EquilibriumReportVariables(auction);
+		ep.calculate();
+		assertEquals(ep.equilibriaExists(), tracker.equilibriaExists());
+		if (ep.equilibriaExists()) {
+			assertTrue(MathUtil.approxEqual(ep.getMinPrice(),
+					tracker.getMinPrice()));
+			assertTrue(MathUtil.approxEqual(ep.getMaxPrice(),
+					tracker.getMaxPrice()));
+			assertEquals(ep.getQuantity(), tracker.getQuantity());
+		}
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(CompetitiveEquilibriumTrackerTest.class);
+	}
+
+}
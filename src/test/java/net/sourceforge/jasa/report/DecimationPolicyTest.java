@@ -0,0 +1,84 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.util.ArrayList;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class DecimationPolicyTest extends TestCase {
+
+	ArrayList<Integer> ticks;
+
+	ArrayList<Double> values;
+
+	PointSink sink;
+
+	public DecimationPolicyTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		ticks = new ArrayList<Integer>();
+		values = new ArrayList<Double>();
+		sink = new PointSink() {
+			public void newPoint(int tick, double[] point) {
+				ticks.add(tick);
+				values.add(point[0]);
+			}
+		};
+	}
+
+	public void testEveryNth() {
+		EveryNthDecimationPolicy policy = new EveryNthDecimationPolicy(10);
+		for (int t = 0; t < 95; t++) {
+			policy.newPoint(t, new double[] { t }, sink);
+		}
+		policy.flush(sink);
+		assertEquals(11, ticks.size());
+		assertEquals(0, ticks.get(0).intValue());
+		assertEquals(90, ticks.get(9).intValue());
+		assertEquals(94, ticks.get(10).intValue());
+	}
+
+	public void testLTTBKeepsSpikes() {
+		LTTBDecimationPolicy policy = new LTTBDecimationPolicy(20, 0);
+		int n = 1000;
+		for (int t = 0; t < n; t++) {
+			double y = t == 537 ? 100 : Math.sin(t / 50.0);
+			policy.newPoint(t, new double[] { y }, sink);
+		}
+		policy.flush(sink);
+		assertEquals(0, ticks.get(0).intValue());
+		assertEquals(n - 1, ticks.get(ticks.size() - 1).intValue());
+		assertTrue(ticks.size() <= n / 20 + 2);
+		assertTrue(ticks.contains(537));
+		for (int i = 1; i < ticks.size(); i++) {
+			assertTrue(ticks.get(i) > ticks.get(i - 1));
+		}
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(DecimationPolicyTest.class);
+	}
+
+}
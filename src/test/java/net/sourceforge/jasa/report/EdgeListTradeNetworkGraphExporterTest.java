@@ -0,0 +1,141 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jabm.agent.Agent;
+import net.sourceforge.jasa.agent.MockTrader;
+import net.sourceforge.jasa.event.TransactionExecutedEvent;
+import net.sourceforge.jasa.market.MarketSimulation;
+
+public class EdgeListTradeNetworkGraphExporterTest extends TestCase {
+
+	protected TradeNetworkReport report;
+
+	protected EdgeListTradeNetworkGraphExporter exporter;
+
+	protected MockTrader a, b, c, d;
+
+	protected File base;
+
+	public EdgeListTradeNetworkGraphExporterTest(String name) {
+		super(name);
+	}
+
+	public void setUp() throws IOException {
+		MarketSimulation market = new MarketSimulation();
+		a = new MockTrader(this, 0, 0, market);
+		b = new MockTrader(this, 0, 0, market);
+		c = new MockTrader(this, 0, 0, market);
+		d = new MockTrader(this, 0, 0, market);
+		report = new TradeNetworkReport();
+		report.setAlpha(0.5);
+		report.setThreshold(0.01);
+		base = File.createTempFile("tradenetwork", "");
+		exporter = new EdgeListTradeNetworkGraphExporter();
+		exporter.setTradeNetworkReport(report);
+		exporter.setFileName(base.getPath());
+	}
+
+	public void tearDown() {
+		for (int i = 0; i < 2; i++) {
+			new File(base.getPath() + "-" + i + ".csv").delete();
+		}
+		base.delete();
+	}
+
+	public void testDeltaExportsOnlyChangedEdges() throws IOException {
+		exporter.setDelta(true);
+		record(a, b, 1);
+		record(c, d, 1);
+		exporter.compute(null);
+		List<String[]> first = readExport(0);
+		assertEquals(2, first.size());
+		for (String[] record : first) {
+			assertEquals(4, record.length);
+			assertEquals(2, Double.parseDouble(record[3]), 0);
+		}
+
+		record(a, b, 2);
+		exporter.compute(null);
+		List<String[]> second = readExport(1);
+		assertEquals(1, second.size());
+		String[] record = second.get(0);
+		assertEquals(4, record.length);
+		assertTrue(connects(record, a, b));
+		assertEquals(report.edgeStrength(a, b), 
+				Double.parseDouble(record[2]), 1E-6);
+		assertEquals(3, Double.parseDouble(record[3]), 0);
+	}
+
+	public void testFullExportHasNoTransactionColumn() throws IOException {
+		record(a, b, 1);
+		record(c, d, 1);
+		exporter.compute(null);
+		record(a, b, 2);
+		exporter.compute(null);
+		List<String[]> second = readExport(1);
+		assertEquals(2, second.size());
+		for (String[] record : second) {
+			assertEquals(3, record.length);
+		}
+	}
+
+	protected boolean connects(String[] record, Agent x, Agent y) {
+		Agent source = exporter.getVertices().get(Integer.parseInt(record[0]));
+		Agent target = exporter.getVertices().get(Integer.parseInt(record[1]));
+		return (source == x && target == y) || (source == y && target == x);
+	}
+
+	protected List<String[]> readExport(int graphNumber) throws IOException {
+		ArrayList<String[]> records = new ArrayList<String[]>();
+		BufferedReader in = new BufferedReader(new FileReader(base.getPath()
+				+ "-" + graphNumber + ".csv"));
+		try {
+			for (String line; (line = in.readLine()) != null;) {
+				if (line.trim().length() > 0) {
+					records.add(line.trim().split("\\s*,\\s*"));
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return records;
+	}
+
+	protected void record(MockTrader x, MockTrader y, int quantity) {
+		report.record(x, y, new TransactionExecutedEvent(null, 0, null, null,
+				100, quantity));
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(EdgeListTradeNetworkGraphExporterTest.class);
+	}
+
+}
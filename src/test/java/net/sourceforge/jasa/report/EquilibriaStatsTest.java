@@ -15,6 +15,7 @@
 
 package net.sourceforge.jasa.report;
 
+import java.util.Map;
 import java.util.Random;
 
 import junit.framework.Test;
@@ -119,6 +120,26 @@ public class EquilibriaStatsTest extends TestCase {
 		assertTrue(!ep.equilibriaExists());
 	}
 
+	public void testSnapshotMatchesSynchronous() {
+		double[][] cases = { NO_EP, SINGLE_CROSS, EXACT_OVERLAP, NPT };
+		for (double[] valuations : cases) {
+			setValuations(valuations);
+			EquilibriumReportVariables ep = new EquilibriumReportVariables(auction);
+			ep.calculate();
+			Map<Object, Number> bindings = ep.compute(ep.takeSnapshot(null));
+			assertEquals(ep.equilibriaExists() ? 1 : 0, 
+					bindings.get(EquilibriumReportVariables.VAR_EXISTS).intValue());
+			if (ep.equilibriaExists()) {
+				assertEquals(ep.getMinPrice(), bindings.get(
+						EquilibriumReportVariables.VAR_MINPRICE).doubleValue(), 0);
+				assertEquals(ep.getMaxPrice(), bindings.get(
+						EquilibriumReportVariables.VAR_MAXPRICE).doubleValue(), 0);
+				assertEquals(ep.getQuantity(), bindings.get(
+						EquilibriumReportVariables.VAR_QUANTITY).intValue());
+			}
+		}
+	}
+
 	protected void checkEP(double[] valuations, double correctEP) {
 		setValuations(valuations);
 		EquilibriumReportVariables ep = new EquilibriumReportVariables(auction);
@@ -0,0 +1,86 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class MetricsHttpServerTest extends TestCase {
+
+	MetricsReport metrics;
+
+	MetricsHttpServer server;
+
+	public MetricsHttpServerTest(String name) {
+		super(name);
+	}
+
+	public void setUp() throws IOException {
+		metrics = new MetricsReport();
+		MetricsReport.increment(metrics.orders, 5);
+		MetricsReport.increment(metrics.transactions, 2);
+		server = new MetricsHttpServer(metrics, 0);
+		server.start();
+	}
+
+	public void tearDown() {
+		server.stop();
+	}
+
+	public void testScrape() throws IOException {
+		URL url = new URL("http://localhost:" + server.getPort() + "/metrics");
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		assertEquals(200, connection.getResponseCode());
+		assertTrue(connection.getContentType().startsWith("text/plain"));
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				connection.getInputStream(), "UTF-8"));
+		boolean foundOrders = false, foundTrades = false, foundGc = false;
+		String line;
+		while ((line = in.readLine()) != null) {
+			foundOrders |= line.equals("jasa_orders_total 5");
+			foundTrades |= line.equals("jasa_trades_total 2");
+			foundGc |= line.equals("# TYPE jasa_gc_collections_total counter");
+		}
+		in.close();
+		assertTrue(foundOrders);
+		assertTrue(foundTrades);
+		assertTrue(foundGc);
+	}
+
+	public void testFormat() {
+		assertEquals("3", MetricsHttpServer.format(3.0));
+		assertEquals("0.5", MetricsHttpServer.format(0.5));
+		assertEquals("NaN", MetricsHttpServer.format(Double.NaN));
+		assertEquals("+Inf", MetricsHttpServer.format(Double.POSITIVE_INFINITY));
+		assertEquals("a\\\"b\\n", MetricsHttpServer.escape("a\"b\n"));
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(MetricsHttpServerTest.class);
+	}
+
+}
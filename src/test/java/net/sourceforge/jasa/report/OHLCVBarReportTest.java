@@ -0,0 +1,147 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jasa.event.TransactionExecutedEvent;
+
+public class OHLCVBarReportTest extends TestCase {
+
+	protected CapturingReport report;
+
+	public OHLCVBarReportTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		report = new CapturingReport();
+		report.setTicksPerBar(10);
+	}
+
+	public void testTimeBars() {
+		for (int tick = 1; tick <= 30; tick++) {
+			switch (tick) {
+			case 2:
+				trade(tick, 10, 1);
+				break;
+			case 5:
+				trade(tick, 12, 3);
+				break;
+			case 7:
+				trade(tick, 8, 1);
+				break;
+			case 25:
+				trade(tick, 9, 2);
+				break;
+			}
+			report.roundFinished(tick);
+		}
+		assertEquals(3, report.bars.size());
+
+		assertBar(0, 10, 10, 12, 8, 8, 5, 3);
+		double[] bar = report.bars.get(0);
+		assertEquals((10 + 12 * 3 + 8) / 5.0, bar[OHLCVBarReport.VWAP], 1E-9);
+		// 10 for 3 ticks, 12 for 2 ticks and 8 for 3 ticks
+		assertEquals((10 * 3 + 12 * 2 + 8 * 3) / 8.0,
+				bar[OHLCVBarReport.TWAP], 1E-9);
+
+		// nothing traded, so the last close is carried forward
+		assertBar(1, 20, 8, 8, 8, 8, 0, 0);
+		bar = report.bars.get(1);
+		assertTrue(Double.isNaN(bar[OHLCVBarReport.VWAP]));
+		assertEquals(8, bar[OHLCVBarReport.TWAP], 1E-9);
+
+		assertBar(2, 30, 9, 9, 9, 9, 2, 1);
+		bar = report.bars.get(2);
+		assertEquals(9, bar[OHLCVBarReport.VWAP], 1E-9);
+		assertEquals((8 * 5 + 9 * 5) / 10.0, bar[OHLCVBarReport.TWAP], 1E-9);
+	}
+
+	public void testNoBarsBeforeFirstTrade() {
+		for (int tick = 1; tick <= 25; tick++) {
+			report.roundFinished(tick);
+		}
+		assertEquals(0, report.bars.size());
+		trade(26, 5, 1);
+		for (int tick = 26; tick <= 30; tick++) {
+			report.roundFinished(tick);
+		}
+		assertEquals(1, report.bars.size());
+		assertBar(0, 30, 5, 5, 5, 5, 1, 1);
+	}
+
+	public void testTransactionBars() {
+		report.setTransactionsPerBar(2);
+		for (int tick = 1; tick <= 40; tick++) {
+			if (tick <= 5) {
+				trade(tick, tick, 1);
+			}
+			report.roundFinished(tick);
+		}
+		// time has no effect on transaction bars
+		assertEquals(2, report.bars.size());
+		assertBar(0, 2, 1, 2, 1, 2, 2, 2);
+		assertBar(1, 4, 3, 4, 3, 4, 2, 2);
+		assertEquals(2.5, report.bars.get(1)[OHLCVBarReport.TWAP], 1E-9);
+	}
+
+	protected void trade(int tick, double price, int quantity) {
+		report.onTransactionExecuted(new TransactionExecutedEvent(null, tick,
+				null, null, price, quantity));
+	}
+
+	protected void assertBar(int i, int tick, double open, double high,
+			double low, double close, double volume, int transactions) {
+		double[] bar = report.bars.get(i);
+		assertEquals(tick, report.ticks.get(i).intValue());
+		assertEquals(open, bar[OHLCVBarReport.OPEN], 0);
+		assertEquals(high, bar[OHLCVBarReport.HIGH], 0);
+		assertEquals(low, bar[OHLCVBarReport.LOW], 0);
+		assertEquals(close, bar[OHLCVBarReport.CLOSE], 0);
+		assertEquals(volume, bar[OHLCVBarReport.VOLUME], 0);
+		assertEquals(transactions, (int) bar[OHLCVBarReport.TRANSACTIONS]);
+	}
+
+	/**
+	 * Captures bars instead of writing them.
+	 */
+	static class CapturingReport extends OHLCVBarReport {
+
+		List<Integer> ticks = new ArrayList<Integer>();
+
+		List<double[]> bars = new ArrayList<double[]>();
+
+		@Override
+		public void newPoint(int tick, double[] values) {
+			ticks.add(tick);
+			bars.add(values.clone());
+		}
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(OHLCVBarReportTest.class);
+	}
+
+}
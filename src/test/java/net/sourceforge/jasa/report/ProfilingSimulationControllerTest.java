@@ -0,0 +1,83 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jabm.event.EventListener;
+import net.sourceforge.jabm.event.SimEvent;
+import net.sourceforge.jasa.event.MarketClosedEvent;
+import net.sourceforge.jasa.event.MarketOpenEvent;
+
+public class ProfilingSimulationControllerTest extends TestCase {
+
+	ProfilingSimulationController controller;
+
+	CountingListener listener;
+
+	public ProfilingSimulationControllerTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		controller = new ProfilingSimulationController();
+		listener = new CountingListener();
+	}
+
+	public void testRemoveListenerForEventType() {
+		controller.addListener(MarketClosedEvent.class, listener);
+		controller.addListener(MarketOpenEvent.class, listener);
+		controller.fireEvent(new MarketClosedEvent(null, 0));
+		assertEquals(1, listener.count);
+		controller.removeListener(MarketClosedEvent.class, listener);
+		controller.fireEvent(new MarketClosedEvent(null, 0));
+		assertEquals(1, listener.count);
+		// still registered for the other event type
+		controller.fireEvent(new MarketOpenEvent(null, 0));
+		assertEquals(2, listener.count);
+		assertEquals(1, controller.getProfiles().size());
+	}
+
+	public void testRemoveListener() {
+		controller.addListener(listener);
+		controller.fireEvent(new MarketClosedEvent(null, 0));
+		assertEquals(1, listener.count);
+		controller.removeListener(listener);
+		controller.fireEvent(new MarketClosedEvent(null, 0));
+		assertEquals(1, listener.count);
+		// the profile gathered before removal is retained
+		assertEquals(1, controller.getProfiles().size());
+	}
+
+	static class CountingListener implements EventListener {
+
+		int count;
+
+		public void eventOccurred(SimEvent event) {
+			count++;
+		}
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(ProfilingSimulationControllerTest.class);
+	}
+
+}
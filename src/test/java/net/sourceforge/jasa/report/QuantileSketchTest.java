@@ -0,0 +1,126 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+public class QuantileSketchTest extends TestCase {
+
+	static final int N = 200000;
+
+	static final double RANK_TOLERANCE = 0.02;
+
+	RandomEngine prng;
+
+	public QuantileSketchTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		prng = new MersenneTwister64(42);
+	}
+
+	public void testQuantiles() {
+		QuantileSketch sketch = new QuantileSketch();
+		double[] data = new double[N];
+		for (int i = 0; i < N; i++) {
+			data[i] = Math.exp(prng.nextDouble() * 5);
+			sketch.newData(data[i]);
+		}
+		Arrays.sort(data);
+		assertEquals(N, sketch.getN());
+		assertEquals(data[0], sketch.getMin(), 0);
+		assertEquals(data[N - 1], sketch.getMax(), 0);
+		assertTrue(sketch.getRetainedItems() < 4 * sketch.getK());
+		checkQuantiles(sketch, data);
+	}
+
+	public void testMerge() {
+		QuantileSketch left = new QuantileSketch();
+		QuantileSketch right = new QuantileSketch();
+		double[] data = new double[N];
+		for (int i = 0; i < N; i++) {
+			// The two halves have different distributions
+			data[i] = i % 2 == 0 ? prng.nextDouble() : 1 + prng.nextDouble() * 2;
+			if (i % 2 == 0) {
+				left.newData(data[i]);
+			} else {
+				right.newData(data[i]);
+			}
+		}
+		left.merge(right);
+		Arrays.sort(data);
+		assertEquals(N, left.getN());
+		assertTrue(left.getRetainedItems() < 4 * left.getK());
+		checkQuantiles(left, data);
+	}
+
+	public void testHistogram() {
+		LogHistogram histogram = new LogHistogram(0.01, 4, 10);
+		histogram.newData(0.001);
+		histogram.newData(0.015);
+		histogram.newData(-0.015);
+		histogram.newData(1000);
+		assertEquals(4, histogram.getCount());
+		assertEquals(1, histogram.getZeroCount());
+		assertEquals(1, histogram.getPositiveCount(1));
+		assertEquals(1, histogram.getNegativeCount(1));
+		assertEquals(1, histogram.getPositiveCount(histogram.getNumBins() - 1));
+		LogHistogram other = new LogHistogram(0.01, 4, 10);
+		other.newData(0.015);
+		histogram.merge(other);
+		assertEquals(2, histogram.getPositiveCount(1));
+		assertEquals(5, histogram.getCount());
+	}
+
+	protected void checkQuantiles(QuantileSketch sketch, double[] sorted) {
+		for (double q = 0.01; q < 1; q += 0.01) {
+			double estimate = sketch.getQuantile(q);
+			int rank = Arrays.binarySearch(sorted, estimate);
+			assertTrue(rank >= 0);
+			double error = Math.abs((double) rank / sorted.length - q);
+			assertTrue("rank error " + error + " at " + q,
+					error < RANK_TOLERANCE);
+		}
+	}
+
+	public void testQuantileVarsOnlyWhenRequested() {
+		PriceStatisticsReport report = new PriceStatisticsReport();
+		int moments = report.getVariableBindings().size();
+		report.setReportQuantiles(true);
+		int withQuantiles = report.getVariableBindings().size();
+		assertEquals(PriceStatisticsReport.SKETCH_NAMES.length
+				* PriceStatisticsReport.QUANTILES.length, withQuantiles
+				- moments);
+		report.setReportQuantiles(false);
+		assertEquals(moments, report.getVariableBindings().size());
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(QuantileSketchTest.class);
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Date;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jasa.market.MarketSimulation;
+import net.sourceforge.jasa.report.ReportVariableWriterReport.InternalRVWriterReport;
+
+import org.jfree.data.time.Millisecond;
+import org.jfree.data.time.TimePeriodValue;
+
+public class ReportVariableWriterReportTest extends TestCase {
+
+	static final String[] VAR_NAMES = { "rvwtest.price", "rvwtest.volume",
+			"rvwtest.missing" };
+
+	static final int NUM_ROUNDS = 20;
+
+	protected File directory;
+
+	protected ReportVariableWriterReport report;
+
+	protected InternalRVWriterReport roundLog;
+
+	public ReportVariableWriterReportTest(String name) {
+		super(name);
+	}
+
+	public void setUp() throws IOException {
+		directory = File.createTempFile("rvw", "");
+		directory.delete();
+		directory.mkdir();
+		ReportVariableWriterReport.initialized = false;
+		roundLog = new InternalRVWriterReport();
+		roundLog.varNames = VAR_NAMES;
+		report = new ReportVariableWriterReport(null, null, null, roundLog,
+				null);
+		report.setAuction(new MarketSimulation());
+		report.setAsynchronousBaseFilename(directory.getPath()
+				+ File.separator);
+	}
+
+	public void tearDown() {
+		if (roundLog.getRecordWriter() != null) {
+			roundLog.getRecordWriter().close();
+		}
+		ReportVariableWriterReport.initialized = false;
+		ReportVariableBoard.getInstance().reset();
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	public void testAsynchronousRoundLog() throws IOException {
+		report.generateHeader();
+		for (int round = 0; round < NUM_ROUNDS; round++) {
+			reportValue(VAR_NAMES[0], new Double(100 + round * 0.25));
+			reportValue(VAR_NAMES[1], new Integer(round));
+			report.updateRoundLog(null);
+		}
+		report.flushAll();
+
+		BufferedReader reader = new BufferedReader(new FileReader(new File(
+				directory, "round.csv")));
+		try {
+			String[] header = reader.readLine().split(",");
+			assertEquals(2 + VAR_NAMES.length, header.length);
+			assertEquals("day", header[0]);
+			assertEquals("round", header[1]);
+			for (int i = 0; i < VAR_NAMES.length; i++) {
+				assertEquals(VAR_NAMES[i], header[2 + i]);
+			}
+			for (int round = 0; round < NUM_ROUNDS; round++) {
+				String[] row = reader.readLine().split(",");
+				assertEquals(header.length, row.length);
+				assertEquals(ReportVariableWriterReport.formatter
+						.format(100 + round * 0.25), row[2]);
+				assertEquals(Integer.toString(round), row[3]);
+				assertEquals("-1", row[4]);
+			}
+			assertNull(reader.readLine());
+		} finally {
+			reader.close();
+		}
+	}
+
+	protected void reportValue(String name, Number value) {
+		ReportVariableBoard.getInstance().reportValue(name,
+				new TimePeriodValue(new Millisecond(new Date()), value));
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(ReportVariableWriterReportTest.class);
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+public class RollingAutocorrelationTest extends TestCase {
+
+	static final int WINDOW = 100;
+
+	static final int[] LAGS = new int[] { 1, 3, 7 };
+
+	RandomEngine prng;
+
+	public RollingAutocorrelationTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		prng = new MersenneTwister64(17);
+	}
+
+	public void testAgainstDirectComputation() {
+		RollingAutocorrelation acf = new RollingAutocorrelation(WINDOW, LAGS);
+		double[] data = new double[1000];
+		double x = 0;
+		for (int t = 0; t < data.length; t++) {
+			// An AR(1) process has non-trivial autocorrelations
+			x = 0.8 * x + prng.nextDouble() - 0.5;
+			data[t] = x;
+			acf.newData(x);
+			if (t > LAGS[LAGS.length - 1]) {
+				checkWindow(acf, data, t + 1);
+			}
+		}
+		assertTrue(acf.getAutocorrelation(0) > 0.5);
+	}
+
+	public void testHillEstimator() {
+		HillEstimator hill = new HillEstimator(5000, prng);
+		hill.setTailFraction(0.05);
+		double alpha = 3.0;
+		for (int i = 0; i < 100000; i++) {
+			// Pareto-distributed samples with tail index alpha
+			hill.newData(Math.pow(1 - prng.nextDouble(), -1 / alpha));
+		}
+		assertEquals(5000, hill.getSize());
+		assertEquals(alpha, hill.getTailIndex(), 0.5);
+	}
+
+	protected void checkWindow(RollingAutocorrelation acf, double[] data,
+			int count) {
+		int first = Math.max(0, count - WINDOW);
+		int size = count - first;
+		double sum = 0, sumSq = 0;
+		for (int t = first; t < count; t++) {
+			sum += data[t];
+			sumSq += data[t] * data[t];
+		}
+		double mean = sum / size;
+		double variance = sumSq / size - mean * mean;
+		assertEquals(mean, acf.getMean(), 1E-9);
+		assertEquals(variance, acf.getVariance(), 1E-9);
+		for (int i = 0; i < LAGS.length; i++) {
+			double products = 0;
+			int pairs = 0;
+			for (int t = Math.max(first, LAGS[i]); t < count; t++) {
+				products += data[t] * data[t - LAGS[i]];
+				pairs++;
+			}
+			double expected = (products / pairs - mean * mean) / variance;
+			assertEquals(expected, acf.getAutocorrelation(i), 1E-6);
+		}
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(RollingAutocorrelationTest.class);
+	}
+
+}
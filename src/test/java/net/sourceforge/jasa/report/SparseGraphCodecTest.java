@@ -0,0 +1,88 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class SparseGraphCodecTest extends TestCase {
+
+	protected int[] sources = { 3, 0, 2, 0, 3 };
+
+	protected int[] targets = { 1, 2, 0, 3, 0 };
+
+	protected double[] weights = { 0.5, 1.5, 2.5, 3.5, 4.5 };
+
+	public SparseGraphCodecTest(String name) {
+		super(name);
+	}
+
+	public void testCOO() throws IOException {
+		SparseGraphCodec.SparseGraph graph = roundTrip(SparseGraphCodec.COO,
+				false);
+		assertEquals(SparseGraphCodec.COO, graph.layout);
+		assertFalse(graph.delta);
+		assertEquals(5, graph.numEdges);
+		for (int e = 0; e < sources.length; e++) {
+			assertEquals(sources[e], graph.sources[e]);
+			assertEquals(targets[e], graph.targets[e]);
+			assertEquals(weights[e], graph.weights[e], 0);
+		}
+	}
+
+	public void testCSR() throws IOException {
+		SparseGraphCodec.SparseGraph graph = roundTrip(SparseGraphCodec.CSR,
+				true);
+		assertTrue(graph.delta);
+		assertEquals(4, graph.numVertices);
+		assertEquals(77L, graph.transactions);
+		int[] expectedSources = { 0, 0, 2, 3, 3 };
+		int[] expectedTargets = { 2, 3, 0, 1, 0 };
+		double[] expectedWeights = { 1.5, 3.5, 2.5, 0.5, 4.5 };
+		for (int e = 0; e < expectedSources.length; e++) {
+			assertEquals(expectedSources[e], graph.sources[e]);
+			assertEquals(expectedTargets[e], graph.targets[e]);
+			assertEquals(expectedWeights[e], graph.weights[e], 0);
+		}
+	}
+
+	protected SparseGraphCodec.SparseGraph roundTrip(byte layout,
+			boolean delta) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		SparseGraphCodec.write(out, layout, delta, 4, 77L, sources, targets,
+				weights, sources.length);
+		out.close();
+		return SparseGraphCodec.read(new DataInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())));
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(SparseGraphCodecTest.class);
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+public class StreamingLabelPropagationTest extends TestCase {
+
+	public static final int GROUPS = 4;
+
+	public static final int GROUP_SIZE = 10;
+
+	public StreamingLabelPropagationTest(String name) {
+		super(name);
+	}
+
+	public void testPlantedCommunities() {
+		StreamingLabelPropagation<Integer> tracker = 
+			new StreamingLabelPropagation<Integer>(0.999);
+		RandomEngine prng = new MersenneTwister64(11);
+		HashMap<Long, Double> weights = new HashMap<Long, Double>();
+		long t = 0;
+		for (int i = 0; i < 5000; i++) {
+			int group = (int) (prng.nextDouble() * GROUPS);
+			int a = group * GROUP_SIZE + (int) (prng.nextDouble() * GROUP_SIZE);
+			int b;
+			if (prng.nextDouble() < 0.05) {
+				b = (int) (prng.nextDouble() * GROUPS * GROUP_SIZE);
+			} else {
+				b = group * GROUP_SIZE + (int) (prng.nextDouble() * GROUP_SIZE);
+			}
+			t++;
+			tracker.addWeight(a, b, 1.0, t);
+			if (a != b) {
+				long key = Math.min(a, b) * 1000L + Math.max(a, b);
+				// Weight each edge by its undecayed value at time zero
+				Double w = weights.get(key);
+				weights.put(key, (w == null ? 0 : w) + Math.pow(0.999, -t));
+			}
+		}
+		assertEquals(GROUPS, tracker.getNumberOfCommunities());
+		for (int g = 0; g < GROUPS; g++) {
+			int label = tracker.getLabel(g * GROUP_SIZE);
+			for (int v = 1; v < GROUP_SIZE; v++) {
+				assertEquals(label, tracker.getLabel(g * GROUP_SIZE + v));
+			}
+		}
+		assertEquals(modularity(tracker, weights), tracker.getModularity(),
+				1E-6);
+		assertTrue(tracker.getModularity() > 0.6);
+	}
+
+	public void testRemovingEdgesIsolatesVertices() {
+		StreamingLabelPropagation<String> tracker = 
+			new StreamingLabelPropagation<String>(0.5);
+		tracker.addWeight("a", "b", 1.0, 1);
+		tracker.addWeight("b", "c", 1.0, 1);
+		assertEquals(1, tracker.getNumberOfCommunities());
+		assertEquals(3, tracker.getLargestCommunitySize());
+		tracker.removeEdge("a", "b", 3);
+		assertEquals(-1, tracker.getLabel("a"));
+		assertEquals(2, tracker.getNumberOfVertices());
+		tracker.removeEdge("b", "c", 4);
+		assertEquals(0, tracker.getNumberOfCommunities());
+		assertEquals(0, tracker.getModularity(), 0);
+	}
+
+	/**
+	 * Compute the modularity of the tracker's partition from scratch, using
+	 * weights which are scaled uniformly, which does not affect modularity.
+	 */
+	protected double modularity(StreamingLabelPropagation<Integer> tracker,
+			Map<Long, Double> weights) {
+		double m = 0;
+		HashMap<Integer, Double> degrees = new HashMap<Integer, Double>();
+		double internal = 0;
+		for (Map.Entry<Long, Double> entry : weights.entrySet()) {
+			int a = (int) (entry.getKey() / 1000);
+			int b = (int) (entry.getKey() % 1000);
+			double w = entry.getValue();
+			m += w;
+			int la = tracker.getLabel(a);
+			int lb = tracker.getLabel(b);
+			if (la == lb) {
+				internal += w;
+			}
+			Double da = degrees.get(la);
+			degrees.put(la, (da == null ? 0 : da) + w);
+			Double db = degrees.get(lb);
+			degrees.put(lb, (db == null ? 0 : db) + w);
+		}
+		double q = internal / m;
+		for (double d : degrees.values()) {
+			q -= (d / (2 * m)) * (d / (2 * m));
+		}
+		return q;
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(StreamingLabelPropagationTest.class);
+	}
+
+}
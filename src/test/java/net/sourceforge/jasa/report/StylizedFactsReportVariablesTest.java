@@ -0,0 +1,87 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+public class StylizedFactsReportVariablesTest extends TestCase {
+
+	static final int NUM_RETURNS = 5000;
+
+	static final int RESERVOIR_SIZE = 200;
+
+	public StylizedFactsReportVariablesTest(String name) {
+		super(name);
+	}
+
+	public void testInjectedPrng() {
+		RandomEngine prng = new MersenneTwister64(5);
+		StylizedFactsReportVariables report = createReport(prng);
+		assertSame(prng, report.getPrng());
+		assertSame(prng, report.hillEstimator.prng);
+	}
+
+	public void testReproducibleWithSameSeed() {
+		StylizedFactsReportVariables first = 
+				createReport(new MersenneTwister64(5));
+		StylizedFactsReportVariables second = 
+				createReport(new MersenneTwister64(5));
+		StylizedFactsReportVariables other = 
+				createReport(new MersenneTwister64(6));
+		feedReturns(first);
+		feedReturns(second);
+		feedReturns(other);
+		assertFalse(Double.isNaN(first.getTailIndex()));
+		assertEquals(first.getTailIndex(), second.getTailIndex(), 0);
+		assertFalse(first.getTailIndex() == other.getTailIndex());
+	}
+
+	protected StylizedFactsReportVariables createReport(RandomEngine prng) {
+		StylizedFactsReportVariables report = 
+				new StylizedFactsReportVariables();
+		report.setReservoirSize(RESERVOIR_SIZE);
+		report.setTailIndexInterval(NUM_RETURNS);
+		report.setPrng(prng);
+		return report;
+	}
+
+	/**
+	 * Feed the same fat-tailed returns to the report; once the reservoir is
+	 * full, which returns are retained depends on the report's prng.
+	 */
+	protected void feedReturns(StylizedFactsReportVariables report) {
+		RandomEngine returns = new MersenneTwister64(17);
+		for (int i = 0; i < NUM_RETURNS; i++) {
+			double u = returns.nextDouble();
+			double magnitude = 0.001 * Math.pow(1 - u, -1 / 3.0);
+			report.newReturn(returns.nextDouble() < 0.5 ? magnitude
+					: -magnitude);
+		}
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(StylizedFactsReportVariablesTest.class);
+	}
+
+}
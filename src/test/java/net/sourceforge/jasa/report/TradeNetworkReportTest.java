@@ -0,0 +1,109 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.report;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.sourceforge.jasa.agent.MockTrader;
+import net.sourceforge.jasa.event.TransactionExecutedEvent;
+import net.sourceforge.jasa.market.MarketSimulation;
+import net.sourceforge.jasa.report.TradeNetworkReport.TransactionList;
+
+public class TradeNetworkReportTest extends TestCase {
+
+	protected TradeNetworkReport report;
+
+	protected MockTrader a, b, c, d;
+
+	public TradeNetworkReportTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		MarketSimulation market = new MarketSimulation();
+		a = new MockTrader(this, 0, 0, market);
+		b = new MockTrader(this, 0, 0, market);
+		c = new MockTrader(this, 0, 0, market);
+		d = new MockTrader(this, 0, 0, market);
+		report = new TradeNetworkReport();
+		report.setAlpha(0.5);
+	}
+
+	public void testLazyDecay() {
+		report.setThreshold(0.01);
+		record(a, b, 10);
+		TransactionList edge = (TransactionList) report.getGraph().findEdge(a, b);
+		for (int i = 0; i < 3; i++) {
+			record(c, d, 1);
+		}
+		// the edge is not visited by transactions elsewhere in the network
+		assertEquals(1, edge.getLastUpdate());
+		assertEquals(10, edge.value, 0);
+		// but its weight is decayed when read
+		assertEquals(10 * 0.125, report.edgeStrength(a, b), 1E-12);
+		assertEquals(10 * 0.125, edge.decayedValue(4), 1E-12);
+
+		record(a, b, 2);
+		assertEquals(5, edge.getLastUpdate());
+		// as if the edge had been decayed eagerly after every transaction
+		assertEquals(0.5 * 2 + 0.5 * 10 * 0.125, report.edgeStrength(a, b),
+				1E-12);
+		assertSame(edge, report.getGraph().findEdge(a, b));
+	}
+
+	public void testEdgeExpiry() {
+		report.setThreshold(0.1);
+		record(a, b, 1);
+		// 0.5^3 is still above the threshold
+		for (int i = 0; i < 3; i++) {
+			record(c, d, 1);
+			assertNotNull(report.getGraph().findEdge(a, b));
+		}
+		// 0.5^4 is below it
+		record(c, d, 1);
+		assertNull(report.getGraph().findEdge(a, b));
+		assertEquals(0, report.edgeStrength(a, b), 0);
+		// edges which are refreshed are not removed by stale queue entries
+		assertNotNull(report.getGraph().findEdge(c, d));
+		assertEquals(1, report.edgeStrength(c, d), 1E-12);
+	}
+
+	public void testExpiredEdgeRecreated() {
+		report.setThreshold(0.1);
+		record(a, b, 1);
+		for (int i = 0; i < 4; i++) {
+			record(c, d, 1);
+		}
+		assertNull(report.getGraph().findEdge(a, b));
+		record(a, b, 3);
+		assertEquals(3, report.edgeStrength(a, b), 1E-12);
+	}
+
+	protected void record(MockTrader x, MockTrader y, int quantity) {
+		report.record(x, y, new TransactionExecutedEvent(null, 0, null, null,
+				100, quantity));
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(TradeNetworkReportTest.class);
+	}
+
+}
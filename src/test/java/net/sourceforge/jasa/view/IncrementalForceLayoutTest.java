@@ -0,0 +1,120 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.view;
+
+import java.awt.Dimension;
+import java.awt.geom.Point2D;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import edu.uci.ics.jung.graph.DirectedSparseGraph;
+import edu.uci.ics.jung.graph.Graph;
+
+public class IncrementalForceLayoutTest extends TestCase {
+
+	public static final int CLUSTERS = 20;
+
+	public static final int CLUSTER_SIZE = 50;
+
+	protected Graph<Integer, Integer> graph;
+
+	protected IncrementalForceLayout<Integer, Integer> layout;
+
+	public IncrementalForceLayoutTest(String name) {
+		super(name);
+	}
+
+	public void setUp() {
+		graph = new DirectedSparseGraph<Integer, Integer>();
+		int edge = 0;
+		for (int c = 0; c < CLUSTERS; c++) {
+			for (int i = 1; i < CLUSTER_SIZE; i++) {
+				graph.addEdge(edge++, c * CLUSTER_SIZE, c * CLUSTER_SIZE + i);
+			}
+		}
+		layout = new IncrementalForceLayout<Integer, Integer>(graph);
+		layout.setSize(new Dimension(2000, 2000));
+		layout.initialize();
+	}
+
+	public void testConverges() {
+		int steps = relax();
+		assertTrue(layout.done());
+		assertTrue(steps < 200);
+		assertTrue(meanEdgeLength() < meanDistance(0, CLUSTER_SIZE) / 2);
+	}
+
+	public void testWarmStartPreservesLayout() {
+		int coldSteps = relax();
+		Point2D[] before = positions();
+		graph.addEdge(-1, 0, CLUSTER_SIZE);
+		layout.warmStart();
+		assertFalse(layout.done());
+		int steps = relax();
+		assertTrue(steps < coldSteps * 2 / 3);
+		Point2D[] after = positions();
+		double moved = 0;
+		for (int i = 0; i < before.length; i++) {
+			moved += before[i].distance(after[i]);
+		}
+		assertTrue(moved / before.length < 100);
+	}
+
+	protected int relax() {
+		int steps = 0;
+		while (!layout.done() && steps < 1000) {
+			layout.step();
+			steps++;
+		}
+		return steps;
+	}
+
+	protected Point2D[] positions() {
+		Point2D[] result = new Point2D[CLUSTERS * CLUSTER_SIZE];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = (Point2D) layout.transform(i).clone();
+		}
+		return result;
+	}
+
+	protected double meanEdgeLength() {
+		double total = 0;
+		for (Integer edge : graph.getEdges()) {
+			total += layout.transform(graph.getSource(edge)).distance(
+					layout.transform(graph.getDest(edge)));
+		}
+		return total / graph.getEdgeCount();
+	}
+
+	protected double meanDistance(int first, int second) {
+		double total = 0;
+		for (int c = 0; c < CLUSTERS - 1; c++) {
+			total += layout.transform(c * CLUSTER_SIZE + first).distance(
+					layout.transform((c + 1) * CLUSTER_SIZE + first));
+		}
+		return total / (CLUSTERS - 1);
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(IncrementalForceLayoutTest.class);
+	}
+
+}
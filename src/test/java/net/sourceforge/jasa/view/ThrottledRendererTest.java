@@ -0,0 +1,98 @@
+/*
+ * JASA Java Auction Simulator API
+ * Copyright (C) 2013 Steve Phelps
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 2 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ */
+
+package net.sourceforge.jasa.view;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class ThrottledRendererTest extends TestCase {
+
+	protected int frames;
+
+	protected Integer lastRendered;
+
+	protected boolean onEventDispatchThread = true;
+
+	public ThrottledRendererTest(String name) {
+		super(name);
+	}
+
+	public void testSnapshotsAreCoalesced() throws Exception {
+		ThrottledRenderer<Integer> renderer = new ThrottledRenderer<Integer>(
+				50) {
+			protected void render(Integer snapshot) {
+				onEventDispatchThread &= SwingUtilities.isEventDispatchThread();
+				frames++;
+				lastRendered = snapshot;
+			}
+		};
+		int published = 0;
+		long start = System.currentTimeMillis();
+		for (int i = 0; System.currentTimeMillis() - start < 300; i++) {
+			renderer.publish(i);
+			published++;
+		}
+		awaitRendered(renderer);
+		assertEquals(published - 1, lastRendered.intValue());
+		assertEquals(renderer.getPublishedVersion(), renderer
+				.getRenderedVersion());
+		assertTrue(frames < 30);
+		assertEquals(published - frames, renderer.getCoalesced());
+		assertTrue(onEventDispatchThread);
+	}
+
+	public void testIsDue() throws Exception {
+		ThrottledRenderer<Integer> renderer = new ThrottledRenderer<Integer>(
+				10) {
+			protected void render(Integer snapshot) {
+				frames++;
+			}
+		};
+		assertTrue(renderer.isDue());
+		renderer.publish(1);
+		assertFalse(renderer.isDue());
+		awaitRendered(renderer);
+		Thread.sleep(110);
+		assertTrue(renderer.isDue());
+		assertEquals(1, frames);
+	}
+
+	protected void awaitRendered(ThrottledRenderer<?> renderer)
+			throws Exception {
+		for (int i = 0; i < 100
+				&& renderer.getRenderedVersion() != renderer
+						.getPublishedVersion(); i++) {
+			Thread.sleep(20);
+		}
+		// Wait for the frame in progress to complete
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+			}
+		});
+	}
+
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(suite());
+	}
+
+	public static Test suite() {
+		return new TestSuite(ThrottledRendererTest.class);
+	}
+
+}